@@ -0,0 +1,90 @@
+package ch.jalu.fileduplicatefinder.benchmark;
+
+import ch.jalu.fileduplicatefinder.config.FileUtilConfiguration;
+import ch.jalu.fileduplicatefinder.output.RootWriterReader;
+import ch.jalu.fileduplicatefinder.output.TaskWriterReader;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Scanner;
+
+/**
+ * Helpers for setting up benchmarks.
+ */
+final class BenchmarkSupport {
+
+    /**
+     * System property with the folder in which the benchmarks' files are created, e.g. a tmpfs mount to exclude
+     * the speed of the disk. Defaults to the system's temporary folder.
+     */
+    static final String BENCHMARK_FOLDER_PROPERTY = "jfu.benchmark.dir";
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Creates a new empty folder for the files of a benchmark.
+     *
+     * @param prefix the prefix of the folder name
+     * @return the created folder
+     * @throws IOException if the folder could not be created
+     */
+    static Path createBenchmarkFolder(String prefix) throws IOException {
+        String parent = System.getProperty(BENCHMARK_FOLDER_PROPERTY);
+        return parent == null
+            ? Files.createTempDirectory(prefix)
+            : Files.createTempDirectory(Files.createDirectories(Paths.get(parent)), prefix);
+    }
+
+    static void deleteFolder(Path folder) throws IOException {
+        MoreFiles.deleteRecursively(folder, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+
+    /**
+     * Creates a configuration with default values that is saved in the given folder.
+     *
+     * @param folder the folder to save the configuration file in
+     * @return the configuration
+     */
+    static FileUtilConfiguration createConfiguration(Path folder) {
+        return new FileUtilConfiguration(new Scanner(""), folder.resolve("file-utils.properties"));
+    }
+
+    /**
+     * @return logger which does not output anything
+     */
+    static TaskWriterReader createSilentLogger() {
+        return new SilentWriterReader().createWriterReaderForTask("benchmark");
+    }
+
+    private static final class SilentWriterReader extends RootWriterReader {
+
+        SilentWriterReader() {
+            super(new Scanner(""));
+        }
+
+        @Override
+        public void printNewLine() {
+            // noop
+        }
+
+        @Override
+        public void printLn(String text) {
+            // noop
+        }
+
+        @Override
+        public void print(String text) {
+            // noop
+        }
+
+        @Override
+        public void printError(String text) {
+            // noop
+        }
+    }
+}
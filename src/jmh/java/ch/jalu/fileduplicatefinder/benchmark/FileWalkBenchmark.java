@@ -0,0 +1,106 @@
+package ch.jalu.fileduplicatefinder.benchmark;
+
+import ch.jalu.fileduplicatefinder.config.FileUtilConfiguration;
+import ch.jalu.fileduplicatefinder.duplicatefinder.FileDuplicateFinder;
+import ch.jalu.fileduplicatefinder.filefilter.ConfigurableFilePathMatcher;
+import ch.jalu.fileduplicatefinder.filewalker.FileWalkVisitor;
+import ch.jalu.fileduplicatefinder.filewalker.ParallelFileWalker;
+import ch.jalu.fileduplicatefinder.hashing.FileHasherFactory;
+import ch.jalu.fileduplicatefinder.hashing.FileReadMode;
+import ch.jalu.fileduplicatefinder.hashing.HashingAlgorithm;
+import ch.jalu.fileduplicatefinder.metrics.RunMetrics;
+import ch.jalu.fileduplicatefinder.output.TaskWriterReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.SCAN_THREADS;
+
+/**
+ * Measures walking a synthetic file tree: once with a visitor that only counts the files, and once by collecting
+ * the files as the duplicate finder does before hashing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileWalkBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int totalFiles;
+
+    /** Number of threads to walk with, 0 for one per available processor. */
+    @Param({"1", "0"})
+    private int threads;
+
+    private Path folder;
+    private Path root;
+    private FileUtilConfiguration configuration;
+    private TaskWriterReader logger;
+
+    @Setup(Level.Trial)
+    public void createFiles() throws IOException {
+        folder = BenchmarkSupport.createBenchmarkFolder("jfu-walk");
+        root = Files.createDirectory(folder.resolve("tree"));
+        new SyntheticFileTree(totalFiles, 20, 4, 4096, 0.1, totalFiles).generate(root);
+
+        configuration = BenchmarkSupport.createConfiguration(folder);
+        configuration.setValue(SCAN_THREADS, threads);
+        logger = BenchmarkSupport.createSilentLogger();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        BenchmarkSupport.deleteFolder(folder);
+    }
+
+    @Benchmark
+    public Integer countFiles() {
+        return new ParallelFileWalker(threads).walk(root, new FileCountingVisitor());
+    }
+
+    @Benchmark
+    public FileDuplicateFinder collectFilesBySize() {
+        FileDuplicateFinder finder = new FileDuplicateFinder(root,
+            new FileHasherFactory().createFileHasher(HashingAlgorithm.CRC32, FileReadMode.CHANNEL),
+            new ConfigurableFilePathMatcher(configuration), configuration, new RunMetrics(), logger);
+        finder.processFiles();
+        return finder;
+    }
+
+    private static final class FileCountingVisitor implements FileWalkVisitor<Integer> {
+
+        @Override
+        public Integer visitFile(Path file, BasicFileAttributes attributes) {
+            return 1;
+        }
+
+        @Override
+        public Integer visitDirectory(Path directory, BasicFileAttributes attributes, List<Integer> childResults) {
+            int sum = 0;
+            for (int result : childResults) {
+                sum += result;
+            }
+            return sum;
+        }
+    }
+}
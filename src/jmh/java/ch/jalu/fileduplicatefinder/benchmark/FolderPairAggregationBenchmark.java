@@ -0,0 +1,71 @@
+package ch.jalu.fileduplicatefinder.benchmark;
+
+import ch.jalu.fileduplicatefinder.duplicatefinder.DuplicateEntry;
+import ch.jalu.fileduplicatefinder.duplicatefinder.FolderPair;
+import ch.jalu.fileduplicatefinder.duplicatefinder.FolderPairDuplicatesCounter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link FolderPairDuplicatesCounter} on synthetic duplicate entries. Works on paths only, so no files are
+ * created. The number of folders is the square root of the number of entries, so that folder pairs repeat.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FolderPairAggregationBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int totalEntries;
+
+    @Param({"2", "5"})
+    private int filesPerEntry;
+
+    private final FolderPairDuplicatesCounter counter = new FolderPairDuplicatesCounter();
+    private List<DuplicateEntry> entries;
+
+    @Setup(Level.Trial)
+    public void createEntries() {
+        Random random = new Random(totalEntries);
+        int totalFolders = (int) Math.max(2, Math.sqrt(totalEntries));
+        List<Path> folders = new ArrayList<>(totalFolders);
+        for (int i = 0; i < totalFolders; ++i) {
+            folders.add(Paths.get("root", "dir" + (i % 10), "sub" + i));
+        }
+
+        entries = new ArrayList<>(totalEntries);
+        for (int i = 0; i < totalEntries; ++i) {
+            List<Path> paths = new ArrayList<>(filesPerEntry);
+            for (int j = 0; j < filesPerEntry; ++j) {
+                paths.add(folders.get(random.nextInt(totalFolders)).resolve("file" + i + "_" + j));
+            }
+            entries.add(new DuplicateEntry(random.nextInt(1_000_000), "hash" + i, paths));
+        }
+    }
+
+    @Benchmark
+    public Map<FolderPair, Long> countDuplicatesByFolderPair() {
+        return counter.getFolderToFolderDuplicateCount(entries);
+    }
+}
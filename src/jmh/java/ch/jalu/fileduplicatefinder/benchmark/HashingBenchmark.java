@@ -0,0 +1,84 @@
+package ch.jalu.fileduplicatefinder.benchmark;
+
+import ch.jalu.fileduplicatefinder.hashing.FileHasher;
+import ch.jalu.fileduplicatefinder.hashing.FileHasherFactory;
+import ch.jalu.fileduplicatefinder.hashing.FileReadMode;
+import ch.jalu.fileduplicatefinder.hashing.HashingAlgorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to hash a file with each {@link HashingAlgorithm} and {@link FileReadMode}. The files are
+ * written once and read repeatedly, so unless the files exceed the OS file cache, this measures reading from
+ * memory and hashing, not the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashingBenchmark {
+
+    private static final long TOTAL_BYTES = 128L * 1024 * 1024;
+    private static final int MAX_FILES = 512;
+
+    @Param
+    private HashingAlgorithm algorithm;
+
+    @Param
+    private FileReadMode readMode;
+
+    @Param({"4096", "262144", "1048576", "8388608", "67108864"})
+    private int fileSize;
+
+    private Path folder;
+    private List<Path> files;
+    private FileHasher fileHasher;
+    private int nextFile;
+
+    @Setup(Level.Trial)
+    public void createFiles() throws IOException {
+        folder = BenchmarkSupport.createBenchmarkFolder("jfu-hashing");
+        int totalFiles = (int) Math.max(1, Math.min(TOTAL_BYTES / fileSize, MAX_FILES));
+        Random random = new Random(fileSize);
+        byte[] contents = new byte[fileSize];
+        files = new ArrayList<>(totalFiles);
+        for (int i = 0; i < totalFiles; ++i) {
+            random.nextBytes(contents);
+            files.add(Files.write(folder.resolve(i + ".bin"), contents));
+        }
+        fileHasher = new FileHasherFactory().createFileHasher(algorithm, readMode);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        BenchmarkSupport.deleteFolder(folder);
+    }
+
+    @Benchmark
+    public String hashFile() throws IOException {
+        Path file = files.get(nextFile);
+        nextFile = (nextFile + 1) % files.size();
+        return fileHasher.calculateHash(file);
+    }
+}
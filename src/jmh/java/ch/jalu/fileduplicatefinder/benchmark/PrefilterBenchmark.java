@@ -0,0 +1,89 @@
+package ch.jalu.fileduplicatefinder.benchmark;
+
+import ch.jalu.fileduplicatefinder.duplicatefinder.StagedContentFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the head-bytes prefilter of {@link StagedContentFilter} on a group of files of the same size. The files
+ * either differ in their first bytes, so that the prefilter eliminates them, or only at the end, so that the bytes
+ * are read without eliminating any file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrefilterBenchmark {
+
+    private static final int FILE_SIZE = 1024 * 1024;
+
+    @Param({"512", "4096", "65536"})
+    private int headBytes;
+
+    @Param({"2", "10", "100"})
+    private int groupSize;
+
+    @Param({"START", "END"})
+    private DifferencePosition differencePosition;
+
+    private Path folder;
+    private List<Path> files;
+    private StagedContentFilter contentFilter;
+
+    @Setup(Level.Trial)
+    public void createFiles() throws IOException {
+        folder = BenchmarkSupport.createBenchmarkFolder("jfu-prefilter");
+        Random random = new Random(groupSize);
+        byte[] contents = new byte[FILE_SIZE];
+        random.nextBytes(contents);
+        int differingByte = differencePosition == DifferencePosition.START ? 0 : FILE_SIZE - 1;
+
+        files = new ArrayList<>(groupSize);
+        for (int i = 0; i < groupSize; ++i) {
+            contents[differingByte] = (byte) i;
+            files.add(Files.write(folder.resolve(i + ".bin"), contents));
+        }
+        contentFilter = new StagedContentFilter(headBytes, 0, 0, 0);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        BenchmarkSupport.deleteFolder(folder);
+    }
+
+    @Benchmark
+    public List<List<Path>> filterByHeadBytes() {
+        return contentFilter.filter(FILE_SIZE, files);
+    }
+
+    public enum DifferencePosition {
+
+        /** Files differ in the first byte. */
+        START,
+
+        /** Files differ in the last byte. */
+        END
+
+    }
+}
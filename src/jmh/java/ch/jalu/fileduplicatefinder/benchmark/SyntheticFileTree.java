@@ -0,0 +1,92 @@
+package ch.jalu.fileduplicatefinder.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates a folder with random files for benchmarks. The same parameters always create the same tree.
+ * <p>
+ * Folders are filled breadth-first: each folder has a fixed number of files and subfolders until the total number
+ * of files has been created. File sizes are skewed towards small files, as in typical user folders. A configurable
+ * share of the files are copies of a previously created file, so that the tree has duplicates of various sizes.
+ */
+public class SyntheticFileTree {
+
+    private final int totalFiles;
+    private final int filesPerFolder;
+    private final int foldersPerFolder;
+    private final int maxFileSize;
+    private final double duplicateRatio;
+    private final long seed;
+
+    /**
+     * Constructor.
+     *
+     * @param totalFiles the number of files to create
+     * @param filesPerFolder the number of files in each folder
+     * @param foldersPerFolder the number of subfolders each folder has (as long as files remain to be created)
+     * @param maxFileSize the maximum size of a file in bytes
+     * @param duplicateRatio share of files (0 to 1) that should be a copy of another file
+     * @param seed the seed for the random generator
+     */
+    public SyntheticFileTree(int totalFiles, int filesPerFolder, int foldersPerFolder, int maxFileSize,
+                             double duplicateRatio, long seed) {
+        this.totalFiles = totalFiles;
+        this.filesPerFolder = filesPerFolder;
+        this.foldersPerFolder = foldersPerFolder;
+        this.maxFileSize = maxFileSize;
+        this.duplicateRatio = duplicateRatio;
+        this.seed = seed;
+    }
+
+    /**
+     * Creates the files in the given folder.
+     *
+     * @param root the folder to create the files in (must exist)
+     * @return all created files
+     * @throws IOException if a file could not be written
+     */
+    public List<Path> generate(Path root) throws IOException {
+        Random random = new Random(seed);
+        List<Path> folders = new ArrayList<>();
+        folders.add(root);
+        List<Path> files = new ArrayList<>(totalFiles);
+        List<byte[]> contentsToCopy = new ArrayList<>();
+
+        for (int folderIndex = 0; files.size() < totalFiles; ++folderIndex) {
+            Path folder = folders.get(folderIndex);
+            for (int i = 0; i < foldersPerFolder; ++i) {
+                folders.add(Files.createDirectory(folder.resolve("dir" + i)));
+            }
+
+            int filesInFolder = Math.min(filesPerFolder, totalFiles - files.size());
+            for (int i = 0; i < filesInFolder; ++i) {
+                byte[] contents;
+                if (!contentsToCopy.isEmpty() && random.nextDouble() < duplicateRatio) {
+                    contents = contentsToCopy.get(random.nextInt(contentsToCopy.size()));
+                } else {
+                    contents = new byte[nextFileSize(random)];
+                    random.nextBytes(contents);
+                    if (contentsToCopy.size() < 1000) {
+                        contentsToCopy.add(contents);
+                    }
+                }
+                files.add(Files.write(folder.resolve("file" + i + ".bin"), contents));
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Returns a random file size: the exponent is uniformly distributed, so there are as many files of 1-10 bytes
+     * as there are of 10-100 bytes, etc.
+     */
+    private int nextFileSize(Random random) {
+        double exponent = random.nextDouble() * Math.log(maxFileSize);
+        return (int) Math.min(maxFileSize, Math.exp(exponent));
+    }
+}
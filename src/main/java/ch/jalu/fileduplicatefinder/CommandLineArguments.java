@@ -0,0 +1,100 @@
+package ch.jalu.fileduplicatefinder;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Arguments the application was started with. Supported arguments, in any order:
+ * <ul>
+ *   <li>the path to the configuration file</li>
+ *   <li>{@code --batch} to run the configured task once without any user interaction</li>
+ *   <li>{@code --resume} to resume the duplicate search from its journal file, if configured</li>
+ *   <li>any number of settings as {@code path=value}, e.g. {@code duplicates.folder=/photos}, which take precedence
+ *       over the configuration file</li>
+ * </ul>
+ */
+public class CommandLineArguments {
+
+    public static final String BATCH_FLAG = "--batch";
+    public static final String RESUME_FLAG = "--resume";
+
+    @Nullable
+    private final Path configFile;
+    private final boolean batchMode;
+    private final boolean resume;
+    private final Map<String, String> settings;
+
+    private CommandLineArguments(@Nullable Path configFile, boolean batchMode, boolean resume,
+                                 Map<String, String> settings) {
+        this.configFile = configFile;
+        this.batchMode = batchMode;
+        this.resume = resume;
+        this.settings = Collections.unmodifiableMap(settings);
+    }
+
+    /**
+     * Parses the given arguments.
+     *
+     * @param args the arguments to parse
+     * @return the parsed arguments
+     * @throws IllegalArgumentException if an argument is invalid
+     */
+    public static CommandLineArguments parse(String... args) {
+        Path configFile = null;
+        boolean batchMode = false;
+        boolean resume = false;
+        Map<String, String> settings = new LinkedHashMap<>();
+
+        for (String arg : args) {
+            int equalsIndex = arg.indexOf('=');
+            if (BATCH_FLAG.equals(arg)) {
+                batchMode = true;
+            } else if (RESUME_FLAG.equals(arg)) {
+                resume = true;
+            } else if (arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unknown option '" + arg + "'");
+            } else if (equalsIndex > 0) {
+                settings.put(arg.substring(0, equalsIndex), arg.substring(equalsIndex + 1));
+            } else if (configFile == null) {
+                configFile = Paths.get(arg);
+            } else {
+                throw new IllegalArgumentException("Unexpected argument '" + arg
+                    + "': the configuration file was already specified");
+            }
+        }
+        return new CommandLineArguments(configFile, batchMode, resume, settings);
+    }
+
+    /**
+     * @return the configuration file to use, null for the default file
+     */
+    public @Nullable Path getConfigFile() {
+        return configFile;
+    }
+
+    /**
+     * @return true if the configured task should be run once without prompting the user
+     */
+    public boolean isBatchMode() {
+        return batchMode;
+    }
+
+    /**
+     * @return true if work recorded in the journal of a previous run should be skipped
+     */
+    public boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * @return values by property path which override the configuration file
+     */
+    public Map<String, String> getSettings() {
+        return settings;
+    }
+}
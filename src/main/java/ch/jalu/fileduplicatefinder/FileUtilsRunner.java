@@ -2,9 +2,11 @@ package ch.jalu.fileduplicatefinder;
 
 import ch.jalu.fileduplicatefinder.config.FileUtilConfiguration;
 import ch.jalu.fileduplicatefinder.config.FileUtilSettings;
+import ch.jalu.fileduplicatefinder.duplicatefinder.DuplicateWatchRunner;
 import ch.jalu.fileduplicatefinder.duplicatefinder.FileDuplicateRunner;
 import ch.jalu.fileduplicatefinder.duplicatefinder.FolderPairDuplicatesCounter;
-import ch.jalu.fileduplicatefinder.duplicatefinder.output.ConsoleResultOutputter;
+import ch.jalu.fileduplicatefinder.duplicatefinder.output.DuplicateEntryOutputter;
+import ch.jalu.fileduplicatefinder.duplicatefinder.output.DuplicateEntryOutputterFactory;
 import ch.jalu.fileduplicatefinder.filecount.FileCountRunner;
 import ch.jalu.fileduplicatefinder.folderdiff.FolderDiffRunner;
 import ch.jalu.fileduplicatefinder.hashing.FileHasherFactory;
@@ -15,64 +17,58 @@ import ch.jalu.fileduplicatefinder.rename.FileRenameRunner;
 import ch.jalu.fileduplicatefinder.tree.FileTreeRunner;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Scanner;
 
 /**
  * Entry class with main method. Delegates to the appropriate task runner.
+ * <p>
+ * In batch mode (see {@link CommandLineArguments}), the configured task is run once without prompting the user, and
+ * the application exits with a non-zero status if the task could not be run.
  */
 public class FileUtilsRunner {
 
+    private static final int EXIT_STATUS_TASK_FAILED = 1;
+    private static final int EXIT_STATUS_INVALID_USAGE = 2;
+
     private FileUtilsRunner() {
     }
 
     public static void main(String... args) {
         try (Scanner scanner = new Scanner(System.in)) {
-            FileUtilConfiguration configuration = createConfiguration(scanner, args);
+            CommandLineArguments arguments = parseArguments(args);
+            FileUtilConfiguration configuration = arguments == null ? null : createConfiguration(scanner, arguments);
             if (configuration == null) {
+                System.exit(EXIT_STATUS_INVALID_USAGE);
                 return;
             }
 
             RootWriterReader logger = new RootWriterReader(scanner);
+            if (arguments.isBatchMode()) {
+                int exitStatus = runInBatchMode(configuration, logger, scanner);
+                if (exitStatus != 0) {
+                    System.exit(exitStatus);
+                }
+                return;
+            }
+
             String task = configuration.getValueOrPrompt(FileUtilSettings.TASK);
             do {
                 switch (task) {
-                    case FileRenameRunner.ID_REGEX:
-                        new FileRenameRunner(logger.createWriterReaderForTask("rename"), configuration)
-                            .runRegexRename();
-                        break;
-                    case FileRenameRunner.ID_DATE:
-                        new FileRenameRunner(logger.createWriterReaderForTask("rename"), configuration)
-                            .runDateRename();
-                        break;
-                    case FileDuplicateRunner.ID:
-                        createFileDuplicateRunner(configuration, logger).run();
-                        break;
-                    case FileCountRunner.ID:
-                        new FileCountRunner(logger.createWriterReaderForTask("count"), configuration).run();
-                        break;
-                    case FolderDiffRunner.ID:
-                        WriterReader diffLogger = logger.createWriterReaderForTask("diff");
-                        new FolderDiffRunner(configuration, new FileHasherFactory(), diffLogger).run();
-                        break;
-                    case FileTreeRunner.ID:
-                        new FileTreeRunner(scanner, configuration).run();
-                        break;
                     case "exit":
                     case "x":
                     case "q":
                     case "quit":
                         return;
                     default:
-                        String taskList = FileRenameRunner.ID_REGEX
-                            + ", " + FileRenameRunner.ID_DATE
-                            + ", " + FileDuplicateRunner.ID
-                            + ", " + FileCountRunner.ID
-                            + ", " + FolderDiffRunner.ID
-                            + ", " + FileTreeRunner.ID;
-                        System.err.println("Unknown task '" + task + "'. Possible tasks: " + taskList);
+                        if (!runTask(task, configuration, logger, scanner)) {
+                            System.err.println("Unknown task '" + task + "'. Possible tasks: " + getTaskList());
+                        }
                 }
 
                 System.out.println("Task: (q to quit)");
@@ -83,22 +79,123 @@ public class FileUtilsRunner {
         }
     }
 
-    private static FileDuplicateRunner createFileDuplicateRunner(FileUtilConfiguration configuration,
-                                                                 RootWriterReader logger) {
+    /**
+     * Runs the given task.
+     *
+     * @return true if the task was run, false if the task is unknown
+     */
+    private static boolean runTask(String task, FileUtilConfiguration configuration, RootWriterReader logger,
+                                   Scanner scanner) throws ExitRunnerException {
+        switch (task) {
+            case FileRenameRunner.ID_REGEX:
+                new FileRenameRunner(logger.createWriterReaderForTask("rename"), configuration)
+                    .runRegexRename();
+                break;
+            case FileRenameRunner.ID_DATE:
+                new FileRenameRunner(logger.createWriterReaderForTask("rename"), configuration)
+                    .runDateRename();
+                break;
+            case FileDuplicateRunner.ID:
+                runFileDuplicateTask(configuration, logger);
+                break;
+            case DuplicateWatchRunner.ID:
+                runDuplicateWatchTask(configuration, logger);
+                break;
+            case FileCountRunner.ID:
+                new FileCountRunner(logger.createWriterReaderForTask("count"), configuration).run();
+                break;
+            case FolderDiffRunner.ID:
+                WriterReader diffLogger = logger.createWriterReaderForTask("diff");
+                new FolderDiffRunner(configuration, new FileHasherFactory(), diffLogger).run();
+                break;
+            case FileTreeRunner.ID:
+                new FileTreeRunner(scanner, configuration, logger.createWriterReaderForTask("tree")).run();
+                break;
+            default:
+                return false;
+        }
+        return true;
+    }
+
+    private static int runInBatchMode(FileUtilConfiguration configuration, RootWriterReader logger,
+                                      Scanner scanner) {
+        try {
+            String task = configuration.getValueOrPrompt(FileUtilSettings.TASK);
+            if (FileRenameRunner.ID_REGEX.equals(task) || FileRenameRunner.ID_DATE.equals(task)) {
+                System.err.println("Task '" + task + "' requires confirmation and cannot be run in batch mode");
+                return EXIT_STATUS_INVALID_USAGE;
+            } else if (!runTask(task, configuration, logger, scanner)) {
+                System.err.println("Unknown task '" + task + "'. Possible tasks: " + getTaskList());
+                return EXIT_STATUS_INVALID_USAGE;
+            }
+            return 0;
+        } catch (ExitRunnerException e) {
+            return 0;
+        } catch (RuntimeException e) {
+            System.err.println("Task failed: " + e.getMessage());
+            return EXIT_STATUS_TASK_FAILED;
+        }
+    }
+
+    private static String getTaskList() {
+        return FileRenameRunner.ID_REGEX
+            + ", " + FileRenameRunner.ID_DATE
+            + ", " + FileDuplicateRunner.ID
+            + ", " + DuplicateWatchRunner.ID
+            + ", " + FileCountRunner.ID
+            + ", " + FolderDiffRunner.ID
+            + ", " + FileTreeRunner.ID;
+    }
+
+    private static void runFileDuplicateTask(FileUtilConfiguration configuration, RootWriterReader logger) {
         TaskWriterReader contextLogger = logger.createWriterReaderForTask("duplicates");
-        return new FileDuplicateRunner(configuration, new FileHasherFactory(), new FolderPairDuplicatesCounter(),
-            new ConsoleResultOutputter(configuration, contextLogger), contextLogger);
+        try (DuplicateEntryOutputter entryOutputter = createEntryOutputter(configuration, contextLogger)) {
+            new FileDuplicateRunner(configuration, new FileHasherFactory(), new FolderPairDuplicatesCounter(),
+                entryOutputter, contextLogger).run();
+        }
     }
 
-    private static @Nullable FileUtilConfiguration createConfiguration(Scanner scanner, String... args) {
-        Path userConfig = null;
-        if (args != null && args.length > 0) {
-            userConfig = Paths.get(args[0]);
-            if (!Files.exists(userConfig)) {
-                System.err.println("Supplied config file '" + userConfig.getFileName().toString() + "' does not exist");
-                return null;
+    private static void runDuplicateWatchTask(FileUtilConfiguration configuration, RootWriterReader logger) {
+        TaskWriterReader contextLogger = logger.createWriterReaderForTask("watch");
+        try (DuplicateEntryOutputter entryOutputter = createEntryOutputter(configuration, contextLogger)) {
+            new DuplicateWatchRunner(configuration, new FileHasherFactory(), entryOutputter, contextLogger).run();
+        }
+    }
+
+    private static DuplicateEntryOutputter createEntryOutputter(FileUtilConfiguration configuration,
+                                                                TaskWriterReader logger) {
+        try {
+            return new DuplicateEntryOutputterFactory().createOutputter(configuration, logger);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the output file: " + e.getMessage(), e);
+        }
+    }
+
+    private static @Nullable CommandLineArguments parseArguments(String... args) {
+        try {
+            return CommandLineArguments.parse(args == null ? new String[0] : args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return null;
+        }
+    }
+
+    private static @Nullable FileUtilConfiguration createConfiguration(Scanner scanner,
+                                                                       CommandLineArguments arguments) {
+        Path userConfig = arguments.getConfigFile();
+        if (userConfig != null && !Files.exists(userConfig)) {
+            System.err.println("Supplied config file '" + userConfig.getFileName().toString() + "' does not exist");
+            return null;
+        }
+        try {
+            Map<String, String> settings = new LinkedHashMap<>(arguments.getSettings());
+            if (arguments.isResume()) {
+                settings.put(FileUtilSettings.DUPLICATE_JOURNAL_RESUME.getPath(), "true");
             }
+            return new FileUtilConfiguration(scanner, userConfig, settings, !arguments.isBatchMode());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return null;
         }
-        return new FileUtilConfiguration(scanner, userConfig);
     }
 }
@@ -2,6 +2,8 @@ package ch.jalu.fileduplicatefinder.config;
 
 import ch.jalu.configme.SettingsManager;
 import ch.jalu.configme.SettingsManagerBuilder;
+import ch.jalu.configme.configurationdata.ConfigurationDataBuilder;
+import ch.jalu.configme.properties.Property;
 import ch.jalu.configme.utils.Utils;
 import ch.jalu.fileduplicatefinder.config.property.JfuOptionalProperty;
 import ch.jalu.fileduplicatefinder.config.property.JfuProperty;
@@ -9,17 +11,23 @@ import org.jetbrains.annotations.Nullable;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Scanner;
+import java.util.Set;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Provides values for all configurations.
  */
 public class FileUtilConfiguration {
 
+    private final Path configFile;
     private final SettingsManager settingsManager;
     private final ScannerPropertySource scannerPropertySource;
+    private final Map<String, String> settingOverrides;
+    private final boolean interactive;
 
     /**
      * Constructor.
@@ -28,10 +36,26 @@ public class FileUtilConfiguration {
      * @param userPropertyFile custom path to the configuration file (nullable); a default name is used if null
      */
     public FileUtilConfiguration(Scanner scanner, @Nullable Path userPropertyFile) {
-        Path configFile = Objects.requireNonNullElseGet(userPropertyFile,
+        this(scanner, userPropertyFile, Map.of(), true);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param scanner scanner instance to get user input when needed
+     * @param userPropertyFile custom path to the configuration file (nullable); a default name is used if null
+     * @param settingOverrides values by property path which take precedence over all other sources
+     * @param interactive true if the user may be prompted for values, false if missing values are an error
+     */
+    public FileUtilConfiguration(Scanner scanner, @Nullable Path userPropertyFile,
+                                 Map<String, String> settingOverrides, boolean interactive) {
+        validatePropertyPaths(settingOverrides);
+        this.configFile = Objects.requireNonNullElseGet(userPropertyFile,
             () -> Paths.get("./file-utils.properties"));
         this.settingsManager = createSettingsManager(configFile);
         this.scannerPropertySource = new ScannerPropertySource(scanner);
+        this.settingOverrides = Map.copyOf(settingOverrides);
+        this.interactive = interactive;
     }
 
     public <T> T getValue(JfuProperty<T> property) {
@@ -58,6 +82,25 @@ public class FileUtilConfiguration {
         settingsManager.save();
     }
 
+    /**
+     * Returns the path to the configuration file. Other files the application persists are saved next to it.
+     *
+     * @return the configuration file
+     */
+    public Path getConfigFile() {
+        return configFile;
+    }
+
+    /**
+     * Returns whether the user can be prompted. If false, values that would have to be prompted for result in an
+     * exception, and tasks should not wait for any user input.
+     *
+     * @return true if the application is run interactively, false if it is run in batch mode
+     */
+    public boolean isInteractive() {
+        return interactive;
+    }
+
     private <T, R> R getValue0(JfuProperty<T> property, boolean forcePrompt, Function<T, R> resultTransformer) {
         // 1. Get existing value and output in case there is any error (this informs the user in case it was weird in
         //    the properties file or on the command line)
@@ -73,7 +116,12 @@ public class FileUtilConfiguration {
             return oldValue;
         }
 
-        // 3. Inform the user what he has to input
+        // 3. Fail if we cannot prompt, otherwise inform the user what he has to input
+        if (!interactive) {
+            String reason = valueOrError.getErrorReason() == null ? "" : " (" + valueOrError.getErrorReason() + ")";
+            throw new IllegalStateException("A valid value for '" + property.getPath()
+                + "' is required in batch mode" + reason);
+        }
         String prevValue = oldValue == null
             ? ""
             : " (current value: \"" + property.toExportValue(valueOrError.getValue()) + "\")";
@@ -108,7 +156,12 @@ public class FileUtilConfiguration {
     }
 
     private @Nullable String getValueFromOverridingSources(String path) {
-        String value = scannerPropertySource.getValue(path);
+        String value = settingOverrides.get(path);
+        if (value != null) {
+            return value;
+        }
+
+        value = scannerPropertySource.getValue(path);
         if (value != null) {
             return value;
         }
@@ -116,6 +169,21 @@ public class FileUtilConfiguration {
         return System.getProperty(path);
     }
 
+    private static void validatePropertyPaths(Map<String, String> settingOverrides) {
+        if (settingOverrides.isEmpty()) {
+            return;
+        }
+        Set<String> knownPaths = ConfigurationDataBuilder.createConfiguration(FileUtilSettings.class).getProperties()
+            .stream()
+            .map(Property::getPath)
+            .collect(Collectors.toSet());
+        for (String path : settingOverrides.keySet()) {
+            if (!knownPaths.contains(path)) {
+                throw new IllegalArgumentException("Unknown setting '" + path + "'");
+            }
+        }
+    }
+
     private static SettingsManager createSettingsManager(Path configFile) {
         Utils.createFileIfNotExists(configFile);
         return SettingsManagerBuilder
@@ -11,13 +11,18 @@ import ch.jalu.fileduplicatefinder.config.property.JfuOptionalProperty;
 import ch.jalu.fileduplicatefinder.config.property.JfuPowerOfTwoMinusOneProperty;
 import ch.jalu.fileduplicatefinder.config.property.JfuRegexProperty;
 import ch.jalu.fileduplicatefinder.config.property.JfuStringProperty;
+import ch.jalu.fileduplicatefinder.duplicatefinder.output.DuplicateOutputFormat;
+import ch.jalu.fileduplicatefinder.hashing.FileReadMode;
 import ch.jalu.fileduplicatefinder.hashing.HashingAlgorithm;
 import ch.jalu.fileduplicatefinder.tree.TreeDisplayMode;
+import ch.jalu.fileduplicatefinder.tree.TreeDumpFormat;
 
 import java.nio.file.Path;
 import java.util.regex.Pattern;
 
 import static ch.jalu.fileduplicatefinder.config.property.JfuOptionalProperty.newOptionalDirectoryProperty;
+import static ch.jalu.fileduplicatefinder.config.property.JfuOptionalProperty.newOptionalExistingPathProperty;
+import static ch.jalu.fileduplicatefinder.config.property.JfuOptionalProperty.newOptionalPathProperty;
 import static ch.jalu.fileduplicatefinder.config.property.JfuOptionalProperty.newOptionalRegexProperty;
 import static ch.jalu.fileduplicatefinder.config.property.JfuOptionalProperty.newOptionalStringProperty;
 
@@ -26,12 +31,24 @@ import static ch.jalu.fileduplicatefinder.config.property.JfuOptionalProperty.ne
  */
 public final class FileUtilSettings implements SettingsHolder {
 
-    @Comment("Set to always run the same task (Possible values: rename,addDate,duplicates,filecount,diff,tree)")
+    @Comment("Set to always run the same task (Possible values: rename,addDate,duplicates,watch,filecount,diff,tree)")
     public static final JfuOptionalProperty<String> TASK = newOptionalStringProperty("core.task");
 
     @Comment("Format file size to human-readable units (e.g. 4.1 KB). If false, the number of bytes is always shown")
     public static final JfuBooleanProperty FORMAT_FILE_SIZE = new JfuBooleanProperty("core.formatFileSize", true);
 
+    @Comment("Number of threads that scan folders in parallel. Use 0 to have as many threads as processors.")
+    public static final JfuIntegerProperty SCAN_THREADS = new JfuIntegerProperty("core.scanThreads", 0);
+
+    @Comment({
+        "Output metrics (counts, throughput, latencies and time per stage) at the end of a task?",
+        "Supported by the duplicates, filecount, diff and tree tasks."
+    })
+    public static final JfuBooleanProperty METRICS_SHOW_TABLE = new JfuBooleanProperty("core.metrics.showTable", false);
+
+    @Comment("File to write the metrics to as JSON at the end of a task (empty to skip)")
+    public static final JfuOptionalProperty<Path> METRICS_JSON_FILE = newOptionalPathProperty("core.metrics.jsonFile");
+
     // --- Rename feature ---
 
     @Comment("Folder to rename files in (visits all child folders)")
@@ -66,9 +83,37 @@ public final class FileUtilSettings implements SettingsHolder {
     public static final JfuOptionalProperty<Path> DUPLICATE_FOLDER = newOptionalDirectoryProperty("duplicates.folder");
 
     @Comment({
-        "Algorithm used to hash the file contents with. (Supported values: GFH, CRC32, SHA1, SHA256)",
+        "Max time in seconds to spend on hashing files when finding duplicates. Use 0 for no limit.",
+        "The time is counted from the end of the scan, so scanning the folder does not count toward it.",
+        "When the time is up, files that have not been hashed yet are skipped and only the duplicates confirmed",
+        "until then are output. Files with the most potential savings (size * (copies - 1)) are processed first."
+    })
+    public static final JfuIntegerProperty DUPLICATE_MAX_RUNTIME_SECONDS =
+        new JfuIntegerProperty("duplicates.maxRuntimeSeconds", 0);
+
+    @Comment({
+        "Journal file to record finished hashing work in (empty for no journal). If a run is interrupted, the next",
+        "run can skip the work in the journal with duplicates.journal.resume=true or the --resume option.",
+        "Files that could not be read are also recorded in the journal."
+    })
+    public static final JfuOptionalProperty<Path> DUPLICATE_JOURNAL_FILE =
+        newOptionalPathProperty("duplicates.journal.file");
+
+    @Comment("Resume from the journal file? If false, an existing journal file is overwritten")
+    public static final JfuBooleanProperty DUPLICATE_JOURNAL_RESUME =
+        new JfuBooleanProperty("duplicates.journal.resume", false);
+
+    @Comment("Max number of seconds between writes of the journal to disk (checkpoints)")
+    public static final JfuIntegerProperty DUPLICATE_JOURNAL_CHECKPOINT_INTERVAL_SECONDS =
+        new JfuIntegerProperty("duplicates.journal.checkpointIntervalSeconds", 30);
+
+    @Comment({
+        "Algorithm used to hash the file contents with.",
+        "Supported values: GFH, CRC32, SHA1, SHA256, XXH3, XXH128, MURMUR3_128, BLAKE3",
         "GFH is Guava's 'good fast hash' with 128 bits. "
-            + "These hashes from GFH are not the same when the program is rerun later!"
+            + "These hashes from GFH are not the same when the program is rerun later!",
+        "XXH128 and XXH3 (64 bits) are the fastest hashes that are stable across runs. BLAKE3 is cryptographic;",
+        "it is faster than SHA256 unless the CPU has SHA instructions that the JVM uses."
     })
     public static final JfuEnumProperty<HashingAlgorithm> DUPLICATE_HASH_ALGORITHM =
         new JfuEnumProperty<>(HashingAlgorithm.class, "duplicates.hash.algorithm", HashingAlgorithm.GFH);
@@ -80,6 +125,37 @@ public final class FileUtilSettings implements SettingsHolder {
     public static final JfuDoubleProperty DUPLICATE_HASH_MAX_SIZE_MB =
         new JfuDoubleProperty("duplicates.hash.maxSizeForHashingInMb", 300);
 
+    @Comment({
+        "Number of threads that read and hash files in parallel per device (file store), so that files on",
+        "different disks are read at the same time. Use 0 to have as many threads as processors."
+    })
+    public static final JfuIntegerProperty DUPLICATE_HASH_THREADS =
+        new JfuIntegerProperty("duplicates.hash.threads", 0);
+
+    @Comment({
+        "Number of threads that read and hash files in parallel on a device that is a spinning disk (HDD).",
+        "1 reads one file at a time, in the order of their paths, which avoids seeking back and forth.",
+        "Spinning disks are only detected on Linux. Use 0 to treat them like other devices."
+    })
+    public static final JfuIntegerProperty DUPLICATE_HASH_THREADS_PER_SPINNING_DISK =
+        new JfuIntegerProperty("duplicates.hash.threadsPerSpinningDisk", 1);
+
+    @Comment({
+        "How files are read for hashing. (Supported values: STREAM, CHANNEL)",
+        "STREAM reads files through heap buffers; CHANNEL memory-maps large files and reads small files",
+        "into a reused direct buffer, which avoids copying the contents. Also used by the diff task."
+    })
+    public static final JfuEnumProperty<FileReadMode> DUPLICATE_HASH_READ_MODE =
+        new JfuEnumProperty<>(FileReadMode.class, "duplicates.hash.readMode", FileReadMode.CHANNEL);
+
+    @Comment({
+        "If true, hashes are saved to a cache file next to the configuration file and reused in later runs",
+        "for files whose size and modification date have not changed. Also used by the diff task.",
+        "Hashes from GFH are never cached since they change from one run to another."
+    })
+    public static final JfuBooleanProperty DUPLICATE_HASH_USE_CACHE =
+        new JfuBooleanProperty("duplicates.hash.useCache", false);
+
     @Comment({
         "Glob filter of files to ignore (empty to skip)",
         "  See https://docs.oracle.com/javase/7/docs/api/java/nio/file/FileSystem.html#getPathMatcher(java.lang.String)"
@@ -106,15 +182,43 @@ public final class FileUtilSettings implements SettingsHolder {
         new JfuStringProperty("duplicates.filter.resultWhitelist", "");
 
     @Comment({
-        "The number of bytes configured in the property below will first be read and compared for files",
-        "that exceed the file size configured in this property before the file's contents are hashed."
+        "Before files of the same size are hashed, parts of their contents are compared in stages: the start,",
+        "the end, and blocks sampled from the middle. Only files that may still have a duplicate are hashed.",
+        "Number of bytes to compare at the start of files (0 to skip this stage)."
+    })
+    public static final JfuIntegerProperty DUPLICATE_PREFILTER_HEAD_BYTES =
+        new JfuIntegerProperty("duplicates.prefilter.headBytes", 4096);
+
+    @Comment("Number of bytes to compare at the end of files (0 to skip this stage)")
+    public static final JfuIntegerProperty DUPLICATE_PREFILTER_TAIL_BYTES =
+        new JfuIntegerProperty("duplicates.prefilter.tailBytes", 4096);
+
+    @Comment("Number of blocks to compare, evenly spread between the start and the end of files (0 to skip this stage)")
+    public static final JfuIntegerProperty DUPLICATE_PREFILTER_SAMPLE_BLOCKS =
+        new JfuIntegerProperty("duplicates.prefilter.sampleBlocks", 4);
+
+    @Comment("Size of each sampled block in bytes")
+    public static final JfuIntegerProperty DUPLICATE_PREFILTER_SAMPLE_BLOCK_BYTES =
+        new JfuIntegerProperty("duplicates.prefilter.sampleBlockBytes", 4096);
+
+    @Comment({
+        "Groups of potential duplicates with at most this many files are compared byte by byte instead of being",
+        "hashed, which stops reading as soon as the files differ. Use 0 to always hash.",
+        "Not used if duplicates.hash.useCache is enabled, so that all files are added to the hash cache."
     })
-    public static final JfuDoubleProperty DUPLICATE_READ_BEFORE_HASH_MIN_SIZE =
-        new JfuDoubleProperty("duplicates.readBeforeHash.minSizeInMb", 1024);
+    public static final JfuIntegerProperty DUPLICATE_COMPARE_MAX_GROUP_SIZE =
+        new JfuIntegerProperty("duplicates.compare.maxGroupSize", 3);
+
+    @Comment("Minimum file size (in MB) for files to be compared byte by byte (see above) rather than hashed")
+    public static final JfuDoubleProperty DUPLICATE_COMPARE_MIN_SIZE_MB =
+        new JfuDoubleProperty("duplicates.compare.minSizeInMb", 0.0);
 
-    @Comment("The number of bytes to read from large files (see above property) before they are hashed")
-    public static final JfuIntegerProperty DUPLICATE_READ_BEFORE_HASH_BYTES_TO_READ =
-        new JfuIntegerProperty("duplicates.readBeforeHash.bytesToRead", 64);
+    @Comment({
+        "Watch task (uses the duplicate settings above): time in milliseconds without further changes after which",
+        "changed files are processed, so that files which are still being written are not hashed repeatedly"
+    })
+    public static final JfuIntegerProperty DUPLICATE_WATCH_SETTLE_TIME_MILLIS =
+        new JfuIntegerProperty("duplicates.watch.settleTimeMillis", 1000);
 
     @Comment({
         "",
@@ -123,6 +227,40 @@ public final class FileUtilSettings implements SettingsHolder {
     public static final JfuBooleanProperty DUPLICATE_OUTPUT_DUPLICATES =
         new JfuBooleanProperty("duplicates.output.showDuplicates", true);
 
+    @Comment({
+        "How duplicates are output. Supported values: CONSOLE, JSON_LINES, CSV",
+        "JSON_LINES writes one JSON object per line and CSV one row per duplicated file to the file below"
+    })
+    public static final JfuEnumProperty<DuplicateOutputFormat> DUPLICATE_OUTPUT_FORMAT =
+        new JfuEnumProperty<>(DuplicateOutputFormat.class, "duplicates.output.format", DuplicateOutputFormat.CONSOLE);
+
+    @Comment("File to write the duplicates to if the output format is JSON_LINES or CSV")
+    public static final JfuOptionalProperty<Path> DUPLICATE_OUTPUT_FILE =
+        newOptionalPathProperty("duplicates.output.file");
+
+    @Comment({
+        "If true, duplicates are output as soon as they are confirmed, unsorted, instead of after all files have",
+        "been hashed. Found duplicates are not kept in memory."
+    })
+    public static final JfuBooleanProperty DUPLICATE_OUTPUT_STREAMING =
+        new JfuBooleanProperty("duplicates.output.streaming", false);
+
+    @Comment({
+        "If true and duplicates are streamed (see above), all duplicates are output again sorted by size at the end.",
+        "The duplicates are saved to a temporary file for this. If the output format is JSON_LINES or CSV, only",
+        "the sorted duplicates are written to the output file."
+    })
+    public static final JfuBooleanProperty DUPLICATE_OUTPUT_SORTED_AFTER_STREAMING =
+        new JfuBooleanProperty("duplicates.output.sortedReportAfterStreaming", false);
+
+    @Comment({
+        "Paths that are links to the same file (hard links, or symbolic links and their target) are hashed once",
+        "and are not reported as duplicates. If true, all groups of links are listed; otherwise, only their number",
+        "is shown."
+    })
+    public static final JfuBooleanProperty DUPLICATE_OUTPUT_HARD_LINKS =
+        new JfuBooleanProperty("duplicates.output.showHardLinks", false);
+
     @Comment("(Debug) Shows the total number of found duplicates by folder pairs")
     public static final JfuBooleanProperty DUPLICATE_OUTPUT_FOLDER_PAIR_COUNT =
         new JfuBooleanProperty("duplicates.output.showFolderPairCount", false);
@@ -131,10 +269,6 @@ public final class FileUtilSettings implements SettingsHolder {
     public static final JfuBooleanProperty DUPLICATE_OUTPUT_DISTRIBUTION =
         new JfuBooleanProperty("duplicates.output.showDistribution", false);
 
-    @Comment("(Debug) Logs which large files were not hashed because their initial contents were compared first")
-    public static final JfuBooleanProperty DUPLICATE_OUTPUT_DIFFERENCE_READ_FILES_VS_HASH =
-        new JfuBooleanProperty("duplicates.output.showDifferenceReadFilesVsHash", false);
-
     @Comment({
         "Interval in which a small output occurs to show progress.",
         "Must be a power of 2 minus 1 (e.g. 63, 127, 255, 511)"
@@ -166,11 +300,11 @@ public final class FileUtilSettings implements SettingsHolder {
 
     // --- Folder diff feature ---
 
-    @Comment("The first folder to consider")
-    public static final JfuOptionalProperty<Path> DIFF_FOLDER1 = newOptionalDirectoryProperty("diff.folder1");
+    @Comment("The first folder to consider, or a manifest file saved by a previous diff (see diff.manifest.output)")
+    public static final JfuOptionalProperty<Path> DIFF_FOLDER1 = newOptionalExistingPathProperty("diff.folder1");
 
-    @Comment("The second folder to diff the first one with")
-    public static final JfuOptionalProperty<Path> DIFF_FOLDER2 = newOptionalDirectoryProperty("diff.folder2");
+    @Comment("The second folder to diff the first one with, or a manifest file saved by a previous diff")
+    public static final JfuOptionalProperty<Path> DIFF_FOLDER2 = newOptionalExistingPathProperty("diff.folder2");
 
     @Comment({
         "If true, a file is considered identical if the name, size and modification dates matches.",
@@ -179,6 +313,30 @@ public final class FileUtilSettings implements SettingsHolder {
     public static final JfuBooleanProperty DIFF_CHECK_BY_SIZE_AND_MODIFICATION_DATE =
         new JfuBooleanProperty("diff.checkBySizeAndModificationDate", true);
 
+    @Comment({
+        "Number of threads that hash files in parallel per device (file store) when comparing folders.",
+        "Use 0 to have as many threads as processors. Set to 1 for spinning disks."
+    })
+    public static final JfuIntegerProperty DIFF_HASH_THREADS_PER_DEVICE =
+        new JfuIntegerProperty("diff.hash.threadsPerDevice", 0);
+
+    @Comment({
+        "File to save a manifest of the second folder to after comparing. Empty to disable.",
+        "A manifest lists the path, size and modification date of all files, and can be used in place of a folder",
+        "in diff.folder1 or diff.folder2 so that the folder does not need to be scanned again."
+    })
+    public static final JfuOptionalProperty<Path> DIFF_MANIFEST_OUTPUT =
+        newOptionalPathProperty("diff.manifest.output");
+
+    @Comment({
+        "Include the hash of every file in the saved manifest? Takes longer, as all files are read.",
+        "Without hashes, files compared against the manifest are checked by size and modification date only.",
+        "Hashes of a manifest are only used if they were created with the configured hash algorithm.",
+        "Hashes are not saved if the algorithm's hashes differ between runs (GFH)."
+    })
+    public static final JfuBooleanProperty DIFF_MANIFEST_INCLUDE_HASHES =
+        new JfuBooleanProperty("diff.manifest.includeHashes", false);
+
     @Comment({
         "When enabled, the full path of the folders are inspected and a part is chosen to reference them.",
         "Set to false for output that uses folder1/ and folder2/ for the inspected folders."
@@ -195,6 +353,12 @@ public final class FileUtilSettings implements SettingsHolder {
     @Comment("The folder whose contents should be listed")
     public static final JfuOptionalProperty<Path> TREE_FOLDER = newOptionalDirectoryProperty("tree.folder");
 
+    @Comment({
+        "Only load the files of directories whose files can match the filters? Directory sizes are still computed",
+        "from all files. Saves memory and time if the filters only match directories or large files."
+    })
+    public static final JfuBooleanProperty TREE_LAZY_LOADING = new JfuBooleanProperty("tree.lazyLoading", false);
+
     @Comment({
         "Regex a file name must match to be included in the tree output. Empty to disable.",
         "The file name is given relative to the folder, e.g. if C:/acme/test is the folder to list, then a file at",
@@ -252,6 +416,16 @@ public final class FileUtilSettings implements SettingsHolder {
     public static final JfuPowerOfTwoMinusOneProperty TREE_FILES_PROCESSED_INTERVAL =
         new JfuPowerOfTwoMinusOneProperty("tree.output.progress.filesProcessedInterval", 255);
 
+    @Comment({
+        "Format of the file written by the 'dump' command. Supported values: TEXT, CSV, JSON_LINES",
+        "TEXT is the same as the console output; CSV and JSON_LINES write the type, size and path of each entry"
+    })
+    public static final JfuEnumProperty<TreeDumpFormat> TREE_DUMP_FORMAT =
+        new JfuEnumProperty<>(TreeDumpFormat.class, "tree.dump.format", TreeDumpFormat.TEXT);
+
+    @Comment("File to write to with the 'dump' command")
+    public static final JfuOptionalProperty<Path> TREE_DUMP_FILE = newOptionalPathProperty("tree.dump.file");
+
     private FileUtilSettings() {
     }
 
@@ -23,6 +23,14 @@ public class JfuOptionalProperty<T> extends JfuProperty<Optional<T>> {
         return new JfuOptionalProperty<>(new JfuDirectoryProperty(path, Paths.get(".")));
     }
 
+    public static JfuOptionalProperty<Path> newOptionalPathProperty(String path) {
+        return new JfuOptionalProperty<>(new JfuPathProperty(path, Paths.get("."), false));
+    }
+
+    public static JfuOptionalProperty<Path> newOptionalExistingPathProperty(String path) {
+        return new JfuOptionalProperty<>(new JfuPathProperty(path, Paths.get("."), true));
+    }
+
     public static JfuOptionalProperty<String> newOptionalStringProperty(String path) {
         return new JfuOptionalProperty<>(new JfuStringProperty(path, ""));
     }
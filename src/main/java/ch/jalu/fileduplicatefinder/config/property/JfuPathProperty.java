@@ -0,0 +1,50 @@
+package ch.jalu.fileduplicatefinder.config.property;
+
+import ch.jalu.configme.properties.convertresult.ConvertErrorRecorder;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Property for a path to a file or directory.
+ */
+public class JfuPathProperty extends JfuProperty<Path> {
+
+    /**
+     * Constructor.
+     *
+     * @param path the path of the property
+     * @param defaultValue the default value of the property
+     * @param mustExist whether the file or directory must exist for the value to be valid
+     */
+    public JfuPathProperty(String path, Path defaultValue, boolean mustExist) {
+        super(path, defaultValue, new JfuPathPropertyType(mustExist));
+    }
+
+    private static final class JfuPathPropertyType implements JfuPropertyType<Path> {
+
+        private final boolean mustExist;
+
+        JfuPathPropertyType(boolean mustExist) {
+            this.mustExist = mustExist;
+        }
+
+        @Override
+        public @Nullable Path fromString(String value, ConvertErrorRecorder errorRecorder) {
+            Path path = Paths.get(value);
+            if (!mustExist || Files.exists(path)) {
+                return path;
+            }
+
+            errorRecorder.setHasError("Path '" + value + "' does not exist");
+            return null;
+        }
+
+        @Override
+        public Object toExportValue(Path value) {
+            return value.toAbsolutePath().normalize().toString();
+        }
+    }
+}
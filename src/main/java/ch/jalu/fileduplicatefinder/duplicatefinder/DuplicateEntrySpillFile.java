@@ -0,0 +1,136 @@
+package ch.jalu.fileduplicatefinder.duplicatefinder;
+
+import com.google.common.io.CountingOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Temporary file to which duplicate entries are written as they are found, so that they do not need to be kept in
+ * memory. The entries can be read back sorted by size once all entries have been written: only the size, number of
+ * files and position in the file of each entry are kept in memory, and the entries are read from the file one by one.
+ * <p>
+ * The file is deleted when this object is closed.
+ */
+public class DuplicateEntrySpillFile implements Closeable {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final Path file;
+    private final CountingOutputStream countingStream;
+    private final DataOutputStream output;
+
+    private int totalEntries;
+    private long[] offsets = new long[INITIAL_CAPACITY];
+    private long[] sizes = new long[INITIAL_CAPACITY];
+    private int[] fileCounts = new int[INITIAL_CAPACITY];
+
+    /**
+     * Constructor.
+     *
+     * @param file the file to write to (created or overwritten)
+     * @throws IOException if the file cannot be opened for writing
+     */
+    public DuplicateEntrySpillFile(Path file) throws IOException {
+        this.file = file;
+        this.countingStream = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        this.output = new DataOutputStream(countingStream);
+    }
+
+    /**
+     * Creates a spill file in the system's temporary directory.
+     *
+     * @return new spill file
+     * @throws IOException if the file cannot be created
+     */
+    public static DuplicateEntrySpillFile createTempFile() throws IOException {
+        return new DuplicateEntrySpillFile(Files.createTempFile("jfu-duplicates", ".spill"));
+    }
+
+    /**
+     * Writes the given entry to the file.
+     *
+     * @param entry the entry to save
+     * @throws IOException if the entry could not be written
+     */
+    public synchronized void write(DuplicateEntry entry) throws IOException {
+        if (totalEntries == offsets.length) {
+            int newCapacity = offsets.length * 2;
+            offsets = Arrays.copyOf(offsets, newCapacity);
+            sizes = Arrays.copyOf(sizes, newCapacity);
+            fileCounts = Arrays.copyOf(fileCounts, newCapacity);
+        }
+        offsets[totalEntries] = countingStream.getCount();
+        sizes[totalEntries] = entry.getSize();
+        fileCounts[totalEntries] = entry.getPaths().size();
+        ++totalEntries;
+
+        output.writeLong(entry.getSize());
+        output.writeUTF(entry.getHash());
+        output.writeInt(entry.getPaths().size());
+        for (Path path : entry.getPaths()) {
+            output.writeUTF(path.toString());
+        }
+    }
+
+    /**
+     * Reads all entries back and passes them to the consumer in the same order as the result of
+     * {@link FileDuplicateFinder#filterFilesForDuplicates()}: by size (descending), then by number of files
+     * (descending). Entries that are equal in this regard are read in the order they were written.
+     *
+     * @param consumer the consumer to pass the entries to
+     * @throws IOException if the file could not be read
+     */
+    public synchronized void readSorted(Consumer<DuplicateEntry> consumer) throws IOException {
+        output.flush();
+
+        Comparator<Integer> bySizeDesc = Comparator.comparingLong((Integer i) -> sizes[i]).reversed();
+        Comparator<Integer> byFileCountDesc = Comparator.comparingInt((Integer i) -> fileCounts[i]).reversed();
+        int[] sortedIndices = IntStream.range(0, totalEntries).boxed()
+            .sorted(bySizeDesc.thenComparing(byFileCountDesc))
+            .mapToInt(Integer::intValue)
+            .toArray();
+
+        try (RandomAccessFile input = new RandomAccessFile(file.toFile(), "r")) {
+            for (int index : sortedIndices) {
+                input.seek(offsets[index]);
+                long size = input.readLong();
+                String hash = input.readUTF();
+                int totalPaths = input.readInt();
+                List<Path> paths = new ArrayList<>(totalPaths);
+                for (int i = 0; i < totalPaths; ++i) {
+                    paths.add(Paths.get(input.readUTF()));
+                }
+                consumer.accept(new DuplicateEntry(size, hash, paths));
+            }
+        }
+    }
+
+    /**
+     * @return number of entries that have been written
+     */
+    public synchronized int getTotalEntries() {
+        return totalEntries;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            output.close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
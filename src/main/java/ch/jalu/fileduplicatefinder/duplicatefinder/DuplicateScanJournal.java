@@ -0,0 +1,356 @@
+package ch.jalu.fileduplicatefinder.duplicatefinder;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Journal of the finished work of a duplicate search, so that an interrupted run can be resumed without reading the
+ * same files again. Records are appended to the journal file as work is finished and are written to disk at least
+ * every checkpoint interval, as well as when the journal is closed.
+ * <p>
+ * Each record is a line with tab-separated fields; paths are relative to the searched folder:
+ * <ul>
+ *   <li>{@code #jfu-journal, version, hash algorithm, folder}: header with the absolute path of the folder</li>
+ *   <li>{@code H, size, last modified, hash, path}: a file was hashed</li>
+ *   <li>{@code S, size, number of files, (path, last modified, entry number)..., entry label...}: all files of a
+ *       size were processed. Entry number 0 means the file has no duplicate; otherwise it is the 1-based index of
+ *       the duplicate entry's label at the end of the line</li>
+ *   <li>{@code E, path, message}: a file could not be read. Only recorded for reference: the file is read again
+ *       when resuming</li>
+ * </ul>
+ * When resuming, work is only reused for files whose size and last modified time have not changed. Lines that
+ * cannot be parsed, such as a last line that was cut off by a crash, are ignored. This class is thread-safe.
+ */
+public class DuplicateScanJournal implements Closeable {
+
+    private static final String HEADER = "#jfu-journal";
+    private static final String VERSION = "1";
+
+    private final Path rootFolder;
+    private final BufferedWriter writer;
+    private final long checkpointIntervalNanos;
+    private long lastCheckpoint = System.nanoTime();
+    private @Nullable IOException writeError;
+
+    private final Map<String, HashRecord> hashesByPath = new HashMap<>();
+    private final Map<Long, FinishedSizeRecord> finishedSizes = new HashMap<>();
+
+    private DuplicateScanJournal(Path rootFolder, BufferedWriter writer, long checkpointIntervalNanos) {
+        this.rootFolder = rootFolder;
+        this.writer = writer;
+        this.checkpointIntervalNanos = checkpointIntervalNanos;
+    }
+
+    /**
+     * Opens the journal file. If the journal is resumed, its records are loaded and new records are appended to it;
+     * otherwise, the file is created or overwritten.
+     *
+     * @param journalFile the journal file
+     * @param rootFolder the folder that is searched for duplicates
+     * @param hashAlgorithm name of the hash algorithm the files are hashed with
+     * @param resume true to load the records of an existing journal file
+     * @param checkpointIntervalSeconds max number of seconds between writes to disk
+     * @return the journal
+     * @throws IOException if the file cannot be read or written, or is the journal of a different search
+     */
+    public static DuplicateScanJournal open(Path journalFile, Path rootFolder, String hashAlgorithm, boolean resume,
+                                            int checkpointIntervalSeconds) throws IOException {
+        String header = String.join("\t", HEADER, VERSION, hashAlgorithm,
+            escape(rootFolder.toAbsolutePath().normalize().toString()));
+        long checkpointIntervalNanos = TimeUnit.SECONDS.toNanos(Math.max(0, checkpointIntervalSeconds));
+
+        if (resume && Files.exists(journalFile)) {
+            List<String> lines = Files.readAllLines(journalFile, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !lines.get(0).equals(header)) {
+                throw new IOException("Journal '" + journalFile.toAbsolutePath() + "' is not a journal of the folder '"
+                    + rootFolder.toAbsolutePath() + "' with hash algorithm " + hashAlgorithm);
+            }
+            BufferedWriter writer = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+            DuplicateScanJournal journal = new DuplicateScanJournal(rootFolder, writer, checkpointIntervalNanos);
+            lines.subList(1, lines.size()).forEach(journal::loadRecord);
+            return journal;
+        }
+
+        BufferedWriter writer = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8);
+        writer.write(header);
+        writer.newLine();
+        writer.flush();
+        return new DuplicateScanJournal(rootFolder, writer, checkpointIntervalNanos);
+    }
+
+    /**
+     * Returns the last modified time of each of the given files, to pass to {@link #getFinishedSize} and
+     * {@link #recordFinishedSize}. The times should be read before the files are processed so that files that are
+     * changed while they are processed are not considered finished when resuming.
+     *
+     * @param paths the files
+     * @return last modified time (in nanoseconds) by file, null if a file's time could not be read
+     */
+    public static @Nullable Map<Path, Long> readLastModifiedTimes(List<Path> paths) {
+        Map<Path, Long> lastModifiedByPath = new LinkedHashMap<>();
+        try {
+            for (Path path : paths) {
+                lastModifiedByPath.put(path, readLastModifiedTime(path));
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return lastModifiedByPath;
+    }
+
+    /**
+     * Returns the last modified time of the given file in the precision used by the journal.
+     *
+     * @param path the file
+     * @return the last modified time in nanoseconds
+     * @throws IOException if the time could not be read
+     */
+    public static long readLastModifiedTime(Path path) throws IOException {
+        return Files.getLastModifiedTime(path).to(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the recorded hash of the given file, if the file has not changed since.
+     *
+     * @param path the file
+     * @param size the current size of the file
+     * @param lastModified the current last modified time of the file
+     * @return the hash, or null if there is none
+     */
+    public synchronized @Nullable String getHash(Path path, long size, long lastModified) {
+        HashRecord record = hashesByPath.get(toRelativePath(path));
+        return record != null && record.size == size && record.lastModified == lastModified ? record.hash : null;
+    }
+
+    /**
+     * Returns the duplicates among the given files if a previous run has processed all files of this size, and the
+     * files are the same and have not changed since.
+     *
+     * @param size the size of the files
+     * @param lastModifiedByPath the files with their last modified times (see {@link #readLastModifiedTimes})
+     * @return the duplicates (possibly empty), or null if the files have to be processed
+     */
+    public synchronized @Nullable List<DuplicateEntry> getFinishedSize(long size,
+                                                                       Map<Path, Long> lastModifiedByPath) {
+        FinishedSizeRecord record = finishedSizes.get(size);
+        if (record == null || record.lastModifiedByPath.size() != lastModifiedByPath.size()) {
+            return null;
+        }
+
+        Map<Integer, List<Path>> pathsByEntry = new LinkedHashMap<>();
+        for (Map.Entry<Path, Long> file : lastModifiedByPath.entrySet()) {
+            String relativePath = toRelativePath(file.getKey());
+            Long recordedLastModified = record.lastModifiedByPath.get(relativePath);
+            if (recordedLastModified == null || recordedLastModified.longValue() != file.getValue()) {
+                return null;
+            }
+            int entryNumber = record.entryNumberByPath.get(relativePath);
+            if (entryNumber > 0) {
+                pathsByEntry.computeIfAbsent(entryNumber, k -> new ArrayList<>(2)).add(file.getKey());
+            }
+        }
+
+        List<DuplicateEntry> entries = new ArrayList<>(pathsByEntry.size());
+        pathsByEntry.forEach((entryNumber, paths) ->
+            entries.add(new DuplicateEntry(size, record.entryLabels.get(entryNumber - 1), paths)));
+        return entries;
+    }
+
+    /**
+     * Records the hash of the given file.
+     *
+     * @param path the file
+     * @param size the size of the file
+     * @param lastModified the last modified time of the file before it was hashed
+     * @param hash the hash
+     */
+    public synchronized void recordHash(Path path, long size, long lastModified, String hash) {
+        String relativePath = toRelativePath(path);
+        hashesByPath.put(relativePath, new HashRecord(size, lastModified, hash));
+        append(String.join("\t", "H", Long.toString(size), Long.toString(lastModified), escape(hash),
+            escape(relativePath)));
+    }
+
+    /**
+     * Records that all files of the given size have been processed.
+     *
+     * @param size the size of the files
+     * @param lastModifiedByPath all files of the size, with their last modified times before they were processed
+     * @param entries the duplicates found among the files
+     */
+    public synchronized void recordFinishedSize(long size, Map<Path, Long> lastModifiedByPath,
+                                                List<DuplicateEntry> entries) {
+        Map<Path, Integer> entryNumberByPath = new HashMap<>();
+        for (int i = 0; i < entries.size(); ++i) {
+            int entryNumber = i + 1;
+            entries.get(i).getPaths().forEach(path -> entryNumberByPath.put(path, entryNumber));
+        }
+
+        List<String> fields = new ArrayList<>();
+        fields.add("S");
+        fields.add(Long.toString(size));
+        fields.add(Integer.toString(lastModifiedByPath.size()));
+        lastModifiedByPath.forEach((path, lastModified) -> {
+            fields.add(escape(toRelativePath(path)));
+            fields.add(Long.toString(lastModified));
+            fields.add(Integer.toString(entryNumberByPath.getOrDefault(path, 0)));
+        });
+        entries.forEach(entry -> fields.add(escape(entry.getHash())));
+
+        String line = String.join("\t", fields);
+        loadRecord(line);
+        append(line);
+    }
+
+    /**
+     * Records that the given file could not be read.
+     *
+     * @param path the file
+     * @param message the error message
+     */
+    public synchronized void recordReadError(Path path, String message) {
+        append(String.join("\t", "E", escape(toRelativePath(path)), escape(String.valueOf(message))));
+    }
+
+    /**
+     * @return number of files with a recorded hash
+     */
+    public synchronized int getTotalHashes() {
+        return hashesByPath.size();
+    }
+
+    /**
+     * @return number of sizes whose files have all been processed
+     */
+    public synchronized int getTotalFinishedSizes() {
+        return finishedSizes.size();
+    }
+
+    /**
+     * @return the error that stopped records from being written to the journal file, null if there was none
+     */
+    public synchronized @Nullable IOException getWriteError() {
+        return writeError;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    private void append(String line) {
+        if (writeError != null) {
+            return;
+        }
+        try {
+            writer.write(line);
+            writer.newLine();
+            long now = System.nanoTime();
+            if (now - lastCheckpoint >= checkpointIntervalNanos) {
+                writer.flush();
+                lastCheckpoint = now;
+            }
+        } catch (IOException e) {
+            // The journal is only needed to resume, so the search continues without it
+            writeError = e;
+        }
+    }
+
+    private void loadRecord(String line) {
+        String[] fields = line.split("\t", -1);
+        try {
+            switch (fields[0]) {
+                case "H":
+                    hashesByPath.put(unescape(fields[4]),
+                        new HashRecord(Long.parseLong(fields[1]), Long.parseLong(fields[2]), unescape(fields[3])));
+                    break;
+                case "S":
+                    long size = Long.parseLong(fields[1]);
+                    finishedSizes.put(size, FinishedSizeRecord.parse(fields));
+                    break;
+                default:
+                    // Read errors and unknown records are not needed to resume
+            }
+        } catch (RuntimeException e) {
+            // Incomplete line, e.g. because the previous run was killed while writing it
+        }
+    }
+
+    private String toRelativePath(Path path) {
+        return rootFolder.relativize(path).toString();
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String text) {
+        if (text.indexOf('\\') < 0) {
+            return text;
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); ++i) {
+            char chr = text.charAt(i);
+            if (chr == '\\') {
+                char next = text.charAt(++i);
+                sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                sb.append(chr);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static final class HashRecord {
+
+        private final long size;
+        private final long lastModified;
+        private final String hash;
+
+        HashRecord(long size, long lastModified, String hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+
+    private static final class FinishedSizeRecord {
+
+        private final Map<String, Long> lastModifiedByPath = new HashMap<>();
+        private final Map<String, Integer> entryNumberByPath = new HashMap<>();
+        private final List<String> entryLabels = new ArrayList<>();
+
+        static FinishedSizeRecord parse(String[] fields) {
+            FinishedSizeRecord record = new FinishedSizeRecord();
+            int totalFiles = Integer.parseInt(fields[2]);
+            int labelsStart = 3 + 3 * totalFiles;
+            for (int i = 3; i < labelsStart; i += 3) {
+                String path = unescape(fields[i]);
+                record.lastModifiedByPath.put(path, Long.parseLong(fields[i + 1]));
+                record.entryNumberByPath.put(path, Integer.parseInt(fields[i + 2]));
+            }
+            for (int i = labelsStart; i < fields.length; ++i) {
+                record.entryLabels.add(unescape(fields[i]));
+            }
+            int maxEntryNumber = record.entryNumberByPath.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+            if (maxEntryNumber > record.entryLabels.size()) {
+                throw new IllegalStateException("Incomplete record");
+            }
+            return record;
+        }
+    }
+}
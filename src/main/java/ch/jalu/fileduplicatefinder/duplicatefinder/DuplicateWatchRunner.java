@@ -0,0 +1,80 @@
+package ch.jalu.fileduplicatefinder.duplicatefinder;
+
+import ch.jalu.fileduplicatefinder.config.FileUtilConfiguration;
+import ch.jalu.fileduplicatefinder.duplicatefinder.output.DuplicateEntryOutputter;
+import ch.jalu.fileduplicatefinder.filefilter.ConfigurableFilePathMatcher;
+import ch.jalu.fileduplicatefinder.filefilter.FilePathMatcher;
+import ch.jalu.fileduplicatefinder.hashing.FileHasher;
+import ch.jalu.fileduplicatefinder.hashing.FileHasherFactory;
+import ch.jalu.fileduplicatefinder.output.TaskWriterReader;
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_FOLDER;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_ALGORITHM;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_MAX_SIZE_MB;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_READ_MODE;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_THREADS;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_WATCH_SETTLE_TIME_MILLIS;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.SCAN_THREADS;
+import static ch.jalu.fileduplicatefinder.utils.FileSizeUtils.megaBytesToBytes;
+
+/**
+ * Finds the duplicates in a folder and then keeps watching it, outputting new duplicates as they appear.
+ * Runs until the application is stopped.
+ */
+public class DuplicateWatchRunner {
+
+    public static final String ID = "watch";
+
+    private final FileUtilConfiguration configuration;
+    private final FileHasherFactory fileHasherFactory;
+    private final DuplicateEntryOutputter entryOutputter;
+    private final TaskWriterReader logger;
+
+    public DuplicateWatchRunner(FileUtilConfiguration configuration, FileHasherFactory fileHasherFactory,
+                                DuplicateEntryOutputter entryOutputter, TaskWriterReader logger) {
+        this.configuration = configuration;
+        this.fileHasherFactory = fileHasherFactory;
+        this.entryOutputter = entryOutputter;
+        this.logger = logger;
+    }
+
+    public void run() {
+        Path path = configuration.getValueOrPrompt(DUPLICATE_FOLDER);
+        logger.printLn("Processing '" + path.toAbsolutePath() + "'");
+        Preconditions.checkArgument(Files.isDirectory(path),
+            "Path '" + path.toAbsolutePath() + "' is not a directory");
+
+        FileHasher fileHasher = fileHasherFactory.createFileHasher(
+            configuration.getValue(DUPLICATE_HASH_ALGORITHM), configuration.getValue(DUPLICATE_HASH_READ_MODE));
+        FilePathMatcher pathMatcher = new ConfigurableFilePathMatcher(configuration);
+        IncrementalDuplicateIndex index = new IncrementalDuplicateIndex(fileHasher, pathMatcher,
+            megaBytesToBytes(configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB)), logger);
+
+        try (DuplicateWatcher watcher = new DuplicateWatcher(path, pathMatcher, index,
+                configuration.getValue(SCAN_THREADS), configuration.getValue(DUPLICATE_WATCH_SETTLE_TIME_MILLIS),
+                logger)) {
+            int totalFiles = watcher.scan();
+            logger.printLn("Found total " + totalFiles + " files");
+            List<DuplicateEntry> duplicates = index.hashCandidates(configuration.getValue(DUPLICATE_HASH_THREADS));
+            entryOutputter.outputResult(duplicates);
+
+            logger.printNewLine();
+            logger.printLn("Watching for changes. Stop the application to end.");
+            watcher.watch(entry -> {
+                logger.printLn("New duplicates:");
+                entryOutputter.outputEntry(entry);
+                entryOutputter.flush();
+            });
+        } catch (IOException e) {
+            logger.printError("Could not watch '" + path.toAbsolutePath() + "': " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
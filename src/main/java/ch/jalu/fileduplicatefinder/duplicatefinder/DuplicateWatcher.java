@@ -0,0 +1,289 @@
+package ch.jalu.fileduplicatefinder.duplicatefinder;
+
+import ch.jalu.fileduplicatefinder.filefilter.FilePathMatcher;
+import ch.jalu.fileduplicatefinder.filewalker.FileWalkVisitor;
+import ch.jalu.fileduplicatefinder.filewalker.ParallelFileWalker;
+import ch.jalu.fileduplicatefinder.output.WriterReader;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches a folder and all of its subfolders for changes with a {@link WatchService} and keeps an
+ * {@link IncrementalDuplicateIndex} up to date, reporting duplicates as they appear.
+ * <p>
+ * Changes are collected until no new change has been reported for the configured settle time, so that files which
+ * are still being written are not hashed repeatedly. Each changed path is then processed based on its current state:
+ * it is removed from the index if it no longer exists, and otherwise added or updated. If the watch service reports
+ * that events were lost, the entire folder is scanned again.
+ */
+public class DuplicateWatcher implements Closeable {
+
+    /** Changes are processed at the latest after this many settle times, even if the folder keeps changing. */
+    private static final int MAX_DELAY_IN_SETTLE_TIMES = 10;
+
+    private final Path rootFolder;
+    private final FilePathMatcher pathMatcher;
+    private final IncrementalDuplicateIndex index;
+    private final int scanThreads;
+    private final long settleTimeMillis;
+    private final WriterReader logger;
+
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directoriesByKey = new ConcurrentHashMap<>();
+    private final Set<Path> watchedDirectories = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructor.
+     *
+     * @param rootFolder the folder to watch
+     * @param pathMatcher the path matcher defining which files and directories should be considered
+     * @param index the index to keep up to date
+     * @param scanThreads the number of threads to scan folders with (0 or smaller for the number of processors)
+     * @param settleTimeMillis time in milliseconds without any changes after which changed files are processed
+     * @param logger the logger to report errors to
+     * @throws IOException if the watch service could not be created
+     */
+    public DuplicateWatcher(Path rootFolder, FilePathMatcher pathMatcher, IncrementalDuplicateIndex index,
+                            int scanThreads, long settleTimeMillis, WriterReader logger) throws IOException {
+        this.rootFolder = rootFolder;
+        this.pathMatcher = pathMatcher;
+        this.index = index;
+        this.scanThreads = scanThreads;
+        this.settleTimeMillis = settleTimeMillis;
+        this.logger = logger;
+        this.watchService = rootFolder.getFileSystem().newWatchService();
+    }
+
+    /**
+     * Scans the root folder, registering all directories with the watch service and adding all files to the index.
+     * The files are not hashed; call {@link IncrementalDuplicateIndex#hashCandidates} afterwards.
+     *
+     * @return the number of files that were found
+     */
+    public int scan() {
+        List<ScannedFile> files = scanDirectory(rootFolder);
+        files.forEach(file -> index.addFile(file.path, file.size, file.lastModified));
+        return files.size();
+    }
+
+    /**
+     * Processes changes in the root folder until this watcher is closed. Blocks the current thread.
+     *
+     * @param newDuplicatesConsumer consumer to pass new duplicate groups to, or groups that have new files
+     * @throws InterruptedException if the thread is interrupted while waiting for changes
+     */
+    public void watch(Consumer<DuplicateEntry> newDuplicatesConsumer) throws InterruptedException {
+        Set<Path> changedPaths = new LinkedHashSet<>();
+        boolean hasOverflow = false;
+        long firstChangeMillis = 0;
+        try {
+            while (true) {
+                boolean hasPendingChanges = hasOverflow || !changedPaths.isEmpty();
+                WatchKey key = hasPendingChanges
+                    ? watchService.poll(settleTimeMillis, TimeUnit.MILLISECONDS)
+                    : watchService.take();
+
+                if (key != null) {
+                    if (!hasPendingChanges) {
+                        firstChangeMillis = System.currentTimeMillis();
+                    }
+                    hasOverflow |= collectChanges(key, changedPaths);
+                }
+                if (key == null || System.currentTimeMillis() - firstChangeMillis
+                    >= MAX_DELAY_IN_SETTLE_TIMES * settleTimeMillis) {
+                    if (hasOverflow) {
+                        rescan(newDuplicatesConsumer);
+                    } else {
+                        changedPaths.forEach(path -> processChange(path, newDuplicatesConsumer));
+                    }
+                    changedPaths.clear();
+                    hasOverflow = false;
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Watcher was closed: nothing to do
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    /**
+     * Adds the paths of the key's events to the given set.
+     *
+     * @return true if events were lost, false otherwise
+     */
+    private boolean collectChanges(WatchKey key, Set<Path> changedPaths) {
+        Path directory = directoriesByKey.get(key);
+        boolean hasOverflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                hasOverflow = true;
+            } else if (directory != null) {
+                changedPaths.add(directory.resolve((Path) event.context()));
+            }
+        }
+        if (!key.reset()) {
+            unregister(key);
+        }
+        return hasOverflow;
+    }
+
+    private void processChange(Path path, Consumer<DuplicateEntry> newDuplicatesConsumer) {
+        BasicFileAttributes attributes = readAttributes(path);
+        try {
+            if (attributes == null) {
+                if (!index.removeFile(path)) {
+                    index.removeFilesInDirectory(path);
+                    unregisterDirectories(path);
+                }
+            } else if (!pathMatcher.shouldScan(path, attributes)) {
+                index.removeFile(path);
+            } else if (attributes.isDirectory()) {
+                if (!watchedDirectories.contains(path)) {
+                    for (ScannedFile file : scanDirectory(path)) {
+                        index.updateFile(file.path, file.size, file.lastModified).forEach(newDuplicatesConsumer);
+                    }
+                }
+            } else if (attributes.isRegularFile()) {
+                index.updateFile(path, attributes.size(), attributes.lastModifiedTime())
+                    .forEach(newDuplicatesConsumer);
+            }
+        } catch (UncheckedIOException e) {
+            logger.printError("Could not process changes of '" + path.toAbsolutePath() + "': "
+                + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Scans the root folder again after events were lost, updating all files and removing files which no longer
+     * exist from the index.
+     */
+    private void rescan(Consumer<DuplicateEntry> newDuplicatesConsumer) {
+        logger.printLn("Changes were lost, scanning all files again");
+        Set<Path> foundFiles = new HashSet<>();
+        for (ScannedFile file : scanDirectory(rootFolder)) {
+            foundFiles.add(file.path);
+            index.updateFile(file.path, file.size, file.lastModified).forEach(newDuplicatesConsumer);
+        }
+        index.getFilesInDirectory(rootFolder).stream()
+            .filter(file -> !foundFiles.contains(file))
+            .forEach(index::removeFile);
+    }
+
+    /**
+     * Walks through the given directory and registers all directories with the watch service. Directories are
+     * registered before their contents are listed so that no file created in the meantime is missed.
+     *
+     * @param folder the directory to scan
+     * @return all files in the directory which should be considered
+     */
+    private List<ScannedFile> scanDirectory(Path folder) {
+        Queue<ScannedFile> files = new ConcurrentLinkedQueue<>();
+        register(folder);
+        new ParallelFileWalker(scanThreads).walk(folder, new FileWalkVisitor<Void>() {
+            @Override
+            public boolean shouldEnterDirectory(Path directory, BasicFileAttributes attributes) {
+                if (pathMatcher.shouldScan(directory, attributes)) {
+                    register(directory);
+                    return true;
+                }
+                return false;
+            }
+
+            @Override
+            public @Nullable Void visitFile(Path file, BasicFileAttributes attributes) {
+                if (pathMatcher.shouldScan(file, attributes)) {
+                    files.add(new ScannedFile(file, attributes.size(), attributes.lastModifiedTime()));
+                }
+                return null;
+            }
+
+            @Override
+            public @Nullable Void visitDirectory(Path directory, BasicFileAttributes attributes,
+                                                 List<Void> childResults) {
+                return null;
+            }
+        });
+        return List.copyOf(files);
+    }
+
+    private void register(Path directory) {
+        try {
+            WatchKey key = directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            directoriesByKey.put(key, directory);
+            watchedDirectories.add(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not watch directory '" + directory.toAbsolutePath() + "'", e);
+        }
+    }
+
+    private void unregister(WatchKey key) {
+        key.cancel();
+        Path directory = directoriesByKey.remove(key);
+        if (directory != null) {
+            watchedDirectories.remove(directory);
+        }
+    }
+
+    /**
+     * Stops watching the given directory and its subdirectories, e.g. because it was deleted or moved away.
+     */
+    private void unregisterDirectories(Path directory) {
+        directoriesByKey.entrySet().stream()
+            .filter(entry -> entry.getValue().startsWith(directory))
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList())
+            .forEach(this::unregister);
+    }
+
+    private static @Nullable BasicFileAttributes readAttributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static final class ScannedFile {
+
+        private final Path path;
+        private final long size;
+        private final FileTime lastModified;
+
+        ScannedFile(Path path, long size, FileTime lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
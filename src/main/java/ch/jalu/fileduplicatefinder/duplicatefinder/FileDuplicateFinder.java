@@ -2,120 +2,285 @@ package ch.jalu.fileduplicatefinder.duplicatefinder;
 
 import ch.jalu.fileduplicatefinder.config.FileUtilConfiguration;
 import ch.jalu.fileduplicatefinder.filefilter.FilePathMatcher;
+import ch.jalu.fileduplicatefinder.filewalker.FileWalkVisitor;
+import ch.jalu.fileduplicatefinder.filewalker.ParallelFileWalker;
+import ch.jalu.fileduplicatefinder.hashing.CachingFileHasher;
 import ch.jalu.fileduplicatefinder.hashing.FileHasher;
+import ch.jalu.fileduplicatefinder.hashing.HashingAlgorithm;
+import ch.jalu.fileduplicatefinder.metrics.Counter;
+import ch.jalu.fileduplicatefinder.metrics.RunMetrics;
 import ch.jalu.fileduplicatefinder.output.TaskWriterReader;
-import ch.jalu.fileduplicatefinder.utils.PathUtils;
+import ch.jalu.fileduplicatefinder.utils.ConcurrencyUtils;
+import ch.jalu.fileduplicatefinder.utils.DeviceIoScheduler;
 import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ListMultimap;
-import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
-import com.google.common.io.MoreFiles;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.UncheckedIOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_COMPARE_MAX_GROUP_SIZE;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_COMPARE_MIN_SIZE_MB;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_ALGORITHM;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_MAX_SIZE_MB;
-import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_OUTPUT_DIFFERENCE_READ_FILES_VS_HASH;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_THREADS;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_THREADS_PER_SPINNING_DISK;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_JOURNAL_CHECKPOINT_INTERVAL_SECONDS;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_JOURNAL_FILE;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_JOURNAL_RESUME;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_MAX_RUNTIME_SECONDS;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_OUTPUT_PROGRESS_FILES_FOUND_INTERVAL;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_OUTPUT_PROGRESS_FILES_HASHED_INTERVAL;
-import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_READ_BEFORE_HASH_BYTES_TO_READ;
-import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_READ_BEFORE_HASH_MIN_SIZE;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_PREFILTER_HEAD_BYTES;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_PREFILTER_SAMPLE_BLOCKS;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_PREFILTER_SAMPLE_BLOCK_BYTES;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_PREFILTER_TAIL_BYTES;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.SCAN_THREADS;
+import static ch.jalu.fileduplicatefinder.utils.FileSizeUtils.formatToHumanReadableSize;
 import static ch.jalu.fileduplicatefinder.utils.FileSizeUtils.megaBytesToBytes;
 
 public class FileDuplicateFinder {
 
+    private static final long[] HASH_LATENCY_BUCKET_LIMITS = { 64L << 10, 1L << 20, 16L << 20, 256L << 20 };
+    private static final String[] HASH_LATENCY_BUCKET_NAMES = { "64KB", "1MB", "16MB", "256MB" };
+
     private final Path rootFolder;
     private final FileHasher fileHasher;
     private final FilePathMatcher pathMatcher;
     private final FileUtilConfiguration configuration;
+    private final RunMetrics metrics;
     private final TaskWriterReader logger;
 
     private final int progressFilesFound;
     private final int progressFilesHashed;
 
-    private final Map<Long, List<Path>> pathsBySize = new HashMap<>();
-    private int count;
-    private int hashingSaveCount;
+    // Configs
+    private long maxSizeBytesForHashing;
+    private StagedContentFilter contentFilter;
+    private int maxGroupSizeForComparison;
+    private long minFileSizeForComparison;
+    private long maxRuntimeNanos;
+    private long hashStartNanos;
+    private @Nullable DuplicateScanJournal journal;
+    private boolean reuseJournalHashes;
+
+    private final ScannedFileStore scannedFiles;
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicInteger comparedFiles = new AtomicInteger();
+    private final AtomicLong unverifiedFiles = new AtomicLong();
+    private final AtomicLong unverifiedBytes = new AtomicLong();
+    private final Queue<String> readErrors = new ConcurrentLinkedQueue<>();
+    private final List<DuplicateEntry> hardLinks = new ArrayList<>();
+    private final LockstepFileComparator fileComparator = new LockstepFileComparator();
 
     public FileDuplicateFinder(Path rootFolder, FileHasher fileHasher, FilePathMatcher pathMatcher,
-                               FileUtilConfiguration configuration, TaskWriterReader logger) {
+                               FileUtilConfiguration configuration, RunMetrics metrics, TaskWriterReader logger) {
         this.rootFolder = rootFolder;
         this.fileHasher = fileHasher;
         this.pathMatcher = pathMatcher;
         this.configuration = configuration;
+        this.metrics = metrics;
         this.logger = logger;
+        this.scannedFiles = new ScannedFileStore(rootFolder);
 
         this.progressFilesFound = configuration.getValue(DUPLICATE_OUTPUT_PROGRESS_FILES_FOUND_INTERVAL);
         this.progressFilesHashed = configuration.getValue(DUPLICATE_OUTPUT_PROGRESS_FILES_HASHED_INTERVAL);
     }
 
     public void processFiles() {
-        processPath(rootFolder);
+        ParallelFileWalker fileWalker = new ParallelFileWalker(configuration.getValue(SCAN_THREADS), metrics);
+        try (RunMetrics.Stage ignored = metrics.startStage("scan")) {
+            fileWalker.walk(rootFolder, new FileCollector());
+        }
         logger.printLn("Found total " + count + " files");
     }
 
-    private void processPath(Path path) {
-        if (pathMatcher.shouldScan(path)) {
-            if (Files.isDirectory(path)) {
-                PathUtils.list(path).forEach(this::processPath);
-            } else if (Files.isRegularFile(path)) {
-                long fileSize = PathUtils.size(path);
-                List<Path> paths = pathsBySize.computeIfAbsent(fileSize, s -> new ArrayList<>(5));
-                paths.add(path);
+    /**
+     * Hashes the files which have the same size and returns all duplicates, sorted by file size (descending).
+     *
+     * @return all duplicates
+     */
+    public List<DuplicateEntry> filterFilesForDuplicates() {
+        List<CompletableFuture<List<DuplicateEntry>>> duplicatesBySize = new ArrayList<>();
+        hashCandidates(future -> {
+            duplicatesBySize.add(future);
+            return future;
+        });
 
-                if ((++count & progressFilesFound) == 0) {
-                    logger.printLn("Found " + count + " files");
-                }
+        // Futures are joined in the order they were created, so the result is the same as hashing sequentially
+        return duplicatesBySize.stream()
+            .flatMap(future -> future.join().stream())
+            .sorted(createDuplicateEntryComparator())
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Hashes the files which have the same size and passes each duplicate entry to the given consumer as soon as
+     * all files of its size have been processed. Entries are not kept in memory after they have been passed on.
+     * The consumer is called from multiple threads, but never concurrently.
+     *
+     * @param entryConsumer the consumer to pass the duplicates to, in the order they are found
+     */
+    public void streamDuplicates(Consumer<DuplicateEntry> entryConsumer) {
+        hashCandidates(future -> future.thenAccept(entries -> {
+            synchronized (entryConsumer) {
+                entries.forEach(entryConsumer);
             }
-        }
+        }));
     }
 
-    public List<DuplicateEntry> filterFilesForDuplicates() {
+    /**
+     * Hashes all files which have the same size and waits until all are done. Files are read on worker threads
+     * of the device they are on (see {@link DeviceIoScheduler}); the sizes with the largest potential savings are
+     * processed first. If the configured max runtime is exceeded, the remaining files are skipped and only the
+     * duplicates that have been confirmed until then are returned. Files that cannot be read are skipped.
+     * <p>
+     * If a journal file is configured, finished work is recorded in it, and work recorded by a previous run is
+     * skipped if the journal is resumed (see {@link DuplicateScanJournal}).
+     *
+     * @param resultHandler function which receives the future of each file size and returns the future to wait for
+     */
+    private void hashCandidates(
+            Function<CompletableFuture<List<DuplicateEntry>>, CompletableFuture<?>> resultHandler) {
         logger.printLn("");
         logger.print("Hashing files");
-        List<DuplicateEntry> duplicateEntries = pathsBySize.entrySet().stream()
-            .filter(entry -> entry.getValue().size() > 1)
-            .flatMap(hashEntriesInFileSizeAndReturnDuplicates())
+        maxSizeBytesForHashing = megaBytesToBytes(configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB));
+        contentFilter = new StagedContentFilter(
+            configuration.getValue(DUPLICATE_PREFILTER_HEAD_BYTES),
+            configuration.getValue(DUPLICATE_PREFILTER_TAIL_BYTES),
+            configuration.getValue(DUPLICATE_PREFILTER_SAMPLE_BLOCKS),
+            configuration.getValue(DUPLICATE_PREFILTER_SAMPLE_BLOCK_BYTES));
+        maxGroupSizeForComparison = configuration.getValue(DUPLICATE_COMPARE_MAX_GROUP_SIZE);
+        minFileSizeForComparison = megaBytesToBytes(configuration.getValue(DUPLICATE_COMPARE_MIN_SIZE_MB));
+        int maxRuntimeSeconds = configuration.getValue(DUPLICATE_MAX_RUNTIME_SECONDS);
+        maxRuntimeNanos = TimeUnit.SECONDS.toNanos(maxRuntimeSeconds);
+        hashStartNanos = System.nanoTime();
+
+        journal = openJournalIfConfigured();
+        try (RunMetrics.Stage ignored = metrics.startStage("hash");
+             DeviceIoScheduler scheduler = new DeviceIoScheduler(configuration.getValue(DUPLICATE_HASH_THREADS),
+                 configuration.getValue(DUPLICATE_HASH_THREADS_PER_SPINNING_DISK), "hash-worker",
+                 metrics.histogram("hash.queueDepth"))) {
+            Runnable progressUpdater = createHashProgressUpdater();
+            List<CompletableFuture<?>> handledFutures = new ArrayList<>();
+            // Sizes are passed by descending savings: their position is the priority of their tasks
+            scannedFiles.forEachSizeWithMultipleFiles(
+                (size, paths) -> handledFutures.add(resultHandler.apply(hashFilesAndReturnDuplicates(
+                    size, paths, new TaskContext(scheduler, handledFutures.size(), progressUpdater)))),
+                (size, paths) -> hardLinks.add(new DuplicateEntry(size, "Links", paths)));
+            handledFutures.forEach(ConcurrencyUtils::join);
+
+            logger.printNewLine();
+            logger.printLn(contentFilter.getEliminatedFilesSummary());
+            if (comparedFiles.get() > 0) {
+                logger.printLn("Compared " + comparedFiles + " files byte by byte instead of hashing them");
+            }
+            if (unverifiedFiles.get() > 0) {
+                logger.printLn("Stopped after the max runtime of " + maxRuntimeSeconds + " seconds: "
+                    + unverifiedFiles + " candidate files (" + formatToHumanReadableSize(unverifiedBytes.get())
+                    + ") were left unverified. Only the duplicates confirmed until then are reported.");
+            }
+            if (!readErrors.isEmpty()) {
+                logger.printLn("Skipped " + readErrors.size() + " files that could not be read:");
+                readErrors.forEach(logger::printLn);
+            }
+            if (journal != null && journal.getWriteError() != null) {
+                logger.printError("Could not write to the journal, so this run cannot be fully resumed: "
+                    + journal.getWriteError().getMessage());
+            }
+            List<String> devices = scheduler.getDeviceDescriptions();
+            if (!devices.isEmpty()) {
+                logger.printLn("Read files from " + devices.size() + (devices.size() == 1 ? " device: " : " devices: ")
+                    + String.join(", ", devices));
+            }
+        } finally {
+            closeJournal();
+        }
+    }
+
+    private @Nullable DuplicateScanJournal openJournalIfConfigured() {
+        Path journalFile = configuration.getValue(DUPLICATE_JOURNAL_FILE).orElse(null);
+        if (journalFile == null) {
+            return null;
+        }
+
+        HashingAlgorithm hashAlgorithm = configuration.getValue(DUPLICATE_HASH_ALGORITHM);
+        boolean resume = configuration.getValue(DUPLICATE_JOURNAL_RESUME);
+        DuplicateScanJournal journal;
+        try {
+            journal = DuplicateScanJournal.open(journalFile, rootFolder, hashAlgorithm.name(), resume,
+                configuration.getValue(DUPLICATE_JOURNAL_CHECKPOINT_INTERVAL_SECONDS));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the journal: " + e.getMessage(), e);
+        }
+        reuseJournalHashes = hashAlgorithm.isStableAcrossRuns();
+        if (resume) {
+            logger.printLn("Resuming from journal '" + journalFile.toAbsolutePath() + "' with "
+                + journal.getTotalFinishedSizes() + " finished file sizes and " + journal.getTotalHashes()
+                + " hashes" + (reuseJournalHashes ? "" : " (hashes of " + hashAlgorithm + " cannot be reused)"));
+        }
+        return journal;
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.printError("Could not write the journal: " + e.getMessage());
+            }
+            journal = null;
+        }
+    }
+
+    /**
+     * Returns the groups of paths that are links to the same file, as found while hashing the files: hard links, or
+     * symbolic links and their target, as symbolic links are followed. Only one path of each group is hashed, and
+     * duplicates only contain one path of each group, so that links are not reported as duplicates.
+     *
+     * @return the links by file, sorted by file size (descending)
+     */
+    public List<DuplicateEntry> getHardLinks() {
+        return hardLinks.stream()
             .sorted(createDuplicateEntryComparator())
             .collect(Collectors.toList());
-        if (configuration.getValue(DUPLICATE_OUTPUT_DIFFERENCE_READ_FILES_VS_HASH)) {
-            logger.printLn("Skipped hashing " + hashingSaveCount + " files from reading bytes before hashing");
-        }
-        return duplicateEntries;
     }
 
     public Map<Integer, Long> getSizeDistribution() {
-        return pathsBySize.values().stream()
-            .collect(Collectors.groupingBy(List::size, Collectors.counting()));
-    }
-
-    private Function<Map.Entry<Long, List<Path>>, Stream<DuplicateEntry>> hashEntriesInFileSizeAndReturnDuplicates() {
-        final int[] hashedFiles = {0};
-        return entry -> {
-            Runnable progressUpdater = () -> {
-                if ((++hashedFiles[0] & progressFilesHashed) == 0) {
-                    logger.printNewLine();
-                    logger.print("Hashed " + hashedFiles[0] + " files");
-                } else if ((hashedFiles[0] & 15) == 0) {
-                    logger.printWithoutPrefix(" . ");
-                }
-            };
+        return scannedFiles.getSizeDistribution();
+    }
 
-            return hashFilesAndReturnDuplicates(entry.getKey(), entry.getValue(), progressUpdater);
+    private Runnable createHashProgressUpdater() {
+        AtomicInteger hashedFiles = new AtomicInteger();
+        return () -> {
+            int totalHashed = hashedFiles.incrementAndGet();
+            if ((totalHashed & progressFilesHashed) == 0) {
+                logger.printNewLine();
+                logger.print("Hashed " + totalHashed + " files");
+            } else if ((totalHashed & 15) == 0) {
+                logger.printWithoutPrefix(" . ");
+            }
         };
     }
 
@@ -125,74 +290,418 @@ public class FileDuplicateFinder {
             .thenComparing(comparatorByNumberOfFilesAsc.reversed());
     }
 
-    private Stream<DuplicateEntry> hashFilesAndReturnDuplicates(long fileSize, List<Path> paths,
-                                                                Runnable progressUpdater) {
-        double maxSizeMegabytes = configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB);
-        if (maxSizeMegabytes > 0 && fileSize >= megaBytesToBytes(maxSizeMegabytes)) {
-            return Stream.of(new DuplicateEntry(fileSize, "Size " + fileSize, paths));
+    /**
+     * Hashes the files of the given size on the scheduler and returns the duplicates among them. Parts of the files'
+     * contents are compared in one task (see {@link StagedContentFilter}), after which each remaining file is hashed
+     * in its own task. Small groups of remaining files are compared byte by byte in one task instead. Files whose
+     * hash is cached are not read, and no file is hashed if the content filter has compared the entire files.
+     * <p>
+     * Tasks that start after the max runtime has been exceeded skip their files, which are then counted as
+     * unverified. Files that cannot be read are skipped. If there is a journal, the result is taken from it if
+     * the files have already been processed by a previous run, and it is recorded in it otherwise.
+     *
+     * @param fileSize the size of the files
+     * @param paths the files with the given size
+     * @param context the scheduler and the priority to run the tasks with
+     * @return future with the duplicates among the given paths
+     */
+    private CompletableFuture<List<DuplicateEntry>> hashFilesAndReturnDuplicates(long fileSize, List<Path> paths,
+                                                                                 TaskContext context) {
+        if (maxSizeBytesForHashing > 0 && fileSize >= maxSizeBytesForHashing) {
+            return CompletableFuture.completedFuture(
+                List.of(new DuplicateEntry(fileSize, "Size " + fileSize, paths)));
+        }
+        DuplicateScanJournal journal = this.journal;
+        if (journal == null) {
+            return findDuplicates(fileSize, paths, context);
         }
 
+        return context.supplyAsync(paths.get(0), () -> DuplicateScanJournal.readLastModifiedTimes(paths))
+            .thenCompose(lastModifiedByPath -> {
+                List<DuplicateEntry> finishedEntries = lastModifiedByPath == null
+                    ? null
+                    : journal.getFinishedSize(fileSize, lastModifiedByPath);
+                if (finishedEntries != null) {
+                    metrics.counter("journal.skippedFiles").add(paths.size());
+                    paths.forEach(path -> context.progressUpdater.run());
+                    return CompletableFuture.completedFuture(finishedEntries);
+                }
+                return findDuplicates(fileSize, paths, context).thenApply(entries -> {
+                    if (lastModifiedByPath != null && !context.hasSkippedFiles) {
+                        journal.recordFinishedSize(fileSize, lastModifiedByPath, entries);
+                    }
+                    return entries;
+                });
+            });
+    }
+
+    private CompletableFuture<List<DuplicateEntry>> findDuplicates(long fileSize, List<Path> paths,
+                                                                   TaskContext context) {
+        return context.supplyAsync(paths.get(0), () -> getCandidateGroups(paths, fileSize, context))
+            .thenCompose(candidates -> {
+                List<CompletableFuture<List<DuplicateEntry>>> duplicatesByGroup = candidates.groupsToVerify.stream()
+                    .map(group -> shouldCompareBytes(fileSize, group)
+                        ? context.supplyAsync(group.get(0), () -> compareFiles(fileSize, group, context))
+                        : hashFilesOfGroup(fileSize, group, candidates.cachedHashes, context))
+                    .collect(Collectors.toList());
+                return CompletableFuture.allOf(duplicatesByGroup.toArray(new CompletableFuture<?>[0]))
+                    .thenApply(ignore -> Stream.concat(
+                            candidates.confirmedDuplicates.stream(),
+                            duplicatesByGroup.stream().flatMap(future -> future.join().stream()))
+                        .collect(Collectors.toList()));
+            });
+    }
+
+    /**
+     * Returns whether the given group should be compared byte by byte rather than hashed. Groups are always hashed
+     * if hashes are cached: files that are compared are not added to the cache, so they would be read again in
+     * every run, whereas hashed files are only read again once they have changed.
+     */
+    private boolean shouldCompareBytes(long fileSize, List<Path> group) {
+        return !(fileHasher instanceof CachingFileHasher)
+            && group.size() <= maxGroupSizeForComparison && fileSize >= minFileSizeForComparison;
+    }
+
+    private List<DuplicateEntry> compareFiles(long fileSize, List<Path> paths, TaskContext context) {
+        if (isMaxRuntimeExceeded()) {
+            registerUnverifiedFiles(fileSize, paths.size(), context);
+            return List.of();
+        }
+        long start = System.nanoTime();
+        List<List<Path>> identicalFiles =
+            compareSkippingUnreadableFiles(paths, context, fileComparator::findIdenticalFiles);
+        metrics.histogram("compare.latencyMicros").record((System.nanoTime() - start) / 1000);
+        metrics.counter("compare.files").add(paths.size());
+        metrics.counter("compare.bytes").add(fileSize * paths.size());
+        comparedFiles.addAndGet(paths.size());
+        paths.forEach(path -> context.progressUpdater.run());
+        return identicalFiles.stream()
+            .map(files -> new DuplicateEntry(fileSize, "Identical bytes", files))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Hashes the given files, each in its own task, and returns the duplicates among them. Files whose hash has
+     * already been taken from the cache are not hashed again.
+     */
+    private CompletableFuture<List<DuplicateEntry>> hashFilesOfGroup(long fileSize, List<Path> paths,
+                                                                     Map<Path, String> cachedHashes,
+                                                                     TaskContext context) {
+        List<CompletableFuture<String>> hashes = paths.stream()
+            .map(path -> {
+                String cachedHash = cachedHashes.get(path);
+                if (cachedHash != null) {
+                    context.progressUpdater.run();
+                    return CompletableFuture.completedFuture(cachedHash);
+                }
+                return context.supplyAsync(path, () -> hashFile(path, fileSize, context));
+            })
+            .collect(Collectors.toList());
+        return CompletableFuture.allOf(hashes.toArray(new CompletableFuture<?>[0]))
+            .thenApply(ignore -> createDuplicateEntries(fileSize, paths, hashes));
+    }
+
+    /**
+     * Hashes the given file, or returns null if the max runtime has been exceeded or the file could not be read.
+     */
+    private @Nullable String hashFile(Path path, long fileSize, TaskContext context) {
+        if (isMaxRuntimeExceeded()) {
+            registerUnverifiedFiles(fileSize, 1, context);
+            return null;
+        }
+        try {
+            DuplicateScanJournal journal = this.journal;
+            long lastModified = journal == null ? 0 : DuplicateScanJournal.readLastModifiedTime(path);
+            String hash = journal != null && reuseJournalHashes
+                ? journal.getHash(path, fileSize, lastModified)
+                : null;
+            if (hash == null) {
+                long start = System.nanoTime();
+                hash = fileHasher.calculateHash(path);
+                metrics.histogram(getHashLatencyHistogramName(fileSize)).record((System.nanoTime() - start) / 1000);
+                metrics.counter("hash.files").increment();
+                metrics.counter("hash.bytes").add(fileSize);
+                if (journal != null) {
+                    journal.recordHash(path, fileSize, lastModified, hash);
+                }
+            } else {
+                metrics.counter("journal.skippedHashes").increment();
+            }
+            context.progressUpdater.run();
+            return hash;
+        } catch (IOException | UncheckedIOException e) {
+            registerReadError(path, e, context);
+            return null;
+        }
+    }
+
+    private List<DuplicateEntry> createDuplicateEntries(long fileSize, List<Path> paths,
+                                                        List<CompletableFuture<String>> hashes) {
         ListMultimap<String, Path> pathsByHash = ArrayListMultimap.create(paths.size(), 2);
-        for (Path path : getPathsToHash(paths, fileSize)) {
-            try {
-                pathsByHash.put(fileHasher.calculateHash(path), path);
-                progressUpdater.run();
-            } catch (IOException e) {
-                throw new UncheckedIOException(path.toAbsolutePath().toString(), e);
+        for (int i = 0; i < paths.size(); ++i) {
+            String hash = hashes.get(i).join();
+            if (hash != null) {
+                pathsByHash.put(hash, paths.get(i));
             }
         }
 
         return Multimaps.asMap(pathsByHash).entrySet().stream()
             .filter(e -> e.getValue().size() > 1)
-            .map(e -> new DuplicateEntry(fileSize, e.getKey(), e.getValue()));
-    }
-
-    private List<Path> getPathsToHash(List<Path> paths, long filesize) {
-        if (filesize >= megaBytesToBytes(configuration.getValue(DUPLICATE_READ_BEFORE_HASH_MIN_SIZE))) {
-            Multimap<WrappedByteArray, Path> files = HashMultimap.create(paths.size(), 2);
-            for (Path path : paths) {
-                byte[] bytes = new byte[configuration.getValue(DUPLICATE_READ_BEFORE_HASH_BYTES_TO_READ)];
-                try (InputStream is = MoreFiles.asByteSource(path).openBufferedStream()) {
-                    is.read(bytes);
-                    files.put(new WrappedByteArray(bytes), path);
-                } catch (IOException e) {
-                    throw new UncheckedIOException("Could not read '" + path.toAbsolutePath() + "'", e);
+            .map(e -> new DuplicateEntry(fileSize, e.getKey(), e.getValue()))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Splits the given files into groups of potential duplicates. Files whose hash is cached are grouped by it
+     * without reading them; the other files are compared with the {@link StagedContentFilter}, together with one file
+     * of each cached hash so that they can still be matched with cached files. If the content filter compares the
+     * files entirely, its groups are confirmed as duplicates and do not need to be verified anymore.
+     */
+    private CandidateGroups getCandidateGroups(List<Path> paths, long fileSize, TaskContext context) {
+        if (isMaxRuntimeExceeded()) {
+            registerUnverifiedFiles(fileSize, paths.size(), context);
+            return new CandidateGroups(List.of(), List.of(), Map.of());
+        }
+        long start = System.nanoTime();
+        Map<String, List<Path>> cachedPathsByHash = new LinkedHashMap<>();
+        List<Path> pathsToFilter = groupPathsByCachedHash(paths, cachedPathsByHash, context);
+
+        // One file per cached hash represents its group in the content filter
+        Map<Path, List<Path>> cachedPathsByRepresentative = new LinkedHashMap<>();
+        for (List<Path> cachedPaths : cachedPathsByHash.values()) {
+            cachedPathsByRepresentative.put(cachedPaths.get(0), cachedPaths);
+        }
+        if (!pathsToFilter.isEmpty()) {
+            pathsToFilter.addAll(cachedPathsByRepresentative.keySet());
+        }
+        List<List<Path>> contentGroups = compareSkippingUnreadableFiles(pathsToFilter, context,
+            readablePaths -> contentFilter.filter(fileSize, readablePaths));
+
+        boolean isWholeFileCompared = contentFilter.comparesWholeFile(fileSize);
+        List<DuplicateEntry> confirmedDuplicates = new ArrayList<>();
+        List<List<Path>> groupsToVerify = new ArrayList<>();
+        for (List<Path> contentGroup : contentGroups) {
+            List<Path> group = new ArrayList<>();
+            for (Path path : contentGroup) {
+                List<Path> cachedPaths = cachedPathsByRepresentative.remove(path);
+                group.addAll(cachedPaths == null ? List.of(path) : cachedPaths);
+            }
+            if (!pathMatcher.hasFileFromResultWhitelist(group)) {
+                continue;
+            }
+            if (isWholeFileCompared) {
+                comparedFiles.addAndGet(group.size());
+                group.forEach(path -> context.progressUpdater.run());
+                confirmedDuplicates.add(new DuplicateEntry(fileSize, "Identical bytes", group));
+            } else {
+                groupsToVerify.add(group);
+            }
+        }
+        cachedPathsByHash.forEach((hash, cachedPaths) -> {
+            // Groups that were matched with other files by the content filter have been removed from the map above
+            boolean isUnmatched = cachedPathsByRepresentative.containsKey(cachedPaths.get(0));
+            if (isUnmatched && cachedPaths.size() > 1 && pathMatcher.hasFileFromResultWhitelist(cachedPaths)) {
+                cachedPaths.forEach(path -> context.progressUpdater.run());
+                confirmedDuplicates.add(new DuplicateEntry(fileSize, hash, cachedPaths));
+            }
+        });
+
+        metrics.histogram("prefilter.latencyMicros").record((System.nanoTime() - start) / 1000);
+        metrics.counter("prefilter.files").add(pathsToFilter.size());
+        metrics.counter("prefilter.remainingFiles").add(groupsToVerify.stream().mapToInt(List::size).sum());
+        metrics.counter("prefilter.confirmedFiles")
+            .add(confirmedDuplicates.stream().mapToInt(entry -> entry.getPaths().size()).sum());
+        Map<Path, String> cachedHashes = new HashMap<>();
+        cachedPathsByHash.forEach((hash, cachedPaths) -> cachedPaths.forEach(path -> cachedHashes.put(path, hash)));
+        return new CandidateGroups(confirmedDuplicates, groupsToVerify, cachedHashes);
+    }
+
+    /**
+     * Adds the files whose hash is cached to the given map by hash and returns the other files. Returns all files
+     * if hashes are not cached.
+     */
+    private List<Path> groupPathsByCachedHash(List<Path> paths, Map<String, List<Path>> cachedPathsByHash,
+                                              TaskContext context) {
+        if (!(fileHasher instanceof CachingFileHasher)) {
+            return new ArrayList<>(paths);
+        }
+        CachingFileHasher cachingFileHasher = (CachingFileHasher) fileHasher;
+        List<Path> uncachedPaths = new ArrayList<>();
+        for (Path path : paths) {
+            try {
+                String hash = cachingFileHasher.getCachedHash(path);
+                if (hash == null) {
+                    uncachedPaths.add(path);
+                } else {
+                    cachedPathsByHash.computeIfAbsent(hash, k -> new ArrayList<>(2)).add(path);
                 }
+            } catch (IOException e) {
+                registerReadError(path, e, context);
             }
-            List<Path> filteredPaths = files.asMap().entrySet().stream()
-                .filter(e -> e.getValue().size() > 1 && pathMatcher.hasFileFromResultWhitelist(e.getValue()))
-                .flatMap(e -> e.getValue().stream())
-                .collect(Collectors.toList());
-            if (configuration.getValue(DUPLICATE_OUTPUT_DIFFERENCE_READ_FILES_VS_HASH)) {
-                logger.printLn(paths.size() + " -> " + filteredPaths.size() + " ");
-                hashingSaveCount += paths.size() - filteredPaths.size();
+        }
+        return uncachedPaths;
+    }
+
+    /**
+     * Returns the name of the histogram to record the time it took to hash a file of the given size in, so that
+     * the latency of small and large files can be told apart.
+     */
+    private static String getHashLatencyHistogramName(long fileSize) {
+        for (int i = 0; i < HASH_LATENCY_BUCKET_LIMITS.length; ++i) {
+            if (fileSize <= HASH_LATENCY_BUCKET_LIMITS[i]) {
+                return "hash.latencyMicros.upTo" + HASH_LATENCY_BUCKET_NAMES[i];
             }
-            return filteredPaths;
-        } else {
-            return pathMatcher.hasFileFromResultWhitelist(paths) ? paths : Collections.emptyList();
         }
+        return "hash.latencyMicros.over" + HASH_LATENCY_BUCKET_NAMES[HASH_LATENCY_BUCKET_NAMES.length - 1];
     }
 
-    private static class WrappedByteArray {
-        private final byte[] value;
+    private boolean isMaxRuntimeExceeded() {
+        return maxRuntimeNanos > 0 && System.nanoTime() - hashStartNanos > maxRuntimeNanos;
+    }
 
-        WrappedByteArray(byte[] value) {
-            this.value = value;
+    /**
+     * Runs the given comparison of the contents of the given files. If a file cannot be read, it is registered as
+     * read error and the comparison is repeated without it.
+     *
+     * @param paths the files to compare
+     * @param context the context of the files' size
+     * @param comparison the comparison returning the groups of files with the same contents
+     * @return result of the comparison with the files that could be read
+     */
+    private List<List<Path>> compareSkippingUnreadableFiles(List<Path> paths, TaskContext context,
+                                                            Function<List<Path>, List<List<Path>>> comparison) {
+        List<Path> readablePaths = new ArrayList<>(paths);
+        while (readablePaths.size() > 1) {
+            try {
+                return comparison.apply(readablePaths);
+            } catch (FileReadException e) {
+                if (!readablePaths.remove(e.getPath())) {
+                    throw e;
+                }
+                registerReadError(e.getPath(), e, context);
+            }
+        }
+        return List.of();
+    }
+
+    private void registerUnverifiedFiles(long fileSize, int totalFiles, TaskContext context) {
+        context.hasSkippedFiles = true;
+        unverifiedFiles.addAndGet(totalFiles);
+        unverifiedBytes.addAndGet(fileSize * totalFiles);
+    }
+
+    private void registerReadError(Path path, Exception exception, TaskContext context) {
+        context.hasSkippedFiles = true;
+        metrics.counter("hash.readErrors").increment();
+        readErrors.add(path.toAbsolutePath() + ": " + exception.getMessage());
+        DuplicateScanJournal journal = this.journal;
+        if (journal != null) {
+            journal.recordReadError(path, exception.getMessage());
+        }
+    }
+
+    /**
+     * Potential duplicates of one file size: groups that have been confirmed as duplicates without hashing them,
+     * groups that still need to be hashed or compared, and the hashes that were taken from the cache.
+     */
+    private static final class CandidateGroups {
+
+        private final List<DuplicateEntry> confirmedDuplicates;
+        private final List<List<Path>> groupsToVerify;
+        private final Map<Path, String> cachedHashes;
+
+        CandidateGroups(List<DuplicateEntry> confirmedDuplicates, List<List<Path>> groupsToVerify,
+                        Map<Path, String> cachedHashes) {
+            this.confirmedDuplicates = confirmedDuplicates;
+            this.groupsToVerify = groupsToVerify;
+            this.cachedHashes = cachedHashes;
+        }
+    }
+
+    /**
+     * The scheduler and the priority with which the tasks of one file size are run.
+     */
+    private static final class TaskContext {
+
+        private final DeviceIoScheduler scheduler;
+        private final long priority;
+        private final Runnable progressUpdater;
+        // True if a file was not (fully) processed, so the result for this size may not be recorded in the journal
+        private volatile boolean hasSkippedFiles;
+
+        TaskContext(DeviceIoScheduler scheduler, long priority, Runnable progressUpdater) {
+            this.scheduler = scheduler;
+            this.priority = priority;
+            this.progressUpdater = progressUpdater;
+        }
+
+        <T> CompletableFuture<T> supplyAsync(Path file, Supplier<T> task) {
+            return scheduler.supplyAsync(file, priority, task);
+        }
+    }
+
+    /**
+     * Visitor which saves all files by their file size. Directories are registered in the store before they are
+     * entered; their index is only kept until all of their children have been visited.
+     */
+    private final class FileCollector implements FileWalkVisitor<Void> {
+
+        private final Map<Path, Integer> directoryIndices = new ConcurrentHashMap<>();
+        private final Counter scannedFileCount = metrics.counter("scan.files");
+        private final Counter scannedBytes = metrics.counter("scan.bytes");
+        private final Counter scannedDirectories = metrics.counter("scan.directories");
+        private final Counter excludedFiles = metrics.counter("filter.excludedFiles");
+        private final Counter excludedDirectories = metrics.counter("filter.excludedDirectories");
+        private final Counter listingErrors = metrics.counter("scan.listingErrors");
+
+        FileCollector() {
+            directoryIndices.put(rootFolder, ScannedFileStore.ROOT_INDEX);
         }
 
         @Override
-        public boolean equals(Object object) {
-            if (object == this) {
+        public boolean shouldEnterDirectory(Path directory, BasicFileAttributes attributes) {
+            if (pathMatcher.shouldScan(directory, attributes)) {
+                int parentIndex = directoryIndices.get(directory.getParent());
+                int index = scannedFiles.addDirectory(parentIndex, directory.getFileName().toString());
+                directoryIndices.put(directory, index);
+                scannedDirectories.increment();
                 return true;
-            } else if (object instanceof WrappedByteArray) {
-                return Arrays.equals(value, ((WrappedByteArray) object).value);
             }
+            excludedDirectories.increment();
             return false;
         }
 
         @Override
-        public int hashCode() {
-            return Arrays.hashCode(value);
+        public @Nullable Void visitFile(Path file, BasicFileAttributes attributes) {
+            if (pathMatcher.shouldScan(file, attributes)) {
+                int parentIndex = directoryIndices.get(file.getParent());
+                scannedFiles.addFile(parentIndex, file.getFileName().toString(), attributes.size(),
+                    attributes.fileKey());
+                scannedFileCount.increment();
+                scannedBytes.add(attributes.size());
+
+                int totalFound = count.incrementAndGet();
+                if ((totalFound & progressFilesFound) == 0) {
+                    logger.printLn("Found " + totalFound + " files");
+                }
+            } else {
+                excludedFiles.increment();
+            }
+            return null;
+        }
+
+        @Override
+        public @Nullable Void visitDirectory(Path directory, BasicFileAttributes attributes,
+                                             List<Void> childResults) {
+            directoryIndices.remove(directory);
+            return null;
+        }
+
+        @Override
+        public void handleListingError(Path directory, IOException exception) {
+            listingErrors.increment();
+            logger.printError("Skipping (part of) '" + directory.toAbsolutePath() + "', which could not be listed: "
+                + exception.getMessage());
         }
     }
 }
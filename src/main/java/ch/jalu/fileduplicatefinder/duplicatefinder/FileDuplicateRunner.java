@@ -4,21 +4,37 @@ import ch.jalu.fileduplicatefinder.config.FileUtilConfiguration;
 import ch.jalu.fileduplicatefinder.duplicatefinder.output.DuplicateEntryOutputter;
 import ch.jalu.fileduplicatefinder.filefilter.ConfigurableFilePathMatcher;
 import ch.jalu.fileduplicatefinder.filefilter.FilePathMatcher;
+import ch.jalu.fileduplicatefinder.hashing.CachingFileHasher;
 import ch.jalu.fileduplicatefinder.hashing.FileHasher;
 import ch.jalu.fileduplicatefinder.hashing.FileHasherFactory;
+import ch.jalu.fileduplicatefinder.hashing.FileReadMode;
 import ch.jalu.fileduplicatefinder.hashing.HashingAlgorithm;
+import ch.jalu.fileduplicatefinder.metrics.MetricsOutputter;
+import ch.jalu.fileduplicatefinder.metrics.RunMetrics;
 import ch.jalu.fileduplicatefinder.output.TaskWriterReader;
 import com.google.common.base.Preconditions;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_FOLDER;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_ALGORITHM;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_READ_MODE;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_USE_CACHE;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_OUTPUT_DISTRIBUTION;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_OUTPUT_FOLDER_PAIR_COUNT;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_OUTPUT_HARD_LINKS;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_OUTPUT_SORTED_AFTER_STREAMING;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_OUTPUT_STREAMING;
+import static ch.jalu.fileduplicatefinder.utils.FileSizeUtils.formatToHumanReadableSize;
 
 public class FileDuplicateRunner {
 
@@ -29,6 +45,7 @@ public class FileDuplicateRunner {
     private final FolderPairDuplicatesCounter folderPairDuplicatesCounter;
     private final DuplicateEntryOutputter entryOutputter;
     private final TaskWriterReader logger;
+    private final RunMetrics metrics = new RunMetrics();
     private final long start = System.currentTimeMillis();
 
     public FileDuplicateRunner(FileUtilConfiguration configuration, FileHasherFactory fileHasherFactory,
@@ -50,34 +67,158 @@ public class FileDuplicateRunner {
             "Path '" + path.toAbsolutePath() + "' is not a directory");
 
         HashingAlgorithm hashAlgorithm = configuration.getValue(DUPLICATE_HASH_ALGORITHM);
-        FileHasher fileHasher = fileHasherFactory.createFileHasher(hashAlgorithm);
+        FileReadMode readMode = configuration.getValue(DUPLICATE_HASH_READ_MODE);
+        CachingFileHasher hashCache = createHashCacheIfEnabled(hashAlgorithm, readMode);
+        FileHasher fileHasher = hashCache == null
+            ? fileHasherFactory.createFileHasher(hashAlgorithm, readMode)
+            : hashCache;
 
         FilePathMatcher pathMatcher = new ConfigurableFilePathMatcher(configuration);
 
-        List<DuplicateEntry> duplicates = findDuplicates(path, fileHasher, pathMatcher);
-        entryOutputter.outputResult(duplicates);
+        FileDuplicateFinder fileDuplicateFinder = scanFiles(path, fileHasher, pathMatcher);
+        boolean countFolderPairs = configuration.getValue(DUPLICATE_OUTPUT_FOLDER_PAIR_COUNT);
+        Map<FolderPair, Long> duplicatesByFolderPair;
+        if (configuration.getValue(DUPLICATE_OUTPUT_STREAMING)) {
+            duplicatesByFolderPair = streamDuplicates(fileDuplicateFinder, countFolderPairs);
+            saveHashCacheIfApplicable(hashCache);
+        } else {
+            List<DuplicateEntry> duplicates = fileDuplicateFinder.filterFilesForDuplicates();
+            saveHashCacheIfApplicable(hashCache);
+            try (RunMetrics.Stage ignored = metrics.startStage("output")) {
+                entryOutputter.outputResult(duplicates);
+            }
+            duplicatesByFolderPair = countFolderPairs
+                ? folderPairDuplicatesCounter.getFolderToFolderDuplicateCount(duplicates)
+                : null;
+        }
 
-        if (configuration.getValue(DUPLICATE_OUTPUT_FOLDER_PAIR_COUNT)) {
+        outputHardLinks(fileDuplicateFinder.getHardLinks(), path);
+        if (duplicatesByFolderPair != null) {
             logger.printNewLine();
             logger.printLn("Folder duplicates");
-
-            Map<FolderPair, Long> duplicatesByFolderPair = folderPairDuplicatesCounter
-                .getFolderToFolderDuplicateCount(duplicates);
             entryOutputter.outputDirectoryPairs(duplicatesByFolderPair);
         }
 
         logger.printLn("Took " + ((System.currentTimeMillis() - start) / 1000.0) + " seconds");
+        new MetricsOutputter(configuration, logger).output(metrics);
+    }
+
+    private void outputHardLinks(List<DuplicateEntry> hardLinks, Path rootFolder) {
+        if (hardLinks.isEmpty()) {
+            return;
+        }
+
+        long totalLinks = hardLinks.stream().mapToLong(entry -> entry.getPaths().size() - 1).sum();
+        logger.printNewLine();
+        logger.printLn("Skipped " + totalLinks + " links (hard or symbolic) to " + hardLinks.size()
+            + " files: each file was hashed once and its links are not reported as duplicates");
+        if (configuration.getValue(DUPLICATE_OUTPUT_HARD_LINKS)) {
+            for (DuplicateEntry entry : hardLinks) {
+                String paths = entry.getPaths().stream()
+                    .map(linkPath -> rootFolder.relativize(linkPath).toString())
+                    .collect(Collectors.joining(", "));
+                logger.printLn("[" + formatToHumanReadableSize(entry.getSize()) + "] " + paths);
+            }
+        }
     }
 
-    private List<DuplicateEntry> findDuplicates(Path path, FileHasher fileHasher, FilePathMatcher pathMatcher) {
+    private @Nullable CachingFileHasher createHashCacheIfEnabled(HashingAlgorithm hashAlgorithm,
+                                                                 FileReadMode readMode) {
+        if (!configuration.getValue(DUPLICATE_HASH_USE_CACHE)) {
+            return null;
+        } else if (!hashAlgorithm.isStableAcrossRuns()) {
+            logger.printLn("Not using the hash cache: hashes of " + hashAlgorithm + " are not stable across runs");
+            return null;
+        }
+
+        Path cacheFile = configuration.getConfigFile().resolveSibling(CachingFileHasher.CACHE_FILE_NAME);
+        CachingFileHasher hashCache = fileHasherFactory.createCachingFileHasher(hashAlgorithm, readMode, cacheFile);
+        try {
+            hashCache.loadCache();
+        } catch (IOException e) {
+            logger.printError("Could not read the hash cache, starting with an empty one: " + e.getMessage());
+        }
+        return hashCache;
+    }
+
+    private void saveHashCacheIfApplicable(@Nullable CachingFileHasher hashCache) {
+        if (hashCache == null) {
+            return;
+        }
+        logger.printLn("Hash cache: " + hashCache.getHitCount() + " hits, " + hashCache.getMissCount() + " misses");
+        try {
+            hashCache.saveCache();
+        } catch (IOException e) {
+            logger.printError("Could not save the hash cache to '" + hashCache.getCacheFile().toAbsolutePath()
+                + "': " + e.getMessage());
+        }
+    }
+
+    private FileDuplicateFinder scanFiles(Path path, FileHasher fileHasher, FilePathMatcher pathMatcher) {
         FileDuplicateFinder fileDuplicateFinder =
-            new FileDuplicateFinder(path, fileHasher, pathMatcher, configuration, logger);
+            new FileDuplicateFinder(path, fileHasher, pathMatcher, configuration, metrics, logger);
         fileDuplicateFinder.processFiles();
         if (configuration.getValue(DUPLICATE_OUTPUT_DISTRIBUTION)) {
             fileDuplicateFinder.getSizeDistribution().entrySet().stream()
                 .sorted(Map.Entry.comparingByKey())
                 .forEach(e -> logger.printLn(e.getValue() + " file size entries with " + e.getKey() + " files"));
         }
-        return fileDuplicateFinder.filterFilesForDuplicates();
+        return fileDuplicateFinder;
+    }
+
+    /**
+     * Outputs the duplicates as soon as they are found. If configured, the duplicates are saved to a spill file
+     * and output again, sorted, once all files have been processed. If the outputter writes to a file, only the
+     * sorted duplicates are written to it, so that every duplicate is in the file once.
+     *
+     * @param fileDuplicateFinder the duplicate finder that has scanned the files
+     * @param countFolderPairs whether the duplicates by folder pair should be counted
+     * @return duplicates by folder pair, null if they were not counted
+     */
+    private @Nullable Map<FolderPair, Long> streamDuplicates(FileDuplicateFinder fileDuplicateFinder,
+                                                             boolean countFolderPairs) {
+        Map<FolderPair, Long> duplicatesByFolderPair = countFolderPairs ? new HashMap<>() : null;
+        AtomicLong totalEntries = new AtomicLong();
+        AtomicLong totalDuplicatedBytes = new AtomicLong();
+        boolean outputSortedReport = configuration.getValue(DUPLICATE_OUTPUT_SORTED_AFTER_STREAMING);
+        boolean outputWhileStreaming = !outputSortedReport || !entryOutputter.writesToFile();
+
+        try (DuplicateEntrySpillFile spillFile = outputSortedReport ? DuplicateEntrySpillFile.createTempFile() : null) {
+            fileDuplicateFinder.streamDuplicates(entry -> {
+                if (outputWhileStreaming) {
+                    entryOutputter.outputEntry(entry);
+                }
+                totalEntries.incrementAndGet();
+                totalDuplicatedBytes.addAndGet(entry.getSize() * (entry.getPaths().size() - 1));
+                if (duplicatesByFolderPair != null) {
+                    folderPairDuplicatesCounter.getFolderToFolderDuplicateCount(List.of(entry))
+                        .forEach((folderPair, count) -> duplicatesByFolderPair.merge(folderPair, count, Long::sum));
+                }
+                if (spillFile != null) {
+                    writeToSpillFile(spillFile, entry);
+                }
+            });
+
+            if (spillFile != null) {
+                if (outputWhileStreaming) {
+                    logger.printNewLine();
+                    logger.printLn("All duplicates, sorted by size:");
+                }
+                spillFile.readSorted(entryOutputter::outputEntry);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read or write the duplicates spill file", e);
+        }
+
+        entryOutputter.outputSummary(totalEntries.get(), totalDuplicatedBytes.get());
+        return duplicatesByFolderPair;
+    }
+
+    private static void writeToSpillFile(DuplicateEntrySpillFile spillFile, DuplicateEntry entry) {
+        try {
+            spillFile.write(entry);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write to the duplicates spill file", e);
+        }
     }
 }
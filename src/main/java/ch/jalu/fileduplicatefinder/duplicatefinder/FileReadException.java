@@ -0,0 +1,26 @@
+package ch.jalu.fileduplicatefinder.duplicatefinder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * Thrown when a file could not be read while comparing the contents of multiple files, so that the file can be
+ * skipped and the other files can be compared without it.
+ */
+public class FileReadException extends UncheckedIOException {
+
+    private final Path path;
+
+    public FileReadException(String message, Path path, IOException cause) {
+        super(message + " '" + path.toAbsolutePath() + "'", cause);
+        this.path = path;
+    }
+
+    /**
+     * @return the file that could not be read
+     */
+    public Path getPath() {
+        return path;
+    }
+}
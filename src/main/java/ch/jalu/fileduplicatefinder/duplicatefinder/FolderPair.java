@@ -27,6 +27,14 @@ public class FolderPair {
         }
     }
 
+    public Path getFolder1() {
+        return folder1;
+    }
+
+    public Path getFolder2() {
+        return folder2;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == this) {
@@ -0,0 +1,289 @@
+package ch.jalu.fileduplicatefinder.duplicatefinder;
+
+import ch.jalu.fileduplicatefinder.filefilter.FilePathMatcher;
+import ch.jalu.fileduplicatefinder.hashing.FileHasher;
+import ch.jalu.fileduplicatefinder.output.WriterReader;
+import ch.jalu.fileduplicatefinder.utils.ConcurrencyUtils;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory index of files by size and by hash which can be updated file by file, in order to keep track of the
+ * duplicates in a folder whose contents change. A file is only hashed once another file has the same size, and its
+ * hash is kept until the file's size or modification date changes.
+ * <p>
+ * This class is not thread-safe: all methods must be called from the same thread.
+ */
+public class IncrementalDuplicateIndex {
+
+    private final FileHasher fileHasher;
+    private final FilePathMatcher pathMatcher;
+    private final long maxSizeBytesForHashing;
+    private final WriterReader logger;
+
+    private final Map<Path, IndexedFile> filesByPath = new HashMap<>();
+    private final Map<Long, Set<Path>> pathsBySize = new HashMap<>();
+    private final Map<ContentKey, Set<Path>> pathsByContent = new HashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param fileHasher the file hasher to hash files with
+     * @param pathMatcher the path matcher (used to check the result whitelist of duplicate groups)
+     * @param maxSizeBytesForHashing files of this size or larger are not hashed (0 to hash all files)
+     * @param logger logger to report files which could not be hashed to
+     */
+    public IncrementalDuplicateIndex(FileHasher fileHasher, FilePathMatcher pathMatcher,
+                                     long maxSizeBytesForHashing, WriterReader logger) {
+        this.fileHasher = fileHasher;
+        this.pathMatcher = pathMatcher;
+        this.maxSizeBytesForHashing = maxSizeBytesForHashing;
+        this.logger = logger;
+    }
+
+    /**
+     * Adds a file to the index without hashing anything. Used for the initial scan, after which
+     * {@link #hashCandidates} should be called.
+     *
+     * @param file the file to add
+     * @param size the size of the file
+     * @param lastModified the file's modification date
+     */
+    public void addFile(Path file, long size, FileTime lastModified) {
+        removeFile(file);
+        filesByPath.put(file, new IndexedFile(size, lastModified));
+        pathsBySize.computeIfAbsent(size, k -> new LinkedHashSet<>()).add(file);
+    }
+
+    /**
+     * Hashes all files that are not hashed yet and that have the same size as another file, on the given number of
+     * threads. Returns all duplicates of the index.
+     *
+     * @param configuredThreads the number of threads to hash with (0 or smaller for the number of processors)
+     * @return all duplicates, sorted by file size (descending)
+     */
+    public List<DuplicateEntry> hashCandidates(int configuredThreads) {
+        int threads = ConcurrencyUtils.resolveNumberOfThreads(configuredThreads);
+        ExecutorService executor = ConcurrencyUtils.createFixedDaemonThreadPool(threads, "watch-hash-%d");
+        try {
+            Map<Path, CompletableFuture<ContentKey>> hashesByPath = new LinkedHashMap<>();
+            for (Set<Path> paths : pathsBySize.values()) {
+                if (paths.size() > 1) {
+                    paths.stream()
+                        .filter(path -> filesByPath.get(path).contentKey == null)
+                        .forEach(path -> {
+                            long size = filesByPath.get(path).size;
+                            hashesByPath.put(path,
+                                CompletableFuture.supplyAsync(() -> calculateContentKey(path, size), executor));
+                        });
+                }
+            }
+            hashesByPath.forEach((path, future) -> setContentKey(path, ConcurrencyUtils.join(future)));
+        } finally {
+            executor.shutdownNow();
+        }
+        return getDuplicates();
+    }
+
+    /**
+     * Adds or updates the given file in the index and hashes the files of the same size as needed. Returns the
+     * duplicate groups the file (or another file with the same size which was not hashed before) was added to. A file
+     * whose contents did not change (e.g. only its modification date was updated) is not reported again. Nothing is
+     * done if the file is already in the index with the same size and modification date.
+     *
+     * @param file the file that was created or modified
+     * @param size the size of the file
+     * @param lastModified the file's modification date
+     * @return the duplicate groups which are new or have new files, empty list if there are none
+     */
+    public List<DuplicateEntry> updateFile(Path file, long size, FileTime lastModified) {
+        IndexedFile existingFile = filesByPath.get(file);
+        if (existingFile != null && existingFile.size == size && existingFile.lastModified.equals(lastModified)) {
+            return List.of();
+        }
+
+        ContentKey previousContentKey = existingFile == null ? null : existingFile.contentKey;
+        addFile(file, size, lastModified);
+        Set<Path> pathsWithSameSize = pathsBySize.get(size);
+        if (pathsWithSameSize.size() < 2) {
+            return List.of();
+        }
+
+        Set<ContentKey> changedGroups = new LinkedHashSet<>();
+        for (Path path : new ArrayList<>(pathsWithSameSize)) {
+            if (filesByPath.get(path).contentKey == null) {
+                ContentKey contentKey = calculateContentKey(path, size);
+                setContentKey(path, contentKey);
+                boolean isUnchangedFile = path.equals(file) && Objects.equals(contentKey, previousContentKey);
+                if (contentKey != null && !isUnchangedFile) {
+                    changedGroups.add(contentKey);
+                }
+            }
+        }
+        return changedGroups.stream()
+            .map(this::createEntryIfDuplicate)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Removes the given file from the index.
+     *
+     * @param file the file to remove
+     * @return true if the file was in the index, false otherwise
+     */
+    public boolean removeFile(Path file) {
+        IndexedFile removedFile = filesByPath.remove(file);
+        if (removedFile == null) {
+            return false;
+        }
+        removeFromGroup(pathsBySize, removedFile.size, file);
+        if (removedFile.contentKey != null) {
+            removeFromGroup(pathsByContent, removedFile.contentKey, file);
+        }
+        return true;
+    }
+
+    /**
+     * Removes all files in the given directory (recursively) from the index.
+     *
+     * @param directory the directory whose files should be removed
+     * @return the number of removed files
+     */
+    public int removeFilesInDirectory(Path directory) {
+        List<Path> filesToRemove = getFilesInDirectory(directory);
+        filesToRemove.forEach(this::removeFile);
+        return filesToRemove.size();
+    }
+
+    /**
+     * Returns all files of the index in the given directory (recursively).
+     *
+     * @param directory the directory to get the files of
+     * @return the indexed files in the directory
+     */
+    public List<Path> getFilesInDirectory(Path directory) {
+        return filesByPath.keySet().stream()
+            .filter(file -> file.startsWith(directory))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the total number of files in the index
+     */
+    public int getTotalFiles() {
+        return filesByPath.size();
+    }
+
+    /**
+     * Returns all groups of files with the same contents, sorted by file size (descending).
+     *
+     * @return all duplicates
+     */
+    public List<DuplicateEntry> getDuplicates() {
+        Comparator<DuplicateEntry> comparatorByNumberOfFilesAsc = Comparator.comparing(e -> e.getPaths().size());
+        return pathsByContent.keySet().stream()
+            .map(this::createEntryIfDuplicate)
+            .filter(Objects::nonNull)
+            .sorted(Comparator.comparing(DuplicateEntry::getSize).reversed()
+                .thenComparing(comparatorByNumberOfFilesAsc.reversed()))
+            .collect(Collectors.toList());
+    }
+
+    private @Nullable ContentKey calculateContentKey(Path file, long size) {
+        if (maxSizeBytesForHashing > 0 && size >= maxSizeBytesForHashing) {
+            return new ContentKey(size, "Size " + size);
+        }
+
+        try {
+            return new ContentKey(size, fileHasher.calculateHash(file));
+        } catch (IOException e) {
+            logger.printError("Could not hash '" + file.toAbsolutePath() + "': " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Sets the content key of the given file and adds it to the according group. Files which could not be hashed
+     * (content key is null) are removed from the index. They are added again when they are modified.
+     */
+    private void setContentKey(Path file, @Nullable ContentKey contentKey) {
+        if (contentKey == null) {
+            removeFile(file);
+        } else {
+            filesByPath.get(file).contentKey = contentKey;
+            pathsByContent.computeIfAbsent(contentKey, k -> new LinkedHashSet<>()).add(file);
+        }
+    }
+
+    private @Nullable DuplicateEntry createEntryIfDuplicate(ContentKey contentKey) {
+        Set<Path> paths = pathsByContent.get(contentKey);
+        if (paths == null || paths.size() < 2 || !pathMatcher.hasFileFromResultWhitelist(paths)) {
+            return null;
+        }
+        return new DuplicateEntry(contentKey.size, contentKey.hash, new ArrayList<>(paths));
+    }
+
+    private static <K> void removeFromGroup(Map<K, Set<Path>> groups, K key, Path file) {
+        Set<Path> group = groups.get(key);
+        group.remove(file);
+        if (group.isEmpty()) {
+            groups.remove(key);
+        }
+    }
+
+    private static final class IndexedFile {
+
+        private final long size;
+        private final FileTime lastModified;
+        @Nullable
+        private ContentKey contentKey;
+
+        IndexedFile(long size, FileTime lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private static final class ContentKey {
+
+        private final long size;
+        private final String hash;
+
+        ContentKey(long size, String hash) {
+            this.size = size;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (obj instanceof ContentKey) {
+                ContentKey that = (ContentKey) obj;
+                return size == that.size && hash.equals(that.hash);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(size, hash);
+        }
+    }
+}
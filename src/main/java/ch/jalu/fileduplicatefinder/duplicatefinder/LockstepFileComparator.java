@@ -0,0 +1,151 @@
+package ch.jalu.fileduplicatefinder.duplicatefinder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Finds identical files by reading them in lockstep, block by block, instead of hashing them. After each block,
+ * the files are split into classes of files whose contents have been equal so far; files that have no equal
+ * counterpart anymore are not read any further. Unlike hashing, the result is exact and files that differ early
+ * on are not read in full.
+ * <p>
+ * All files are kept open during the comparison, so this is meant for small groups of files.
+ */
+public class LockstepFileComparator {
+
+    /** Default number of bytes read from each file per step. */
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    private final int blockSize;
+
+    /**
+     * Constructor.
+     */
+    public LockstepFileComparator() {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param blockSize the number of bytes to read from each file per step
+     */
+    public LockstepFileComparator(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Returns the groups of files which have identical contents.
+     *
+     * @param paths the files to compare (should be of the same size)
+     * @return groups of identical files (each with more than one file), in the order of the given paths
+     * @throws FileReadException if a file could not be read
+     */
+    public List<List<Path>> findIdenticalFiles(List<Path> paths) {
+        List<OpenFile> files = new ArrayList<>(paths.size());
+        try {
+            for (Path path : paths) {
+                files.add(new OpenFile(path, blockSize));
+            }
+            return compareInLockstep(files);
+        } finally {
+            files.forEach(OpenFile::close);
+        }
+    }
+
+    private static List<List<Path>> compareInLockstep(List<OpenFile> files) {
+        List<List<Path>> identicalFiles = new ArrayList<>();
+        List<List<OpenFile>> candidateClasses = List.of(files);
+
+        while (!candidateClasses.isEmpty()) {
+            List<List<OpenFile>> nextCandidateClasses = new ArrayList<>();
+            for (List<OpenFile> candidateClass : candidateClasses) {
+                candidateClass.forEach(OpenFile::readNextBlock);
+
+                for (List<OpenFile> equalFiles : splitByCurrentBlock(candidateClass)) {
+                    if (equalFiles.size() == 1) {
+                        equalFiles.get(0).close();
+                    } else if (equalFiles.get(0).isFullyRead()) {
+                        identicalFiles.add(equalFiles.stream().map(file -> file.path).collect(Collectors.toList()));
+                    } else {
+                        nextCandidateClasses.add(equalFiles);
+                    }
+                }
+            }
+            candidateClasses = nextCandidateClasses;
+        }
+        return identicalFiles;
+    }
+
+    private static List<List<OpenFile>> splitByCurrentBlock(List<OpenFile> files) {
+        List<List<OpenFile>> classes = new ArrayList<>();
+        for (OpenFile file : files) {
+            List<OpenFile> matchingClass = classes.stream()
+                .filter(cls -> cls.get(0).buffer.equals(file.buffer))
+                .findFirst()
+                .orElse(null);
+            if (matchingClass == null) {
+                matchingClass = new ArrayList<>(files.size());
+                classes.add(matchingClass);
+            }
+            matchingClass.add(file);
+        }
+        return classes;
+    }
+
+    /**
+     * A file being compared, with the buffer holding its most recently read block.
+     */
+    private static final class OpenFile implements Closeable {
+
+        private final Path path;
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        OpenFile(Path path, int blockSize) {
+            this.path = path;
+            try {
+                this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            } catch (IOException e) {
+                throw new FileReadException("Could not open", path, e);
+            }
+            this.buffer = ByteBuffer.allocate(blockSize);
+        }
+
+        void readNextBlock() {
+            buffer.clear();
+            try {
+                int bytesRead;
+                do {
+                    bytesRead = channel.read(buffer);
+                } while (bytesRead >= 0 && buffer.hasRemaining());
+            } catch (IOException e) {
+                throw new FileReadException("Could not read", path, e);
+            }
+            buffer.flip();
+        }
+
+        /**
+         * @return true if the end of the file was reached before the last block, i.e. the last block was empty
+         */
+        boolean isFullyRead() {
+            return !buffer.hasRemaining();
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException ignore) {
+                // Only read from the file, so nothing to do
+            }
+        }
+    }
+}
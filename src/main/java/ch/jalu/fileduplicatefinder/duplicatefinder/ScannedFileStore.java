@@ -0,0 +1,313 @@
+package ch.jalu.fileduplicatefinder.duplicatefinder;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compact store of the files found while scanning a folder, indexed by file size.
+ * <p>
+ * Instead of keeping a {@link Path} per file, every file and directory is an entry with the index of its parent
+ * directory and its file name; paths are only created when they are requested. Files are indexed by size in a
+ * primitive open-addressing map. The files of the same size are chained via an array of "next" indices, so no
+ * per-size list is created, and a size with only one file takes no more memory than the map slot itself.
+ * <p>
+ * The {@link java.nio.file.attribute.BasicFileAttributes#fileKey() file key} of each file is kept so that links to
+ * the same file (hard links, or symbolic links since the walk follows them) can be told apart from files with the
+ * same contents. Unix file keys are kept as device and inode numbers in primitive arrays; only file keys of another
+ * form are kept as objects.
+ * <p>
+ * This class is thread-safe.
+ */
+public class ScannedFileStore {
+
+    /** Index of the root directory. */
+    public static final int ROOT_INDEX = 0;
+
+    private static final int NO_ENTRY = -1;
+    private static final int INITIAL_ENTRY_CAPACITY = 1024;
+    private static final int INITIAL_MAP_CAPACITY = 1024; // must be a power of 2
+
+    private final Path root;
+
+    // Entries (files and directories)
+    private int totalEntries;
+    private int[] parentIndices = new int[INITIAL_ENTRY_CAPACITY];
+    private String[] names = new String[INITIAL_ENTRY_CAPACITY];
+    private int[] nextEntryWithSameSize = new int[INITIAL_ENTRY_CAPACITY];
+    private long[] devices = new long[INITIAL_ENTRY_CAPACITY];
+    private long[] inodes = new long[INITIAL_ENTRY_CAPACITY];
+    private final BitSet entriesWithInode = new BitSet();
+    private final Map<Integer, Object> otherFileKeys = new HashMap<>();
+    private int totalFiles;
+
+    // Open-addressing map from file size to the first file with that size (a slot is free if its count is 0)
+    private long[] sizes = new long[INITIAL_MAP_CAPACITY];
+    private int[] firstEntryBySize = new int[INITIAL_MAP_CAPACITY];
+    private int[] countBySize = new int[INITIAL_MAP_CAPACITY];
+    private int totalSizes;
+
+    /**
+     * Constructor.
+     *
+     * @param root the root directory (all other entries are in it)
+     */
+    public ScannedFileStore(Path root) {
+        this.root = root;
+        addEntry(NO_ENTRY, null);
+    }
+
+    /**
+     * Adds a directory.
+     *
+     * @param parentIndex index of the directory's parent directory
+     * @param name the directory's file name
+     * @return index of the new directory
+     */
+    public synchronized int addDirectory(int parentIndex, String name) {
+        return addEntry(parentIndex, name);
+    }
+
+    /**
+     * Adds a file.
+     *
+     * @param parentIndex index of the directory the file is in
+     * @param name the file name
+     * @param size the file size in bytes
+     * @param fileKey the file key identifying the file's inode, null if not available
+     */
+    public synchronized void addFile(int parentIndex, String name, long size, @Nullable Object fileKey) {
+        int index = addEntry(parentIndex, name);
+        setFileKey(index, fileKey);
+        ++totalFiles;
+
+        int slot = findSlot(size);
+        if (countBySize[slot] == 0) {
+            sizes[slot] = size;
+            firstEntryBySize[slot] = index;
+            countBySize[slot] = 1;
+            ++totalSizes;
+            if (totalSizes * 2 > sizes.length) {
+                growMap();
+            }
+        } else {
+            nextEntryWithSameSize[index] = firstEntryBySize[slot];
+            firstEntryBySize[slot] = index;
+            ++countBySize[slot];
+        }
+    }
+
+    /**
+     * @return total number of files that were added
+     */
+    public synchronized int getTotalFiles() {
+        return totalFiles;
+    }
+
+    /**
+     * Returns how many sizes have a given number of files, e.g. {1=1500, 2=30} if there are 1500 file sizes with
+     * exactly one file and 30 sizes which two files have.
+     *
+     * @return number of file sizes by number of files with the size
+     */
+    public synchronized Map<Integer, Long> getSizeDistribution() {
+        Map<Integer, Long> distribution = new HashMap<>();
+        for (int count : countBySize) {
+            if (count > 0) {
+                distribution.merge(count, 1L, Long::sum);
+            }
+        }
+        return distribution;
+    }
+
+    /**
+     * Passes the files of each size that multiple files have to the given consumer. The paths of each size are
+     * sorted. The sizes are processed by descending potential savings, i.e. by size * (number of files - 1),
+     * so that the files which could free up the most space come first.
+     * <p>
+     * Paths with the same file key are links to the same data: only the first path of each file key is passed
+     * to the consumer, and the consumer is only called if there are multiple different file keys. All paths of a file
+     * key with multiple paths are passed to the link consumer.
+     *
+     * @param consumer the consumer to call with the file size and the files of that size
+     * @param linkConsumer the consumer to call with the file size and paths that are links to the same file
+     */
+    public synchronized void forEachSizeWithMultipleFiles(BiConsumer<Long, List<Path>> consumer,
+                                                          BiConsumer<Long, List<Path>> linkConsumer) {
+        for (int slot : getSlotsWithMultipleFilesBySavingsDesc()) {
+            Map<Object, List<Path>> pathsByFileKey = new LinkedHashMap<>();
+            for (int index = firstEntryBySize[slot]; index != NO_ENTRY; index = nextEntryWithSameSize[index]) {
+                pathsByFileKey.computeIfAbsent(getFileKey(index), k -> new ArrayList<>(1)).add(getPath(index));
+            }
+
+            List<Path> paths = new ArrayList<>(pathsByFileKey.size());
+            for (List<Path> pathsOfFileKey : pathsByFileKey.values()) {
+                Collections.sort(pathsOfFileKey);
+                paths.add(pathsOfFileKey.get(0));
+                if (pathsOfFileKey.size() > 1) {
+                    linkConsumer.accept(sizes[slot], pathsOfFileKey);
+                }
+            }
+            if (paths.size() > 1) {
+                Collections.sort(paths);
+                consumer.accept(sizes[slot], paths);
+            }
+        }
+    }
+
+    /**
+     * Creates the path of the entry with the given index.
+     *
+     * @param index the index of the file or directory
+     * @return the entry's path
+     */
+    public synchronized Path getPath(int index) {
+        List<String> namesFromRoot = new ArrayList<>();
+        for (int i = index; i != ROOT_INDEX; i = parentIndices[i]) {
+            namesFromRoot.add(names[i]);
+        }
+
+        Path path = root;
+        for (int i = namesFromRoot.size() - 1; i >= 0; --i) {
+            path = path.resolve(namesFromRoot.get(i));
+        }
+        return path;
+    }
+
+    private List<Integer> getSlotsWithMultipleFilesBySavingsDesc() {
+        Comparator<Integer> bySavingsAndSize = Comparator
+            .comparingLong((Integer slot) -> sizes[slot] * (countBySize[slot] - 1))
+            .thenComparingLong(slot -> sizes[slot]);
+        return IntStream.range(0, sizes.length)
+            .filter(slot -> countBySize[slot] > 1)
+            .boxed()
+            .sorted(bySavingsAndSize.reversed())
+            .collect(Collectors.toList());
+    }
+
+    private int addEntry(int parentIndex, String name) {
+        if (totalEntries == names.length) {
+            int newCapacity = names.length + (names.length >> 1);
+            parentIndices = Arrays.copyOf(parentIndices, newCapacity);
+            names = Arrays.copyOf(names, newCapacity);
+            nextEntryWithSameSize = Arrays.copyOf(nextEntryWithSameSize, newCapacity);
+            devices = Arrays.copyOf(devices, newCapacity);
+            inodes = Arrays.copyOf(inodes, newCapacity);
+        }
+        int index = totalEntries++;
+        parentIndices[index] = parentIndex;
+        names[index] = name;
+        nextEntryWithSameSize[index] = NO_ENTRY;
+        return index;
+    }
+
+    /**
+     * Returns the slot in the map for the given size: either the slot that has the size, or the free slot where it
+     * should be added.
+     */
+    private int findSlot(long size) {
+        int mask = sizes.length - 1;
+        int slot = mix(size) & mask;
+        while (countBySize[slot] != 0 && sizes[slot] != size) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void growMap() {
+        long[] oldSizes = sizes;
+        int[] oldFirstEntries = firstEntryBySize;
+        int[] oldCounts = countBySize;
+
+        sizes = new long[oldSizes.length * 2];
+        firstEntryBySize = new int[oldSizes.length * 2];
+        countBySize = new int[oldSizes.length * 2];
+        for (int oldSlot = 0; oldSlot < oldSizes.length; ++oldSlot) {
+            if (oldCounts[oldSlot] > 0) {
+                int slot = findSlot(oldSizes[oldSlot]);
+                sizes[slot] = oldSizes[oldSlot];
+                firstEntryBySize[slot] = oldFirstEntries[oldSlot];
+                countBySize[slot] = oldCounts[oldSlot];
+            }
+        }
+    }
+
+    /**
+     * Saves the given file key: Unix file keys, whose text is "(dev=hex,ino=decimal)", are saved as device and inode
+     * number, and other file keys as they are.
+     */
+    private void setFileKey(int index, @Nullable Object fileKey) {
+        if (fileKey == null) {
+            return;
+        }
+        String text = fileKey.toString();
+        int inodeStart = text.indexOf(",ino=");
+        if (text.startsWith("(dev=") && inodeStart > 0 && text.endsWith(")")) {
+            try {
+                devices[index] = Long.parseUnsignedLong(text.substring(5, inodeStart), 16);
+                inodes[index] = Long.parseLong(text.substring(inodeStart + 5, text.length() - 1));
+                entriesWithInode.set(index);
+                return;
+            } catch (NumberFormatException ignore) {
+                // Not the expected format, so the file key is saved as is
+            }
+        }
+        otherFileKeys.put(index, fileKey);
+    }
+
+    /**
+     * Returns an object that is equal for entries with the same file key. Files without file key are never links of
+     * other files, so they get a unique object.
+     */
+    private Object getFileKey(int index) {
+        if (entriesWithInode.get(index)) {
+            return new DeviceAndInode(devices[index], inodes[index]);
+        }
+        Object fileKey = otherFileKeys.get(index);
+        return fileKey == null ? new Object() : fileKey;
+    }
+
+    private static int mix(long value) {
+        long hash = value * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static final class DeviceAndInode {
+
+        private final long device;
+        private final long inode;
+
+        DeviceAndInode(long device, long inode) {
+            this.device = device;
+            this.inode = inode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (obj instanceof DeviceAndInode) {
+                DeviceAndInode that = (DeviceAndInode) obj;
+                return this.device == that.device && this.inode == that.inode;
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(device) * 31 + Long.hashCode(inode);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package ch.jalu.fileduplicatefinder.duplicatefinder;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Eliminates files of the same size that cannot be duplicates by comparing parts of their contents in stages:
+ * first the bytes at the start of the files, then the bytes at the end, and finally blocks sampled from the middle.
+ * Each stage splits the groups of potential duplicates by the bytes that were read and only passes on groups with
+ * multiple files to the next stage. The files that remain in the end still need to be hashed, unless the stages
+ * have compared their entire contents (see {@link #comparesWholeFile}).
+ * <p>
+ * Each stage only reads bytes that previous stages have not compared yet, so small files are not read multiple
+ * times. Stages configured with 0 bytes are skipped. This class is thread-safe.
+ */
+public class StagedContentFilter {
+
+    private final List<Stage> stages;
+
+    /**
+     * Constructor.
+     *
+     * @param headBytes number of bytes to compare at the start of the files (0 to skip the stage)
+     * @param tailBytes number of bytes to compare at the end of the files (0 to skip the stage)
+     * @param sampleBlocks number of blocks to sample from the remaining middle part (0 to skip the stage)
+     * @param sampleBlockBytes the size of each sampled block
+     */
+    public StagedContentFilter(int headBytes, int tailBytes, int sampleBlocks, int sampleBlockBytes) {
+        int head = Math.max(0, headBytes);
+        int tail = Math.max(0, tailBytes);
+        int blocks = sampleBlockBytes > 0 ? Math.max(0, sampleBlocks) : 0;
+
+        this.stages = List.of(
+            new Stage("first " + head + " bytes", head > 0,
+                fileSize -> List.of(new ByteRange(0, Math.min(head, fileSize)))),
+            new Stage("last " + tail + " bytes", tail > 0,
+                fileSize -> {
+                    long start = Math.max(head, fileSize - tail);
+                    return start < fileSize ? List.of(new ByteRange(start, fileSize - start)) : List.of();
+                }),
+            new Stage(blocks + " sampled blocks", blocks > 0,
+                fileSize -> createSampleRanges(head, fileSize - tail, blocks, sampleBlockBytes)));
+    }
+
+    /**
+     * Splits the given files of the same size into groups of files that may be duplicates of each other.
+     *
+     * @param fileSize the size of all files
+     * @param paths the files to process
+     * @return groups of potential duplicates (each with more than one file), in the order of the given paths
+     * @throws FileReadException if a file could not be read
+     */
+    public List<List<Path>> filter(long fileSize, List<Path> paths) {
+        List<List<Path>> groups = List.of(paths);
+        for (Stage stage : stages) {
+            if (groups.isEmpty()) {
+                break;
+            } else if (stage.enabled) {
+                List<ByteRange> ranges = stage.rangeProvider.getRanges(fileSize);
+                if (!ranges.isEmpty()) {
+                    groups = splitGroups(groups, ranges, stage);
+                }
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Returns whether the enabled stages read all bytes of files of the given size, in which case the groups
+     * returned by {@link #filter} are files with identical contents.
+     *
+     * @param fileSize the size of the files
+     * @return true if the files are compared entirely, false if there are bytes no stage reads
+     */
+    public boolean comparesWholeFile(long fileSize) {
+        // The ranges of the stages never overlap, so the file is covered if their lengths add up to its size
+        long comparedBytes = stages.stream()
+            .filter(stage -> stage.enabled)
+            .flatMap(stage -> stage.rangeProvider.getRanges(fileSize).stream())
+            .mapToLong(range -> range.length)
+            .sum();
+        return comparedBytes >= fileSize;
+    }
+
+    /**
+     * Returns a summary of the number of files each stage has eliminated, e.g. for logging.
+     *
+     * @return text with the eliminated files per stage
+     */
+    public String getEliminatedFilesSummary() {
+        List<String> stageSummaries = stages.stream()
+            .filter(stage -> stage.enabled)
+            .map(stage -> stage.description + ": " + stage.eliminatedFiles.get())
+            .collect(Collectors.toList());
+        return stageSummaries.isEmpty()
+            ? "No content comparisons configured before hashing"
+            : "Files eliminated by comparing " + String.join(", ", stageSummaries);
+    }
+
+    /**
+     * Returns the number of files eliminated per stage (only enabled stages), in the order the stages are run.
+     *
+     * @return eliminated files by stage description
+     */
+    public Map<String, Long> getEliminatedFilesByStage() {
+        Map<String, Long> eliminatedFilesByStage = new LinkedHashMap<>();
+        stages.stream()
+            .filter(stage -> stage.enabled)
+            .forEach(stage -> eliminatedFilesByStage.put(stage.description, stage.eliminatedFiles.get()));
+        return eliminatedFilesByStage;
+    }
+
+    private static List<List<Path>> splitGroups(List<List<Path>> groups, List<ByteRange> ranges, Stage stage) {
+        List<List<Path>> result = new ArrayList<>();
+        for (List<Path> group : groups) {
+            Map<WrappedByteArray, List<Path>> pathsByBytes = new LinkedHashMap<>();
+            for (Path path : group) {
+                pathsByBytes.computeIfAbsent(readRanges(path, ranges), k -> new ArrayList<>(2)).add(path);
+            }
+
+            for (List<Path> paths : pathsByBytes.values()) {
+                if (paths.size() > 1) {
+                    result.add(paths);
+                } else {
+                    stage.eliminatedFiles.incrementAndGet();
+                }
+            }
+        }
+        return result;
+    }
+
+    private static WrappedByteArray readRanges(Path path, List<ByteRange> ranges) {
+        int totalLength = ranges.stream().mapToInt(range -> (int) range.length).sum();
+        byte[] bytes = new byte[totalLength];
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            int offset = 0;
+            for (ByteRange range : ranges) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, (int) range.length);
+                long position = range.start;
+                while (buffer.hasRemaining()) {
+                    int read = channel.read(buffer, position);
+                    if (read < 0) {
+                        throw new EOFException("File is shorter than expected");
+                    }
+                    position += read;
+                }
+                offset += (int) range.length;
+            }
+        } catch (IOException e) {
+            throw new FileReadException("Could not read", path, e);
+        }
+        return new WrappedByteArray(bytes);
+    }
+
+    /**
+     * Returns the ranges of blocks that are evenly distributed between the given start and end.
+     * If the region is not larger than the total size of the blocks, the entire region is returned as one range.
+     *
+     * @param start the start of the region (inclusive)
+     * @param end the end of the region (exclusive)
+     * @param blocks the number of blocks
+     * @param blockBytes the size of each block
+     * @return the ranges to read (empty if the region is empty)
+     */
+    private static List<ByteRange> createSampleRanges(long start, long end, int blocks, int blockBytes) {
+        long regionLength = end - start;
+        if (regionLength <= 0) {
+            return Collections.emptyList();
+        } else if (regionLength <= (long) blocks * blockBytes) {
+            return List.of(new ByteRange(start, regionLength));
+        } else if (blocks == 1) {
+            return List.of(new ByteRange(start + (regionLength - blockBytes) / 2, blockBytes));
+        }
+
+        List<ByteRange> ranges = new ArrayList<>(blocks);
+        long spacing = (regionLength - blockBytes) / (blocks - 1);
+        for (int i = 0; i < blocks; ++i) {
+            ranges.add(new ByteRange(start + i * spacing, blockBytes));
+        }
+        return ranges;
+    }
+
+    private static final class Stage {
+
+        private final String description;
+        private final boolean enabled;
+        private final ByteRangeProvider rangeProvider;
+        private final AtomicLong eliminatedFiles = new AtomicLong();
+
+        Stage(String description, boolean enabled, ByteRangeProvider rangeProvider) {
+            this.description = description;
+            this.enabled = enabled;
+            this.rangeProvider = rangeProvider;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ByteRangeProvider {
+
+        /**
+         * Returns the ranges a stage should read for files of the given size.
+         *
+         * @param fileSize the file size
+         * @return the ranges to read, empty if the stage should be skipped
+         */
+        List<ByteRange> getRanges(long fileSize);
+    }
+
+    private static final class ByteRange {
+
+        private final long start;
+        private final long length;
+
+        ByteRange(long start, long length) {
+            this.start = start;
+            this.length = length;
+        }
+    }
+
+    private static final class WrappedByteArray {
+
+        private final byte[] value;
+
+        WrappedByteArray(byte[] value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (object == this) {
+                return true;
+            } else if (object instanceof WrappedByteArray) {
+                return Arrays.equals(value, ((WrappedByteArray) object).value);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(value);
+        }
+    }
+}
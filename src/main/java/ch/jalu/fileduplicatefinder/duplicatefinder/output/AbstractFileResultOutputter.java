@@ -0,0 +1,94 @@
+package ch.jalu.fileduplicatefinder.duplicatefinder.output;
+
+import ch.jalu.fileduplicatefinder.duplicatefinder.DuplicateEntry;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Base class for outputters that write machine-readable results to a file. Entries are written to a buffer as they
+ * come in, so that duplicates can be streamed to the file without keeping them in memory.
+ */
+public abstract class AbstractFileResultOutputter implements DuplicateEntryOutputter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final Writer writer;
+
+    /**
+     * Constructor. Creates or truncates the given file.
+     *
+     * @param file the file to write to
+     * @throws IOException if the file could not be opened
+     */
+    protected AbstractFileResultOutputter(Path file) throws IOException {
+        this.file = file;
+        this.writer = new BufferedWriter(
+            new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    @Override
+    public void outputResult(List<DuplicateEntry> duplicateEntries) {
+        long totalDuplicatedBytes = 0;
+        for (DuplicateEntry entry : duplicateEntries) {
+            outputEntry(entry);
+            totalDuplicatedBytes += entry.getSize() * (entry.getPaths().size() - 1);
+        }
+        outputSummary(duplicateEntries.size(), totalDuplicatedBytes);
+    }
+
+    @Override
+    public boolean writesToFile() {
+        return true;
+    }
+
+    @Override
+    public void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write to '" + file.toAbsolutePath() + "'", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write to '" + file.toAbsolutePath() + "'", e);
+        }
+    }
+
+    /**
+     * Writes the given line to the file.
+     *
+     * @param line the line to write (without line break)
+     */
+    protected void writeLine(String line) {
+        try {
+            writer.write(line);
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write to '" + file.toAbsolutePath() + "'", e);
+        }
+    }
+
+    /**
+     * Returns the path of the given file as it should be written: absolute and normalized.
+     *
+     * @param path the path to convert
+     * @return the path as text
+     */
+    protected static String toOutputPath(Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+}
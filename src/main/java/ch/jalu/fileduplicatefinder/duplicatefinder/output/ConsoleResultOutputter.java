@@ -39,9 +39,24 @@ public class ConsoleResultOutputter implements DuplicateEntryOutputter {
                 output(formatEntry(entry));
                 sum += entry.getSize() * (entry.getPaths().size() - 1);
             }
+            outputTotals(duplicates.size(), sum);
+        }
+    }
+
+    @Override
+    public void outputEntry(DuplicateEntry duplicateEntry) {
+        if (configuration.getValue(DUPLICATE_OUTPUT_DUPLICATES)) {
+            output(formatEntry(duplicateEntry));
+        }
+    }
 
-            output("Total duplicated data: " + formatToHumanReadableSize(sum));
-            output("Total: " + duplicates.size() + " duplicates");
+    @Override
+    public void outputSummary(long totalEntries, long totalDuplicatedBytes) {
+        logger.printNewLine();
+        if (totalEntries == 0) {
+            output("No duplicates found.");
+        } else if (configuration.getValue(DUPLICATE_OUTPUT_DUPLICATES)) {
+            outputTotals(totalEntries, totalDuplicatedBytes);
         }
     }
 
@@ -63,6 +78,11 @@ public class ConsoleResultOutputter implements DuplicateEntryOutputter {
         return String.format("[%s][%d] %s: %s", size, entry.getPaths().size(), entry.getHash(), files);
     }
 
+    private void outputTotals(long totalEntries, long totalDuplicatedBytes) {
+        output("Total duplicated data: " + formatToHumanReadableSize(totalDuplicatedBytes));
+        output("Total: " + totalEntries + " duplicates");
+    }
+
     protected void output(String str) {
         logger.printLn(str);
     }
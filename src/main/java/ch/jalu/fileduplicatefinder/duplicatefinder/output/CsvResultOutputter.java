@@ -0,0 +1,70 @@
+package ch.jalu.fileduplicatefinder.duplicatefinder.output;
+
+import ch.jalu.fileduplicatefinder.duplicatefinder.DuplicateEntry;
+import ch.jalu.fileduplicatefinder.duplicatefinder.FolderPair;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Writes duplicates to a CSV file with one row per duplicated file. Files with the same contents have the same value
+ * in the "group" column. Example:
+ * <pre>{@code
+ * group,size,hash,path
+ * 1,2048,ab12,/photos/a.jpg
+ * 1,2048,ab12,/photos/copy/a.jpg
+ * }</pre>
+ * The summary and the folder pairs are not written, as they do not fit into the table.
+ */
+public class CsvResultOutputter extends AbstractFileResultOutputter {
+
+    private long currentGroup;
+
+    /**
+     * Constructor. Creates or truncates the given file and writes the header.
+     *
+     * @param file the file to write to
+     * @throws IOException if the file could not be opened
+     */
+    public CsvResultOutputter(Path file) throws IOException {
+        super(file);
+        writeLine("group,size,hash,path");
+    }
+
+    @Override
+    public void outputEntry(DuplicateEntry duplicateEntry) {
+        ++currentGroup;
+        String rowStart = currentGroup + "," + duplicateEntry.getSize() + "," + toCsvValue(duplicateEntry.getHash())
+            + ",";
+        duplicateEntry.getPaths().stream()
+            .map(AbstractFileResultOutputter::toOutputPath)
+            .sorted()
+            .forEach(path -> writeLine(rowStart + toCsvValue(path)));
+    }
+
+    @Override
+    public void outputSummary(long totalEntries, long totalDuplicatedBytes) {
+        // Not part of the CSV file
+    }
+
+    @Override
+    public void outputDirectoryPairs(Map<FolderPair, Long> totalDuplicatesByFolderPair) {
+        // Not part of the CSV file
+    }
+
+    /**
+     * Returns the value as it should be written to CSV: values with commas, quotes or line breaks are put into quotes
+     * (with quotes escaped by doubling them), as defined by RFC 4180.
+     *
+     * @param value the value to convert
+     * @return CSV value
+     */
+    public static String toCsvValue(String value) {
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0
+            || value.indexOf('\r') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+}
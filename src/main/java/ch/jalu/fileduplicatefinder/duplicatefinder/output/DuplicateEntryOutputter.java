@@ -7,9 +7,9 @@ import java.util.List;
 import java.util.Map;
 
 /**
- * Outputter of results.
+ * Outputter of results. Outputters writing to a file must be closed once all results have been output.
  */
-public interface DuplicateEntryOutputter {
+public interface DuplicateEntryOutputter extends AutoCloseable {
 
     /**
      * Outputs the duplicate files which have been found.
@@ -18,6 +18,22 @@ public interface DuplicateEntryOutputter {
      */
     void outputResult(List<DuplicateEntry> duplicateEntries);
 
+    /**
+     * Outputs a single duplicate entry. Used instead of {@link #outputResult} when duplicates are output as soon
+     * as they are found; {@link #outputSummary} is called once all entries have been output.
+     *
+     * @param duplicateEntry the duplicate files
+     */
+    void outputEntry(DuplicateEntry duplicateEntry);
+
+    /**
+     * Outputs the totals after all duplicates have been passed to {@link #outputEntry}.
+     *
+     * @param totalEntries the number of duplicate entries that were output
+     * @param totalDuplicatedBytes the size of all duplicated files (not counting one file of each entry)
+     */
+    void outputSummary(long totalEntries, long totalDuplicatedBytes);
+
     /**
      * Outputs the number of duplicates by folder pair.
      *
@@ -25,4 +41,24 @@ public interface DuplicateEntryOutputter {
      */
     void outputDirectoryPairs(Map<FolderPair, Long> totalDuplicatesByFolderPair);
 
+    /**
+     * Returns whether this outputter writes to a file. Entries written to a file are not output a second time, e.g.
+     * when duplicates are streamed and a sorted report is output at the end.
+     *
+     * @return true if the output goes to a file, false if it is shown in the console
+     */
+    default boolean writesToFile() {
+        return false;
+    }
+
+    /**
+     * Writes any buffered output, e.g. after an entry was output that should be visible right away.
+     */
+    default void flush() {
+    }
+
+    @Override
+    default void close() {
+    }
+
 }
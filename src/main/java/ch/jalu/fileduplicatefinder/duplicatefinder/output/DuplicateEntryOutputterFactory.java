@@ -0,0 +1,45 @@
+package ch.jalu.fileduplicatefinder.duplicatefinder.output;
+
+import ch.jalu.fileduplicatefinder.config.FileUtilConfiguration;
+import ch.jalu.fileduplicatefinder.output.WriterReader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_OUTPUT_FILE;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_OUTPUT_FORMAT;
+
+/**
+ * Creates the {@link DuplicateEntryOutputter} for the configured output format.
+ */
+public class DuplicateEntryOutputterFactory {
+
+    /**
+     * Returns an outputter for the configured output format. The returned outputter must be closed after use.
+     *
+     * @param configuration the configuration
+     * @param logger the logger of the task, used for console output
+     * @return the outputter to use
+     * @throws IOException if the output file could not be opened
+     */
+    public DuplicateEntryOutputter createOutputter(FileUtilConfiguration configuration,
+                                                   WriterReader logger) throws IOException {
+        DuplicateOutputFormat format = configuration.getValue(DUPLICATE_OUTPUT_FORMAT);
+        switch (format) {
+            case CONSOLE:
+                return new ConsoleResultOutputter(configuration, logger);
+            case JSON_LINES:
+                return new JsonLinesResultOutputter(getOutputFile(configuration, logger));
+            case CSV:
+                return new CsvResultOutputter(getOutputFile(configuration, logger));
+            default:
+                throw new IllegalStateException("Unsupported output format: " + format);
+        }
+    }
+
+    private static Path getOutputFile(FileUtilConfiguration configuration, WriterReader logger) {
+        Path file = configuration.getValueOrPrompt(DUPLICATE_OUTPUT_FILE);
+        logger.printLn("Writing duplicates to '" + file.toAbsolutePath() + "'");
+        return file;
+    }
+}
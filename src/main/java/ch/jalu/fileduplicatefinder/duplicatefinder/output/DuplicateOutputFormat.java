@@ -0,0 +1,17 @@
+package ch.jalu.fileduplicatefinder.duplicatefinder.output;
+
+/**
+ * Defines how duplicates are output.
+ */
+public enum DuplicateOutputFormat {
+
+    /** Human-readable text in the console (see {@link ConsoleResultOutputter}). */
+    CONSOLE,
+
+    /** One JSON object per line, written to a file (see {@link JsonLinesResultOutputter}). */
+    JSON_LINES,
+
+    /** One row per duplicated file, written to a CSV file (see {@link CsvResultOutputter}). */
+    CSV
+
+}
@@ -0,0 +1,95 @@
+package ch.jalu.fileduplicatefinder.duplicatefinder.output;
+
+import ch.jalu.fileduplicatefinder.duplicatefinder.DuplicateEntry;
+import ch.jalu.fileduplicatefinder.duplicatefinder.FolderPair;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Writes results to a file in the JSON Lines format: each line is a JSON object whose "type" field indicates what it
+ * describes. Example:
+ * <pre>{@code
+ * {"type":"duplicate","size":2048,"hash":"ab12","paths":["/photos/a.jpg","/photos/copy/a.jpg"]}
+ * {"type":"summary","entries":1,"duplicatedBytes":2048}
+ * {"type":"folderPair","folder1":"/photos","folder2":"/photos/copy","duplicates":1}
+ * }</pre>
+ */
+public class JsonLinesResultOutputter extends AbstractFileResultOutputter {
+
+    /**
+     * Constructor. Creates or truncates the given file.
+     *
+     * @param file the file to write to
+     * @throws IOException if the file could not be opened
+     */
+    public JsonLinesResultOutputter(Path file) throws IOException {
+        super(file);
+    }
+
+    @Override
+    public void outputEntry(DuplicateEntry duplicateEntry) {
+        String paths = duplicateEntry.getPaths().stream()
+            .map(path -> toJsonString(toOutputPath(path)))
+            .sorted()
+            .collect(Collectors.joining(","));
+        writeLine("{\"type\":\"duplicate\",\"size\":" + duplicateEntry.getSize()
+            + ",\"hash\":" + toJsonString(duplicateEntry.getHash())
+            + ",\"paths\":[" + paths + "]}");
+    }
+
+    @Override
+    public void outputSummary(long totalEntries, long totalDuplicatedBytes) {
+        writeLine("{\"type\":\"summary\",\"entries\":" + totalEntries
+            + ",\"duplicatedBytes\":" + totalDuplicatedBytes + "}");
+    }
+
+    @Override
+    public void outputDirectoryPairs(Map<FolderPair, Long> totalDuplicatesByFolderPair) {
+        totalDuplicatesByFolderPair.entrySet().stream()
+            .sorted(Map.Entry.<FolderPair, Long>comparingByValue().reversed())
+            .forEach(entry -> writeLine("{\"type\":\"folderPair\""
+                + ",\"folder1\":" + toJsonString(toOutputPath(entry.getKey().getFolder1()))
+                + ",\"folder2\":" + toJsonString(toOutputPath(entry.getKey().getFolder2()))
+                + ",\"duplicates\":" + entry.getValue() + "}"));
+    }
+
+    /**
+     * Returns the given text as JSON string literal, i.e. in quotes and with special characters escaped.
+     *
+     * @param text the text to convert
+     * @return JSON string
+     */
+    public static String toJsonString(String text) {
+        StringBuilder sb = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); ++i) {
+            char chr = text.charAt(i);
+            switch (chr) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (chr < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) chr));
+                    } else {
+                        sb.append(chr);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -2,6 +2,9 @@ package ch.jalu.fileduplicatefinder.filecount;
 
 import ch.jalu.fileduplicatefinder.ExitRunnerException;
 import ch.jalu.fileduplicatefinder.config.FileUtilConfiguration;
+import ch.jalu.fileduplicatefinder.filewalker.ParallelFileWalker;
+import ch.jalu.fileduplicatefinder.metrics.MetricsOutputter;
+import ch.jalu.fileduplicatefinder.metrics.RunMetrics;
 import ch.jalu.fileduplicatefinder.output.WriterReader;
 import ch.jalu.fileduplicatefinder.utils.FileSizeUtils;
 import org.jetbrains.annotations.Nullable;
@@ -22,6 +25,7 @@ import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.FILE_COUNT_DET
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.FILE_COUNT_FOLDER;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.FILE_COUNT_GROUPS;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.FORMAT_FILE_SIZE;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.SCAN_THREADS;
 import static ch.jalu.fileduplicatefinder.filecount.FileCounter.NO_EXTENSION_TEXT;
 import static com.google.common.base.CaseFormat.LOWER_CAMEL;
 import static com.google.common.base.CaseFormat.UPPER_CAMEL;
@@ -41,10 +45,18 @@ public class FileCountRunner {
 
     public void run() throws ExitRunnerException {
         Path folder = getFolderFromProperties();
-        Map<String, FileCountEntry> statsByExtension = new FileCounter(folder).gatherExtensionCount();
+        RunMetrics metrics = new RunMetrics();
+        ParallelFileWalker fileWalker = new ParallelFileWalker(configuration.getValue(SCAN_THREADS), metrics);
+        Map<String, FileCountEntry> statsByExtension =
+            new FileCounter(folder, fileWalker, metrics).gatherExtensionCount();
         logger.printLn("Found " + statsByExtension.size() + " different file extensions");
+        new MetricsOutputter(configuration, logger).output(metrics);
 
         applyConfiguredGroups(statsByExtension);
+        if (!configuration.isInteractive()) {
+            handleSortCommand("sort count desc", statsByExtension);
+            return;
+        }
 
         String command = "help";
         do {
@@ -1,12 +1,18 @@
 package ch.jalu.fileduplicatefinder.filecount;
 
-import ch.jalu.fileduplicatefinder.utils.PathUtils;
+import ch.jalu.fileduplicatefinder.filewalker.FileWalkVisitor;
+import ch.jalu.fileduplicatefinder.filewalker.ParallelFileWalker;
+import ch.jalu.fileduplicatefinder.metrics.Counter;
+import ch.jalu.fileduplicatefinder.metrics.RunMetrics;
+import org.jetbrains.annotations.Nullable;
 
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -15,27 +21,34 @@ public class FileCounter {
     public static final String NO_EXTENSION_TEXT = "File";
 
     private final Path folder;
+    private final ParallelFileWalker fileWalker;
+    private final RunMetrics metrics;
 
-    public FileCounter(Path folder) {
+    public FileCounter(Path folder, ParallelFileWalker fileWalker, RunMetrics metrics) {
         this.folder = checkNotNull(folder);
+        this.fileWalker = fileWalker;
+        this.metrics = metrics;
     }
 
+    /**
+     * Counts the files and their total size by extension. The folder is walked in parallel; each thread counts in
+     * its own map, and the maps of all threads are merged once the walk is done.
+     *
+     * @return file count by extension
+     */
     public Map<String, FileCountEntry> gatherExtensionCount() {
-        Map<String, FileExtensionCount> countByExtension = new HashMap<>();
-        countExtensions(folder, countByExtension);
-        return (Map) countByExtension;
-    }
+        ExtensionCountVisitor visitor = new ExtensionCountVisitor(metrics);
+        try (RunMetrics.Stage ignored = metrics.startStage("scan")) {
+            fileWalker.walk(folder, visitor);
+        }
 
-    private void countExtensions(Path folder, Map<String, FileExtensionCount> countByExtension) {
-        PathUtils.list(folder).forEach(element -> {
-            if (Files.isDirectory(element)) {
-                countExtensions(element, countByExtension);
-            } else if (Files.isRegularFile(element)) {
-                String extension = getExtension(element);
-                FileExtensionCount count = countByExtension.computeIfAbsent(extension, FileExtensionCount::new);
-                count.add(element);
-            }
-        });
+        Map<String, FileExtensionCount> countByExtension = new HashMap<>();
+        for (Map<String, ExtensionAccumulator> countsOfThread : visitor.countsOfAllThreads) {
+            countsOfThread.forEach((extension, accumulator) -> countByExtension
+                .computeIfAbsent(extension, FileExtensionCount::new)
+                .add(accumulator.count, accumulator.totalSizeInBytes));
+        }
+        return new HashMap<>(countByExtension);
     }
 
     private static String getExtension(Path path) {
@@ -46,4 +59,48 @@ public class FileCounter {
         }
         return "." + filename.substring(lastDotIndex + 1).toLowerCase(Locale.ROOT);
     }
+
+    /**
+     * Number of files and their total size of one extension, counted by one thread.
+     */
+    private static final class ExtensionAccumulator {
+
+        private long count;
+        private long totalSizeInBytes;
+    }
+
+    private static final class ExtensionCountVisitor implements FileWalkVisitor<Void> {
+
+        // The maps are only written to by their thread; they are read after the walk, which waits for all threads
+        private final List<Map<String, ExtensionAccumulator>> countsOfAllThreads = new CopyOnWriteArrayList<>();
+        private final ThreadLocal<Map<String, ExtensionAccumulator>> countsOfThread = ThreadLocal.withInitial(() -> {
+            Map<String, ExtensionAccumulator> counts = new HashMap<>();
+            countsOfAllThreads.add(counts);
+            return counts;
+        });
+        private final Counter scannedFiles;
+        private final Counter scannedBytes;
+
+        ExtensionCountVisitor(RunMetrics metrics) {
+            this.scannedFiles = metrics.counter("scan.files");
+            this.scannedBytes = metrics.counter("scan.bytes");
+        }
+
+        @Override
+        public @Nullable Void visitFile(Path file, BasicFileAttributes attributes) {
+            scannedFiles.increment();
+            scannedBytes.add(attributes.size());
+            ExtensionAccumulator accumulator = countsOfThread.get()
+                .computeIfAbsent(getExtension(file), ext -> new ExtensionAccumulator());
+            ++accumulator.count;
+            accumulator.totalSizeInBytes += attributes.size();
+            return null;
+        }
+
+        @Override
+        public @Nullable Void visitDirectory(Path directory, BasicFileAttributes attributes,
+                                             List<Void> childResults) {
+            return null;
+        }
+    }
 }
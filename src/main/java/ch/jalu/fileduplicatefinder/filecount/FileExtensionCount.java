@@ -1,9 +1,6 @@
 package ch.jalu.fileduplicatefinder.filecount;
 
-import ch.jalu.fileduplicatefinder.utils.PathUtils;
-
 import java.math.BigDecimal;
-import java.nio.file.Path;
 
 public class FileExtensionCount implements FileCountEntry {
 
@@ -15,10 +12,15 @@ public class FileExtensionCount implements FileCountEntry {
         this.extension = extension;
     }
 
-    public void add(Path file) {
-        ++count;
-        BigDecimal sizeOfNewFile = BigDecimal.valueOf(PathUtils.size(file));
-        totalSizeInBytes = totalSizeInBytes.add(sizeOfNewFile);
+    /**
+     * Adds multiple files of this extension at once.
+     *
+     * @param numberOfFiles number of files to add
+     * @param sizeInBytes total size of the files to add
+     */
+    public void add(long numberOfFiles, long sizeInBytes) {
+        count += numberOfFiles;
+        totalSizeInBytes = totalSizeInBytes.add(BigDecimal.valueOf(sizeInBytes));
     }
 
     @Override
@@ -1,14 +1,14 @@
 package ch.jalu.fileduplicatefinder.filefilter;
 
 import ch.jalu.fileduplicatefinder.config.FileUtilConfiguration;
-import ch.jalu.fileduplicatefinder.utils.PathUtils;
 import org.jetbrains.annotations.Nullable;
 
 import java.nio.file.FileSystems;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collection;
+import java.util.function.LongPredicate;
 
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_FILTER_BLACKLIST;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_FILTER_MAX_SIZE;
@@ -25,8 +25,8 @@ public class ConfigurableFilePathMatcher implements FilePathMatcher {
 
     private final @Nullable PathMatcher whitelist;
     private final @Nullable PathMatcher blacklist;
-    private final @Nullable PathMatcher fileSizeMinFilter;
-    private final @Nullable PathMatcher fileSizeMaxFilter;
+    private final @Nullable LongPredicate fileSizeMinFilter;
+    private final @Nullable LongPredicate fileSizeMaxFilter;
     private final @Nullable PathMatcher duplicateResultWhitelist;
 
     public ConfigurableFilePathMatcher(FileUtilConfiguration configuration) {
@@ -55,32 +55,32 @@ public class ConfigurableFilePathMatcher implements FilePathMatcher {
     }
 
     /**
-     * Creates a path matcher which matches files based on their size.
+     * Creates a predicate which matches files based on their size.
      *
      * @param sizeInMb the required size in megabytes
      * @param isMin true to match files which are at least the given size, false for a matcher {@code size >= sizeInMb}
-     * @return path matcher for the given size, or null if the argument is not positive
+     * @return predicate for the file size in bytes, or null if the argument is not positive
      */
-    private static @Nullable PathMatcher toSizeFilter(double sizeInMb, boolean isMin) {
+    private static @Nullable LongPredicate toSizeFilter(double sizeInMb, boolean isMin) {
         if (sizeInMb <= 0.0) {
             return null;
         }
 
         long sizeThreshold = megaBytesToBytes(sizeInMb);
         if (isMin) {
-            return path -> PathUtils.size(path) >= sizeThreshold;
+            return size -> size >= sizeThreshold;
         } else {
-            return path -> PathUtils.size(path) <= sizeThreshold;
+            return size -> size <= sizeThreshold;
         }
     }
 
     @Override
-    public boolean shouldScan(Path path) {
-        if (Files.isRegularFile(path)) {
+    public boolean shouldScan(Path path, BasicFileAttributes attributes) {
+        if (attributes.isRegularFile()) {
             return matches(whitelist, path)
                 && matches(blacklist, path)
-                && matches(fileSizeMinFilter, path)
-                && matches(fileSizeMaxFilter, path);
+                && (fileSizeMinFilter == null || fileSizeMinFilter.test(attributes.size()))
+                && (fileSizeMaxFilter == null || fileSizeMaxFilter.test(attributes.size()));
         }
         return true;
     }
@@ -1,11 +1,12 @@
 package ch.jalu.fileduplicatefinder.filefilter;
 
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collection;
 
 public interface FilePathMatcher {
 
-    boolean shouldScan(Path path);
+    boolean shouldScan(Path path, BasicFileAttributes attributes);
 
     boolean hasFileFromResultWhitelist(Collection<Path> paths);
 
@@ -0,0 +1,62 @@
+package ch.jalu.fileduplicatefinder.filewalker;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+
+/**
+ * Visitor of the files and directories found by {@link ParallelFileWalker}.
+ * <p>
+ * Methods are called from multiple threads at the same time, so implementations must be thread-safe. The files of
+ * one directory are always visited on the same thread, and a directory is only visited after all of its children.
+ *
+ * @param <R> the result type of the visitor
+ */
+public interface FileWalkVisitor<R> {
+
+    /**
+     * Returns whether the given directory should be entered. Not called for the root directory.
+     *
+     * @param directory the directory
+     * @param attributes the attributes of the directory
+     * @return true if the directory should be visited, false to skip it
+     */
+    default boolean shouldEnterDirectory(Path directory, BasicFileAttributes attributes) {
+        return true;
+    }
+
+    /**
+     * Visits a regular file.
+     *
+     * @param file the file
+     * @param attributes the file's attributes
+     * @return result for the file (passed to the directory it is in), or null if there is none
+     */
+    @Nullable R visitFile(Path file, BasicFileAttributes attributes);
+
+    /**
+     * Visits a directory after all of its children have been visited.
+     *
+     * @param directory the directory
+     * @param attributes the directory's attributes
+     * @param childResults the non-null results of the directory's children, in the order they were listed
+     * @return result for the directory, or null if there is none
+     */
+    @Nullable R visitDirectory(Path directory, BasicFileAttributes attributes, List<R> childResults);
+
+    /**
+     * Handles an error while listing the entries of a directory. The entries that were listed before the error are
+     * still visited. By default, the error is rethrown, which aborts the walk.
+     *
+     * @param directory the directory that could not be listed (fully)
+     * @param exception the error
+     */
+    default void handleListingError(Path directory, IOException exception) {
+        throw new UncheckedIOException("Failed to list '" + directory.toAbsolutePath() + "'", exception);
+    }
+
+}
@@ -0,0 +1,155 @@
+package ch.jalu.fileduplicatefinder.filewalker;
+
+import ch.jalu.fileduplicatefinder.metrics.Counter;
+import ch.jalu.fileduplicatefinder.metrics.RunMetrics;
+import ch.jalu.fileduplicatefinder.utils.ConcurrencyUtils;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+
+/**
+ * Walks through a directory recursively, splitting up subdirectories among multiple threads. The attributes of
+ * each entry are read only once and are passed to the {@link FileWalkVisitor visitor}.
+ * <p>
+ * Like {@link Files#isDirectory} and {@link Files#isRegularFile}, symbolic links are followed. Entries whose
+ * attributes cannot be read (e.g. broken links) are skipped, as are entries that are neither a file nor a directory.
+ * Directories that cannot be listed are passed to {@link FileWalkVisitor#handleListingError}.
+ * <p>
+ * The number of directory listings and of attribute reads (stat calls) are counted in the "scan" metrics.
+ */
+public class ParallelFileWalker {
+
+    private final int threads;
+    private final Counter statCalls;
+    private final Counter directoryListings;
+
+    /**
+     * Constructor.
+     *
+     * @param configuredThreads the number of threads to use (0 or smaller for the number of available processors)
+     */
+    public ParallelFileWalker(int configuredThreads) {
+        this(configuredThreads, new RunMetrics());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param configuredThreads the number of threads to use (0 or smaller for the number of available processors)
+     * @param metrics the metrics to record the file system calls in
+     */
+    public ParallelFileWalker(int configuredThreads, RunMetrics metrics) {
+        this.threads = ConcurrencyUtils.resolveNumberOfThreads(configuredThreads);
+        this.statCalls = metrics.counter("scan.statCalls");
+        this.directoryListings = metrics.counter("scan.directoryListings");
+    }
+
+    /**
+     * @return the number of threads the walker uses
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Walks through the given directory and returns the visitor's result for it.
+     *
+     * @param root the directory to process
+     * @param visitor the visitor to pass the found entries to
+     * @param <R> the result type
+     * @return the visitor's result for the root directory
+     */
+    public <R> @Nullable R walk(Path root, FileWalkVisitor<R> visitor) {
+        BasicFileAttributes rootAttributes = readAttributes(root);
+        if (rootAttributes == null || !rootAttributes.isDirectory()) {
+            throw new IllegalArgumentException("Path '" + root.toAbsolutePath() + "' is not a directory");
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.invoke(new DirectoryTask<>(root, rootAttributes, visitor));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private @Nullable BasicFileAttributes readAttributes(Path path) {
+        statCalls.increment();
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Task processing one directory: files are visited right away, and a new task is forked for each subdirectory.
+     *
+     * @param <R> the result type of the visitor
+     */
+    private final class DirectoryTask<R> extends RecursiveTask<R> {
+
+        private final Path directory;
+        private final BasicFileAttributes attributes;
+        private final FileWalkVisitor<R> visitor;
+
+        DirectoryTask(Path directory, BasicFileAttributes attributes, FileWalkVisitor<R> visitor) {
+            this.directory = directory;
+            this.attributes = attributes;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected R compute() {
+            // Results in listing order; subdirectories have a null placeholder until their task is joined
+            List<R> childResults = new ArrayList<>();
+            List<Integer> subtaskIndices = new ArrayList<>();
+            List<DirectoryTask<R>> subtasks = new ArrayList<>();
+
+            directoryListings.increment();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes entryAttributes = readAttributes(entry);
+                    if (entryAttributes == null) {
+                        continue;
+                    }
+
+                    if (entryAttributes.isDirectory()) {
+                        if (visitor.shouldEnterDirectory(entry, entryAttributes)) {
+                            DirectoryTask<R> subtask = new DirectoryTask<>(entry, entryAttributes, visitor);
+                            subtask.fork();
+                            subtaskIndices.add(childResults.size());
+                            subtasks.add(subtask);
+                            childResults.add(null);
+                        }
+                    } else if (entryAttributes.isRegularFile()) {
+                        childResults.add(visitor.visitFile(entry, entryAttributes));
+                    }
+                }
+            } catch (IOException e) {
+                visitor.handleListingError(directory, e);
+            } catch (DirectoryIteratorException e) {
+                visitor.handleListingError(directory, e.getCause());
+            }
+
+            for (int i = 0; i < subtasks.size(); ++i) {
+                childResults.set(subtaskIndices.get(i), subtasks.get(i).join());
+            }
+            List<R> nonNullResults = childResults.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+            return visitor.visitDirectory(directory, attributes, nonNullResults);
+        }
+    }
+}
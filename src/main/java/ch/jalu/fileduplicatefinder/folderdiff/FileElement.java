@@ -1,9 +1,10 @@
 package ch.jalu.fileduplicatefinder.folderdiff;
 
 import ch.jalu.fileduplicatefinder.utils.FileSizeUtils;
-import ch.jalu.fileduplicatefinder.utils.PathUtils;
+import org.jetbrains.annotations.Nullable;
 
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 
 public class FileElement {
@@ -11,11 +12,36 @@ public class FileElement {
     private final Path file;
     private final String name;
     private final long size;
+    private final FileTime lastModifiedTime;
+    private final boolean fromManifest;
+    @Nullable
+    private final String hash;
 
-    FileElement(Path root, Path file) {
+    FileElement(Path root, Path file, BasicFileAttributes attributes) {
         this.file = file;
         this.name = root.relativize(file).toString();
-        this.size = PathUtils.size(file);
+        this.size = attributes.size();
+        this.lastModifiedTime = attributes.lastModifiedTime();
+        this.fromManifest = false;
+        this.hash = null;
+    }
+
+    /**
+     * Constructor for a file that was read from a manifest.
+     *
+     * @param root the folder the manifest was created from
+     * @param name the path of the file relative to the root
+     * @param size the file size
+     * @param lastModifiedTime the modification date of the file
+     * @param hash the hash of the file, null if not available
+     */
+    FileElement(Path root, String name, long size, FileTime lastModifiedTime, @Nullable String hash) {
+        this.file = root.resolve(name);
+        this.name = name;
+        this.size = size;
+        this.lastModifiedTime = lastModifiedTime;
+        this.fromManifest = true;
+        this.hash = hash;
     }
 
     public Path getFile() {
@@ -30,8 +56,22 @@ public class FileElement {
         return size;
     }
 
-    public FileTime readLastModifiedTime() {
-        return PathUtils.getLastModifiedTime(file);
+    public FileTime getLastModifiedTime() {
+        return lastModifiedTime;
+    }
+
+    /**
+     * @return true if this file was read from a manifest, i.e. its contents cannot be read
+     */
+    public boolean isFromManifest() {
+        return fromManifest;
+    }
+
+    /**
+     * @return the hash of the file saved in the manifest, null if not available or not from a manifest
+     */
+    public @Nullable String getHash() {
+        return hash;
     }
 
     @Override
@@ -1,27 +1,41 @@
 package ch.jalu.fileduplicatefinder.folderdiff;
 
 import ch.jalu.fileduplicatefinder.config.FileUtilConfiguration;
+import ch.jalu.fileduplicatefinder.filewalker.FileWalkVisitor;
+import ch.jalu.fileduplicatefinder.filewalker.ParallelFileWalker;
 import ch.jalu.fileduplicatefinder.hashing.FileHasher;
-import ch.jalu.fileduplicatefinder.hashing.FileHasherFactory;
 import ch.jalu.fileduplicatefinder.hashing.HashingAlgorithm;
+import ch.jalu.fileduplicatefinder.metrics.Counter;
+import ch.jalu.fileduplicatefinder.metrics.RunMetrics;
+import ch.jalu.fileduplicatefinder.utils.ConcurrencyUtils;
 import ch.jalu.fileduplicatefinder.utils.FileSizeUtils;
-import ch.jalu.fileduplicatefinder.utils.PathUtils;
 import com.google.common.base.Preconditions;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
 
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DIFF_CHECK_BY_SIZE_AND_MODIFICATION_DATE;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DIFF_HASH_THREADS_PER_DEVICE;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DIFF_MANIFEST_INCLUDE_HASHES;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DIFF_MANIFEST_OUTPUT;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_ALGORITHM;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_MAX_SIZE_MB;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.SCAN_THREADS;
 
 /**
  * Compares all files (recursively) of two given folders and returns the differences it finds: new or deleted files,
@@ -30,7 +44,15 @@ import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH
  * Files that have the exact same contents but a different file name will be considered as renamed, files with the
  * same name but different contents are considered modified. This tool does not otherwise associate files with each
  * other, i.e. if a file was renamed and slightly modified, one file will be listed as deleted and the other file
- * will be listed as newly created.
+ * will be listed as newly created. Renamed files are found by the {@link RenameDetector}.
+ * <p>
+ * Both folders are scanned at the same time. Files are hashed on worker threads with a separate pool per device,
+ * and every file is hashed at most once per run.
+ * <p>
+ * Instead of a folder, a {@link FolderManifest} saved by a previous run can be given, in which case the files of the
+ * manifest are used. If a manifest without hashes is compared, files are only compared by size and modification date.
+ * Hashes are only saved to and read from manifests if the hash algorithm is
+ * {@link HashingAlgorithm#isStableAcrossRuns() stable across runs}.
  */
 public class FolderDiffAnalyzer {
 
@@ -38,145 +60,298 @@ public class FolderDiffAnalyzer {
     private final Path folder2;
     private final FileUtilConfiguration configuration;
     private final FileHasher fileHasher;
+    private final RunMetrics metrics;
+    private final ParallelFileWalker fileWalker;
 
     // Configs
     private long maxSizeBytesForHashing;
     private boolean checkSizeAndModificationDate;
+    private int hashThreadsPerDevice;
+    private HashingAlgorithm hashAlgorithm;
+    private boolean createFolder2Manifest;
+    private boolean includeHashesInManifest;
 
+    // Run state
+    private boolean hashesAvailable;
+    private @Nullable FolderManifest folder2Manifest;
 
     public FolderDiffAnalyzer(Path folder1, Path folder2, FileUtilConfiguration configuration,
-                              FileHasherFactory fileHasherFactory) {
+                              FileHasher fileHasher, RunMetrics metrics) {
         this.folder1 = folder1;
         this.folder2 = folder2;
         this.configuration = configuration;
-
-        HashingAlgorithm hashAlgorithm = configuration.getValue(DUPLICATE_HASH_ALGORITHM);
-        this.fileHasher = fileHasherFactory.createFileHasher(hashAlgorithm);
+        this.fileHasher = fileHasher;
+        this.metrics = metrics;
+        this.fileWalker = new ParallelFileWalker(configuration.getValue(SCAN_THREADS), metrics);
     }
 
     public List<FileDifference> collectDifferences(FolderDiffProgressCallback progressCallback) {
-        Preconditions.checkArgument(Files.isDirectory(folder1),
-            "Path '" + folder1.toAbsolutePath() + "' is not a directory");
-        Preconditions.checkArgument(Files.isDirectory(folder2),
-            "Path '" + folder2.toAbsolutePath() + "' is not a directory");
+        Preconditions.checkArgument(Files.exists(folder1),
+            "Path '" + folder1.toAbsolutePath() + "' does not exist");
+        Preconditions.checkArgument(Files.exists(folder2),
+            "Path '" + folder2.toAbsolutePath() + "' does not exist");
 
         maxSizeBytesForHashing = FileSizeUtils.megaBytesToBytes(configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB));
         checkSizeAndModificationDate = configuration.getValue(DIFF_CHECK_BY_SIZE_AND_MODIFICATION_DATE);
+        hashThreadsPerDevice = configuration.getValue(DIFF_HASH_THREADS_PER_DEVICE);
+        hashAlgorithm = configuration.getValue(DUPLICATE_HASH_ALGORITHM);
+        createFolder2Manifest = configuration.getValue(DIFF_MANIFEST_OUTPUT).isPresent();
+        // Hashes that differ in every run cannot be compared with the files of a later run
+        includeHashesInManifest = configuration.getValue(DIFF_MANIFEST_INCLUDE_HASHES)
+            && hashAlgorithm.isStableAcrossRuns();
+        folder2Manifest = null;
 
-        ProgressHandler progressHandler = new ProgressHandler(progressCallback);
+        ProgressHandler progressHandler = new ProgressHandler(progressCallback, metrics);
         progressCallback.startScan();
-        LinkedHashMap<String, FileElement> folder1ElementsByRelPath = new LinkedHashMap<>();
-        process(folder1, folder1, folder1ElementsByRelPath, progressHandler);
-
-        LinkedHashMap<String, FileElement> folder2ElementsByRelPath = new LinkedHashMap<>();
-        process(folder2, folder2, folder2ElementsByRelPath, progressHandler);
+        ScannedFolder scannedFolder1;
+        ScannedFolder scannedFolder2;
+        ExecutorService scanExecutor = ConcurrencyUtils.createFixedDaemonThreadPool(2, "diff-scan-%d");
+        try (RunMetrics.Stage ignored = metrics.startStage("scan")) {
+            CompletableFuture<ScannedFolder> folder1Scan =
+                CompletableFuture.supplyAsync(() -> scan(folder1, progressHandler), scanExecutor);
+            CompletableFuture<ScannedFolder> folder2Scan =
+                CompletableFuture.supplyAsync(() -> scan(folder2, progressHandler), scanExecutor);
+            scannedFolder1 = ConcurrencyUtils.join(folder1Scan);
+            scannedFolder2 = ConcurrencyUtils.join(folder2Scan);
+        } finally {
+            scanExecutor.shutdownNow();
+        }
+        hashesAvailable = scannedFolder1.hasHashes && scannedFolder2.hasHashes;
+        Map<String, FileElement> folder1ElementsByRelPath = scannedFolder1.elementsByRelPath;
+        Map<String, FileElement> folder2ElementsByRelPath = scannedFolder2.elementsByRelPath;
 
         progressCallback.startAnalysis();
-        return findDifferences(folder1ElementsByRelPath, folder2ElementsByRelPath, progressHandler);
+        try (RunMetrics.Stage ignored = metrics.startStage("compare");
+             PerDeviceHashingPool hashingPool =
+                 new PerDeviceHashingPool(fileHasher, maxSizeBytesForHashing, hashThreadsPerDevice, metrics)) {
+            boolean hashFolder2ForManifest =
+                createFolder2Manifest && includeHashesInManifest && scannedFolder2.hasHashes;
+            RenameDetector renameDetector =
+                createRenameDetector(folder1ElementsByRelPath, folder2ElementsByRelPath, hashingPool);
+            if (hashesAvailable) {
+                submitFilesToHash(folder1ElementsByRelPath, folder2ElementsByRelPath, hashingPool);
+            }
+            renameDetector.submitFilesToHash();
+            if (hashFolder2ForManifest) {
+                folder2ElementsByRelPath.values().forEach(f2Elem -> hashingPool.hashAsync(f2Elem));
+            }
+
+            List<FileDifference> differences = findDifferences(folder1ElementsByRelPath, folder2ElementsByRelPath,
+                renameDetector, hashingPool, progressHandler);
+            if (createFolder2Manifest) {
+                folder2Manifest = createManifest(scannedFolder2, hashFolder2ForManifest, hashingPool);
+            }
+            return differences;
+        }
     }
 
-    private List<FileDifference> findDifferences(LinkedHashMap<String, FileElement> folder1ElementsByRelPath,
-                                                 LinkedHashMap<String, FileElement> folder2ElementsByRelPath,
-                                                 ProgressHandler progressHandler) {
-        List<FileDifference> differences = new ArrayList<>();
+    /**
+     * Returns the manifest of the second folder that was created by the last call to
+     * {@link #collectDifferences}, if a manifest should be saved according to the configuration.
+     *
+     * @return manifest of the files of the second folder, null if not applicable
+     */
+    public @Nullable FolderManifest getFolder2Manifest() {
+        return folder2Manifest;
+    }
 
-        Map<String, List<FileElement>> unmatchedF1ElementsByHash = new LinkedHashMap<>();
+    /**
+     * Submits all files of the same name that will need to be hashed to the hashing pool, so that they are hashed
+     * in the background while the differences are determined.
+     */
+    private void submitFilesToHash(Map<String, FileElement> folder1ElementsByRelPath,
+                                   Map<String, FileElement> folder2ElementsByRelPath,
+                                   PerDeviceHashingPool hashingPool) {
         folder1ElementsByRelPath.forEach((f1Path, f1Elem) -> {
             FileElement f2Elem = folder2ElementsByRelPath.get(f1Path);
-            if (f2Elem == null) {
-                String f1Hash = createHashOrSizeString(f1Elem);
-                unmatchedF1ElementsByHash.computeIfAbsent(f1Hash, k -> new ArrayList<>()).add(f1Elem);
-            } else if (!filesMatchByConfiguredProperties(f1Elem, f2Elem)) {
-                differences.add(new FileDifference(f1Elem, f2Elem));
+            if (f2Elem != null && !checkSizeAndModificationDate && f1Elem.getSize() == f2Elem.getSize()) {
+                hashingPool.hashAsync(f1Elem);
+                hashingPool.hashAsync(f2Elem);
             }
-            progressHandler.incrementAnalyzedFiles();
         });
+    }
 
-        Map<String, List<FileElement>> unmatchedF2ElementsByHash = new LinkedHashMap<>();
-        folder2ElementsByRelPath.forEach((f2Path, f2Elem) -> {
-            if (!folder1ElementsByRelPath.containsKey(f2Path)) {
-                String f2Hash = createHashOrSizeString(f2Elem);
-                unmatchedF2ElementsByHash.computeIfAbsent(f2Hash, k -> new ArrayList<>()).add(f2Elem);
+    private List<FileDifference> findDifferences(Map<String, FileElement> folder1ElementsByRelPath,
+                                                 Map<String, FileElement> folder2ElementsByRelPath,
+                                                 RenameDetector renameDetector,
+                                                 PerDeviceHashingPool hashingPool,
+                                                 ProgressHandler progressHandler) {
+        List<FileDifference> differences = new ArrayList<>();
+        folder1ElementsByRelPath.forEach((f1Path, f1Elem) -> {
+            FileElement f2Elem = folder2ElementsByRelPath.get(f1Path);
+            if (f2Elem != null && !filesMatchByConfiguredProperties(f1Elem, f2Elem, hashingPool)) {
+                differences.add(new FileDifference(f1Elem, f2Elem));
             }
             progressHandler.incrementAnalyzedFiles();
         });
 
-        unmatchedF1ElementsByHash.forEach((f1Hash, f1Elems) -> {
-            List<FileElement> f2Elems = unmatchedF2ElementsByHash.get(f1Hash);
-            if (f2Elems == null) {
-                f2Elems = Collections.emptyList();
-            }
-
-            Iterator<FileElement> f1It = f1Elems.iterator();
-            Iterator<FileElement> f2It = f2Elems.iterator();
-            while (f1It.hasNext() && f2It.hasNext()) {
-                differences.add(new FileDifference(f1It.next(), f2It.next()));
-            }
-            while (f1It.hasNext()) {
-                differences.add(new FileDifference(f1It.next(), null));
+        Map<FileElement, FileElement> renamedFiles = renameDetector.findRenamedFiles();
+        folder1ElementsByRelPath.forEach((f1Path, f1Elem) -> {
+            if (!folder2ElementsByRelPath.containsKey(f1Path)) {
+                differences.add(new FileDifference(f1Elem, renamedFiles.get(f1Elem)));
             }
-            while (f2It.hasNext()) {
-                differences.add(new FileDifference(null, f2It.next()));
+        });
+        Set<FileElement> renamedF2Elements = Collections.newSetFromMap(new IdentityHashMap<>());
+        renamedF2Elements.addAll(renamedFiles.values());
+        folder2ElementsByRelPath.forEach((f2Path, f2Elem) -> {
+            if (!folder1ElementsByRelPath.containsKey(f2Path) && !renamedF2Elements.contains(f2Elem)) {
+                differences.add(new FileDifference(null, f2Elem));
             }
+            progressHandler.incrementAnalyzedFiles();
         });
         return differences;
     }
 
-    private boolean filesMatchByConfiguredProperties(FileElement f1Elem, FileElement f2Elem) {
+    private RenameDetector createRenameDetector(Map<String, FileElement> folder1ElementsByRelPath,
+                                                Map<String, FileElement> folder2ElementsByRelPath,
+                                                PerDeviceHashingPool hashingPool) {
+        List<FileElement> unmatchedF1Elements = folder1ElementsByRelPath.entrySet().stream()
+            .filter(e -> !folder2ElementsByRelPath.containsKey(e.getKey()))
+            .map(Map.Entry::getValue)
+            .collect(Collectors.toList());
+        List<FileElement> unmatchedF2Elements = folder2ElementsByRelPath.entrySet().stream()
+            .filter(e -> !folder1ElementsByRelPath.containsKey(e.getKey()))
+            .map(Map.Entry::getValue)
+            .collect(Collectors.toList());
+        return new RenameDetector(unmatchedF1Elements, unmatchedF2Elements, !checkSizeAndModificationDate,
+            hashesAvailable, f1Elem -> hashingPool.hashAsync(f1Elem),
+            f2Elem -> hashingPool.hashAsync(f2Elem));
+    }
+
+    private boolean filesMatchByConfiguredProperties(FileElement f1Elem, FileElement f2Elem,
+                                                     PerDeviceHashingPool hashingPool) {
         if (f1Elem.getSize() == f2Elem.getSize()) {
-            if (checkSizeAndModificationDate) {
-                return f1Elem.readLastModifiedTime().equals(f2Elem.readLastModifiedTime());
+            if (checkSizeAndModificationDate || !hashesAvailable) {
+                return f1Elem.getLastModifiedTime().equals(f2Elem.getLastModifiedTime());
             } else {
-                return createHashOrSizeString(f1Elem).equals(createHashOrSizeString(f2Elem));
+                return getHashOrSizeString(f1Elem, hashingPool)
+                    .equals(getHashOrSizeString(f2Elem, hashingPool));
             }
         }
         return false;
     }
 
-    private void process(Path root, Path folder, Map<String, FileElement> elemsByRelativePath,
-                         ProgressHandler progressHandler) {
-        PathUtils.list(folder).forEach(element -> {
-            if (Files.isRegularFile(element)) {
-                FileElement fileElement = new FileElement(root, element);
-                elemsByRelativePath.put(fileElement.getName(), fileElement);
-                progressHandler.incrementScannedFiles();
-            } else if (Files.isDirectory(element)) {
-                process(root, element, elemsByRelativePath, progressHandler);
-            }
+    /**
+     * Creates a manifest with the given folder's files.
+     *
+     * @param scannedFolder the folder to create a manifest for
+     * @param includeHashes whether the hashes of the files should be included (the files must be hashable)
+     * @param hashingPool the hashing pool
+     * @return the manifest
+     */
+    private FolderManifest createManifest(ScannedFolder scannedFolder, boolean includeHashes,
+                                          PerDeviceHashingPool hashingPool) {
+        if (!includeHashes) {
+            return new FolderManifest(scannedFolder.root, null, scannedFolder.elementsByRelPath);
+        }
+
+        Map<String, FileElement> elementsWithHashes = new LinkedHashMap<>();
+        scannedFolder.elementsByRelPath.forEach((name, element) -> {
+            String hash = hashingPool.exceedsMaxSizeForHashing(element)
+                ? null
+                : getHashOrSizeString(element, hashingPool);
+            elementsWithHashes.put(name, new FileElement(scannedFolder.root, name, element.getSize(),
+                element.getLastModifiedTime(), hash));
         });
+        return new FolderManifest(scannedFolder.root, hashAlgorithm.name(), elementsWithHashes);
     }
 
-    private String createHashOrSizeString(FileElement fileElement) {
-        if (maxSizeBytesForHashing > 0 && fileElement.getSize() > maxSizeBytesForHashing) {
-            return "size=" + fileElement.getSize();
+    /**
+     * Collects all files of the given folder (recursively), or loads the files of the manifest if the path is a file.
+     *
+     * @param path the folder to process, or the manifest file to load
+     * @param progressHandler the progress handler to notify for every file
+     * @return the scanned folder
+     */
+    private ScannedFolder scan(Path path, ProgressHandler progressHandler) {
+        if (Files.isDirectory(path)) {
+            return new ScannedFolder(path, process(path, progressHandler), true);
         }
 
-        Path file = fileElement.getFile();
+        FolderManifest manifest;
         try {
-            return fileHasher.calculateHash(file);
+            manifest = FolderManifest.load(path);
         } catch (IOException e) {
-            throw new UncheckedIOException("Failed to hash contents of file '" + file.toAbsolutePath() + "'", e);
+            throw new UncheckedIOException("Failed to read manifest '" + path.toAbsolutePath() + "'", e);
+        }
+        boolean hasUsableHashes = hashAlgorithm.isStableAcrossRuns()
+            && hashAlgorithm.name().equals(manifest.getHashAlgorithm());
+        return new ScannedFolder(manifest.getRoot(), manifest.getElementsByName(), hasUsableHashes);
+    }
+
+    /**
+     * Collects all files in the given folder (recursively).
+     *
+     * @param root the folder to process
+     * @param progressHandler the progress handler to notify for every file
+     * @return all files by their path relative to the root, sorted by path
+     */
+    private Map<String, FileElement> process(Path root, ProgressHandler progressHandler) {
+        Map<String, FileElement> elemsByRelativePath = new ConcurrentSkipListMap<>();
+        Counter scannedBytes = metrics.counter("scan.bytes");
+        fileWalker.walk(root, new FileWalkVisitor<Void>() {
+            @Override
+            public @Nullable Void visitFile(Path file, BasicFileAttributes attributes) {
+                FileElement fileElement = new FileElement(root, file, attributes);
+                elemsByRelativePath.put(fileElement.getName(), fileElement);
+                scannedBytes.add(attributes.size());
+                progressHandler.incrementScannedFiles();
+                return null;
+            }
+
+            @Override
+            public @Nullable Void visitDirectory(Path directory, BasicFileAttributes attributes,
+                                                 List<Void> childResults) {
+                return null;
+            }
+        });
+        return elemsByRelativePath;
+    }
+
+    private static String getHashOrSizeString(FileElement fileElement, PerDeviceHashingPool hashingPool) {
+        return ConcurrencyUtils.join(hashingPool.hashAsync(fileElement));
+    }
+
+    private static final class ScannedFolder {
+
+        /** The folder the files are in (for manifests: the folder the manifest was created from). */
+        private final Path root;
+        private final Map<String, FileElement> elementsByRelPath;
+        /** Whether the hash of the files can be determined. */
+        private final boolean hasHashes;
+
+        ScannedFolder(Path root, Map<String, FileElement> elementsByRelPath, boolean hasHashes) {
+            this.root = root;
+            this.elementsByRelPath = elementsByRelPath;
+            this.hasHashes = hasHashes;
         }
     }
 
     private static final class ProgressHandler {
 
         private final FolderDiffProgressCallback folderDiffProgressCallback;
+        private final Counter scannedFiles;
+        private final Counter analyzedFiles;
 
         /**
          * Constructor.
          *
          * @param folderDiffProgressCallback progress callback to use
+         * @param metrics the metrics to count the files in
          */
-        ProgressHandler(FolderDiffProgressCallback folderDiffProgressCallback) {
+        ProgressHandler(FolderDiffProgressCallback folderDiffProgressCallback, RunMetrics metrics) {
             this.folderDiffProgressCallback = folderDiffProgressCallback;
+            this.scannedFiles = metrics.counter("scan.files");
+            this.analyzedFiles = metrics.counter("compare.files");
         }
 
         void incrementScannedFiles() {
+            scannedFiles.increment();
             folderDiffProgressCallback.notifyScanProgress();
         }
 
         void incrementAnalyzedFiles() {
+            analyzedFiles.increment();
             folderDiffProgressCallback.notifyAnalysisProgress();
         }
     }
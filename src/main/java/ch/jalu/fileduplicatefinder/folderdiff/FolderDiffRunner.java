@@ -1,7 +1,13 @@
 package ch.jalu.fileduplicatefinder.folderdiff;
 
 import ch.jalu.fileduplicatefinder.config.FileUtilConfiguration;
+import ch.jalu.fileduplicatefinder.hashing.CachingFileHasher;
+import ch.jalu.fileduplicatefinder.hashing.FileHasher;
 import ch.jalu.fileduplicatefinder.hashing.FileHasherFactory;
+import ch.jalu.fileduplicatefinder.hashing.FileReadMode;
+import ch.jalu.fileduplicatefinder.hashing.HashingAlgorithm;
+import ch.jalu.fileduplicatefinder.metrics.MetricsOutputter;
+import ch.jalu.fileduplicatefinder.metrics.RunMetrics;
 import ch.jalu.fileduplicatefinder.output.WriterReader;
 import ch.jalu.fileduplicatefinder.utils.ConsoleProgressListener;
 import ch.jalu.fileduplicatefinder.utils.PathUtils;
@@ -9,6 +15,7 @@ import com.google.common.annotations.VisibleForTesting;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -19,7 +26,12 @@ import java.util.stream.Collectors;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DIFF_FILES_PROCESSED_INTERVAL;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DIFF_FOLDER1;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DIFF_FOLDER2;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DIFF_MANIFEST_INCLUDE_HASHES;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DIFF_MANIFEST_OUTPUT;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DIFF_USE_SMART_FOLDER_PREFIXES;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_ALGORITHM;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_READ_MODE;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_USE_CACHE;
 import static com.google.common.base.MoreObjects.firstNonNull;
 
 public class FolderDiffRunner {
@@ -41,13 +53,78 @@ public class FolderDiffRunner {
         Path folder1 = configuration.getValueOrPrompt(DIFF_FOLDER1);
         Path folder2 = configuration.getValueOrPrompt(DIFF_FOLDER2);
 
+        HashingAlgorithm hashAlgorithm = configuration.getValue(DUPLICATE_HASH_ALGORITHM);
+        FileReadMode readMode = configuration.getValue(DUPLICATE_HASH_READ_MODE);
+        CachingFileHasher hashCache = createHashCacheIfEnabled(hashAlgorithm, readMode);
+        FileHasher fileHasher = hashCache == null
+            ? fileHasherFactory.createFileHasher(hashAlgorithm, readMode)
+            : hashCache;
+
+        if (configuration.getValue(DIFF_MANIFEST_OUTPUT).isPresent()
+            && configuration.getValue(DIFF_MANIFEST_INCLUDE_HASHES) && !hashAlgorithm.isStableAcrossRuns()) {
+            logger.printLn("Saving the manifest without hashes: hashes of " + hashAlgorithm
+                + " are not stable across runs");
+        }
+
         int notificationInterval = configuration.getValue(DIFF_FILES_PROCESSED_INTERVAL);
-        List<FileDifference> differences = new FolderDiffAnalyzer(folder1, folder2, configuration, fileHasherFactory)
-            .collectDifferences(new ProgressUpdater(notificationInterval));
+        RunMetrics metrics = new RunMetrics();
+        FolderDiffAnalyzer analyzer = new FolderDiffAnalyzer(folder1, folder2, configuration, fileHasher, metrics);
+        List<FileDifference> differences = analyzer.collectDifferences(new ProgressUpdater(notificationInterval));
 
         System.out.println();
         System.out.println();
-        outputDifferences(folder1, folder2, differences);
+        try (RunMetrics.Stage ignored = metrics.startStage("output")) {
+            outputDifferences(folder1, folder2, differences);
+        }
+        if (hashCache != null) {
+            saveHashCache(hashCache);
+        }
+        configuration.getValue(DIFF_MANIFEST_OUTPUT).ifPresent(manifestFile ->
+            saveManifest(analyzer.getFolder2Manifest(), manifestFile));
+        new MetricsOutputter(configuration, logger).output(metrics);
+    }
+
+    private @Nullable CachingFileHasher createHashCacheIfEnabled(HashingAlgorithm hashAlgorithm,
+                                                                 FileReadMode readMode) {
+        if (!configuration.getValue(DUPLICATE_HASH_USE_CACHE)) {
+            return null;
+        } else if (!hashAlgorithm.isStableAcrossRuns()) {
+            logger.printLn("Not using the hash cache: hashes of " + hashAlgorithm + " are not stable across runs");
+            return null;
+        }
+
+        Path cacheFile = configuration.getConfigFile().resolveSibling(CachingFileHasher.CACHE_FILE_NAME);
+        CachingFileHasher hashCache = fileHasherFactory.createCachingFileHasher(hashAlgorithm, readMode, cacheFile);
+        try {
+            hashCache.loadCache();
+        } catch (IOException e) {
+            logger.printError("Could not read the hash cache, starting with an empty one: " + e.getMessage());
+        }
+        return hashCache;
+    }
+
+    private void saveHashCache(CachingFileHasher hashCache) {
+        logger.printLn("Hash cache: " + hashCache.getHitCount() + " hits, " + hashCache.getMissCount() + " misses");
+        try {
+            hashCache.saveCache();
+        } catch (IOException e) {
+            logger.printError("Could not save the hash cache to '" + hashCache.getCacheFile().toAbsolutePath()
+                + "': " + e.getMessage());
+        }
+    }
+
+    private void saveManifest(@Nullable FolderManifest manifest, Path manifestFile) {
+        if (manifest == null) {
+            return;
+        }
+        try {
+            manifest.save(manifestFile);
+            logger.printLn("Saved manifest of folder2 (" + manifest.getElementsByName().size() + " files) to '"
+                + manifestFile.toAbsolutePath() + "'");
+        } catch (IOException e) {
+            logger.printError("Could not save the manifest to '" + manifestFile.toAbsolutePath() + "': "
+                + e.getMessage());
+        }
     }
 
     private void outputDifferences(Path folder1, Path folder2, List<FileDifference> differences) {
@@ -0,0 +1,162 @@
+package ch.jalu.fileduplicatefinder.folderdiff;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Snapshot of the files of a folder: the relative path, size and modification date of every file, and optionally
+ * the file's hash. A manifest can be saved to a compact binary file and be compared with a folder or another manifest
+ * later on, without needing access to the folder it was created from.
+ * <p>
+ * File format: a header with a magic number, the format version, the path of the folder the manifest was created
+ * from, the hash algorithm (empty if there are no hashes) and the number of files. This is followed by the files,
+ * sorted by path. The path of each file is saved as the number of leading characters it shares with the previous
+ * path and the remaining characters, so that files in the same folder don't repeat the folder's path.
+ */
+public class FolderManifest {
+
+    private static final int MAGIC = 0x4A46554D; // "JFUM"
+    private static final int VERSION = 1;
+    private static final char SEPARATOR = '/';
+
+    private final Path root;
+    @Nullable
+    private final String hashAlgorithm;
+    private final SortedMap<String, FileElement> elementsByName;
+
+    /**
+     * Constructor.
+     *
+     * @param root the folder the manifest is created from
+     * @param hashAlgorithm the name of the algorithm the hashes were created with, null if the manifest has no hashes
+     * @param elementsByName the files by path relative to the root
+     */
+    public FolderManifest(Path root, @Nullable String hashAlgorithm, Map<String, FileElement> elementsByName) {
+        this.root = root;
+        this.hashAlgorithm = hashAlgorithm;
+        this.elementsByName = Collections.unmodifiableSortedMap(new TreeMap<>(elementsByName));
+    }
+
+    /**
+     * Loads a manifest from the given file.
+     *
+     * @param file the manifest file to read
+     * @return the manifest
+     * @throws IOException if the file could not be read or is not a manifest
+     */
+    public static FolderManifest load(Path file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("File '" + file.toAbsolutePath() + "' is not a folder manifest");
+            }
+            int version = input.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported manifest version " + version + " in '"
+                    + file.toAbsolutePath() + "'");
+            }
+
+            Path root = Paths.get(input.readUTF());
+            String hashAlgorithm = input.readUTF();
+            boolean hasHashes = !hashAlgorithm.isEmpty();
+            int totalFiles = input.readInt();
+
+            Map<String, FileElement> elementsByName = new TreeMap<>();
+            String previousName = "";
+            for (int i = 0; i < totalFiles; ++i) {
+                int sharedPrefixLength = input.readUnsignedShort();
+                String storedName = previousName.substring(0, sharedPrefixLength) + input.readUTF();
+                long size = input.readLong();
+                FileTime lastModified = FileTime.from(Instant.ofEpochSecond(input.readLong(), input.readInt()));
+                String hash = hasHashes ? input.readUTF() : "";
+
+                String name = storedName.replace(SEPARATOR, File.separatorChar);
+                elementsByName.put(name,
+                    new FileElement(root, name, size, lastModified, hash.isEmpty() ? null : hash));
+                previousName = storedName;
+            }
+            return new FolderManifest(root, hasHashes ? hashAlgorithm : null, elementsByName);
+        }
+    }
+
+    /**
+     * Saves this manifest to the given file. The manifest is first written to a temporary file, so that an existing
+     * manifest is only replaced once the new one has been written successfully.
+     *
+     * @param file the file to write to
+     * @throws IOException if the file could not be written
+     */
+    public void save(Path file) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream output =
+                 new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+            output.writeUTF(root.toAbsolutePath().normalize().toString());
+            output.writeUTF(hashAlgorithm == null ? "" : hashAlgorithm);
+            output.writeInt(elementsByName.size());
+
+            String previousName = "";
+            for (FileElement element : elementsByName.values()) {
+                String name = element.getName().replace(File.separatorChar, SEPARATOR);
+                int sharedPrefixLength = getSharedPrefixLength(previousName, name);
+                output.writeShort(sharedPrefixLength);
+                output.writeUTF(name.substring(sharedPrefixLength));
+                output.writeLong(element.getSize());
+                Instant lastModified = element.getLastModifiedTime().toInstant();
+                output.writeLong(lastModified.getEpochSecond());
+                output.writeInt(lastModified.getNano());
+                if (hashAlgorithm != null) {
+                    output.writeUTF(element.getHash() == null ? "" : element.getHash());
+                }
+                previousName = name;
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @return the folder the manifest was created from
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * @return the name of the hash algorithm of the files' hashes, null if the manifest has no hashes
+     */
+    public @Nullable String getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    /**
+     * @return all files by path relative to the root, sorted by path
+     */
+    public SortedMap<String, FileElement> getElementsByName() {
+        return elementsByName;
+    }
+
+    private static int getSharedPrefixLength(String previous, String current) {
+        int maxLength = Math.min(Math.min(previous.length(), current.length()), 0xFFFF);
+        int length = 0;
+        while (length < maxLength && previous.charAt(length) == current.charAt(length)) {
+            ++length;
+        }
+        return length;
+    }
+}
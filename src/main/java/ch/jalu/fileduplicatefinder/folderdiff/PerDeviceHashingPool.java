@@ -0,0 +1,105 @@
+package ch.jalu.fileduplicatefinder.folderdiff;
+
+import ch.jalu.fileduplicatefinder.hashing.FileHasher;
+import ch.jalu.fileduplicatefinder.metrics.Counter;
+import ch.jalu.fileduplicatefinder.metrics.Histogram;
+import ch.jalu.fileduplicatefinder.metrics.RunMetrics;
+import ch.jalu.fileduplicatefinder.utils.DeviceIoScheduler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hashes files on worker threads, with a separate pool of threads for each device (file store), as provided by
+ * {@link DeviceIoScheduler}. This way, a slow device does not hold up the hashing of files on another device, and
+ * the number of concurrent reads on one device can be limited independently of how many devices are involved.
+ * <p>
+ * Every file is hashed at most once: the hash of a file is kept as a future and returned again when it is requested
+ * another time. An instance is meant to be used for one run and must be closed afterwards.
+ */
+class PerDeviceHashingPool implements AutoCloseable {
+
+    /** All files are hashed with the same priority, i.e. the waiting files of a device are read by path. */
+    private static final long HASH_PRIORITY = 0;
+
+    private final FileHasher fileHasher;
+    private final long maxSizeBytesForHashing;
+    private final DeviceIoScheduler scheduler;
+    private final Counter hashedFiles;
+    private final Counter hashedBytes;
+    private final Histogram hashLatency;
+
+    private final Map<Path, CompletableFuture<String>> hashesByFile = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param fileHasher the file hasher to use
+     * @param maxSizeBytesForHashing max file size to hash (files that are larger are only identified by their size);
+     *                               0 or negative for no limit
+     * @param threadsPerDevice number of threads per device (0 to have as many threads as processors)
+     * @param metrics the metrics to record the hashed files in
+     */
+    PerDeviceHashingPool(FileHasher fileHasher, long maxSizeBytesForHashing, int threadsPerDevice,
+                         RunMetrics metrics) {
+        this.fileHasher = fileHasher;
+        this.maxSizeBytesForHashing = maxSizeBytesForHashing;
+        this.scheduler = new DeviceIoScheduler(threadsPerDevice, 0, "diff-hash",
+            metrics.histogram("compare.hashQueueDepth"));
+        this.hashedFiles = metrics.counter("compare.hashedFiles");
+        this.hashedBytes = metrics.counter("compare.hashedBytes");
+        this.hashLatency = metrics.histogram("compare.hashLatencyMicros");
+    }
+
+    /**
+     * Returns the hash of the given file, or a text with its size if the file is too large to be hashed. The file is
+     * hashed on the worker threads of its device, unless it has already been requested before, in which case the
+     * same future is returned. For files from a manifest, the saved hash is returned.
+     *
+     * @param fileElement the file to hash
+     * @return future with the hash or size text
+     */
+    CompletableFuture<String> hashAsync(FileElement fileElement) {
+        if (exceedsMaxSizeForHashing(fileElement)) {
+            return CompletableFuture.completedFuture("size=" + fileElement.getSize());
+        } else if (fileElement.isFromManifest()) {
+            String hash = fileElement.getHash();
+            return CompletableFuture.completedFuture(hash == null ? "size=" + fileElement.getSize() : hash);
+        }
+
+        return hashesByFile.computeIfAbsent(fileElement.getFile(),
+            file -> scheduler.supplyAsync(file, HASH_PRIORITY, () -> calculateHash(file, fileElement.getSize())));
+    }
+
+    /**
+     * Returns whether the given file is too large to be hashed, i.e. whether it is only identified by its size.
+     *
+     * @param fileElement the file to check
+     * @return true if the file is not hashed, false otherwise
+     */
+    boolean exceedsMaxSizeForHashing(FileElement fileElement) {
+        return maxSizeBytesForHashing > 0 && fileElement.getSize() > maxSizeBytesForHashing;
+    }
+
+    @Override
+    public void close() {
+        scheduler.close();
+    }
+
+    private String calculateHash(Path file, long size) {
+        try {
+            long start = System.nanoTime();
+            String hash = fileHasher.calculateHash(file);
+            hashLatency.record((System.nanoTime() - start) / 1000);
+            hashedFiles.increment();
+            hashedBytes.add(size);
+            return hash;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to hash contents of file '" + file.toAbsolutePath() + "'", e);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package ch.jalu.fileduplicatefinder.folderdiff;
+
+import ch.jalu.fileduplicatefinder.utils.ConcurrencyUtils;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Finds renamed (or moved) files among the files that only exist in one of the two folders.
+ * <p>
+ * Files are only hashed if there is a candidate on the other side: all files are first bucketed by size, and files
+ * whose size only occurs on one side are added or removed files without any I/O. Of the remaining files:
+ * <ul>
+ *   <li>When comparing by contents, the files of each size are hashed and files with the same hash are paired.</li>
+ *   <li>Otherwise, files with the same size and modification date are considered to be the same file. Of the files
+ *       that are still unpaired, files with the same size and file name (i.e. moved files whose modification date
+ *       changed) are hashed to confirm that they are the same, if hashes are available.</li>
+ * </ul>
+ * Within a bucket, files with the same file name are paired first.
+ */
+class RenameDetector {
+
+    private final Function<FileElement, CompletableFuture<String>> folder1Hasher;
+    private final Function<FileElement, CompletableFuture<String>> folder2Hasher;
+
+    private final Map<FileElement, FileElement> renamedFiles = new IdentityHashMap<>();
+    private final Set<FileElement> pairedF2Elements = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<Bucket> bucketsToHash = new ArrayList<>();
+
+    /**
+     * Constructor. Determines the renamed files that can be found without hashing, and the files that need to be
+     * hashed for the others.
+     *
+     * @param unmatchedF1Elements files of folder 1 that have no file with the same name in folder 2
+     * @param unmatchedF2Elements files of folder 2 that have no file with the same name in folder 1
+     * @param compareContents true if renamed files must have the same contents, false if the same size and
+     *                        modification date suffice
+     * @param hashesAvailable whether the files of both folders can be hashed
+     * @param folder1Hasher function to get the hash of a file of folder 1
+     * @param folder2Hasher function to get the hash of a file of folder 2
+     */
+    RenameDetector(List<FileElement> unmatchedF1Elements, List<FileElement> unmatchedF2Elements,
+                   boolean compareContents, boolean hashesAvailable,
+                   Function<FileElement, CompletableFuture<String>> folder1Hasher,
+                   Function<FileElement, CompletableFuture<String>> folder2Hasher) {
+        this.folder1Hasher = folder1Hasher;
+        this.folder2Hasher = folder2Hasher;
+
+        Map<Long, Bucket> bucketsBySize = groupBySize(unmatchedF1Elements, unmatchedF2Elements);
+        if (compareContents && hashesAvailable) {
+            bucketsToHash.addAll(bucketsBySize.values());
+        } else {
+            for (Bucket sizeBucket : bucketsBySize.values()) {
+                pairBySizeAndModificationDate(sizeBucket, hashesAvailable);
+            }
+        }
+    }
+
+    /**
+     * Submits all files that need to be hashed to the hashing functions, so that they can be hashed in the
+     * background.
+     */
+    void submitFilesToHash() {
+        for (Bucket bucket : bucketsToHash) {
+            bucket.f1Elements.forEach(folder1Hasher::apply);
+            bucket.f2Elements.forEach(folder2Hasher::apply);
+        }
+    }
+
+    /**
+     * Returns the renamed files, waiting for the required hashes.
+     *
+     * @return the files of folder 2 by the file of folder 1 they were renamed from
+     */
+    Map<FileElement, FileElement> findRenamedFiles() {
+        for (Bucket bucket : bucketsToHash) {
+            Map<String, Bucket> bucketsByHash = new LinkedHashMap<>();
+            for (FileElement f1Elem : bucket.f1Elements) {
+                String hash = ConcurrencyUtils.join(folder1Hasher.apply(f1Elem));
+                bucketsByHash.computeIfAbsent(hash, k -> new Bucket()).f1Elements.add(f1Elem);
+            }
+            for (FileElement f2Elem : bucket.f2Elements) {
+                Bucket hashBucket = bucketsByHash.get(ConcurrencyUtils.join(folder2Hasher.apply(f2Elem)));
+                if (hashBucket != null) {
+                    hashBucket.f2Elements.add(f2Elem);
+                }
+            }
+            bucketsByHash.values().forEach(this::pairUp);
+        }
+        bucketsToHash.clear();
+        return renamedFiles;
+    }
+
+    private static Map<Long, Bucket> groupBySize(List<FileElement> unmatchedF1Elements,
+                                                 List<FileElement> unmatchedF2Elements) {
+        Map<Long, Bucket> bucketsBySize = new LinkedHashMap<>();
+        for (FileElement f1Elem : unmatchedF1Elements) {
+            bucketsBySize.computeIfAbsent(f1Elem.getSize(), k -> new Bucket()).f1Elements.add(f1Elem);
+        }
+        for (FileElement f2Elem : unmatchedF2Elements) {
+            Bucket bucket = bucketsBySize.get(f2Elem.getSize());
+            if (bucket != null) {
+                bucket.f2Elements.add(f2Elem);
+            }
+        }
+        bucketsBySize.values().removeIf(bucket -> bucket.f2Elements.isEmpty());
+        return bucketsBySize;
+    }
+
+    private void pairBySizeAndModificationDate(Bucket sizeBucket, boolean hashesAvailable) {
+        Map<FileTime, Bucket> bucketsByModificationDate = new LinkedHashMap<>();
+        sizeBucket.f1Elements.forEach(f1Elem -> bucketsByModificationDate
+            .computeIfAbsent(f1Elem.getLastModifiedTime(), k -> new Bucket()).f1Elements.add(f1Elem));
+        sizeBucket.f2Elements.forEach(f2Elem -> {
+            Bucket bucket = bucketsByModificationDate.get(f2Elem.getLastModifiedTime());
+            if (bucket != null) {
+                bucket.f2Elements.add(f2Elem);
+            }
+        });
+        bucketsByModificationDate.values().forEach(this::pairUp);
+
+        if (hashesAvailable) {
+            Map<Path, Bucket> remainingByFileName = new LinkedHashMap<>();
+            sizeBucket.f1Elements.stream()
+                .filter(f1Elem -> !renamedFiles.containsKey(f1Elem))
+                .forEach(f1Elem -> remainingByFileName
+                    .computeIfAbsent(getFileName(f1Elem), k -> new Bucket()).f1Elements.add(f1Elem));
+            sizeBucket.f2Elements.stream()
+                .filter(f2Elem -> !pairedF2Elements.contains(f2Elem))
+                .forEach(f2Elem -> {
+                    Bucket bucket = remainingByFileName.get(getFileName(f2Elem));
+                    if (bucket != null) {
+                        bucket.f2Elements.add(f2Elem);
+                    }
+                });
+            remainingByFileName.values().stream()
+                .filter(bucket -> !bucket.f2Elements.isEmpty())
+                .forEach(bucketsToHash::add);
+        }
+    }
+
+    /**
+     * Pairs the files of the bucket with each other, preferring files with the same file name.
+     */
+    private void pairUp(Bucket bucket) {
+        Map<Path, Deque<FileElement>> f2ElementsByFileName = new HashMap<>();
+        bucket.f2Elements.forEach(f2Elem -> f2ElementsByFileName
+            .computeIfAbsent(getFileName(f2Elem), k -> new ArrayDeque<>()).add(f2Elem));
+
+        List<FileElement> f1Remaining = new ArrayList<>();
+        for (FileElement f1Elem : bucket.f1Elements) {
+            Deque<FileElement> f2ElementsWithSameName = f2ElementsByFileName.get(getFileName(f1Elem));
+            if (f2ElementsWithSameName == null || f2ElementsWithSameName.isEmpty()) {
+                f1Remaining.add(f1Elem);
+            } else {
+                addRenamedFile(f1Elem, f2ElementsWithSameName.poll());
+            }
+        }
+
+        Iterator<FileElement> f1It = f1Remaining.iterator();
+        Iterator<FileElement> f2It = bucket.f2Elements.stream()
+            .filter(f2Elem -> !pairedF2Elements.contains(f2Elem))
+            .iterator();
+        while (f1It.hasNext() && f2It.hasNext()) {
+            addRenamedFile(f1It.next(), f2It.next());
+        }
+    }
+
+    private void addRenamedFile(FileElement f1Elem, FileElement f2Elem) {
+        renamedFiles.put(f1Elem, f2Elem);
+        pairedF2Elements.add(f2Elem);
+    }
+
+    private static Path getFileName(FileElement element) {
+        return element.getFile().getFileName();
+    }
+
+    private static final class Bucket {
+        private final List<FileElement> f1Elements = new ArrayList<>();
+        private final List<FileElement> f2Elements = new ArrayList<>();
+    }
+}
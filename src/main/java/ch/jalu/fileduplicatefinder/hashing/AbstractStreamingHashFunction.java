@@ -0,0 +1,183 @@
+package ch.jalu.fileduplicatefinder.hashing;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/**
+ * Base class to implement Guava's {@link HashFunction} for hash algorithms that process a stream of bytes. Guava's
+ * own base classes for this are not public. Primitive values are passed to the hasher in little-endian order, as
+ * Guava's hash functions do.
+ */
+abstract class AbstractStreamingHashFunction implements HashFunction {
+
+    @Override
+    public abstract StreamingHasher newHasher();
+
+    @Override
+    public Hasher newHasher(int expectedInputSize) {
+        Preconditions.checkArgument(expectedInputSize >= 0,
+            "expectedInputSize must be >= 0 but was %s", expectedInputSize);
+        return newHasher();
+    }
+
+    @Override
+    public HashCode hashInt(int input) {
+        return newHasher().putInt(input).hash();
+    }
+
+    @Override
+    public HashCode hashLong(long input) {
+        return newHasher().putLong(input).hash();
+    }
+
+    @Override
+    public HashCode hashBytes(byte[] input) {
+        return newHasher().putBytes(input).hash();
+    }
+
+    @Override
+    public HashCode hashBytes(byte[] input, int off, int len) {
+        return newHasher().putBytes(input, off, len).hash();
+    }
+
+    @Override
+    public HashCode hashBytes(ByteBuffer input) {
+        return newHasher().putBytes(input).hash();
+    }
+
+    @Override
+    public HashCode hashUnencodedChars(CharSequence input) {
+        return newHasher().putUnencodedChars(input).hash();
+    }
+
+    @Override
+    public HashCode hashString(CharSequence input, Charset charset) {
+        return newHasher().putString(input, charset).hash();
+    }
+
+    @Override
+    public <T> HashCode hashObject(T instance, Funnel<? super T> funnel) {
+        return newHasher().putObject(instance, funnel).hash();
+    }
+
+    /**
+     * Hasher which passes all data as bytes to {@link #update(ByteBuffer)}. Not thread-safe.
+     */
+    abstract static class StreamingHasher implements Hasher {
+
+        private final ByteBuffer scratch = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        /**
+         * Processes all remaining bytes of the given buffer. The buffer's position is set to its limit.
+         *
+         * @param input the bytes to process
+         */
+        protected abstract void update(ByteBuffer input);
+
+        /**
+         * Returns the hash of all bytes that were processed. May only be called once.
+         *
+         * @return the hash
+         */
+        protected abstract HashCode digest();
+
+        @Override
+        public Hasher putByte(byte b) {
+            scratch.clear();
+            return putScratch(scratch.put(b));
+        }
+
+        @Override
+        public Hasher putBytes(byte[] bytes) {
+            return putBytes(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public Hasher putBytes(byte[] bytes, int off, int len) {
+            update(ByteBuffer.wrap(bytes, off, len));
+            return this;
+        }
+
+        @Override
+        public Hasher putBytes(ByteBuffer bytes) {
+            update(bytes);
+            return this;
+        }
+
+        @Override
+        public Hasher putShort(short s) {
+            scratch.clear();
+            return putScratch(scratch.putShort(s));
+        }
+
+        @Override
+        public Hasher putInt(int i) {
+            scratch.clear();
+            return putScratch(scratch.putInt(i));
+        }
+
+        @Override
+        public Hasher putLong(long l) {
+            scratch.clear();
+            return putScratch(scratch.putLong(l));
+        }
+
+        @Override
+        public Hasher putFloat(float f) {
+            return putInt(Float.floatToRawIntBits(f));
+        }
+
+        @Override
+        public Hasher putDouble(double d) {
+            return putLong(Double.doubleToRawLongBits(d));
+        }
+
+        @Override
+        public Hasher putBoolean(boolean b) {
+            return putByte(b ? (byte) 1 : (byte) 0);
+        }
+
+        @Override
+        public Hasher putChar(char c) {
+            scratch.clear();
+            return putScratch(scratch.putChar(c));
+        }
+
+        @Override
+        public Hasher putUnencodedChars(CharSequence charSequence) {
+            for (int i = 0; i < charSequence.length(); ++i) {
+                putChar(charSequence.charAt(i));
+            }
+            return this;
+        }
+
+        @Override
+        public Hasher putString(CharSequence charSequence, Charset charset) {
+            return putBytes(charSequence.toString().getBytes(charset));
+        }
+
+        @Override
+        public <T> Hasher putObject(T instance, Funnel<? super T> funnel) {
+            funnel.funnel(instance, this);
+            return this;
+        }
+
+        @Override
+        public HashCode hash() {
+            return digest();
+        }
+
+        private Hasher putScratch(ByteBuffer buffer) {
+            buffer.flip();
+            update(buffer);
+            return this;
+        }
+    }
+}
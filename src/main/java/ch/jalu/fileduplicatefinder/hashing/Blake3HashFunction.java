@@ -0,0 +1,325 @@
+package ch.jalu.fileduplicatefinder.hashing;
+
+import com.google.common.hash.HashCode;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Pure Java implementation of the BLAKE3 hash function with the default 256-bit output (hash mode, no key).
+ * The hashes are the same as the output of {@code b3sum}.
+ * <p>
+ * This is a straightforward port of the BLAKE3 reference implementation: blocks are compressed one after the other,
+ * without SIMD parallelism across chunks.
+ */
+final class Blake3HashFunction extends AbstractStreamingHashFunction {
+
+    /** BLAKE3 with 256 bits. */
+    static final Blake3HashFunction BLAKE3 = new Blake3HashFunction();
+
+    private static final int OUTPUT_BYTES = 32;
+    private static final int BLOCK_LEN = 64;
+    private static final int CHUNK_LEN = 1024;
+    private static final int MAX_DEPTH = 54;
+
+    private static final int CHUNK_START = 1;
+    private static final int CHUNK_END = 1 << 1;
+    private static final int PARENT = 1 << 2;
+    private static final int ROOT = 1 << 3;
+
+    private static final int[] IV = {
+        0x6A09E667, 0xBB67AE85, 0x3C6EF372, 0xA54FF53A, 0x510E527F, 0x9B05688C, 0x1F83D9AB, 0x5BE0CD19
+    };
+
+    private Blake3HashFunction() {
+    }
+
+    @Override
+    public StreamingHasher newHasher() {
+        return new Blake3Hasher();
+    }
+
+    @Override
+    public int bits() {
+        return OUTPUT_BYTES * 8;
+    }
+
+    @Override
+    public String toString() {
+        return "Blake3HashFunction";
+    }
+
+    private static final class Blake3Hasher extends StreamingHasher {
+
+        // Chaining values of completed subtrees, merged as soon as a subtree is complete
+        private final int[][] cvStack = new int[MAX_DEPTH][];
+        private int cvStackSize;
+
+        // Current chunk
+        private final int[] chunkCv = IV.clone();
+        private long chunkCounter;
+        private int blocksCompressed;
+        private final byte[] block = new byte[BLOCK_LEN];
+        private final ByteBuffer blockView = ByteBuffer.wrap(block).order(ByteOrder.LITTLE_ENDIAN);
+        private int blockLength;
+
+        private final int[] blockWords = new int[16];
+
+        @Override
+        protected void update(ByteBuffer input) {
+            ByteBuffer data = input.slice().order(ByteOrder.LITTLE_ENDIAN);
+            while (data.hasRemaining()) {
+                // Only compress a full block if more input follows: the last block of a chunk is compressed with
+                // different flags, and the very last block of the input is only compressed when the digest is created
+                if (blockLength == BLOCK_LEN) {
+                    if (blocksCompressed == CHUNK_LEN / BLOCK_LEN - 1) {
+                        finishChunk();
+                    } else {
+                        readWords(blockView, 0, blockWords);
+                        compressBlock(blockWords);
+                    }
+                    blockLength = 0;
+                }
+
+                if (blockLength == 0 && data.remaining() > BLOCK_LEN
+                        && blocksCompressed < CHUNK_LEN / BLOCK_LEN - 1) {
+                    readWords(data, data.position(), blockWords);
+                    data.position(data.position() + BLOCK_LEN);
+                    compressBlock(blockWords);
+                } else {
+                    int toCopy = Math.min(BLOCK_LEN - blockLength, data.remaining());
+                    data.get(block, blockLength, toCopy);
+                    blockLength += toCopy;
+                }
+            }
+            input.position(input.limit());
+        }
+
+        @Override
+        protected HashCode digest() {
+            // Output of the current chunk, then merged with all subtrees on the stack from right to left
+            for (int i = blockLength; i < BLOCK_LEN; ++i) {
+                block[i] = 0;
+            }
+            int[] inputCv = chunkCv;
+            int[] words = readWords(blockView, 0, new int[16]);
+            long counter = chunkCounter;
+            int length = blockLength;
+            int flags = (blocksCompressed == 0 ? CHUNK_START : 0) | CHUNK_END;
+
+            for (int i = cvStackSize - 1; i >= 0; --i) {
+                int[] cv = chainingValue(compress(inputCv, words, counter, length, flags));
+                words = parentBlock(cvStack[i], cv);
+                inputCv = IV;
+                counter = 0;
+                length = BLOCK_LEN;
+                flags = PARENT;
+            }
+
+            int[] output = compress(inputCv, words, counter, length, flags | ROOT);
+            ByteBuffer hash = ByteBuffer.allocate(OUTPUT_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < OUTPUT_BYTES / Integer.BYTES; ++i) {
+                hash.putInt(output[i]);
+            }
+            return HashCode.fromBytes(hash.array());
+        }
+
+        private void compressBlock(int[] words) {
+            int flags = blocksCompressed == 0 ? CHUNK_START : 0;
+            int[] state = compress(chunkCv, words, chunkCounter, BLOCK_LEN, flags);
+            System.arraycopy(state, 0, chunkCv, 0, 8);
+            ++blocksCompressed;
+        }
+
+        /**
+         * Compresses the last block of the current chunk (which is full), adds the chunk to the tree and starts
+         * a new chunk.
+         */
+        private void finishChunk() {
+            readWords(blockView, 0, blockWords);
+            int[] cv = chainingValue(compress(chunkCv, blockWords, chunkCounter, BLOCK_LEN, CHUNK_END));
+
+            // Merge completed subtrees: the number of trailing zero bits of the total chunks is the number of merges
+            long totalChunks = chunkCounter + 1;
+            while ((totalChunks & 1) == 0) {
+                cv = chainingValue(compress(IV, parentBlock(cvStack[--cvStackSize], cv), 0, BLOCK_LEN, PARENT));
+                totalChunks >>= 1;
+            }
+            cvStack[cvStackSize++] = cv;
+
+            System.arraycopy(IV, 0, chunkCv, 0, 8);
+            ++chunkCounter;
+            blocksCompressed = 0;
+        }
+    }
+
+    /**
+     * BLAKE3 compression function. The state and the message words are kept in local variables, which is
+     * considerably faster than working on arrays.
+     *
+     * @return the 16 words of the compression output (the first 8 words are the chaining value)
+     */
+    private static int[] compress(int[] cv, int[] m, long counter, int blockLength, int flags) {
+        int s0 = cv[0];
+        int s1 = cv[1];
+        int s2 = cv[2];
+        int s3 = cv[3];
+        int s4 = cv[4];
+        int s5 = cv[5];
+        int s6 = cv[6];
+        int s7 = cv[7];
+        int s8 = IV[0];
+        int s9 = IV[1];
+        int s10 = IV[2];
+        int s11 = IV[3];
+        int s12 = (int) counter;
+        int s13 = (int) (counter >>> 32);
+        int s14 = blockLength;
+        int s15 = flags;
+
+        int m0 = m[0];
+        int m1 = m[1];
+        int m2 = m[2];
+        int m3 = m[3];
+        int m4 = m[4];
+        int m5 = m[5];
+        int m6 = m[6];
+        int m7 = m[7];
+        int m8 = m[8];
+        int m9 = m[9];
+        int m10 = m[10];
+        int m11 = m[11];
+        int m12 = m[12];
+        int m13 = m[13];
+        int m14 = m[14];
+        int m15 = m[15];
+
+        for (int round = 0; round < 7; ++round) {
+            // Columns
+            s0 += s4 + m0;
+            s12 = Integer.rotateRight(s12 ^ s0, 16);
+            s8 += s12;
+            s4 = Integer.rotateRight(s4 ^ s8, 12);
+            s0 += s4 + m1;
+            s12 = Integer.rotateRight(s12 ^ s0, 8);
+            s8 += s12;
+            s4 = Integer.rotateRight(s4 ^ s8, 7);
+            s1 += s5 + m2;
+            s13 = Integer.rotateRight(s13 ^ s1, 16);
+            s9 += s13;
+            s5 = Integer.rotateRight(s5 ^ s9, 12);
+            s1 += s5 + m3;
+            s13 = Integer.rotateRight(s13 ^ s1, 8);
+            s9 += s13;
+            s5 = Integer.rotateRight(s5 ^ s9, 7);
+            s2 += s6 + m4;
+            s14 = Integer.rotateRight(s14 ^ s2, 16);
+            s10 += s14;
+            s6 = Integer.rotateRight(s6 ^ s10, 12);
+            s2 += s6 + m5;
+            s14 = Integer.rotateRight(s14 ^ s2, 8);
+            s10 += s14;
+            s6 = Integer.rotateRight(s6 ^ s10, 7);
+            s3 += s7 + m6;
+            s15 = Integer.rotateRight(s15 ^ s3, 16);
+            s11 += s15;
+            s7 = Integer.rotateRight(s7 ^ s11, 12);
+            s3 += s7 + m7;
+            s15 = Integer.rotateRight(s15 ^ s3, 8);
+            s11 += s15;
+            s7 = Integer.rotateRight(s7 ^ s11, 7);
+            // Diagonals
+            s0 += s5 + m8;
+            s15 = Integer.rotateRight(s15 ^ s0, 16);
+            s10 += s15;
+            s5 = Integer.rotateRight(s5 ^ s10, 12);
+            s0 += s5 + m9;
+            s15 = Integer.rotateRight(s15 ^ s0, 8);
+            s10 += s15;
+            s5 = Integer.rotateRight(s5 ^ s10, 7);
+            s1 += s6 + m10;
+            s12 = Integer.rotateRight(s12 ^ s1, 16);
+            s11 += s12;
+            s6 = Integer.rotateRight(s6 ^ s11, 12);
+            s1 += s6 + m11;
+            s12 = Integer.rotateRight(s12 ^ s1, 8);
+            s11 += s12;
+            s6 = Integer.rotateRight(s6 ^ s11, 7);
+            s2 += s7 + m12;
+            s13 = Integer.rotateRight(s13 ^ s2, 16);
+            s8 += s13;
+            s7 = Integer.rotateRight(s7 ^ s8, 12);
+            s2 += s7 + m13;
+            s13 = Integer.rotateRight(s13 ^ s2, 8);
+            s8 += s13;
+            s7 = Integer.rotateRight(s7 ^ s8, 7);
+            s3 += s4 + m14;
+            s14 = Integer.rotateRight(s14 ^ s3, 16);
+            s9 += s14;
+            s4 = Integer.rotateRight(s4 ^ s9, 12);
+            s3 += s4 + m15;
+            s14 = Integer.rotateRight(s14 ^ s3, 8);
+            s9 += s14;
+            s4 = Integer.rotateRight(s4 ^ s9, 7);
+
+            // Permute the message words for the next round: 2, 6, 3, 10, 7, 0, 4, 13, 1, 11, 12, 5, 9, 14, 15, 8
+            int t0 = m2;
+            int t1 = m6;
+            int t2 = m3;
+            int t3 = m10;
+            int t4 = m7;
+            int t5 = m0;
+            int t6 = m4;
+            int t7 = m13;
+            int t8 = m1;
+            int t9 = m11;
+            int t10 = m12;
+            int t11 = m5;
+            int t12 = m9;
+            int t13 = m14;
+            int t14 = m15;
+            int t15 = m8;
+            m0 = t0;
+            m1 = t1;
+            m2 = t2;
+            m3 = t3;
+            m4 = t4;
+            m5 = t5;
+            m6 = t6;
+            m7 = t7;
+            m8 = t8;
+            m9 = t9;
+            m10 = t10;
+            m11 = t11;
+            m12 = t12;
+            m13 = t13;
+            m14 = t14;
+            m15 = t15;
+        }
+
+        return new int[]{
+            s0 ^ s8, s1 ^ s9, s2 ^ s10, s3 ^ s11, s4 ^ s12, s5 ^ s13, s6 ^ s14, s7 ^ s15,
+            s8 ^ cv[0], s9 ^ cv[1], s10 ^ cv[2], s11 ^ cv[3], s12 ^ cv[4], s13 ^ cv[5], s14 ^ cv[6], s15 ^ cv[7]
+        };
+    }
+
+    private static int[] chainingValue(int[] state) {
+        int[] cv = new int[8];
+        System.arraycopy(state, 0, cv, 0, 8);
+        return cv;
+    }
+
+    private static int[] parentBlock(int[] leftCv, int[] rightCv) {
+        int[] words = new int[16];
+        System.arraycopy(leftCv, 0, words, 0, 8);
+        System.arraycopy(rightCv, 0, words, 8, 8);
+        return words;
+    }
+
+    private static int[] readWords(ByteBuffer data, int offset, int[] words) {
+        for (int i = 0; i < 16; ++i) {
+            words[i] = data.getInt(offset + 4 * i);
+        }
+        return words;
+    }
+}
@@ -0,0 +1,250 @@
+package ch.jalu.fileduplicatefinder.hashing;
+
+import com.google.common.base.Preconditions;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * File hasher that remembers the hashes of another file hasher in a cache file. A file is only hashed again if its
+ * size or modification date has changed since its hash was saved, otherwise the hash is returned without reading the
+ * file's contents.
+ * <p>
+ * The cache file can hold the hashes of multiple {@link HashingAlgorithm algorithms}; entries of other algorithms
+ * are kept as they are. Only algorithms whose hashes are {@link HashingAlgorithm#isStableAcrossRuns() stable} can be
+ * cached. Entries of files that no longer exist are removed when the cache is saved. This class is thread-safe.
+ */
+public class CachingFileHasher implements FileHasher {
+
+    /** Name of the cache file, which is saved next to the configuration file. */
+    public static final String CACHE_FILE_NAME = "file-utils.hashcache";
+
+    private static final int FILE_MAGIC = 0x4A465548; // "JFUH"
+    private static final int FILE_VERSION = 1;
+
+    private final FileHasher fileHasher;
+    private final HashingAlgorithm algorithm;
+    private final Path cacheFile;
+    private final Map<CacheKey, CacheEntry> entriesByKey = new ConcurrentHashMap<>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Constructor. Use {@link #loadCache()} to read the entries of the cache file.
+     *
+     * @param fileHasher the file hasher to delegate to when a file's hash is not known
+     * @param algorithm the algorithm the file hasher uses
+     * @param cacheFile the file to read and save the cache from and to
+     */
+    public CachingFileHasher(FileHasher fileHasher, HashingAlgorithm algorithm, Path cacheFile) {
+        Preconditions.checkArgument(algorithm.isStableAcrossRuns(),
+            "Hashes of " + algorithm + " are not stable across runs and cannot be cached");
+        this.fileHasher = fileHasher;
+        this.algorithm = algorithm;
+        this.cacheFile = cacheFile;
+    }
+
+    @Override
+    public String calculateHash(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        CacheKey key = createKey(path);
+
+        String cachedHash = getHashIfUnchanged(key, size, lastModified);
+        if (cachedHash != null) {
+            return cachedHash;
+        }
+
+        missCount.incrementAndGet();
+        String hash = fileHasher.calculateHash(path);
+        CacheEntry newEntry = new CacheEntry(size, lastModified, hash);
+        newEntry.isUsedInRun = true;
+        entriesByKey.put(key, newEntry);
+        return hash;
+    }
+
+    /**
+     * Returns the hash of the given file if it is in the cache and the file has not changed since, without reading
+     * the file's contents. Returns null otherwise; the file is not hashed by this method. A returned hash counts as
+     * cache hit, so the caller should use it rather than calling {@link #calculateHash} for the same file.
+     *
+     * @param path the file to look up
+     * @return the cached hash, or null if it is not known
+     * @throws IOException if the file's attributes could not be read
+     */
+    public @Nullable String getCachedHash(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return getHashIfUnchanged(createKey(path),
+            attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Reads the entries from the cache file. Does nothing if the file does not exist.
+     *
+     * @throws IOException if the file could not be read or is not a valid cache file
+     */
+    public void loadCache() throws IOException {
+        if (!Files.exists(cacheFile)) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new GZIPInputStream(Files.newInputStream(cacheFile))))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                throw new IOException("File '" + cacheFile.toAbsolutePath() + "' is not a supported hash cache");
+            }
+
+            int totalEntries = in.readInt();
+            for (int i = 0; i < totalEntries; ++i) {
+                CacheKey key = new CacheKey(in.readUTF(), in.readUTF());
+                CacheEntry entry = new CacheEntry(in.readLong(), in.readLong(), in.readUTF());
+                entriesByKey.putIfAbsent(key, entry);
+            }
+        } catch (EOFException e) {
+            throw new IOException("Hash cache '" + cacheFile.toAbsolutePath() + "' is incomplete", e);
+        }
+    }
+
+    /**
+     * Writes all entries to the cache file. A temporary file is written first so that the existing cache file
+     * remains intact if writing fails.
+     * <p>
+     * Entries that were not used in this run are only kept if their file still exists, so that the cache does not
+     * keep growing with the hashes of deleted or moved files. This checks the file of every unused entry one after
+     * the other, including entries of other folders and algorithms, so saving a large cache after a run that only
+     * used a small part of it takes one file system call per unused entry.
+     *
+     * @throws IOException if the file could not be written
+     */
+    public void saveCache() throws IOException {
+        entriesByKey.entrySet().removeIf(mapEntry ->
+            !mapEntry.getValue().isUsedInRun && !fileExists(mapEntry.getKey().absolutePath));
+
+        Path tempFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tempFile))))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+
+            Map<CacheKey, CacheEntry> entries = Map.copyOf(entriesByKey);
+            out.writeInt(entries.size());
+            for (Map.Entry<CacheKey, CacheEntry> mapEntry : entries.entrySet()) {
+                CacheKey key = mapEntry.getKey();
+                CacheEntry entry = mapEntry.getValue();
+                out.writeUTF(key.algorithm);
+                out.writeUTF(key.absolutePath);
+                out.writeLong(entry.size);
+                out.writeLong(entry.lastModified);
+                out.writeUTF(entry.hash);
+            }
+        }
+
+        try {
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * @return number of hashes that were taken from the cache
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return number of hashes that had to be calculated
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public Path getCacheFile() {
+        return cacheFile;
+    }
+
+    private CacheKey createKey(Path path) {
+        return new CacheKey(algorithm.name(), path.toAbsolutePath().normalize().toString());
+    }
+
+    private @Nullable String getHashIfUnchanged(CacheKey key, long size, long lastModified) {
+        CacheEntry entry = entriesByKey.get(key);
+        if (entry != null && entry.size == size && entry.lastModified == lastModified) {
+            hitCount.incrementAndGet();
+            entry.isUsedInRun = true;
+            return entry.hash;
+        }
+        return null;
+    }
+
+    private static final class CacheKey {
+
+        private final String algorithm;
+        private final String absolutePath;
+
+        CacheKey(String algorithm, String absolutePath) {
+            this.algorithm = algorithm;
+            this.absolutePath = absolutePath;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (obj instanceof CacheKey) {
+                CacheKey that = (CacheKey) obj;
+                return this.algorithm.equals(that.algorithm) && this.absolutePath.equals(that.absolutePath);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(algorithm, absolutePath);
+        }
+    }
+
+    private static boolean fileExists(String absolutePath) {
+        try {
+            return Files.exists(Paths.get(absolutePath));
+        } catch (InvalidPathException e) {
+            return false;
+        }
+    }
+
+    private static final class CacheEntry {
+
+        private final long size;
+        private final long lastModified;
+        private final String hash;
+        // True if the entry was looked up or created in this run, i.e. its file is known to exist
+        private volatile boolean isUsedInRun;
+
+        CacheEntry(long size, long lastModified, String hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+}
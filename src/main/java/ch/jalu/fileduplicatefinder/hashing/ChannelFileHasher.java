@@ -0,0 +1,83 @@
+package ch.jalu.fileduplicatefinder.hashing;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File hasher which reads files with a {@link FileChannel} and passes the bytes directly to the hash function.
+ * Large files are memory-mapped; smaller files are read into a direct buffer that is reused for all files hashed
+ * on the same thread. In contrast to {@link DefaultFileHasher}, the contents are not copied into heap byte arrays.
+ */
+public class ChannelFileHasher implements FileHasher {
+
+    /** Files of this size (in bytes) or larger are memory-mapped. */
+    public static final long DEFAULT_MIN_SIZE_FOR_MAPPING = 4L * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 128 * 1024;
+    private static final long MAX_MAPPED_REGION_SIZE = 256L * 1024 * 1024;
+
+    private final HashFunction hashFunction;
+    private final long minSizeForMapping;
+    private final ThreadLocal<ByteBuffer> buffer =
+        ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    /**
+     * Constructor.
+     *
+     * @param hashFunction the hash function to use
+     */
+    public ChannelFileHasher(HashFunction hashFunction) {
+        this(hashFunction, DEFAULT_MIN_SIZE_FOR_MAPPING);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param hashFunction the hash function to use
+     * @param minSizeForMapping minimum file size (in bytes) for a file to be memory-mapped
+     */
+    public ChannelFileHasher(HashFunction hashFunction, long minSizeForMapping) {
+        this.hashFunction = hashFunction;
+        this.minSizeForMapping = minSizeForMapping;
+    }
+
+    @Override
+    public String calculateHash(Path path) throws IOException {
+        Preconditions.checkArgument(Files.isRegularFile(path), "Path '" + path + "' must be a file");
+        Hasher hasher = hashFunction.newHasher();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= minSizeForMapping) {
+                putMappedContents(channel, size, hasher);
+            } else {
+                putBufferedContents(channel, hasher);
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    private static void putMappedContents(FileChannel channel, long size, Hasher hasher) throws IOException {
+        for (long position = 0; position < size; position += MAX_MAPPED_REGION_SIZE) {
+            long regionSize = Math.min(MAX_MAPPED_REGION_SIZE, size - position);
+            hasher.putBytes(channel.map(FileChannel.MapMode.READ_ONLY, position, regionSize));
+        }
+    }
+
+    private void putBufferedContents(FileChannel channel, Hasher hasher) throws IOException {
+        ByteBuffer buf = buffer.get();
+        buf.clear();
+        while (channel.read(buf) >= 0) {
+            buf.flip();
+            hasher.putBytes(buf);
+            buf.clear();
+        }
+    }
+}
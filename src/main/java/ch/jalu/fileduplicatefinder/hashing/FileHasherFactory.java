@@ -1,5 +1,7 @@
 package ch.jalu.fileduplicatefinder.hashing;
 
+import java.nio.file.Path;
+
 /**
  * Creates {@link FileHasher} instances.
  */
@@ -9,9 +11,31 @@ public class FileHasherFactory {
      * Returns a file hasher with the given hash algorithm.
      *
      * @param algorithm the algorithm to use
+     * @param readMode defines how the file hasher reads the files
      * @return file hasher using the given algorithm
      */
-    public FileHasher createFileHasher(HashingAlgorithm algorithm) {
-        return new DefaultFileHasher(algorithm.getHashFunction());
+    public FileHasher createFileHasher(HashingAlgorithm algorithm, FileReadMode readMode) {
+        switch (readMode) {
+            case STREAM:
+                return new DefaultFileHasher(algorithm.getHashFunction());
+            case CHANNEL:
+                return new ChannelFileHasher(algorithm.getHashFunction());
+            default:
+                throw new IllegalStateException("Unsupported read mode: " + readMode);
+        }
+    }
+
+    /**
+     * Returns a file hasher with the given hash algorithm whose hashes are cached in the given file.
+     * The cache file is not read by this method; see {@link CachingFileHasher#loadCache()}.
+     *
+     * @param algorithm the algorithm to use (must be stable across runs)
+     * @param readMode defines how the file hasher reads the files
+     * @param cacheFile the file to save the hashes to
+     * @return caching file hasher using the given algorithm
+     */
+    public CachingFileHasher createCachingFileHasher(HashingAlgorithm algorithm, FileReadMode readMode,
+                                                     Path cacheFile) {
+        return new CachingFileHasher(createFileHasher(algorithm, readMode), algorithm, cacheFile);
     }
 }
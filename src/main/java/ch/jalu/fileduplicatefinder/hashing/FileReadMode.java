@@ -0,0 +1,14 @@
+package ch.jalu.fileduplicatefinder.hashing;
+
+/**
+ * Defines how files are read when they are hashed.
+ */
+public enum FileReadMode {
+
+    /** Reads files as a stream through heap byte arrays (see {@link DefaultFileHasher}). */
+    STREAM,
+
+    /** Reads files with a file channel: memory-mapped for large files, with a direct buffer otherwise. */
+    CHANNEL
+
+}
@@ -9,24 +9,51 @@ import com.google.common.hash.Hashing;
 public enum HashingAlgorithm {
 
     /** Guava's "good fast hash". See {@link Hashing#goodFastHash} for which guarantees can be made. */
-    GFH(Hashing.goodFastHash(128)),
+    GFH(Hashing.goodFastHash(128), false),
 
     /** CRC32. */
-    CRC32(Hashing.crc32()),
+    CRC32(Hashing.crc32(), true),
 
     /** SHA1 (deprecated by Guava). */
-    SHA1(Hashing.sha1()),
+    SHA1(Hashing.sha1(), true),
 
     /** SHA256. */
-    SHA256(Hashing.sha256());
+    SHA256(Hashing.sha256(), true),
+
+    /** XXH3 with 64 bits (non-cryptographic, very fast). */
+    XXH3(Xxh3HashFunction.XXH3_64, true),
+
+    /** XXH3 with 128 bits, also known as XXH128 (non-cryptographic, very fast). */
+    XXH128(Xxh3HashFunction.XXH3_128, true),
+
+    /** Murmur3 with 128 bits and a fixed seed (non-cryptographic). */
+    MURMUR3_128(Hashing.murmur3_128(HashingAlgorithm.MURMUR3_SEED), true),
+
+    /** BLAKE3 with 256 bits (cryptographic, faster than SHA256). */
+    BLAKE3(Blake3HashFunction.BLAKE3, true);
+
+    /** Seed for Murmur3. Must never change, as hashes are persisted in the hash cache. */
+    private static final int MURMUR3_SEED = 0;
 
     private final HashFunction hashFunction;
+    private final boolean stableAcrossRuns;
 
-    HashingAlgorithm(HashFunction hashFunction) {
+    HashingAlgorithm(HashFunction hashFunction, boolean stableAcrossRuns) {
         this.hashFunction = hashFunction;
+        this.stableAcrossRuns = stableAcrossRuns;
     }
 
     public HashFunction getHashFunction() {
         return hashFunction;
     }
+
+    /**
+     * Returns whether this algorithm produces the same hash for the same contents when the program is run again.
+     * Only hashes of stable algorithms may be persisted.
+     *
+     * @return true if the hashes are stable across runs, false otherwise
+     */
+    public boolean isStableAcrossRuns() {
+        return stableAcrossRuns;
+    }
 }
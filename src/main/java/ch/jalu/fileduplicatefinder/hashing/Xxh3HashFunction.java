@@ -0,0 +1,402 @@
+package ch.jalu.fileduplicatefinder.hashing;
+
+import com.google.common.hash.HashCode;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Pure Java implementation of XXH3 (64 bits) and XXH128 from the xxHash family, with the default secret and seed 0.
+ * The hashes are the same as the ones of the reference implementation (version 0.8); the hash codes are in the
+ * canonical big-endian form, so their text is the same as the output of {@code xxhsum -H3} or {@code xxh128sum}.
+ * <p>
+ * Inputs are consumed in stripes of 64 bytes directly from the given buffers; only the last 256 bytes are copied to
+ * an internal buffer, as the end of the input is processed differently.
+ */
+final class Xxh3HashFunction extends AbstractStreamingHashFunction {
+
+    /** XXH3 with 64 bits. */
+    static final Xxh3HashFunction XXH3_64 = new Xxh3HashFunction(false);
+
+    /** XXH3 with 128 bits (XXH128). */
+    static final Xxh3HashFunction XXH3_128 = new Xxh3HashFunction(true);
+
+    private static final VarHandle LONG_LE =
+        MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_LE =
+        MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final long PRIME32_1 = 0x9E3779B1L;
+    private static final long PRIME32_2 = 0x85EBCA77L;
+    private static final long PRIME32_3 = 0xC2B2AE3DL;
+    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME64_3 = 0x165667B19E3779F9L;
+    private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+    private static final long PRIME_MX1 = 0x165667919E3779F9L;
+    private static final long PRIME_MX2 = 0x9FB21C651E98DF25L;
+
+    private static final byte[] SECRET = toBytes(
+        0xb8, 0xfe, 0x6c, 0x39, 0x23, 0xa4, 0x4b, 0xbe, 0x7c, 0x01, 0x81, 0x2c, 0xf7, 0x21, 0xad, 0x1c,
+        0xde, 0xd4, 0x6d, 0xe9, 0x83, 0x90, 0x97, 0xdb, 0x72, 0x40, 0xa4, 0xa4, 0xb7, 0xb3, 0x67, 0x1f,
+        0xcb, 0x79, 0xe6, 0x4e, 0xcc, 0xc0, 0xe5, 0x78, 0x82, 0x5a, 0xd0, 0x7d, 0xcc, 0xff, 0x72, 0x21,
+        0xb8, 0x08, 0x46, 0x74, 0xf7, 0x43, 0x24, 0x8e, 0xe0, 0x35, 0x90, 0xe6, 0x81, 0x3a, 0x26, 0x4c,
+        0x3c, 0x28, 0x52, 0xbb, 0x91, 0xc3, 0x00, 0xcb, 0x88, 0xd0, 0x65, 0x8b, 0x1b, 0x53, 0x2e, 0xa3,
+        0x71, 0x64, 0x48, 0x97, 0xa2, 0x0d, 0xf9, 0x4e, 0x38, 0x19, 0xef, 0x46, 0xa9, 0xde, 0xac, 0xd8,
+        0xa8, 0xfa, 0x76, 0x3f, 0xe3, 0x9c, 0x34, 0x3f, 0xf9, 0xdc, 0xbb, 0xc7, 0xc7, 0x0b, 0x4f, 0x1d,
+        0x8a, 0x51, 0xe0, 0x4b, 0xcd, 0xb4, 0x59, 0x31, 0xc8, 0x9f, 0x7e, 0xc9, 0xd9, 0x78, 0x73, 0x64,
+        0xea, 0xc5, 0xac, 0x83, 0x34, 0xd3, 0xeb, 0xc3, 0xc5, 0x81, 0xa0, 0xff, 0xfa, 0x13, 0x63, 0xeb,
+        0x17, 0x0d, 0xdd, 0x51, 0xb7, 0xf0, 0xda, 0x49, 0xd3, 0x16, 0x55, 0x26, 0x29, 0xd4, 0x68, 0x9e,
+        0x2b, 0x16, 0xbe, 0x58, 0x7d, 0x47, 0xa1, 0xfc, 0x8f, 0xf8, 0xb8, 0xd1, 0x7a, 0xd0, 0x31, 0xce,
+        0x45, 0xcb, 0x3a, 0x8f, 0x95, 0x16, 0x04, 0x28, 0xaf, 0xd7, 0xfb, 0xca, 0xbb, 0x4b, 0x40, 0x7e);
+
+    private static final int SECRET_SIZE = 192;
+    private static final int STRIPE_LEN = 64;
+    private static final int SECRET_CONSUME_RATE = 8;
+    private static final int STRIPES_PER_BLOCK = (SECRET_SIZE - STRIPE_LEN) / SECRET_CONSUME_RATE;
+    private static final int MIDSIZE_MAX = 240;
+    private static final int BUFFER_SIZE = 256;
+    private static final int SECRET_LAST_ACC_START = SECRET_SIZE - STRIPE_LEN - 7;
+    private static final int SECRET_MERGEACCS_START = 11;
+
+    private final boolean is128Bit;
+
+    private Xxh3HashFunction(boolean is128Bit) {
+        this.is128Bit = is128Bit;
+    }
+
+    @Override
+    public StreamingHasher newHasher() {
+        return new Xxh3Hasher();
+    }
+
+    @Override
+    public int bits() {
+        return is128Bit ? 128 : 64;
+    }
+
+    @Override
+    public String toString() {
+        return is128Bit ? "Xxh3HashFunction[128]" : "Xxh3HashFunction[64]";
+    }
+
+    private final class Xxh3Hasher extends StreamingHasher {
+
+        private final long[] acc = createInitialAccumulators();
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private final ByteBuffer bufferView = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+        private int bufferedSize;
+        private int stripesInBlock;
+        private long totalLength;
+
+        @Override
+        protected void update(ByteBuffer input) {
+            ByteBuffer data = input.slice().order(ByteOrder.LITTLE_ENDIAN);
+            int length = data.remaining();
+            int position = 0;
+            totalLength += length;
+
+            // Fill up the buffer; only process it if more data follows so that the last stripe stays available
+            if (bufferedSize > 0 || length <= BUFFER_SIZE) {
+                int toCopy = Math.min(BUFFER_SIZE - bufferedSize, length);
+                data.get(buffer, bufferedSize, toCopy);
+                bufferedSize += toCopy;
+                position = toCopy;
+                if (position < length) {
+                    for (int offset = 0; offset < BUFFER_SIZE; offset += STRIPE_LEN) {
+                        consumeStripe(bufferView, offset);
+                    }
+                    bufferedSize = 0;
+                }
+            }
+
+            // Process stripes directly from the input as long as there is more data after it than fits in the buffer
+            while (length - position > BUFFER_SIZE) {
+                consumeStripe(data, position);
+                position += STRIPE_LEN;
+            }
+
+            if (position < length) {
+                int remaining = length - position;
+                data.position(position);
+                data.get(buffer, 0, remaining);
+                bufferedSize = remaining;
+            }
+            input.position(input.limit());
+        }
+
+        @Override
+        protected HashCode digest() {
+            if (totalLength <= MIDSIZE_MAX) {
+                return is128Bit
+                    ? hashShort128(buffer, (int) totalLength)
+                    : toHashCode(hashShort64(buffer, (int) totalLength));
+            }
+
+            long[] finalAcc = acc.clone();
+            int finalStripesInBlock = stripesInBlock;
+            if (bufferedSize >= STRIPE_LEN) {
+                int stripes = (bufferedSize - 1) / STRIPE_LEN;
+                for (int i = 0; i < stripes; ++i) {
+                    accumulateStripe(finalAcc, bufferView, i * STRIPE_LEN, finalStripesInBlock * SECRET_CONSUME_RATE);
+                    if (++finalStripesInBlock == STRIPES_PER_BLOCK) {
+                        scramble(finalAcc);
+                        finalStripesInBlock = 0;
+                    }
+                }
+                accumulateStripe(finalAcc, bufferView, bufferedSize - STRIPE_LEN, SECRET_LAST_ACC_START);
+            } else {
+                // The last stripe starts in the data that was processed previously, which is still in the buffer
+                byte[] lastStripe = new byte[STRIPE_LEN];
+                int previousBytes = STRIPE_LEN - bufferedSize;
+                System.arraycopy(buffer, BUFFER_SIZE - previousBytes, lastStripe, 0, previousBytes);
+                System.arraycopy(buffer, 0, lastStripe, previousBytes, bufferedSize);
+                accumulateStripe(finalAcc, ByteBuffer.wrap(lastStripe).order(ByteOrder.LITTLE_ENDIAN), 0,
+                    SECRET_LAST_ACC_START);
+            }
+
+            long low = mergeAccumulators(finalAcc, SECRET_MERGEACCS_START, totalLength * PRIME64_1);
+            if (!is128Bit) {
+                return toHashCode(low);
+            }
+            long high = mergeAccumulators(finalAcc, SECRET_SIZE - STRIPE_LEN - SECRET_MERGEACCS_START,
+                ~(totalLength * PRIME64_2));
+            return toHashCode(high, low);
+        }
+
+        private void consumeStripe(ByteBuffer data, int offset) {
+            accumulateStripe(acc, data, offset, stripesInBlock * SECRET_CONSUME_RATE);
+            if (++stripesInBlock == STRIPES_PER_BLOCK) {
+                scramble(acc);
+                stripesInBlock = 0;
+            }
+        }
+    }
+
+    // --- Long inputs
+
+    private static long[] createInitialAccumulators() {
+        return new long[]{ PRIME32_3, PRIME64_1, PRIME64_2, PRIME64_3, PRIME64_4, PRIME32_2, PRIME64_5, PRIME32_1 };
+    }
+
+    private static void accumulateStripe(long[] acc, ByteBuffer data, int offset, int secretOffset) {
+        for (int i = 0; i < 8; ++i) {
+            long dataValue = data.getLong(offset + 8 * i);
+            long dataKey = dataValue ^ readLong(SECRET, secretOffset + 8 * i);
+            acc[i ^ 1] += dataValue;
+            acc[i] += (dataKey & 0xFFFFFFFFL) * (dataKey >>> 32);
+        }
+    }
+
+    private static void scramble(long[] acc) {
+        for (int i = 0; i < 8; ++i) {
+            long value = acc[i];
+            value ^= value >>> 47;
+            value ^= readLong(SECRET, SECRET_SIZE - STRIPE_LEN + 8 * i);
+            acc[i] = value * PRIME32_1;
+        }
+    }
+
+    private static long mergeAccumulators(long[] acc, int secretOffset, long start) {
+        long result = start;
+        for (int i = 0; i < 4; ++i) {
+            result += mul128Fold64(acc[2 * i] ^ readLong(SECRET, secretOffset + 16 * i),
+                acc[2 * i + 1] ^ readLong(SECRET, secretOffset + 16 * i + 8));
+        }
+        return avalanche(result);
+    }
+
+    // --- Short inputs (64 bits)
+
+    private static long hashShort64(byte[] input, int length) {
+        if (length == 0) {
+            return xxh64Avalanche(readLong(SECRET, 56) ^ readLong(SECRET, 64));
+        } else if (length <= 3) {
+            long combined = combineOneToThreeBytes(input, length);
+            long bitflip = (readInt(SECRET, 0) ^ readInt(SECRET, 4)) & 0xFFFFFFFFL;
+            return xxh64Avalanche(combined ^ bitflip);
+        } else if (length <= 8) {
+            long input1 = readInt(input, 0) & 0xFFFFFFFFL;
+            long input2 = readInt(input, length - 4) & 0xFFFFFFFFL;
+            long bitflip = readLong(SECRET, 8) ^ readLong(SECRET, 16);
+            return rrmxmx((input2 + (input1 << 32)) ^ bitflip, length);
+        } else if (length <= 16) {
+            long inputLow = readLong(input, 0) ^ (readLong(SECRET, 24) ^ readLong(SECRET, 32));
+            long inputHigh = readLong(input, length - 8) ^ (readLong(SECRET, 40) ^ readLong(SECRET, 48));
+            long acc = length + Long.reverseBytes(inputLow) + inputHigh + mul128Fold64(inputLow, inputHigh);
+            return avalanche(acc);
+        } else if (length <= 128) {
+            long acc = length * PRIME64_1;
+            if (length > 32) {
+                if (length > 64) {
+                    if (length > 96) {
+                        acc += mix16(input, 48, 96);
+                        acc += mix16(input, length - 64, 112);
+                    }
+                    acc += mix16(input, 32, 64);
+                    acc += mix16(input, length - 48, 80);
+                }
+                acc += mix16(input, 16, 32);
+                acc += mix16(input, length - 32, 48);
+            }
+            acc += mix16(input, 0, 0);
+            acc += mix16(input, length - 16, 16);
+            return avalanche(acc);
+        } else {
+            long acc = length * PRIME64_1;
+            int rounds = length / 16;
+            for (int i = 0; i < 8; ++i) {
+                acc += mix16(input, 16 * i, 16 * i);
+            }
+            acc = avalanche(acc);
+            for (int i = 8; i < rounds; ++i) {
+                acc += mix16(input, 16 * i, 16 * (i - 8) + 3);
+            }
+            acc += mix16(input, length - 16, 136 - 17);
+            return avalanche(acc);
+        }
+    }
+
+    // --- Short inputs (128 bits)
+
+    private static HashCode hashShort128(byte[] input, int length) {
+        if (length == 0) {
+            return toHashCode(xxh64Avalanche(readLong(SECRET, 80) ^ readLong(SECRET, 88)),
+                xxh64Avalanche(readLong(SECRET, 64) ^ readLong(SECRET, 72)));
+        } else if (length <= 3) {
+            int combinedLow = (int) combineOneToThreeBytes(input, length);
+            int combinedHigh = Integer.rotateLeft(Integer.reverseBytes(combinedLow), 13);
+            long bitflipLow = (readInt(SECRET, 0) ^ readInt(SECRET, 4)) & 0xFFFFFFFFL;
+            long bitflipHigh = (readInt(SECRET, 8) ^ readInt(SECRET, 12)) & 0xFFFFFFFFL;
+            return toHashCode(xxh64Avalanche((combinedHigh & 0xFFFFFFFFL) ^ bitflipHigh),
+                xxh64Avalanche((combinedLow & 0xFFFFFFFFL) ^ bitflipLow));
+        } else if (length <= 8) {
+            long inputLow = readInt(input, 0) & 0xFFFFFFFFL;
+            long inputHigh = readInt(input, length - 4) & 0xFFFFFFFFL;
+            long bitflip = readLong(SECRET, 16) ^ readLong(SECRET, 24);
+            long keyed = (inputLow + (inputHigh << 32)) ^ bitflip;
+            long multiplier = PRIME64_1 + ((long) length << 2);
+            long low = keyed * multiplier;
+            long high = unsignedMultiplyHigh(keyed, multiplier);
+            high += low << 1;
+            low ^= high >>> 3;
+            low ^= low >>> 35;
+            low *= PRIME_MX2;
+            low ^= low >>> 28;
+            return toHashCode(avalanche(high), low);
+        } else if (length <= 16) {
+            long bitflipLow = readLong(SECRET, 32) ^ readLong(SECRET, 40);
+            long bitflipHigh = readLong(SECRET, 48) ^ readLong(SECRET, 56);
+            long inputLow = readLong(input, 0);
+            long inputHigh = readLong(input, length - 8);
+            long keyed = inputLow ^ inputHigh ^ bitflipLow;
+            long mLow = keyed * PRIME64_1;
+            long mHigh = unsignedMultiplyHigh(keyed, PRIME64_1);
+            mLow += (long) (length - 1) << 54;
+            inputHigh ^= bitflipHigh;
+            mHigh += inputHigh + (inputHigh & 0xFFFFFFFFL) * (PRIME32_2 - 1);
+            mLow ^= Long.reverseBytes(mHigh);
+            long low = mLow * PRIME64_2;
+            long high = unsignedMultiplyHigh(mLow, PRIME64_2) + mHigh * PRIME64_2;
+            return toHashCode(avalanche(high), avalanche(low));
+        }
+
+        long[] acc = { length * PRIME64_1, 0 };
+        if (length <= 128) {
+            for (int i = (length - 1) / 32; i >= 0; --i) {
+                mix32(acc, input, 16 * i, length - 16 * (i + 1), 32 * i);
+            }
+        } else {
+            for (int i = 0; i < 4; ++i) {
+                mix32(acc, input, 32 * i, 32 * i + 16, 32 * i);
+            }
+            acc[0] = avalanche(acc[0]);
+            acc[1] = avalanche(acc[1]);
+            for (int i = 4; i < length / 32; ++i) {
+                mix32(acc, input, 32 * i, 32 * i + 16, 3 + 32 * (i - 4));
+            }
+            mix32(acc, input, length - 16, length - 32, 136 - 17 - 16);
+        }
+        long low = acc[0] + acc[1];
+        long high = acc[0] * PRIME64_1 + acc[1] * PRIME64_4 + length * PRIME64_2;
+        return toHashCode(-avalanche(high), avalanche(low));
+    }
+
+    private static void mix32(long[] acc, byte[] input, int offset1, int offset2, int secretOffset) {
+        acc[0] += mix16(input, offset1, secretOffset);
+        acc[0] ^= readLong(input, offset2) + readLong(input, offset2 + 8);
+        acc[1] += mix16(input, offset2, secretOffset + 16);
+        acc[1] ^= readLong(input, offset1) + readLong(input, offset1 + 8);
+    }
+
+    // --- Helpers
+
+    private static long combineOneToThreeBytes(byte[] input, int length) {
+        int c1 = input[0] & 0xFF;
+        int c2 = input[length >> 1] & 0xFF;
+        int c3 = input[length - 1] & 0xFF;
+        return ((c1 << 16) | (c2 << 24) | c3 | (length << 8)) & 0xFFFFFFFFL;
+    }
+
+    private static long mix16(byte[] input, int offset, int secretOffset) {
+        return mul128Fold64(readLong(input, offset) ^ readLong(SECRET, secretOffset),
+            readLong(input, offset + 8) ^ readLong(SECRET, secretOffset + 8));
+    }
+
+    private static long mul128Fold64(long a, long b) {
+        return (a * b) ^ unsignedMultiplyHigh(a, b);
+    }
+
+    private static long unsignedMultiplyHigh(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+    }
+
+    private static long avalanche(long hash) {
+        long h = hash ^ (hash >>> 37);
+        h *= PRIME_MX1;
+        return h ^ (h >>> 32);
+    }
+
+    private static long xxh64Avalanche(long hash) {
+        long h = hash ^ (hash >>> 33);
+        h *= PRIME64_2;
+        h ^= h >>> 29;
+        h *= PRIME64_3;
+        return h ^ (h >>> 32);
+    }
+
+    private static long rrmxmx(long hash, int length) {
+        long h = hash ^ Long.rotateLeft(hash, 49) ^ Long.rotateLeft(hash, 24);
+        h *= PRIME_MX2;
+        h ^= (h >>> 35) + length;
+        h *= PRIME_MX2;
+        return h ^ (h >>> 28);
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        return (long) LONG_LE.get(bytes, offset);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (int) INT_LE.get(bytes, offset);
+    }
+
+    private static HashCode toHashCode(long hash) {
+        return HashCode.fromBytes(ByteBuffer.allocate(8).putLong(hash).array());
+    }
+
+    private static HashCode toHashCode(long high, long low) {
+        return HashCode.fromBytes(ByteBuffer.allocate(16).putLong(high).putLong(low).array());
+    }
+
+    private static byte[] toBytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+}
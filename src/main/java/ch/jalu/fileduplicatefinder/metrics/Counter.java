@@ -0,0 +1,26 @@
+package ch.jalu.fileduplicatefinder.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counter of a {@link RunMetrics registry}, e.g. of the number of files that were hashed. Thread-safe.
+ */
+public final class Counter {
+
+    private final LongAdder value = new LongAdder();
+
+    Counter() {
+    }
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+}
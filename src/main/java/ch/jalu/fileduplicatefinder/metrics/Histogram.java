@@ -0,0 +1,77 @@
+package ch.jalu.fileduplicatefinder.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of a {@link RunMetrics registry}, e.g. of the time it took to hash each file. Values are counted in
+ * buckets by their highest bit, so percentiles are approximate: they are the upper bound of the bucket the
+ * percentile falls into. Negative values are counted as 0. Thread-safe.
+ */
+public final class Histogram {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+    // Bucket 0 has the value 0, bucket i > 0 has the values [2^(i-1), 2^i - 1]
+    private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+
+    Histogram() {
+    }
+
+    public void record(long value) {
+        long nonNegativeValue = Math.max(0, value);
+        count.increment();
+        sum.add(nonNegativeValue);
+        min.accumulate(nonNegativeValue);
+        max.accumulate(nonNegativeValue);
+        buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(nonNegativeValue));
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMin() {
+        return getCount() == 0 ? 0 : min.get();
+    }
+
+    public long getMax() {
+        return getCount() == 0 ? 0 : max.get();
+    }
+
+    public double getMean() {
+        long totalCount = getCount();
+        return totalCount == 0 ? 0 : (double) getSum() / totalCount;
+    }
+
+    /**
+     * Returns the approximate value below which the given percentage of recorded values fall.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the upper bound of the bucket the percentile is in (at most the max recorded value)
+     */
+    public long getPercentile(double percentile) {
+        long totalCount = getCount();
+        if (totalCount == 0) {
+            return 0;
+        }
+
+        long rank = (long) Math.ceil(totalCount * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); ++i) {
+            seen += buckets.get(i);
+            if (seen >= rank && seen > 0) {
+                long upperBound = i == 0 ? 0 : (1L << i) - 1;
+                return Math.min(upperBound, getMax());
+            }
+        }
+        return getMax();
+    }
+}
@@ -0,0 +1,51 @@
+package ch.jalu.fileduplicatefinder.metrics;
+
+import ch.jalu.fileduplicatefinder.config.FileUtilConfiguration;
+import ch.jalu.fileduplicatefinder.output.WriterReader;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.METRICS_JSON_FILE;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.METRICS_SHOW_TABLE;
+
+/**
+ * Outputs the metrics of a task run at its end, as configured: as table on the console and/or to a JSON file.
+ */
+public class MetricsOutputter {
+
+    private final FileUtilConfiguration configuration;
+    private final WriterReader logger;
+
+    public MetricsOutputter(FileUtilConfiguration configuration, WriterReader logger) {
+        this.configuration = configuration;
+        this.logger = logger;
+    }
+
+    /**
+     * Outputs the given metrics if configured.
+     *
+     * @param metrics the metrics of the run that has finished
+     */
+    public void output(RunMetrics metrics) {
+        if (configuration.getValue(METRICS_SHOW_TABLE)) {
+            logger.printNewLine();
+            logger.printLn("Metrics");
+            metrics.toTableLines().forEach(logger::printLn);
+        }
+
+        Optional<Path> jsonFile = configuration.getValue(METRICS_JSON_FILE);
+        if (jsonFile.isPresent()) {
+            Path file = jsonFile.get();
+            try {
+                Files.writeString(file, metrics.toJson() + "\n", StandardCharsets.UTF_8);
+                logger.printLn("Wrote metrics to '" + file.toAbsolutePath() + "'");
+            } catch (IOException e) {
+                logger.printError("Could not write metrics to '" + file.toAbsolutePath() + "': " + e.getMessage());
+            }
+        }
+    }
+}
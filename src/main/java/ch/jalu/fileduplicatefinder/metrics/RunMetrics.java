@@ -0,0 +1,188 @@
+package ch.jalu.fileduplicatefinder.metrics;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Registry of the metrics of one task run: counters, histograms and the wall time of the run's stages. Metrics are
+ * created when they are first requested and identified by their name, such as "hash.files".
+ * <p>
+ * By convention, the name of a metric starts with the name of the stage it is recorded in, followed by a dot. For
+ * counters of a timed stage, the rate per second over the stage's wall time is reported as well. For example, if the
+ * stage "hash" took 2 seconds and the counter "hash.bytes" is 100 MB, a rate of 50 MB per second is reported.
+ * <p>
+ * This class is thread-safe.
+ */
+public class RunMetrics {
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, Long> stageNanos = new LinkedHashMap<>();
+
+    /**
+     * Returns the counter with the given name, creating it if needed.
+     *
+     * @param name the name of the counter
+     * @return the counter
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    /**
+     * Returns the histogram with the given name, creating it if needed.
+     *
+     * @param name the name of the histogram
+     * @return the histogram
+     */
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    /**
+     * Starts measuring the wall time of the stage with the given name. The time is recorded when the returned
+     * object is closed; if a stage is run multiple times, its times are added up.
+     *
+     * @param name the name of the stage
+     * @return the running stage, to close when it is done
+     */
+    public Stage startStage(String name) {
+        return new Stage(name, System.nanoTime());
+    }
+
+    /**
+     * Returns the wall time of the given stage in nanoseconds.
+     *
+     * @param name the name of the stage
+     * @return the stage's wall time, 0 if it was not run
+     */
+    public synchronized long getStageNanos(String name) {
+        return stageNanos.getOrDefault(name, 0L);
+    }
+
+    /**
+     * Returns the metrics as lines of a table that can be output on the console.
+     *
+     * @return the lines of the table
+     */
+    public List<String> toTableLines() {
+        List<String> lines = new ArrayList<>();
+        Map<String, Long> stages = getStages();
+        if (!stages.isEmpty()) {
+            lines.add(String.format(Locale.ROOT, "%-40s %14s", "Stage", "Wall time (s)"));
+            stages.forEach((name, nanos) ->
+                lines.add(String.format(Locale.ROOT, "%-40s %14.3f", name, nanos / 1e9)));
+        }
+
+        Map<String, Counter> sortedCounters = new TreeMap<>(counters);
+        if (!sortedCounters.isEmpty()) {
+            lines.add(String.format(Locale.ROOT, "%-40s %14s %14s", "Counter", "Value", "Per second"));
+            sortedCounters.forEach((name, counter) -> {
+                Double rate = getRatePerSecond(name, counter, stages);
+                lines.add(String.format(Locale.ROOT, "%-40s %14d %14s", name, counter.get(),
+                    rate == null ? "" : String.format(Locale.ROOT, "%.1f", rate)));
+            });
+        }
+
+        Map<String, Histogram> sortedHistograms = new TreeMap<>(histograms);
+        if (!sortedHistograms.isEmpty()) {
+            lines.add(String.format(Locale.ROOT, "%-40s %10s %12s %10s %10s %12s",
+                "Histogram", "Count", "Mean", "p50", "p99", "Max"));
+            sortedHistograms.forEach((name, histogram) ->
+                lines.add(String.format(Locale.ROOT, "%-40s %10d %12.1f %10d %10d %12d", name,
+                    histogram.getCount(), histogram.getMean(), histogram.getPercentile(50),
+                    histogram.getPercentile(99), histogram.getMax())));
+        }
+        return lines;
+    }
+
+    /**
+     * Returns the metrics as JSON object. Example:
+     * <pre>{@code
+     * {"stages":{"scan":{"wallTimeMillis":1520}},
+     *  "counters":{"scan.files":{"value":3000,"perSecond":1973.7}},
+     *  "histograms":{"hash.queueDepth":{"count":12,"sum":30,"min":0,"max":8,"mean":2.5,"p50":1,"p99":8}}}
+     * }</pre>
+     * (without line breaks).
+     *
+     * @return JSON representation of the metrics
+     */
+    public String toJson() {
+        Map<String, Long> stages = getStages();
+        String stagesJson = stages.entrySet().stream()
+            .map(e -> toJsonString(e.getKey()) + ":{\"wallTimeMillis\":" + (e.getValue() / 1_000_000) + "}")
+            .collect(Collectors.joining(","));
+
+        String countersJson = new TreeMap<>(counters).entrySet().stream()
+            .map(e -> {
+                Double rate = getRatePerSecond(e.getKey(), e.getValue(), stages);
+                return toJsonString(e.getKey()) + ":{\"value\":" + e.getValue().get()
+                    + (rate == null ? "" : String.format(Locale.ROOT, ",\"perSecond\":%.1f", rate)) + "}";
+            })
+            .collect(Collectors.joining(","));
+
+        String histogramsJson = new TreeMap<>(histograms).entrySet().stream()
+            .map(e -> {
+                Histogram histogram = e.getValue();
+                return toJsonString(e.getKey()) + ":{\"count\":" + histogram.getCount()
+                    + ",\"sum\":" + histogram.getSum()
+                    + ",\"min\":" + histogram.getMin()
+                    + ",\"max\":" + histogram.getMax()
+                    + String.format(Locale.ROOT, ",\"mean\":%.1f", histogram.getMean())
+                    + ",\"p50\":" + histogram.getPercentile(50)
+                    + ",\"p99\":" + histogram.getPercentile(99) + "}";
+            })
+            .collect(Collectors.joining(","));
+
+        return "{\"stages\":{" + stagesJson + "},\"counters\":{" + countersJson
+            + "},\"histograms\":{" + histogramsJson + "}}";
+    }
+
+    private synchronized Map<String, Long> getStages() {
+        return new LinkedHashMap<>(stageNanos);
+    }
+
+    private synchronized void addStageTime(String name, long nanos) {
+        stageNanos.merge(name, nanos, Long::sum);
+    }
+
+    private static @Nullable Double getRatePerSecond(String counterName, Counter counter, Map<String, Long> stages) {
+        int dotIndex = counterName.indexOf('.');
+        Long nanos = dotIndex > 0 ? stages.get(counterName.substring(0, dotIndex)) : null;
+        return nanos == null || nanos == 0 ? null : counter.get() * 1e9 / nanos;
+    }
+
+    /**
+     * Returns the given name as JSON string. Metric names are defined in the code and have no control characters.
+     */
+    private static String toJsonString(String name) {
+        return '"' + name.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    /**
+     * A stage whose wall time is being measured.
+     */
+    public final class Stage implements AutoCloseable {
+
+        private final String name;
+        private final long startNanos;
+
+        private Stage(String name, long startNanos) {
+            this.name = name;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void close() {
+            addStageTime(name, System.nanoTime() - startNanos);
+        }
+    }
+}
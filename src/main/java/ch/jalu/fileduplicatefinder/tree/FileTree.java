@@ -0,0 +1,197 @@
+package ch.jalu.fileduplicatefinder.tree;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+/**
+ * File tree in which every file and directory is an index into parallel arrays, so that no object is kept per entry.
+ * <p>
+ * Entries are stored in pre-order: the root has index {@link #ROOT_INDEX}, and the descendants of an entry are the
+ * range from the entry's index + 1 up to its {@link #getSubtreeEnd subtree end} (exclusive). The first child of a
+ * directory directly follows it; the next sibling of an entry starts at the entry's subtree end. Iterating over the
+ * indices in ascending order therefore visits the tree depth-first.
+ * <p>
+ * The names of all entries are stored in one char array. The item count, file count and largest file size are only
+ * stored for directories, in arrays indexed by the directory's number.
+ * <p>
+ * If the tree was generated lazily, the children of a directory are only its subdirectories until its files have
+ * been loaded (see {@link FileTreeGenerator#loadFiles}). The size and the number of items of a directory are always
+ * known. Trees are immutable; loading files creates a new tree.
+ */
+public class FileTree {
+
+    /** Index of the root directory. */
+    public static final int ROOT_INDEX = 0;
+
+    /** Parent index of the root directory. */
+    public static final int NO_PARENT = -1;
+
+    /** Directory number of a file. */
+    static final int NO_DIRECTORY = -1;
+
+    private final Path root;
+    private final int totalEntries;
+
+    // Entries (files and directories)
+    private final int[] parentIndices;
+    private final int[] subtreeEnds;
+    private final int[] nameOffsets; // name of entry i is from nameOffsets[i] to nameOffsets[i + 1]
+    private final char[] nameChars;
+    private final long[] sizes;
+    private final int[] directoryNumbers;
+
+    // Directories, by directory number
+    private final int[] itemCounts;
+    private final int[] fileCounts;
+    private final long[] largestFileSizes;
+    private final BitSet directoriesWithFilesLoaded;
+
+    FileTree(Path root, FileTreeBuilder builder) {
+        this.root = root;
+        this.totalEntries = builder.totalEntries;
+        this.parentIndices = Arrays.copyOf(builder.parentIndices, totalEntries);
+        this.subtreeEnds = Arrays.copyOf(builder.subtreeEnds, totalEntries);
+        this.nameOffsets = Arrays.copyOf(builder.nameOffsets, totalEntries + 1);
+        this.nameChars = Arrays.copyOf(builder.nameChars, builder.totalNameChars);
+        this.sizes = Arrays.copyOf(builder.sizes, totalEntries);
+        this.directoryNumbers = Arrays.copyOf(builder.directoryNumbers, totalEntries);
+
+        this.itemCounts = Arrays.copyOf(builder.itemCounts, builder.totalDirectories);
+        this.fileCounts = Arrays.copyOf(builder.fileCounts, builder.totalDirectories);
+        this.largestFileSizes = Arrays.copyOf(builder.largestFileSizes, builder.totalDirectories);
+        this.directoriesWithFilesLoaded = (BitSet) builder.directoriesWithFilesLoaded.clone();
+    }
+
+    /**
+     * @return the root directory
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * @return total number of files and directories in this tree, including the root
+     */
+    public int getEntryCount() {
+        return totalEntries;
+    }
+
+    /**
+     * @param index the entry's index
+     * @return index of the entry's parent directory, {@link #NO_PARENT} for the root
+     */
+    public int getParentIndex(int index) {
+        return parentIndices[index];
+    }
+
+    /**
+     * Returns the end of the entry's subtree, i.e. the first index after all of the entry's descendants. This is
+     * the index of the entry's next sibling, if it has one.
+     *
+     * @param index the entry's index
+     * @return the subtree end (exclusive)
+     */
+    public int getSubtreeEnd(int index) {
+        return subtreeEnds[index];
+    }
+
+    /**
+     * @param index the directory's index
+     * @return the indices of the entry's children, in the order they were listed
+     */
+    public IntStream streamChildren(int index) {
+        int end = subtreeEnds[index];
+        return IntStream.iterate(index + 1, child -> child < end, child -> subtreeEnds[child]);
+    }
+
+    /**
+     * @param index the entry's index
+     * @return the entry's file name
+     */
+    public String getName(int index) {
+        return new String(nameChars, nameOffsets[index], nameOffsets[index + 1] - nameOffsets[index]);
+    }
+
+    /**
+     * Returns the name of the entry relative to the root, as would be returned by relativizing the entry's path
+     * against the root. Empty string for the root.
+     *
+     * @param index the entry's index
+     * @return the entry's path relative to the root
+     */
+    public String getRelativeName(int index) {
+        if (index == ROOT_INDEX) {
+            return "";
+        }
+        String separator = root.getFileSystem().getSeparator();
+        StringBuilder relativeName = new StringBuilder(getName(index));
+        for (int i = parentIndices[index]; i != ROOT_INDEX; i = parentIndices[i]) {
+            relativeName.insert(0, separator).insert(0, nameChars, nameOffsets[i], nameOffsets[i + 1] - nameOffsets[i]);
+        }
+        return relativeName.toString();
+    }
+
+    /**
+     * Creates the path of the entry with the given index.
+     *
+     * @param index the entry's index
+     * @return the entry's path
+     */
+    public Path getPath(int index) {
+        return index == ROOT_INDEX ? root : root.resolve(getRelativeName(index));
+    }
+
+    /**
+     * @param index the entry's index
+     * @return true if the entry is a directory, false if it is a file
+     */
+    public boolean isDirectory(int index) {
+        return directoryNumbers[index] != NO_DIRECTORY;
+    }
+
+    /**
+     * @param index the entry's index
+     * @return size of the file, or total size of all files in the directory
+     */
+    public long getSize(int index) {
+        return sizes[index];
+    }
+
+    /**
+     * @param index the entry's index
+     * @return number of files and directories in the directory, also if its files are not loaded; 0 for files
+     */
+    public int getItemCount(int index) {
+        int directoryNumber = directoryNumbers[index];
+        return directoryNumber == NO_DIRECTORY ? 0 : itemCounts[directoryNumber];
+    }
+
+    /**
+     * @param index the entry's index
+     * @return number of files directly in the directory, also if they are not loaded; 0 for files
+     */
+    public int getFileCount(int index) {
+        int directoryNumber = directoryNumbers[index];
+        return directoryNumber == NO_DIRECTORY ? 0 : fileCounts[directoryNumber];
+    }
+
+    /**
+     * @param index the entry's index
+     * @return size of the largest file directly in the directory, 0 if there are no files or the entry is a file
+     */
+    public long getLargestFileSize(int index) {
+        int directoryNumber = directoryNumbers[index];
+        return directoryNumber == NO_DIRECTORY ? 0 : largestFileSizes[directoryNumber];
+    }
+
+    /**
+     * @param index the entry's index
+     * @return true if the files of the directory are part of its children (always true for files)
+     */
+    public boolean areFilesLoaded(int index) {
+        int directoryNumber = directoryNumbers[index];
+        return directoryNumber == NO_DIRECTORY || directoriesWithFilesLoaded.get(directoryNumber);
+    }
+}
@@ -0,0 +1,118 @@
+package ch.jalu.fileduplicatefinder.tree;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Creates a {@link FileTree}. Entries must be added in pre-order: a directory is added before its children, and
+ * {@link #finishDirectory} must be called for a directory once all of its descendants have been added.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class FileTreeBuilder {
+
+    private static final int INITIAL_ENTRY_CAPACITY = 1024;
+    private static final int INITIAL_DIRECTORY_CAPACITY = 64;
+
+    int totalEntries;
+    int[] parentIndices = new int[INITIAL_ENTRY_CAPACITY];
+    int[] subtreeEnds = new int[INITIAL_ENTRY_CAPACITY];
+    int[] nameOffsets = new int[INITIAL_ENTRY_CAPACITY + 1];
+    char[] nameChars = new char[INITIAL_ENTRY_CAPACITY * 16];
+    int totalNameChars;
+    long[] sizes = new long[INITIAL_ENTRY_CAPACITY];
+    int[] directoryNumbers = new int[INITIAL_ENTRY_CAPACITY];
+
+    int totalDirectories;
+    int[] itemCounts = new int[INITIAL_DIRECTORY_CAPACITY];
+    int[] fileCounts = new int[INITIAL_DIRECTORY_CAPACITY];
+    long[] largestFileSizes = new long[INITIAL_DIRECTORY_CAPACITY];
+    final BitSet directoriesWithFilesLoaded = new BitSet();
+
+    /**
+     * Adds a file.
+     *
+     * @param parentIndex index of the directory the file is in
+     * @param name the file name
+     * @param size the file size in bytes
+     * @return index of the new file
+     */
+    int addFile(int parentIndex, String name, long size) {
+        int index = addEntry(parentIndex, name, size, FileTree.NO_DIRECTORY);
+        subtreeEnds[index] = index + 1;
+        return index;
+    }
+
+    /**
+     * Adds a directory. Its children must be added next, followed by a call to {@link #finishDirectory}.
+     *
+     * @param parentIndex index of the directory's parent directory, {@link FileTree#NO_PARENT} for the root
+     * @param name the directory's file name
+     * @param size the total size of all files in the directory
+     * @param itemCount number of files and directories in the directory
+     * @param fileCount number of files directly in the directory
+     * @param largestFileSize size of the largest file directly in the directory
+     * @param filesLoaded whether the directory's files will be added as children
+     * @return index of the new directory
+     */
+    int addDirectory(int parentIndex, String name, long size, int itemCount, int fileCount, long largestFileSize,
+                     boolean filesLoaded) {
+        if (totalDirectories == itemCounts.length) {
+            int newCapacity = itemCounts.length * 2;
+            itemCounts = Arrays.copyOf(itemCounts, newCapacity);
+            fileCounts = Arrays.copyOf(fileCounts, newCapacity);
+            largestFileSizes = Arrays.copyOf(largestFileSizes, newCapacity);
+        }
+        int directoryNumber = totalDirectories++;
+        itemCounts[directoryNumber] = itemCount;
+        fileCounts[directoryNumber] = fileCount;
+        largestFileSizes[directoryNumber] = largestFileSize;
+        directoriesWithFilesLoaded.set(directoryNumber, filesLoaded);
+        return addEntry(parentIndex, name, size, directoryNumber);
+    }
+
+    /**
+     * Marks the end of the given directory's subtree. To be called after all descendants have been added.
+     *
+     * @param index the directory's index
+     */
+    void finishDirectory(int index) {
+        subtreeEnds[index] = totalEntries;
+    }
+
+    /**
+     * Creates the tree with all added entries.
+     *
+     * @param root the root directory, i.e. the path of the first entry
+     * @return the tree
+     */
+    FileTree build(Path root) {
+        return new FileTree(root, this);
+    }
+
+    private int addEntry(int parentIndex, String name, long size, int directoryNumber) {
+        if (totalEntries == parentIndices.length) {
+            int newCapacity = parentIndices.length + (parentIndices.length >> 1);
+            parentIndices = Arrays.copyOf(parentIndices, newCapacity);
+            subtreeEnds = Arrays.copyOf(subtreeEnds, newCapacity);
+            nameOffsets = Arrays.copyOf(nameOffsets, newCapacity + 1);
+            sizes = Arrays.copyOf(sizes, newCapacity);
+            directoryNumbers = Arrays.copyOf(directoryNumbers, newCapacity);
+        }
+        if (totalNameChars + name.length() > nameChars.length) {
+            int newCapacity = Math.max(totalNameChars + name.length(), nameChars.length + (nameChars.length >> 1));
+            nameChars = Arrays.copyOf(nameChars, newCapacity);
+        }
+
+        int index = totalEntries++;
+        parentIndices[index] = parentIndex;
+        sizes[index] = size;
+        directoryNumbers[index] = directoryNumber;
+        name.getChars(0, name.length(), nameChars, totalNameChars);
+        nameOffsets[index] = totalNameChars;
+        totalNameChars += name.length();
+        nameOffsets[index + 1] = totalNameChars;
+        return index;
+    }
+}
@@ -1,54 +1,340 @@
 package ch.jalu.fileduplicatefinder.tree;
 
-import ch.jalu.fileduplicatefinder.utils.PathUtils;
-import org.jetbrains.annotations.Nullable;
+import ch.jalu.fileduplicatefinder.filewalker.FileWalkVisitor;
+import ch.jalu.fileduplicatefinder.filewalker.ParallelFileWalker;
+import ch.jalu.fileduplicatefinder.metrics.Counter;
+import ch.jalu.fileduplicatefinder.metrics.RunMetrics;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.ImmutableIntArray;
+import com.google.common.primitives.ImmutableLongArray;
 
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Collects all files and directories and calculates the file size of the directory by summing up all its files.
+ * <p>
+ * The tree can be generated lazily: directory sizes and item counts are computed in the same way, but only the
+ * directories are kept in the tree. The files of a directory are loaded with {@link #loadFiles} once they are
+ * needed, e.g. if they can match the filters of the tree output.
  */
 public class FileTreeGenerator {
 
+    private static final int NEW_FILE = -1;
+
     private final Path root;
+    private final ParallelFileWalker fileWalker;
+    private final RunMetrics metrics;
 
-    public FileTreeGenerator(Path root) {
+    public FileTreeGenerator(Path root, ParallelFileWalker fileWalker, RunMetrics metrics) {
         if (!Files.isDirectory(root)) {
             throw new IllegalArgumentException("Path '" + root + "' is not a directory");
         }
         this.root = root;
+        this.fileWalker = fileWalker;
+        this.metrics = metrics;
     }
 
-    public FileTreeEntry generateTree(Runnable progressCallback) {
-        return visit(root, progressCallback);
+    /**
+     * Generates the tree with all files and directories.
+     *
+     * @param progressCallback called for each file and directory
+     * @return the tree
+     */
+    public FileTree generateTree(Runnable progressCallback) {
+        return generateTree(progressCallback, false);
     }
 
-    private @Nullable FileTreeEntry visit(Path path, Runnable progressCallback) {
-        if (Files.isRegularFile(path)) {
-            progressCallback.run();
-            FileTreeEntry entry = new FileTreeEntry(path);
-            entry.setSize(PathUtils.size(path));
-            return entry;
+    /**
+     * Generates the tree with all directories. Files are only loaded when {@link #loadFiles} is called.
+     *
+     * @param progressCallback called for each file and directory
+     * @return the tree
+     */
+    public FileTree generateLazyTree(Runnable progressCallback) {
+        return generateTree(progressCallback, true);
+    }
 
-        } else if (Files.isDirectory(path)) {
-            progressCallback.run();
-            long[] totalSize = { 0 };
+    /**
+     * Loads the files of all directories in the given tree that match the predicate and whose files have not been
+     * loaded yet. Directories are listed in parallel. Subdirectories keep their position in the listing order;
+     * subdirectories that were not part of the tree are not added. A directory that cannot be listed (e.g. because
+     * it has been deleted) is passed to the error handler and is marked as loaded without any files.
+     *
+     * @param tree the tree
+     * @param shouldLoadFiles predicate defining whether the files of the directory with the given index should be
+     *                        loaded
+     * @param errorHandler called with a message for each directory that could not be listed
+     * @return new tree with the loaded files, or the given tree if no files had to be loaded
+     */
+    public FileTree loadFiles(FileTree tree, IntPredicate shouldLoadFiles, Consumer<String> errorHandler) {
+        int[] directoriesToLoad = IntStream.range(0, tree.getEntryCount())
+            .filter(index -> !tree.areFilesLoaded(index) && shouldLoadFiles.test(index))
+            .toArray();
+        if (directoriesToLoad.length == 0) {
+            return tree;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(fileWalker.getThreads());
+        try (RunMetrics.Stage ignored = metrics.startStage("scan")) {
+            LoadedFiles[] loadedFiles = pool.submit(() -> IntStream.of(directoriesToLoad).parallel()
+                .mapToObj(directory -> loadFilesOfDirectory(tree, directory, errorHandler))
+                .toArray(LoadedFiles[]::new)).join();
+
+            ImmutableMap.Builder<Integer, LoadedFiles> loadedFilesByDirectory = ImmutableMap.builder();
+            for (int i = 0; i < directoriesToLoad.length; ++i) {
+                loadedFilesByDirectory.put(directoriesToLoad[i], loadedFiles[i]);
+            }
+
+            FileTreeBuilder builder = new FileTreeBuilder();
+            copyWithLoadedFiles(tree, FileTree.ROOT_INDEX, FileTree.NO_PARENT, loadedFilesByDirectory.build(),
+                builder);
+            return builder.build(tree.getRoot());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private FileTree generateTree(Runnable progressCallback, boolean lazy) {
+        ScannedDirectory scannedRoot;
+        try (RunMetrics.Stage ignored = metrics.startStage("scan")) {
+            scannedRoot = (ScannedDirectory) fileWalker.walk(root, new TreeEntryVisitor(progressCallback, lazy));
+        }
+
+        FileTreeBuilder builder = new FileTreeBuilder();
+        addToTree(scannedRoot, FileTree.NO_PARENT, builder);
+        return builder.build(root);
+    }
+
+    /**
+     * Adds the given scanned directory and all of its children to the builder, in listing order.
+     */
+    private static void addToTree(ScannedDirectory directory, int parentIndex, FileTreeBuilder builder) {
+        int index = builder.addDirectory(parentIndex, directory.name, directory.size, directory.itemCount,
+            directory.fileCount, directory.largestFileSize, directory.filesLoaded);
+
+        int fileIndex = 0;
+        int subdirectoryIndex = 0;
+        int totalChildren = directory.fileNames.length + directory.subdirectories.length;
+        for (int position = 0; position < totalChildren; ++position) {
+            if (subdirectoryIndex < directory.subdirectories.length
+                && directory.subdirectoryPositions[subdirectoryIndex] == position) {
+                addToTree(directory.subdirectories[subdirectoryIndex], index, builder);
+                ++subdirectoryIndex;
+            } else {
+                builder.addFile(index, directory.fileNames[fileIndex], directory.fileSizes[fileIndex]);
+                ++fileIndex;
+            }
+        }
+        builder.finishDirectory(index);
+    }
+
+    /**
+     * Adds the entry of the old tree with all its descendants to the builder. Directories for which files were
+     * loaded get the listed files and subdirectories as children.
+     */
+    private static void copyWithLoadedFiles(FileTree tree, int index, int parentIndex,
+                                            Map<Integer, LoadedFiles> loadedFilesByDirectory,
+                                            FileTreeBuilder builder) {
+        if (!tree.isDirectory(index)) {
+            builder.addFile(parentIndex, tree.getName(index), tree.getSize(index));
+            return;
+        }
+
+        LoadedFiles loadedFiles = loadedFilesByDirectory.get(index);
+        int newIndex = builder.addDirectory(parentIndex, tree.getName(index), tree.getSize(index),
+            tree.getItemCount(index), tree.getFileCount(index), tree.getLargestFileSize(index),
+            loadedFiles != null || tree.areFilesLoaded(index));
+
+        if (loadedFiles == null) {
+            for (int child = index + 1; child < tree.getSubtreeEnd(index); child = tree.getSubtreeEnd(child)) {
+                copyWithLoadedFiles(tree, child, newIndex, loadedFilesByDirectory, builder);
+            }
+        } else {
+            int fileIndex = 0;
+            for (int i = 0; i < loadedFiles.children.length(); ++i) {
+                int child = loadedFiles.children.get(i);
+                if (child == NEW_FILE) {
+                    builder.addFile(newIndex, loadedFiles.fileNames.get(fileIndex),
+                        loadedFiles.fileSizes.get(fileIndex));
+                    ++fileIndex;
+                } else {
+                    copyWithLoadedFiles(tree, child, newIndex, loadedFilesByDirectory, builder);
+                }
+            }
+        }
+        builder.finishDirectory(newIndex);
+    }
+
+    /**
+     * Lists the files of the given directory. The subdirectories that are in the tree are kept in listing order.
+     * If the directory cannot be listed, no files are returned and the subdirectories keep their order in the tree.
+     */
+    private LoadedFiles loadFilesOfDirectory(FileTree tree, int directory, Consumer<String> errorHandler) {
+        Map<String, Integer> subdirectoriesByName = tree.streamChildren(directory)
+            .filter(tree::isDirectory)
+            .boxed()
+            .collect(Collectors.toMap(tree::getName, child -> child));
+        Path directoryPath = tree.getPath(directory);
+        Counter statCalls = metrics.counter("scan.statCalls");
+        Counter loadedFileCount = metrics.counter("scan.loadedFiles");
+
+        List<String> fileNames = new ArrayList<>();
+        ImmutableLongArray.Builder fileSizes = ImmutableLongArray.builder();
+        ImmutableIntArray.Builder children = ImmutableIntArray.builder();
+        metrics.counter("scan.directoryListings").increment();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directoryPath)) {
+            for (Path path : entries) {
+                String name = getFileName(path);
+                Integer subdirectory = subdirectoriesByName.get(name);
+                if (subdirectory != null) {
+                    children.add(subdirectory);
+                    continue;
+                }
+
+                statCalls.increment();
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    continue;
+                }
+                if (attributes.isRegularFile()) {
+                    fileNames.add(name);
+                    fileSizes.add(attributes.size());
+                    children.add(NEW_FILE);
+                    loadedFileCount.increment();
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            metrics.counter("scan.listingErrors").increment();
+            errorHandler.accept("Failed to list '" + directoryPath.toAbsolutePath() + "': "
+                + (e instanceof DirectoryIteratorException ? e.getCause() : e));
+            return new LoadedFiles(List.of(), ImmutableLongArray.of(),
+                ImmutableIntArray.copyOf(tree.streamChildren(directory).filter(tree::isDirectory)));
+        }
+        return new LoadedFiles(fileNames, fileSizes.build(), children.build());
+    }
+
+    private static String getFileName(Path path) {
+        Path fileName = path.getFileName();
+        return fileName == null ? "" : fileName.toString();
+    }
+
+    /**
+     * Files of a directory that were loaded for a lazily generated tree.
+     */
+    private static final class LoadedFiles {
+
+        private final List<String> fileNames;
+        private final ImmutableLongArray fileSizes;
+        /** Index of each child in the old tree in listing order, or {@link #NEW_FILE} for the next loaded file. */
+        private final ImmutableIntArray children;
+
+        LoadedFiles(List<String> fileNames, ImmutableLongArray fileSizes, ImmutableIntArray children) {
+            this.fileNames = fileNames;
+            this.fileSizes = fileSizes;
+            this.children = children;
+        }
+    }
+
+    /**
+     * Result of the walk for a file.
+     */
+    private static class ScannedEntry {
+
+        final String name;
+        final long size;
+
+        ScannedEntry(String name, long size) {
+            this.name = name;
+            this.size = size;
+        }
+    }
 
-            List<FileTreeEntry> childElements = PathUtils.list(path)
-                .map(child -> visit(child, progressCallback))
-                .filter(Objects::nonNull)
-                .peek(entry -> totalSize[0] += entry.getSize())
-                .collect(Collectors.toUnmodifiableList());
+    /**
+     * Result of the walk for a directory. Its files are kept in arrays, so that no object per file exists after the
+     * directory has been visited.
+     */
+    private static final class ScannedDirectory extends ScannedEntry {
 
-            FileTreeEntry entry = new FileTreeEntry(path);
-            entry.setSize(totalSize[0]);
-            entry.setChildren(childElements);
-            return entry;
+        private final int itemCount;
+        private final int fileCount;
+        private final long largestFileSize;
+        private final boolean filesLoaded;
+        private final String[] fileNames;
+        private final long[] fileSizes;
+        private final ScannedDirectory[] subdirectories;
+        /** Position of each subdirectory among the directory's children in listing order. */
+        private final int[] subdirectoryPositions;
+
+        ScannedDirectory(String name, List<ScannedEntry> children, boolean lazy) {
+            super(name, children.stream().mapToLong(child -> child.size).sum());
+            this.itemCount = children.size();
+
+            List<ScannedEntry> files = new ArrayList<>();
+            List<ScannedDirectory> directories = new ArrayList<>();
+            ImmutableIntArray.Builder positions = ImmutableIntArray.builder();
+            for (ScannedEntry child : children) {
+                if (child instanceof ScannedDirectory) {
+                    positions.add(lazy ? directories.size() : files.size() + directories.size());
+                    directories.add((ScannedDirectory) child);
+                } else {
+                    files.add(child);
+                }
+            }
+            this.fileCount = files.size();
+            this.largestFileSize = files.stream().mapToLong(file -> file.size).max().orElse(0);
+            this.filesLoaded = !lazy || files.isEmpty();
+            this.fileNames = filesLoaded ? files.stream().map(file -> file.name).toArray(String[]::new) : new String[0];
+            this.fileSizes = filesLoaded ? files.stream().mapToLong(file -> file.size).toArray() : new long[0];
+            this.subdirectories = directories.toArray(new ScannedDirectory[0]);
+            this.subdirectoryPositions = positions.build().toArray();
+        }
+    }
+
+    private final class TreeEntryVisitor implements FileWalkVisitor<ScannedEntry> {
+
+        private final Runnable progressCallback;
+        private final boolean lazy;
+        private final Counter scannedFiles;
+        private final Counter scannedBytes;
+        private final Counter scannedDirectories;
+
+        TreeEntryVisitor(Runnable progressCallback, boolean lazy) {
+            this.progressCallback = progressCallback;
+            this.lazy = lazy;
+            this.scannedFiles = metrics.counter("scan.files");
+            this.scannedBytes = metrics.counter("scan.bytes");
+            this.scannedDirectories = metrics.counter("scan.directories");
+        }
+
+        @Override
+        public ScannedEntry visitFile(Path file, BasicFileAttributes attributes) {
+            progressCallback.run();
+            scannedFiles.increment();
+            scannedBytes.add(attributes.size());
+            return new ScannedEntry(getFileName(file), attributes.size());
+        }
+
+        @Override
+        public ScannedEntry visitDirectory(Path directory, BasicFileAttributes attributes,
+                                           List<ScannedEntry> childResults) {
+            progressCallback.run();
+            scannedDirectories.increment();
+            return new ScannedDirectory(getFileName(directory), childResults, lazy);
         }
-        return null;
     }
 }
@@ -4,33 +4,41 @@ import ch.jalu.fileduplicatefinder.config.FileUtilConfiguration;
 import ch.jalu.fileduplicatefinder.config.property.JfuDoubleProperty;
 import ch.jalu.fileduplicatefinder.config.property.JfuIntegerProperty;
 import ch.jalu.fileduplicatefinder.config.property.JfuRegexProperty;
+import ch.jalu.fileduplicatefinder.filewalker.ParallelFileWalker;
+import ch.jalu.fileduplicatefinder.metrics.MetricsOutputter;
+import ch.jalu.fileduplicatefinder.metrics.RunMetrics;
+import ch.jalu.fileduplicatefinder.output.WriterReader;
 import ch.jalu.fileduplicatefinder.utils.ConsoleProgressListener;
 import ch.jalu.fileduplicatefinder.utils.FileSizeUtils;
-import com.google.common.base.CharMatcher;
-import com.google.common.base.Strings;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.File;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.BitSet;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
 import java.util.Scanner;
-import java.util.Set;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.stream.IntStream;
 
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.FORMAT_FILE_SIZE;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.SCAN_THREADS;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.TREE_DIRECTORY_REGEX;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.TREE_DUMP_FILE;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.TREE_DUMP_FORMAT;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.TREE_FILES_PROCESSED_INTERVAL;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.TREE_FILE_MAX_SIZE_MB;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.TREE_FILE_MIN_SIZE_MB;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.TREE_FILE_REGEX;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.TREE_FOLDER;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.TREE_INDENT_ELEMENTS;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.TREE_LAZY_LOADING;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.TREE_MAX_ITEMS_IN_FOLDER;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.TREE_MIN_ITEMS_IN_FOLDER;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.TREE_OUTPUT_ELEMENT_TYPES;
@@ -44,29 +52,48 @@ public class FileTreeRunner {
 
     public static final String ID = "tree";
 
-    private static final CharMatcher FILE_SEPARATOR_MATCHER = CharMatcher.is(File.separatorChar);
+    private static final int BUFFER_SIZE = 64 * 1024;
 
     private final Scanner scanner;
     private final FileUtilConfiguration configuration;
-
-    public FileTreeRunner(Scanner scanner, FileUtilConfiguration configuration) {
+    private final WriterReader logger;
+    private final RunMetrics metrics = new RunMetrics();
+    private int threads;
+    private FileTree tree;
+    private TreeFilterEvaluator filterEvaluator;
+    private @Nullable FileTreeGenerator lazyTreeGenerator;
+
+    public FileTreeRunner(Scanner scanner, FileUtilConfiguration configuration, WriterReader logger) {
         this.scanner = scanner;
         this.configuration = configuration;
+        this.logger = logger;
     }
 
     public void run() {
         Path folder = configuration.getValueOrPrompt(TREE_FOLDER);
-        FileTreeGenerator fileTreeGenerator = new FileTreeGenerator(folder);
+        ParallelFileWalker fileWalker = new ParallelFileWalker(configuration.getValue(SCAN_THREADS), metrics);
+        FileTreeGenerator fileTreeGenerator = new FileTreeGenerator(folder, fileWalker, metrics);
 
         System.out.print("Collecting all items in " + folder.toAbsolutePath().normalize() + ":");
         ConsoleProgressListener progressCallback = new ConsoleProgressListener(
             configuration.getValue(TREE_FILES_PROCESSED_INTERVAL));
-        FileTreeEntry treeRoot = fileTreeGenerator.generateTree(progressCallback::notifyItemProcessed);
+        if (configuration.getValue(TREE_LAZY_LOADING)) {
+            tree = fileTreeGenerator.generateLazyTree(progressCallback::notifyItemProcessed);
+            lazyTreeGenerator = fileTreeGenerator;
+        } else {
+            tree = fileTreeGenerator.generateTree(progressCallback::notifyItemProcessed);
+        }
+        threads = fileWalker.getThreads();
+        filterEvaluator = new TreeFilterEvaluator(tree, threads);
         int totalItems = progressCallback.getCount();
         System.out.println("\nFound " + totalItems + " files and directories");
 
         TreeParameters params = createParams(false);
-        List<FileTreeEntry> relevantEntries = filterAndOutputRelevantEntries(treeRoot, params, totalItems);
+        BitSet relevantEntries = filterAndOutputRelevantEntries(params, totalItems);
+        new MetricsOutputter(configuration, logger).output(metrics);
+        if (!configuration.isInteractive()) {
+            return;
+        }
 
         String task = "help";
         boolean previousTaskWasHelp = false;
@@ -75,16 +102,17 @@ public class FileTreeRunner {
 
             switch (task) {
                 case "dump":
-                    throw new UnsupportedOperationException("Not yet implemented"); // TODO :)
+                    dumpRelevantEntries(relevantEntries, params);
+                    break;
 
                 case "config":
                     params = createParams(true);
-                    relevantEntries = filterAndOutputRelevantEntries(treeRoot, params, totalItems);
+                    relevantEntries = filterAndOutputRelevantEntries(params, totalItems);
                     break;
 
                 case "debug":
                     System.out.println("Conflicting filters: " + params.hasConflictingFilters());
-                    filterRelevantEntries(treeRoot, params, true);
+                    relevantEntries = filterRelevantEntries(params, true);
                     break;
 
                 default:
@@ -105,12 +133,12 @@ public class FileTreeRunner {
         } while (!task.equals("exit"));
     }
 
-    private List<FileTreeEntry> filterAndOutputRelevantEntries(FileTreeEntry treeRoot, TreeParameters params,
-                                                               int totalItems) {
-        List<FileTreeEntry> relevantEntries = filterRelevantEntries(treeRoot, params, false);
+    private BitSet filterAndOutputRelevantEntries(TreeParameters params, int totalItems) {
+        BitSet relevantEntries = filterRelevantEntries(params, false);
 
-        System.out.println("Matched " + relevantEntries.size() + " out of " + totalItems + " items");
-        if (relevantEntries.size() == 1) {
+        int totalRelevant = relevantEntries.cardinality();
+        System.out.println("Matched " + totalRelevant + " out of " + totalItems + " items");
+        if (totalRelevant == 1) {
             System.out.println("Note: The root is never filtered out.");
         }
         if (params.hasConflictingFilters()) {
@@ -119,80 +147,80 @@ public class FileTreeRunner {
         }
         System.out.println();
 
-        Path root = treeRoot.getPath();
-        relevantEntries.forEach(elem -> printElement(elem, root, params));
-        return relevantEntries;
-    }
-
-    private List<FileTreeEntry> filterRelevantEntries(FileTreeEntry root, TreeParameters params,
-                                                      boolean printDebug) {
-        RelevantFileEntryCollector collector = new RelevantFileEntryCollector(root, printDebug);
-
-        for (FileTreeEntry child : root.getChildren()) {
-            addEntryAndChildrenToListIfRelevantRecursively(collector, child, params);
+        // Buffer the console output, since printing one line at a time is slow for large trees
+        Writer consoleWriter = new BufferedWriter(new OutputStreamWriter(System.out, Charset.defaultCharset()),
+            BUFFER_SIZE);
+        try {
+            writeEntries(consoleWriter, TreeDumpFormat.TEXT, relevantEntries, params);
+            consoleWriter.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        return collector.getRelevantEntriesSorted(params);
+        return relevantEntries;
     }
 
-    private boolean addEntryAndChildrenToListIfRelevantRecursively(RelevantFileEntryCollector collector,
-                                                                   FileTreeEntry entry, TreeParameters params) {
-        collector.registerEntry(entry);
-
-        Path path = entry.getPath();
-        String relativeName = collector.getNameRelativeToRoot(path);
-        boolean isMatch = params.matchesRegexFilters(path, relativeName)
-            && params.matchesSizeFilters(entry)
-            && params.matchesItemsInDirFilters(entry);
-
-        boolean hasRelevantChild = false;
-        for (FileTreeEntry child : entry.getChildren()) {
-            hasRelevantChild |= addEntryAndChildrenToListIfRelevantRecursively(collector, child, params);
+    private BitSet filterRelevantEntries(TreeParameters params, boolean printDebug) {
+        if (lazyTreeGenerator != null) {
+            FileTree unloadedTree = tree;
+            tree = lazyTreeGenerator.loadFiles(unloadedTree, index -> params.mayMatchFilesIn(unloadedTree, index),
+                logger::printError);
+            if (tree != filterEvaluator.getTree()) {
+                filterEvaluator = new TreeFilterEvaluator(tree, threads);
+            }
         }
-
-        boolean isRelevant = isMatch || (!params.isShowAbsolutePath() && hasRelevantChild);
-        if (isRelevant) {
-            collector.addRelevantEntry(entry);
+        try (RunMetrics.Stage ignored = metrics.startStage("filter")) {
+            BitSet relevantEntries = filterEvaluator.findRelevantEntries(params);
+            if (printDebug) {
+                printDebugInfo(relevantEntries, params);
+            }
+            metrics.counter("filter.matchedEntries").add(relevantEntries.cardinality());
+            return relevantEntries;
         }
+    }
 
-        if (collector.isDebug()) {
-            String filterInfo = isMatch
-                ? "passed"
-                : createDebugTextForChecks(relativeName, entry, params) + "; hasRelevantChild=" + hasRelevantChild;
+    private void printDebugInfo(BitSet relevantEntries, TreeParameters params) {
+        TreeParameters.EntryMatcher matcher = params.createEntryMatcher();
+        for (int entry = FileTree.ROOT_INDEX + 1; entry < tree.getEntryCount(); ++entry) {
+            String relativeName = filterEvaluator.getRelativeName(entry);
+            String filterInfo;
+            if (matcher.matches(tree, entry, relativeName)) {
+                filterInfo = "passed";
+            } else {
+                boolean hasRelevantChild = tree.streamChildren(entry).anyMatch(relevantEntries::get);
+                filterInfo = createDebugTextForChecks(relativeName, entry, params)
+                    + "; hasRelevantChild=" + hasRelevantChild;
+            }
             System.out.println(relativeName + ": " + filterInfo);
         }
-        return isRelevant;
     }
 
-    private String createDebugTextForChecks(String relativeName, FileTreeEntry entry, TreeParameters params) {
-        return "regex=" + params.matchesRegexFilters(entry.getPath(), relativeName)
-            + ", size=" + params.matchesSizeFilters(entry)
-            + ", itemsInDir=" + params.matchesItemsInDirFilters(entry);
+    private String createDebugTextForChecks(String relativeName, int entry, TreeParameters params) {
+        return "regex=" + params.matchesRegexFilters(tree, entry, relativeName)
+            + ", size=" + params.matchesSizeFilters(tree, entry)
+            + ", itemsInDir=" + params.matchesItemsInDirFilters(tree, entry);
     }
 
-    private void printElement(FileTreeEntry entry, Path root, TreeParameters params) {
-        final String nameRelativeToRoot = root.relativize(entry.getPath()).toString();
-        final int level = FILE_SEPARATOR_MATCHER.countIn(nameRelativeToRoot);
-        final boolean isRoot = nameRelativeToRoot.isEmpty();
-
-        if (params.matchesTypeFilter(entry.getPath()) || isRoot) {
-            String indent = (params.isIndentElements() && !isRoot)
-                ? Strings.repeat("  ", level) + "- "
-                : "";
-            if (isRoot) {
-                indent = "Folder: ";
-            }
-
-            String filename = params.isShowAbsolutePath()
-                ? entry.getPath().toAbsolutePath().toString()
-                : (params.isIndentElements() ? entry.getPath().getFileName().toString() : nameRelativeToRoot);
-            String fileSize = params.isFormatFileSize()
-                ? FileSizeUtils.formatToHumanReadableSize(entry.getSize())
-                : entry.getSize().toString();
-
-            System.out.println(indent + filename + " (" + fileSize + ")");
+    private void dumpRelevantEntries(BitSet relevantEntries, TreeParameters params) {
+        TreeDumpFormat format = configuration.getValue(TREE_DUMP_FORMAT);
+        Path file = configuration.getValueOrPrompt(TREE_DUMP_FILE);
+
+        try (Writer writer = new BufferedWriter(
+                 new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+             RunMetrics.Stage ignored = metrics.startStage("dump")) {
+            long totalWritten = writeEntries(writer, format, relevantEntries, params);
+            System.out.println("Wrote " + totalWritten + " entries to '" + file.toAbsolutePath() + "'");
+        } catch (IOException e) {
+            System.out.println("Failed to write to '" + file.toAbsolutePath() + "': " + e.getMessage());
         }
     }
 
+    private long writeEntries(Writer writer, TreeDumpFormat format, BitSet relevantEntries,
+                              TreeParameters params) throws IOException {
+        IntStream sortedEntries = new RelevantEntrySorter(tree, relevantEntries).streamRelevantEntriesSorted(params);
+        return new TreeEntryWriter(writer, format, tree, filterEvaluator::getRelativeName, params)
+            .writeAll(sortedEntries);
+    }
+
     private TreeParameters createParams(boolean forcePrompt) {
         TreeParameters parameters = new TreeParameters();
 
@@ -237,107 +265,53 @@ public class FileTreeRunner {
     }
 
     /**
-     * Helper to save relevant entries in any order but to get them in original order at the end.
+     * Helper to get the relevant entries in the order they should be output. As the tree is stored in pre-order,
+     * the encounter order of the entries is the order of their indices.
      */
-    private static final class RelevantFileEntryCollector {
-
-        private final Path root;
-        private final boolean isDebug;
-        private final Map<Path, Integer> orderByEntry = new HashMap<>();
-        private final Set<FileTreeEntry> relevantEntries = new HashSet<>();
-        private int currentPosition = 0;
-
-        /**
-         * Constructor. Registers and adds the given entry as a relevant entry (the root is always deemed relevant).
-         *
-         * @param rootEntry the root entry
-         * @param isDebug defines whether we should log debug output
-         */
-        RelevantFileEntryCollector(FileTreeEntry rootEntry, boolean isDebug) {
-            this.root = rootEntry.getPath();
-            this.isDebug = isDebug;
-            registerEntry(rootEntry);
-            addRelevantEntry(rootEntry);
-        }
-
-        boolean isDebug() {
-            return isDebug;
-        }
-
-        /**
-         * Called for <b>every</b> entry as soon as it's encountered as to know about its encounter order.
-         *
-         * @param entry the entry to register
-         */
-        void registerEntry(FileTreeEntry entry) {
-            orderByEntry.put(entry.getPath(), currentPosition);
-            ++currentPosition;
-        }
+    private static final class RelevantEntrySorter {
 
-        /**
-         * Returns the path's file name relative to the root file of this collector.
-         *
-         * @param path the path to relativize
-         * @return file name relative to the root
-         */
-        String getNameRelativeToRoot(Path path) {
-            return root.relativize(path).toString();
-        }
+        private final FileTree tree;
+        private final BitSet relevantEntries;
 
-        /**
-         * Adds the given entry to this collector as a relevant entry.
-         *
-         * @param entry the relevant entry to add
-         */
-        void addRelevantEntry(FileTreeEntry entry) {
-            relevantEntries.add(entry);
+        RelevantEntrySorter(FileTree tree, BitSet relevantEntries) {
+            this.tree = tree;
+            this.relevantEntries = relevantEntries;
         }
 
         /**
-         * Returns all relevant entries by original encounter order.
+         * Returns the indices of all relevant entries by original encounter order, or sorted by size as defined by
+         * the parameters. Entries in encounter order are streamed from the relevant entries without collecting them.
          *
          * @param params tree parameters to sort by
          * @return relevant entries (sorted)
          */
-        List<FileTreeEntry> getRelevantEntriesSorted(TreeParameters params) {
+        IntStream streamRelevantEntriesSorted(TreeParameters params) {
             if (params.isSortBySize() && params.getDisplayMode() == TreeDisplayMode.ALL) {
-                return sortByHierarchyAndSize();
+                return IntStream.of(sortByHierarchyAndSize());
+            } else if (params.isSortBySize()) {
+                return IntStream.of(sortBySize(relevantEntries.stream()));
             }
-
-            Comparator<FileTreeEntry> treeEntryComparator = params.isSortBySize()
-                ? Comparator.comparing(FileTreeEntry::getSize)
-                : Comparator.comparing(entry -> orderByEntry.get(entry.getPath()));
-
-            return relevantEntries.stream()
-                .sorted(treeEntryComparator)
-                .collect(Collectors.toUnmodifiableList());
-        }
-
-        List<FileTreeEntry> sortByHierarchyAndSize() {
-            FileTreeEntry rootEntry = findRootTreeEntry();
-            return streamThroughEntryAndChildrenSortedBySize(rootEntry)
-                .collect(Collectors.toUnmodifiableList());
+            return relevantEntries.stream();
         }
 
-        private Stream<FileTreeEntry> streamThroughEntryAndChildrenSortedBySize(FileTreeEntry parent) {
-            Stream<FileTreeEntry> selfStream = Stream.of(parent);
-
-            Stream<FileTreeEntry> relevantSortedChildren = parent.getChildren().stream()
-                .filter(relevantEntries::contains)
-                .sorted(Comparator.comparing(FileTreeEntry::getSize))
-                .flatMap(this::streamThroughEntryAndChildrenSortedBySize);
-
-            return Stream.concat(selfStream, relevantSortedChildren);
+        int[] sortByHierarchyAndSize() {
+            IntStream.Builder result = IntStream.builder();
+            addEntryAndChildrenSortedBySize(FileTree.ROOT_INDEX, result);
+            return result.build().toArray();
         }
 
-        private FileTreeEntry findRootTreeEntry() {
-            for (FileTreeEntry entry : relevantEntries) {
-                if (entry.getPath().equals(root)) {
-                    return entry;
-                }
+        private void addEntryAndChildrenSortedBySize(int parent, IntStream.Builder result) {
+            result.add(parent);
+            for (int child : sortBySize(tree.streamChildren(parent).filter(relevantEntries::get))) {
+                addEntryAndChildrenSortedBySize(child, result);
             }
+        }
 
-            throw new IllegalStateException("Could not find root entry");
+        private int[] sortBySize(IntStream entries) {
+            return entries.boxed()
+                .sorted(Comparator.comparingLong(tree::getSize))
+                .mapToInt(Integer::intValue)
+                .toArray();
         }
     }
 }
@@ -0,0 +1,17 @@
+package ch.jalu.fileduplicatefinder.tree;
+
+/**
+ * Format of the file written by the tree's "dump" command.
+ */
+public enum TreeDumpFormat {
+
+    /** Same text as the console output. */
+    TEXT,
+
+    /** One row per entry with the columns type, size, items and path. */
+    CSV,
+
+    /** One JSON object per entry. */
+    JSON_LINES
+
+}
@@ -0,0 +1,145 @@
+package ch.jalu.fileduplicatefinder.tree;
+
+import ch.jalu.fileduplicatefinder.utils.FileSizeUtils;
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Strings;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.PrimitiveIterator;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import static ch.jalu.fileduplicatefinder.duplicatefinder.output.CsvResultOutputter.toCsvValue;
+import static ch.jalu.fileduplicatefinder.duplicatefinder.output.JsonLinesResultOutputter.toJsonString;
+
+/**
+ * Writes entries of a file tree in one of the {@link TreeDumpFormat formats}. Entries are written as they are
+ * consumed from the given stream, so they never need to be collected. Only entries that match the type filter
+ * are written, except for the root, which is always written.
+ * <p>
+ * The text format is the output shown in the console. CSV and JSON Lines write the type, size, number of items
+ * (directories only) and path of each entry; the path is relative to the root unless absolute paths are shown.
+ * Sizes are always in bytes in these formats. Examples:
+ * <pre>{@code
+ * type,size,items,path
+ * directory,2048,1,photos
+ * file,2048,,photos/a.jpg
+ *
+ * {"type":"directory","size":2048,"items":1,"path":"photos"}
+ * {"type":"file","size":2048,"path":"photos/a.jpg"}
+ * }</pre>
+ */
+class TreeEntryWriter {
+
+    private static final CharMatcher FILE_SEPARATOR_MATCHER = CharMatcher.is(File.separatorChar);
+
+    private final Writer writer;
+    private final TreeDumpFormat format;
+    private final FileTree tree;
+    private final IntFunction<String> relativeNames;
+    private final TreeParameters params;
+
+    /**
+     * Constructor.
+     *
+     * @param writer the writer to write to (not closed by this class)
+     * @param format the format to write
+     * @param tree the tree the entries belong to
+     * @param relativeNames function returning the name relative to the root of an entry
+     * @param params the tree parameters
+     */
+    TreeEntryWriter(Writer writer, TreeDumpFormat format, FileTree tree, IntFunction<String> relativeNames,
+                    TreeParameters params) {
+        this.writer = writer;
+        this.format = format;
+        this.tree = tree;
+        this.relativeNames = relativeNames;
+        this.params = params;
+    }
+
+    /**
+     * Writes the header (if the format has one) and all given entries.
+     *
+     * @param entries indices of the entries to write, in the order they should be written
+     * @return number of written entries
+     * @throws IOException if the writer throws an exception
+     */
+    long writeAll(IntStream entries) throws IOException {
+        if (format == TreeDumpFormat.CSV) {
+            writer.write("type,size,items,path\n");
+        }
+
+        long totalWritten = 0;
+        for (PrimitiveIterator.OfInt it = entries.iterator(); it.hasNext(); ) {
+            int entry = it.nextInt();
+            if (entry == FileTree.ROOT_INDEX || params.matchesTypeFilter(tree, entry)) {
+                writeEntry(entry);
+                ++totalWritten;
+            }
+        }
+        return totalWritten;
+    }
+
+    private void writeEntry(int entry) throws IOException {
+        switch (format) {
+            case TEXT:
+                writeTextLine(entry);
+                break;
+            case CSV:
+                writer.write(tree.isDirectory(entry) ? "directory," : "file,");
+                writer.write(Long.toString(tree.getSize(entry)));
+                writer.write(',');
+                if (tree.isDirectory(entry)) {
+                    writer.write(Integer.toString(tree.getItemCount(entry)));
+                }
+                writer.write(',');
+                writer.write(toCsvValue(getOutputPath(entry)));
+                writer.write('\n');
+                break;
+            case JSON_LINES:
+                writer.write(tree.isDirectory(entry) ? "{\"type\":\"directory\"" : "{\"type\":\"file\"");
+                writer.write(",\"size\":");
+                writer.write(Long.toString(tree.getSize(entry)));
+                if (tree.isDirectory(entry)) {
+                    writer.write(",\"items\":");
+                    writer.write(Integer.toString(tree.getItemCount(entry)));
+                }
+                writer.write(",\"path\":");
+                writer.write(toJsonString(getOutputPath(entry)));
+                writer.write("}\n");
+                break;
+            default:
+                throw new IllegalStateException("Unsupported format: " + format);
+        }
+    }
+
+    private void writeTextLine(int entry) throws IOException {
+        final String nameRelativeToRoot = relativeNames.apply(entry);
+        final int level = FILE_SEPARATOR_MATCHER.countIn(nameRelativeToRoot);
+        final boolean isRoot = entry == FileTree.ROOT_INDEX;
+
+        String indent = (params.isIndentElements() && !isRoot)
+            ? Strings.repeat("  ", level) + "- "
+            : "";
+        if (isRoot) {
+            indent = "Folder: ";
+        }
+
+        String filename = params.isShowAbsolutePath()
+            ? tree.getPath(entry).toAbsolutePath().toString()
+            : (params.isIndentElements() ? tree.getName(entry) : nameRelativeToRoot);
+        String fileSize = params.isFormatFileSize()
+            ? FileSizeUtils.formatToHumanReadableSize(tree.getSize(entry))
+            : String.valueOf(tree.getSize(entry));
+
+        writer.write(indent + filename + " (" + fileSize + ")\n");
+    }
+
+    private String getOutputPath(int entry) {
+        return params.isShowAbsolutePath()
+            ? tree.getPath(entry).toAbsolutePath().toString()
+            : relativeNames.apply(entry);
+    }
+}
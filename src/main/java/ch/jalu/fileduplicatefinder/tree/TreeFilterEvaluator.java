@@ -0,0 +1,186 @@
+package ch.jalu.fileduplicatefinder.tree;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluates the filters of the tree output on all entries of a tree. Subtrees are evaluated in parallel: a subtree
+ * is split up into a task per child until it is small enough to be evaluated on one thread. As the tree is stored in
+ * pre-order, the results are in encounter order without any merging.
+ * <p>
+ * The names of the entries relative to the root are only needed for the regex filters. They are computed the first
+ * time that regex filters are evaluated and are kept for all further evaluations of the same tree.
+ */
+class TreeFilterEvaluator {
+
+    private static final int SEQUENTIAL_THRESHOLD = 8192;
+
+    private final FileTree tree;
+    private final int threads;
+    @Nullable
+    private String[] relativeNames;
+
+    /**
+     * Constructor.
+     *
+     * @param tree the tree to evaluate the filters on
+     * @param threads number of threads to use
+     */
+    TreeFilterEvaluator(FileTree tree, int threads) {
+        this.tree = tree;
+        this.threads = threads;
+    }
+
+    FileTree getTree() {
+        return tree;
+    }
+
+    /**
+     * Returns the name of the entry relative to the root, from the cache if available.
+     *
+     * @param index the entry's index
+     * @return the entry's relative name
+     */
+    String getRelativeName(int index) {
+        return relativeNames == null ? tree.getRelativeName(index) : relativeNames[index];
+    }
+
+    /**
+     * Returns all entries that are relevant for the given parameters: the root, all entries that match the filters
+     * and, unless absolute paths are shown, all directories with a relevant entry.
+     *
+     * @param params the parameters to evaluate
+     * @return indices of the relevant entries
+     */
+    BitSet findRelevantEntries(TreeParameters params) {
+        boolean[] relevant = new boolean[tree.getEntryCount()];
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            if (params.hasRegexFilters() && relativeNames == null) {
+                String[] names = new String[tree.getEntryCount()];
+                names[FileTree.ROOT_INDEX] = "";
+                pool.invoke(new RelativeNamesTask(FileTree.ROOT_INDEX, names));
+                relativeNames = names;
+            }
+            pool.invoke(new FilterTask(FileTree.ROOT_INDEX, params, relevant));
+        } finally {
+            pool.shutdownNow();
+        }
+
+        BitSet relevantEntries = new BitSet(relevant.length);
+        relevantEntries.set(FileTree.ROOT_INDEX);
+        for (int i = FileTree.ROOT_INDEX + 1; i < relevant.length; ++i) {
+            if (relevant[i]) {
+                relevantEntries.set(i);
+            }
+        }
+        return relevantEntries;
+    }
+
+    /**
+     * Task evaluating the filters on a subtree. Small subtrees are evaluated from the last to the first index, so
+     * that the children of a directory are always evaluated before it. Larger subtrees fork a task per child with
+     * descendants, and evaluate the other children and the subtree's root once all tasks are done.
+     */
+    private final class FilterTask extends RecursiveAction {
+
+        private final int subtreeRoot;
+        private final TreeParameters params;
+        private final boolean[] relevant;
+
+        FilterTask(int subtreeRoot, TreeParameters params, boolean[] relevant) {
+            this.subtreeRoot = subtreeRoot;
+            this.params = params;
+            this.relevant = relevant;
+        }
+
+        @Override
+        protected void compute() {
+            int subtreeEnd = tree.getSubtreeEnd(subtreeRoot);
+            TreeParameters.EntryMatcher matcher = params.createEntryMatcher();
+            if (subtreeEnd - subtreeRoot <= SEQUENTIAL_THRESHOLD && subtreeRoot != FileTree.ROOT_INDEX) {
+                for (int i = subtreeEnd - 1; i >= subtreeRoot; --i) {
+                    evaluate(i, hasRelevantChild(i), matcher);
+                }
+            } else {
+                List<FilterTask> subtasks = new ArrayList<>();
+                for (int child = subtreeRoot + 1; child < subtreeEnd; child = tree.getSubtreeEnd(child)) {
+                    if (tree.getSubtreeEnd(child) - child > 1) {
+                        subtasks.add(new FilterTask(child, params, relevant));
+                    }
+                }
+                invokeAll(subtasks);
+                for (int child = subtreeRoot + 1; child < subtreeEnd; child = tree.getSubtreeEnd(child)) {
+                    if (tree.getSubtreeEnd(child) - child == 1) {
+                        evaluate(child, false, matcher);
+                    }
+                }
+                if (subtreeRoot != FileTree.ROOT_INDEX) {
+                    evaluate(subtreeRoot, hasRelevantChild(subtreeRoot), matcher);
+                }
+            }
+        }
+
+        private boolean hasRelevantChild(int index) {
+            int end = tree.getSubtreeEnd(index);
+            for (int child = index + 1; child < end; child = tree.getSubtreeEnd(child)) {
+                if (relevant[child]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void evaluate(int index, boolean hasRelevantChild, TreeParameters.EntryMatcher matcher) {
+            String relativeName = relativeNames == null ? null : relativeNames[index];
+            boolean isMatch = matcher.matches(tree, index, relativeName);
+            relevant[index] = isMatch || (!params.isShowAbsolutePath() && hasRelevantChild);
+        }
+    }
+
+    /**
+     * Task computing the relative names of a subtree's entries. The name of the subtree's root must be known.
+     */
+    private final class RelativeNamesTask extends RecursiveAction {
+
+        private final int subtreeRoot;
+        private final String[] names;
+
+        RelativeNamesTask(int subtreeRoot, String[] names) {
+            this.subtreeRoot = subtreeRoot;
+            this.names = names;
+        }
+
+        @Override
+        protected void compute() {
+            int subtreeEnd = tree.getSubtreeEnd(subtreeRoot);
+            String separator = tree.getRoot().getFileSystem().getSeparator();
+            if (subtreeEnd - subtreeRoot <= SEQUENTIAL_THRESHOLD) {
+                for (int i = subtreeRoot + 1; i < subtreeEnd; ++i) {
+                    names[i] = createRelativeName(i, separator);
+                }
+            } else {
+                List<RelativeNamesTask> subtasks = new ArrayList<>();
+                for (int child = subtreeRoot + 1; child < subtreeEnd; child = tree.getSubtreeEnd(child)) {
+                    names[child] = createRelativeName(child, separator);
+                    if (tree.getSubtreeEnd(child) - child > 1) {
+                        subtasks.add(new RelativeNamesTask(child, names));
+                    }
+                }
+                invokeAll(subtasks);
+            }
+        }
+
+        private String createRelativeName(int index, String separator) {
+            int parent = tree.getParentIndex(index);
+            return parent == FileTree.ROOT_INDEX
+                ? tree.getName(index)
+                : names[parent] + separator + tree.getName(index);
+        }
+    }
+}
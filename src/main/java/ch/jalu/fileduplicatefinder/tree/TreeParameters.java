@@ -2,8 +2,7 @@ package ch.jalu.fileduplicatefinder.tree;
 
 import org.jetbrains.annotations.Nullable;
 
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class TreeParameters {
@@ -22,58 +21,83 @@ public class TreeParameters {
     private boolean formatFileSize;
 
 
-    public boolean matchesRegexFilters(Path path, String nameToRoot) {
-        if (filePattern != null || directoryPattern != null) {
-            // Intentionally do NOT match a file if there is only a directory pattern
-            // -> then everything would be matched again when we show intermediate folders...
-            if (Files.isRegularFile(path)) {
-                return filePattern != null && filePattern.matcher(nameToRoot).matches();
-            } else if (Files.isDirectory(path)) {
-                return directoryPattern != null && directoryPattern.matcher(nameToRoot).matches();
-            } else {
-                throw new IllegalArgumentException("Path '" + path + "' has unknown type");
-            }
-        }
-        return true;
+    public boolean matchesRegexFilters(FileTree tree, int index, String nameToRoot) {
+        return createEntryMatcher().matchesRegexFilters(tree, index, nameToRoot);
     }
 
-    public boolean matchesSizeFilters(FileTreeEntry entry) {
+    public boolean matchesSizeFilters(FileTree tree, int index) {
         if (minSizeBytes != null || maxSizeBytes != null) {
-            if (!Files.isRegularFile(entry.getPath())) {
+            if (tree.isDirectory(index)) {
                 return false;
             }
-            long size = entry.getSize();
+            long size = tree.getSize(index);
             return (minSizeBytes == null || size >= minSizeBytes) && (maxSizeBytes == null || size <= maxSizeBytes);
         }
         return true;
     }
 
-    public boolean matchesItemsInDirFilters(FileTreeEntry entry) {
+    public boolean matchesItemsInDirFilters(FileTree tree, int index) {
         if (minItemsInDir != null || maxItemsInDir != null) {
-            if (!Files.isDirectory(entry.getPath())) {
+            if (!tree.isDirectory(index)) {
                 return false;
             }
 
-            int numberOfChildren = entry.getChildren().size();
+            int numberOfChildren = tree.getItemCount(index);
             return (minItemsInDir == null || numberOfChildren >= minItemsInDir)
                 && (maxItemsInDir == null || numberOfChildren <= maxItemsInDir);
         }
         return true;
     }
 
-    public boolean matchesTypeFilter(Path path) {
+    public boolean matchesTypeFilter(FileTree tree, int index) {
         switch (displayMode) {
             case ALL:
                 return true;
             case DIRECTORIES:
-                return Files.isDirectory(path);
+                return tree.isDirectory(index);
             case FILES:
-                return Files.isRegularFile(path);
+                return !tree.isDirectory(index);
             default:
                 throw new IllegalArgumentException("Unknown display mode type");
         }
     }
 
+    /**
+     * Returns whether a file directly in the given directory can match the filters. Used to determine which files
+     * need to be loaded if the tree was generated lazily.
+     *
+     * @param tree the tree
+     * @param index the index of the directory to check
+     * @return true if the directory's files can match, false if none of them can
+     */
+    public boolean mayMatchFilesIn(FileTree tree, int index) {
+        if (minItemsInDir != null || maxItemsInDir != null) {
+            return false; // Only directories match these filters
+        } else if (filePattern == null && directoryPattern != null) {
+            return false;
+        } else if (minSizeBytes != null && tree.getLargestFileSize(index) < minSizeBytes) {
+            return false;
+        }
+        return tree.getFileCount(index) > 0;
+    }
+
+    /**
+     * @return true if a file or directory pattern is set, i.e. if entries are filtered by their relative name
+     */
+    public boolean hasRegexFilters() {
+        return filePattern != null || directoryPattern != null;
+    }
+
+    /**
+     * Creates a matcher to check entries against all filters except for the type filter. The matcher reuses its
+     * regex matchers, so it must only be used by one thread.
+     *
+     * @return new entry matcher
+     */
+    public EntryMatcher createEntryMatcher() {
+        return new EntryMatcher();
+    }
+
     public boolean hasConflictingFilters() {
         if (minSizeBytes != null && maxSizeBytes != null && minSizeBytes > maxSizeBytes) {
             return true;
@@ -156,4 +180,42 @@ public class TreeParameters {
     public void setSortBySize(boolean sortBySize) {
         this.sortBySize = sortBySize;
     }
+
+    /**
+     * Checks entries against the filters of the parameters. Not thread-safe.
+     */
+    public final class EntryMatcher {
+
+        private final @Nullable Matcher fileMatcher;
+        private final @Nullable Matcher directoryMatcher;
+
+        private EntryMatcher() {
+            this.fileMatcher = filePattern == null ? null : filePattern.matcher("");
+            this.directoryMatcher = directoryPattern == null ? null : directoryPattern.matcher("");
+        }
+
+        /**
+         * Returns whether the entry matches the regex, size and items in directory filters.
+         *
+         * @param tree the tree
+         * @param index the entry's index
+         * @param nameToRoot the entry's name relative to the root (only used if there are regex filters)
+         * @return true if the entry matches, false otherwise
+         */
+        public boolean matches(FileTree tree, int index, @Nullable String nameToRoot) {
+            return matchesRegexFilters(tree, index, nameToRoot)
+                && matchesSizeFilters(tree, index)
+                && matchesItemsInDirFilters(tree, index);
+        }
+
+        private boolean matchesRegexFilters(FileTree tree, int index, @Nullable String nameToRoot) {
+            if (fileMatcher != null || directoryMatcher != null) {
+                // Intentionally do NOT match a file if there is only a directory pattern
+                // -> then everything would be matched again when we show intermediate folders...
+                Matcher matcher = tree.isDirectory(index) ? directoryMatcher : fileMatcher;
+                return matcher != null && matcher.reset(nameToRoot).matches();
+            }
+            return true;
+        }
+    }
 }
@@ -0,0 +1,64 @@
+package ch.jalu.fileduplicatefinder.utils;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Utilities for running tasks on multiple threads.
+ */
+public final class ConcurrencyUtils {
+
+    private ConcurrencyUtils() {
+    }
+
+    /**
+     * Returns the number of threads to use for the given configured value. Zero or negative values are interpreted
+     * as "use as many threads as there are available processors."
+     *
+     * @param configuredThreads the configured number of threads
+     * @return the number of threads to use (always positive)
+     */
+    public static int resolveNumberOfThreads(int configuredThreads) {
+        return configuredThreads > 0 ? configuredThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Creates a fixed thread pool of daemon threads, so that a pool that is not shut down does not keep
+     * the application alive.
+     *
+     * @param threads the number of threads the pool should have
+     * @param nameFormat format of the thread names (with %d for the thread number), e.g. "hash-worker-%d"
+     * @return new executor service
+     */
+    public static ExecutorService createFixedDaemonThreadPool(int threads, String nameFormat) {
+        return Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+            .setNameFormat(nameFormat)
+            .setDaemon(true)
+            .build());
+    }
+
+    /**
+     * Waits for the future to complete and returns its result. Runtime exceptions thrown within the future's
+     * task are rethrown as is, i.e. not wrapped in a {@link CompletionException}.
+     *
+     * @param future the future to wait for
+     * @param <T> the result type
+     * @return the result of the future
+     */
+    public static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
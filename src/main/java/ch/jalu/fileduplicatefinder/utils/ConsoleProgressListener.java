@@ -1,21 +1,26 @@
 package ch.jalu.fileduplicatefinder.utils;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prints a dot to the console at a regular interval of processed items. Can be notified from multiple threads.
+ */
 public class ConsoleProgressListener {
 
     private final int outputInterval;
-    private int count;
+    private final AtomicInteger count = new AtomicInteger();
 
     public ConsoleProgressListener(int outputInterval) {
         this.outputInterval = outputInterval;
     }
 
     public void notifyItemProcessed() {
-        if ((++count & outputInterval) == 0) {
+        if ((count.incrementAndGet() & outputInterval) == 0) {
             System.out.print("  .");
         }
     }
 
     public int getCount() {
-        return count;
+        return count.get();
     }
 }
@@ -0,0 +1,241 @@
+package ch.jalu.fileduplicatefinder.utils;
+
+import ch.jalu.fileduplicatefinder.metrics.Histogram;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Runs tasks that read files on worker threads, with a separate pool of threads for each device (file store) so that
+ * reads from different disks proceed in parallel while the number of concurrent reads on one disk stays limited.
+ * Devices that are detected as spinning disks get their own (typically lower) number of threads.
+ * <p>
+ * The waiting tasks of a device are run by priority, and tasks of the same priority in the order of the paths they
+ * read rather than in the order they were submitted, so that files close to each other on the disk are read one after
+ * the other. The device of a file is determined by its parent directory and cached per directory.
+ * <p>
+ * An instance is meant to be used for one run and must be closed afterwards.
+ */
+public class DeviceIoScheduler implements AutoCloseable {
+
+    private static final Path SYSFS_BLOCK_DEVICES = Paths.get("/sys/dev/block");
+
+    private final int threadsPerDevice;
+    private final int threadsPerSpinningDisk;
+    private final String threadNamePrefix;
+    private final Histogram queueDepth;
+
+    private final Map<Path, Device> devicesByDirectory = new ConcurrentHashMap<>();
+    private final Map<Object, Device> devicesByKey = new ConcurrentHashMap<>();
+    private final AtomicLong taskSequence = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param threadsPerDevice number of threads per device (0 to have as many threads as processors)
+     * @param threadsPerSpinningDisk number of threads for devices detected as spinning disks (0 to treat them like
+     *                               other devices)
+     * @param threadNamePrefix prefix of the worker threads' names, e.g. "hash-worker"
+     * @param queueDepth histogram to record the number of waiting tasks of the device in whenever a task is added
+     */
+    public DeviceIoScheduler(int threadsPerDevice, int threadsPerSpinningDisk, String threadNamePrefix,
+                             Histogram queueDepth) {
+        this.threadsPerDevice = ConcurrencyUtils.resolveNumberOfThreads(threadsPerDevice);
+        this.threadsPerSpinningDisk = threadsPerSpinningDisk > 0 ? threadsPerSpinningDisk : this.threadsPerDevice;
+        this.threadNamePrefix = threadNamePrefix;
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * Runs the given task on a worker thread of the device the given file is on.
+     *
+     * @param file the file the task reads (determines the device and the task's position in the device's queue)
+     * @param priority the priority of the task: waiting tasks with a lower value are run first
+     * @param task the task to run
+     * @param <T> the result type
+     * @return future with the task's result
+     */
+    public <T> CompletableFuture<T> supplyAsync(Path file, long priority, Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Runnable runnable = () -> {
+            try {
+                future.complete(task.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        };
+        ThreadPoolExecutor executor = getDevice(file).executor;
+        queueDepth.record(executor.getQueue().size());
+        executor.execute(new PrioritizedTask(priority, file, taskSequence.getAndIncrement(), runnable));
+        return future;
+    }
+
+    /**
+     * Returns a description of every device that tasks have been run for, e.g. "/dev/sda1 (spinning disk, 1 thread)".
+     *
+     * @return description of the devices used so far
+     */
+    public List<String> getDeviceDescriptions() {
+        return devicesByKey.values().stream()
+            .map(Device::toString)
+            .sorted()
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public void close() {
+        devicesByKey.values().forEach(device -> device.executor.shutdownNow());
+    }
+
+    private Device getDevice(Path file) {
+        Path directory = file.toAbsolutePath().getParent();
+        return devicesByDirectory.computeIfAbsent(directory,
+            dir -> devicesByKey.computeIfAbsent(getDeviceKey(dir), key -> createDevice(key, dir)));
+    }
+
+    private Device createDevice(Object deviceKey, Path directory) {
+        boolean isSpinningDisk = deviceKey instanceof Long && isSpinningDisk((Long) deviceKey);
+        int threads = isSpinningDisk ? threadsPerSpinningDisk : threadsPerDevice;
+        String nameFormat = threadNamePrefix + "-" + devicesByKey.size() + "-%d";
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new PriorityBlockingQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build());
+        return new Device(getFileStoreName(directory), isSpinningDisk, executor);
+    }
+
+    /**
+     * Returns a key identifying the device of the given directory. On Unix systems, this is the device ID of the
+     * directory, which is cheap to look up. Elsewhere, the file store is used.
+     */
+    private static Object getDeviceKey(Path directory) {
+        try {
+            return Files.getAttribute(directory, "unix:dev");
+        } catch (UnsupportedOperationException | IllegalArgumentException | IOException ignore) {
+            // Not a Unix file system, or the attribute could not be read: continue below
+        }
+
+        try {
+            return Files.getFileStore(directory);
+        } catch (IOException e) {
+            // Use the directory's root so that the files can still be read
+            return directory.getRoot() == null ? directory : directory.getRoot();
+        }
+    }
+
+    private static String getFileStoreName(Path directory) {
+        try {
+            FileStore fileStore = Files.getFileStore(directory);
+            return fileStore.name().isEmpty() ? fileStore.toString() : fileStore.name();
+        } catch (IOException e) {
+            return String.valueOf(directory.getRoot());
+        }
+    }
+
+    /**
+     * Returns whether the block device with the given ID is a spinning disk, as indicated by Linux in the sysfs.
+     * Returns false if this cannot be determined (e.g. on other systems, or for network file systems).
+     */
+    private static boolean isSpinningDisk(long deviceId) {
+        Path sysfsDevice = SYSFS_BLOCK_DEVICES.resolve(toSysfsDeviceName(deviceId));
+        // Partitions don't have a queue folder: the flag is on the folder of the disk they're on
+        for (String flagFile : new String[]{ "queue/rotational", "../queue/rotational" }) {
+            Path rotationalFlag = sysfsDevice.resolve(flagFile);
+            if (Files.isRegularFile(rotationalFlag)) {
+                return "1".equals(readFirstLine(rotationalFlag));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the "major:minor" name of the given device ID, as used in /sys/dev/block, by decoding the ID the same
+     * way as glibc.
+     *
+     * @param deviceId the device ID (st_dev)
+     * @return the sysfs name of the device
+     */
+    @VisibleForTesting
+    static String toSysfsDeviceName(long deviceId) {
+        long major = ((deviceId >>> 8) & 0xfffL) | ((deviceId >>> 32) & 0xfffff000L);
+        long minor = (deviceId & 0xffL) | ((deviceId >>> 12) & 0xffffff00L);
+        return major + ":" + minor;
+    }
+
+    private static @Nullable String readFirstLine(Path file) {
+        try {
+            List<String> lines = Files.readAllLines(file);
+            return lines.isEmpty() ? null : lines.get(0).trim();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static final class Device {
+
+        private final String name;
+        private final boolean isSpinningDisk;
+        private final ThreadPoolExecutor executor;
+
+        Device(String name, boolean isSpinningDisk, ThreadPoolExecutor executor) {
+            this.name = name;
+            this.isSpinningDisk = isSpinningDisk;
+            this.executor = executor;
+        }
+
+        @Override
+        public String toString() {
+            int threads = executor.getMaximumPoolSize();
+            return name + " (" + (isSpinningDisk ? "spinning disk, " : "")
+                + threads + (threads == 1 ? " thread)" : " threads)");
+        }
+    }
+
+    /**
+     * Task in a device's queue. Tasks are ordered by priority, then by the path they read, and finally by the order
+     * they were submitted in.
+     */
+    private static final class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+
+        private final long priority;
+        private final Path path;
+        private final long sequence;
+        private final Runnable task;
+
+        PrioritizedTask(long priority, Path path, long sequence, Runnable task) {
+            this.priority = priority;
+            this.path = path;
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask other) {
+            if (priority != other.priority) {
+                return Long.compare(priority, other.priority);
+            }
+            int pathComparison = path.compareTo(other.path);
+            return pathComparison != 0 ? pathComparison : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package ch.jalu.fileduplicatefinder;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * Test for {@link CommandLineArguments}.
+ */
+class CommandLineArgumentsTest {
+
+    @Test
+    void shouldParseArguments() {
+        // given
+        String[] args = {"core.task=duplicates", "my.properties", "--batch", "duplicates.filter.whitelist=*.jpg,a=b",
+            "--resume"};
+
+        // when
+        CommandLineArguments arguments = CommandLineArguments.parse(args);
+
+        // then
+        assertThat(arguments.isBatchMode()).isTrue();
+        assertThat(arguments.isResume()).isTrue();
+        assertThat(arguments.getConfigFile()).isEqualTo(Paths.get("my.properties"));
+        assertThat(arguments.getSettings()).containsExactly(
+            entry("core.task", "duplicates"), entry("duplicates.filter.whitelist", "*.jpg,a=b"));
+    }
+
+    @Test
+    void shouldReturnDefaultsForNoArguments() {
+        // given / when
+        CommandLineArguments arguments = CommandLineArguments.parse();
+
+        // then
+        assertThat(arguments.isBatchMode()).isFalse();
+        assertThat(arguments.isResume()).isFalse();
+        assertThat(arguments.getConfigFile()).isNull();
+        assertThat(arguments.getSettings()).isEmpty();
+    }
+
+    @Test
+    void shouldRejectInvalidArguments() {
+        // given / when / then
+        assertThatExceptionOfType(IllegalArgumentException.class)
+            .isThrownBy(() -> CommandLineArguments.parse("--quiet"))
+            .withMessage("Unknown option '--quiet'");
+        assertThatExceptionOfType(IllegalArgumentException.class)
+            .isThrownBy(() -> CommandLineArguments.parse("a.properties", "b.properties"))
+            .withMessageContaining("'b.properties'");
+    }
+}
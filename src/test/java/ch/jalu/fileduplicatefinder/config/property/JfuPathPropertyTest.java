@@ -0,0 +1,63 @@
+package ch.jalu.fileduplicatefinder.config.property;
+
+import ch.jalu.configme.properties.convertresult.PropertyValue;
+import ch.jalu.configme.resource.PropertyReader;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Test for {@link JfuPathProperty}.
+ */
+class JfuPathPropertyTest {
+
+    @Test
+    void shouldReadExistingFileFromResource() {
+        // given
+        JfuPathProperty property = new JfuPathProperty("diff.folder", Paths.get("."), true);
+        PropertyReader reader = mock(PropertyReader.class);
+        given(reader.getObject("diff.folder")).willReturn("pom.xml");
+
+        // when
+        PropertyValue<Path> propertyValue = property.determineValue(reader);
+
+        // then
+        assertThat(propertyValue.getValue()).isEqualTo(Paths.get("pom.xml"));
+        assertThat(propertyValue.isValidInResource()).isEqualTo(true);
+    }
+
+    @Test
+    void shouldReturnDefaultForNonExistentPath() {
+        // given
+        JfuPathProperty property = new JfuPathProperty("diff.folder", Paths.get("."), true);
+        PropertyReader reader = mock(PropertyReader.class);
+        given(reader.getObject("diff.folder")).willReturn("does-not-exist-23987.jfm");
+
+        // when
+        PropertyValue<Path> propertyValue = property.determineValue(reader);
+
+        // then
+        assertThat(propertyValue.getValue()).isEqualTo(Paths.get(".")); // default value
+        assertThat(propertyValue.isValidInResource()).isEqualTo(false);
+    }
+
+    @Test
+    void shouldAcceptNonExistentPathIfAllowed() {
+        // given
+        JfuPathProperty property = new JfuPathProperty("diff.output", Paths.get("."), false);
+        PropertyReader reader = mock(PropertyReader.class);
+        given(reader.getObject("diff.output")).willReturn("does-not-exist-23987.jfm");
+
+        // when
+        PropertyValue<Path> propertyValue = property.determineValue(reader);
+
+        // then
+        assertThat(propertyValue.getValue()).isEqualTo(Paths.get("does-not-exist-23987.jfm"));
+        assertThat(propertyValue.isValidInResource()).isEqualTo(true);
+    }
+}
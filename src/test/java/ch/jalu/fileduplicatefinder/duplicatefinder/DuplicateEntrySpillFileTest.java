@@ -0,0 +1,59 @@
+package ch.jalu.fileduplicatefinder.duplicatefinder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test for {@link DuplicateEntrySpillFile}.
+ */
+class DuplicateEntrySpillFileTest {
+
+    @Test
+    void shouldReadEntriesSortedBySizeAndFileCount(@TempDir Path tempFolder) throws IOException {
+        // given
+        Path file = tempFolder.resolve("entries.spill");
+        List<DuplicateEntry> readEntries = new ArrayList<>();
+
+        try (DuplicateEntrySpillFile spillFile = new DuplicateEntrySpillFile(file)) {
+            spillFile.write(new DuplicateEntry(20, "a", asList(Paths.get("a1"), Paths.get("a2"))));
+            spillFile.write(new DuplicateEntry(3000, "b", asList(Paths.get("b1"), Paths.get("dir/b2"))));
+            spillFile.write(new DuplicateEntry(20, "c", asList(Paths.get("c1"), Paths.get("c2"), Paths.get("c3"))));
+            spillFile.write(new DuplicateEntry(20, "d", asList(Paths.get("d1"), Paths.get("d2"))));
+
+            // when
+            spillFile.readSorted(readEntries::add);
+
+            // then
+            assertThat(spillFile.getTotalEntries()).isEqualTo(4);
+        }
+
+        assertThat(readEntries).extracting(DuplicateEntry::getHash).containsExactly("b", "c", "a", "d");
+        assertThat(readEntries.get(0).getSize()).isEqualTo(3000L);
+        assertThat(readEntries.get(0).getPaths()).containsExactly(Paths.get("b1"), Paths.get("dir/b2"));
+        assertThat(readEntries.get(1).getPaths()).hasSize(3);
+        assertThat(file).doesNotExist();
+    }
+
+    @Test
+    void shouldHandleNoEntries() throws IOException {
+        // given
+        List<DuplicateEntry> readEntries = new ArrayList<>();
+
+        // when
+        try (DuplicateEntrySpillFile spillFile = DuplicateEntrySpillFile.createTempFile()) {
+            spillFile.readSorted(readEntries::add);
+        }
+
+        // then
+        assertThat(readEntries).isEmpty();
+    }
+}
@@ -0,0 +1,135 @@
+package ch.jalu.fileduplicatefinder.duplicatefinder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Test for {@link DuplicateScanJournal}.
+ */
+class DuplicateScanJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldReturnRecordsOfUnchangedFilesWhenResuming() throws IOException {
+        // given
+        Path journalFile = tempDir.resolve("journal");
+        Path folder = Files.createDirectory(tempDir.resolve("files"));
+        Path file1 = Files.writeString(folder.resolve("a\tb.txt"), "data");
+        Path file2 = Files.writeString(folder.resolve("c.txt"), "data");
+        Path file3 = Files.writeString(folder.resolve("d.txt"), "diff");
+        Map<Path, Long> lastModifiedByPath = DuplicateScanJournal.readLastModifiedTimes(List.of(file1, file2, file3));
+        long lastModified = DuplicateScanJournal.readLastModifiedTime(file1);
+
+        try (DuplicateScanJournal journal = DuplicateScanJournal.open(journalFile, folder, "SHA1", false, 30)) {
+            journal.recordHash(file1, 4, lastModified, "hash1");
+            journal.recordFinishedSize(4, lastModifiedByPath,
+                List.of(new DuplicateEntry(4, "Identical bytes", List.of(file1, file2))));
+            journal.recordReadError(file3, "Test error");
+        }
+
+        // when
+        try (DuplicateScanJournal journal = DuplicateScanJournal.open(journalFile, folder, "SHA1", true, 30)) {
+
+            // then
+            assertThat(journal.getTotalHashes()).isEqualTo(1);
+            assertThat(journal.getHash(file1, 4, lastModified)).isEqualTo("hash1");
+            assertThat(journal.getHash(file1, 4, lastModified + 1)).isNull();
+            assertThat(journal.getHash(file2, 4, lastModified)).isNull();
+
+            List<DuplicateEntry> entries = journal.getFinishedSize(4, lastModifiedByPath);
+            assertThat(entries).hasSize(1);
+            assertThat(entries.get(0).getHash()).isEqualTo("Identical bytes");
+            assertThat(entries.get(0).getPaths()).containsExactly(file1, file2);
+            assertThat(journal.getFinishedSize(5, lastModifiedByPath)).isNull();
+            assertThat(journal.getFinishedSize(4, Map.of(file1, lastModified, file2, lastModified))).isNull();
+        }
+    }
+
+    @Test
+    void shouldNotReturnFinishedSizeIfFileWasModified() throws IOException {
+        // given
+        Path journalFile = tempDir.resolve("journal");
+        Path file1 = Files.writeString(tempDir.resolve("a.txt"), "data");
+        Path file2 = Files.writeString(tempDir.resolve("b.txt"), "diff");
+        Map<Path, Long> lastModifiedByPath = DuplicateScanJournal.readLastModifiedTimes(List.of(file1, file2));
+        try (DuplicateScanJournal journal = DuplicateScanJournal.open(journalFile, tempDir, "SHA1", false, 30)) {
+            journal.recordFinishedSize(4, lastModifiedByPath, List.of());
+        }
+        Files.setLastModifiedTime(file2, FileTime.fromMillis(Files.getLastModifiedTime(file2).toMillis() - 5000));
+
+        // when
+        try (DuplicateScanJournal journal = DuplicateScanJournal.open(journalFile, tempDir, "SHA1", true, 30)) {
+
+            // then
+            assertThat(journal.getFinishedSize(4, lastModifiedByPath)).isEmpty();
+            assertThat(journal.getFinishedSize(4, DuplicateScanJournal.readLastModifiedTimes(List.of(file1, file2))))
+                .isNull();
+        }
+    }
+
+    @Test
+    void shouldIgnoreIncompleteLastRecord() throws IOException {
+        // given
+        Path journalFile = tempDir.resolve("journal");
+        Path file = Files.writeString(tempDir.resolve("a.txt"), "data");
+        try (DuplicateScanJournal journal = DuplicateScanJournal.open(journalFile, tempDir, "SHA1", false, 30)) {
+            journal.recordHash(file, 4, 1000L, "hash");
+        }
+        Files.writeString(journalFile, "H\t4\t10", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        // when
+        try (DuplicateScanJournal journal = DuplicateScanJournal.open(journalFile, tempDir, "SHA1", true, 30)) {
+
+            // then
+            assertThat(journal.getTotalHashes()).isEqualTo(1);
+            assertThat(journal.getHash(file, 4, 1000L)).isEqualTo("hash");
+        }
+    }
+
+    @Test
+    void shouldStartNewJournalIfNotResuming() throws IOException {
+        // given
+        Path journalFile = tempDir.resolve("journal");
+        Path file = Files.writeString(tempDir.resolve("a.txt"), "data");
+        try (DuplicateScanJournal journal = DuplicateScanJournal.open(journalFile, tempDir, "SHA1", false, 30)) {
+            journal.recordHash(file, 4, 1000L, "hash");
+        }
+
+        // when
+        try (DuplicateScanJournal journal = DuplicateScanJournal.open(journalFile, tempDir, "SHA1", false, 30)) {
+
+            // then
+            assertThat(journal.getTotalHashes()).isZero();
+        }
+        assertThat(Files.readAllLines(journalFile)).hasSize(1);
+    }
+
+    @Test
+    void shouldRejectJournalOfOtherFolderOrAlgorithm() throws IOException {
+        // given
+        Path journalFile = tempDir.resolve("journal");
+        DuplicateScanJournal.open(journalFile, tempDir, "SHA1", false, 30).close();
+
+        // when / then
+        assertThatExceptionOfType(IOException.class)
+            .isThrownBy(() -> DuplicateScanJournal.open(journalFile, tempDir, "CRC32", true, 30))
+            .withMessageContaining("with hash algorithm CRC32");
+        assertThatExceptionOfType(IOException.class)
+            .isThrownBy(() -> DuplicateScanJournal.open(journalFile, tempDir.resolve("sub"), "SHA1", true, 30))
+            .withMessageContaining("is not a journal of the folder");
+    }
+}
@@ -0,0 +1,96 @@
+package ch.jalu.fileduplicatefinder.duplicatefinder;
+
+import ch.jalu.fileduplicatefinder.filefilter.FilePathMatcher;
+import ch.jalu.fileduplicatefinder.hashing.FileHasher;
+import ch.jalu.fileduplicatefinder.output.WriterReader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.BDDMockito.given;
+
+/**
+ * Test for {@link DuplicateWatcher}.
+ */
+class DuplicateWatcherTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private FileHasher fileHasher;
+
+    @Mock
+    private FilePathMatcher pathMatcher;
+
+    @Mock
+    private WriterReader logger;
+
+    private IncrementalDuplicateIndex index;
+
+    @BeforeEach
+    void initMocksAndIndex() throws IOException {
+        MockitoAnnotations.initMocks(this);
+        given(fileHasher.calculateHash(any(Path.class)))
+            .willAnswer(invocation -> Files.readString(invocation.getArgument(0)));
+        given(pathMatcher.shouldScan(any(Path.class), any(BasicFileAttributes.class))).willReturn(true);
+        given(pathMatcher.hasFileFromResultWhitelist(anyCollection())).willReturn(true);
+        index = new IncrementalDuplicateIndex(fileHasher, pathMatcher, 0, logger);
+    }
+
+    @Test
+    void shouldScanFolderAndReportNewDuplicates() throws Exception {
+        // given
+        Path sub = Files.createDirectory(tempDir.resolve("sub"));
+        Path original = Files.writeString(sub.resolve("original.txt"), "contents");
+        Files.writeString(tempDir.resolve("other.txt"), "other");
+        BlockingQueue<DuplicateEntry> newDuplicates = new LinkedBlockingQueue<>();
+
+        try (DuplicateWatcher watcher = new DuplicateWatcher(tempDir, pathMatcher, index, 1, 50, logger)) {
+            int totalFiles = watcher.scan();
+            assertThat(index.hashCandidates(1)).isEmpty();
+            Thread watchThread = new Thread(() -> {
+                try {
+                    watcher.watch(newDuplicates::add);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            watchThread.setDaemon(true);
+            watchThread.start();
+
+            // when
+            Path copyInNewFolder = Files.createDirectories(tempDir.resolve("new/folder")).resolve("copy.txt");
+            Files.writeString(copyInNewFolder, "contents");
+            DuplicateEntry firstDuplicate = newDuplicates.poll(10, TimeUnit.SECONDS);
+            Files.delete(copyInNewFolder);
+            Path copy = Files.writeString(sub.resolve("copy.txt"), "contents");
+            DuplicateEntry secondDuplicate = newDuplicates.poll(10, TimeUnit.SECONDS);
+
+            // then
+            assertThat(totalFiles).isEqualTo(2);
+            assertThat(firstDuplicate).isNotNull();
+            assertThat(firstDuplicate.getPaths()).containsExactlyInAnyOrder(original, copyInNewFolder);
+            assertThat(secondDuplicate).isNotNull();
+            assertThat(secondDuplicate.getPaths()).containsExactlyInAnyOrder(original, copy);
+            assertThat(index.getTotalFiles()).isEqualTo(3);
+
+            watcher.close();
+            watchThread.join(5000);
+            assertThat(watchThread.isAlive()).isFalse();
+        }
+    }
+}
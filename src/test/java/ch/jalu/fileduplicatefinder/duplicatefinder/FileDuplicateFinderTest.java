@@ -3,30 +3,51 @@ package ch.jalu.fileduplicatefinder.duplicatefinder;
 import ch.jalu.fileduplicatefinder.TestUtils;
 import ch.jalu.fileduplicatefinder.config.FileUtilConfiguration;
 import ch.jalu.fileduplicatefinder.filefilter.FilePathMatcher;
+import ch.jalu.fileduplicatefinder.hashing.CachingFileHasher;
 import ch.jalu.fileduplicatefinder.hashing.FileHasher;
+import ch.jalu.fileduplicatefinder.hashing.HashingAlgorithm;
+import ch.jalu.fileduplicatefinder.metrics.RunMetrics;
 import ch.jalu.fileduplicatefinder.output.TaskWriterReader;
 import com.google.common.io.MoreFiles;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_COMPARE_MAX_GROUP_SIZE;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_COMPARE_MIN_SIZE_MB;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_ALGORITHM;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_MAX_SIZE_MB;
-import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_OUTPUT_DIFFERENCE_READ_FILES_VS_HASH;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_THREADS;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_THREADS_PER_SPINNING_DISK;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_JOURNAL_CHECKPOINT_INTERVAL_SECONDS;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_JOURNAL_FILE;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_JOURNAL_RESUME;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_MAX_RUNTIME_SECONDS;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_OUTPUT_PROGRESS_FILES_FOUND_INTERVAL;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_OUTPUT_PROGRESS_FILES_HASHED_INTERVAL;
-import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_READ_BEFORE_HASH_BYTES_TO_READ;
-import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_READ_BEFORE_HASH_MIN_SIZE;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_PREFILTER_HEAD_BYTES;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_PREFILTER_SAMPLE_BLOCKS;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_PREFILTER_SAMPLE_BLOCK_BYTES;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_PREFILTER_TAIL_BYTES;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.SCAN_THREADS;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 
 /**
  * Test for {@link FileDuplicateFinder}.
@@ -54,19 +75,29 @@ class FileDuplicateFinderTest {
         MockitoAnnotations.initMocks(this);
         given(configuration.getValue(DUPLICATE_OUTPUT_PROGRESS_FILES_FOUND_INTERVAL)).willReturn(1023);
         given(configuration.getValue(DUPLICATE_OUTPUT_PROGRESS_FILES_HASHED_INTERVAL)).willReturn(1023);
-        fileDuplicateFinder = new FileDuplicateFinder(rootFolder, fileHasher, filePathMatcher, configuration, logger);
+        given(configuration.getValue(DUPLICATE_HASH_THREADS)).willReturn(1);
+        given(configuration.getValue(DUPLICATE_HASH_THREADS_PER_SPINNING_DISK)).willReturn(1);
+        given(configuration.getValue(DUPLICATE_MAX_RUNTIME_SECONDS)).willReturn(0);
+        given(configuration.getValue(DUPLICATE_JOURNAL_FILE)).willReturn(Optional.empty());
+        given(configuration.getValue(SCAN_THREADS)).willReturn(2);
+        given(configuration.getValue(DUPLICATE_PREFILTER_HEAD_BYTES)).willReturn(0);
+        given(configuration.getValue(DUPLICATE_PREFILTER_TAIL_BYTES)).willReturn(0);
+        given(configuration.getValue(DUPLICATE_PREFILTER_SAMPLE_BLOCKS)).willReturn(0);
+        given(configuration.getValue(DUPLICATE_PREFILTER_SAMPLE_BLOCK_BYTES)).willReturn(4096);
+        given(configuration.getValue(DUPLICATE_COMPARE_MAX_GROUP_SIZE)).willReturn(0);
+        given(configuration.getValue(DUPLICATE_COMPARE_MIN_SIZE_MB)).willReturn(0.0);
+        fileDuplicateFinder = new FileDuplicateFinder(rootFolder, fileHasher, filePathMatcher, configuration,
+            new RunMetrics(), logger);
     }
 
     @Test
     void shouldFindDuplicates() throws IOException {
         // given
-        given(filePathMatcher.shouldScan(any(Path.class))).willReturn(true);
+        given(filePathMatcher.shouldScan(any(Path.class), any(BasicFileAttributes.class))).willReturn(true);
         given(filePathMatcher.hasFileFromResultWhitelist(anyCollection())).willReturn(true);
         given(configuration.getValue(DUPLICATE_OUTPUT_PROGRESS_FILES_FOUND_INTERVAL)).willReturn(1023);
         given(configuration.getValue(DUPLICATE_OUTPUT_PROGRESS_FILES_HASHED_INTERVAL)).willReturn(1023);
         given(configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB)).willReturn(9.0);
-        given(configuration.getValue(DUPLICATE_READ_BEFORE_HASH_MIN_SIZE)).willReturn(5.0);
-        given(configuration.getValue(DUPLICATE_OUTPUT_DIFFERENCE_READ_FILES_VS_HASH)).willReturn(false);
         given(fileHasher.calculateHash(any(Path.class)))
             .willAnswer(invocation -> MoreFiles.getFileExtension(invocation.getArgument(0)));
 
@@ -84,13 +115,11 @@ class FileDuplicateFinderTest {
     @Test
     void shouldNotHashFilesBeyondSizeLimit() throws IOException {
         // given
-        given(filePathMatcher.shouldScan(any(Path.class))).willReturn(true);
+        given(filePathMatcher.shouldScan(any(Path.class), any(BasicFileAttributes.class))).willReturn(true);
         given(filePathMatcher.hasFileFromResultWhitelist(anyCollection())).willReturn(true);
         given(configuration.getValue(DUPLICATE_OUTPUT_PROGRESS_FILES_FOUND_INTERVAL)).willReturn(3);
         given(configuration.getValue(DUPLICATE_OUTPUT_PROGRESS_FILES_HASHED_INTERVAL)).willReturn(3);
         given(configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB)).willReturn(0.0009); // approx 1 KB
-        given(configuration.getValue(DUPLICATE_READ_BEFORE_HASH_MIN_SIZE)).willReturn(0.1);
-        given(configuration.getValue(DUPLICATE_OUTPUT_DIFFERENCE_READ_FILES_VS_HASH)).willReturn(false);
         given(fileHasher.calculateHash(any(Path.class)))
             .willAnswer(invocation -> MoreFiles.getFileExtension(invocation.getArgument(0)));
 
@@ -108,14 +137,12 @@ class FileDuplicateFinderTest {
     @Test
     void shouldReadFirstBytesBeforeHashing() throws IOException {
         // given
-        given(filePathMatcher.shouldScan(any(Path.class))).willReturn(true);
+        given(filePathMatcher.shouldScan(any(Path.class), any(BasicFileAttributes.class))).willReturn(true);
         given(filePathMatcher.hasFileFromResultWhitelist(anyCollection())).willReturn(true);
         given(configuration.getValue(DUPLICATE_OUTPUT_PROGRESS_FILES_FOUND_INTERVAL)).willReturn(1023);
         given(configuration.getValue(DUPLICATE_OUTPUT_PROGRESS_FILES_HASHED_INTERVAL)).willReturn(1023);
         given(configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB)).willReturn(0.5);
-        given(configuration.getValue(DUPLICATE_READ_BEFORE_HASH_MIN_SIZE)).willReturn(0.0000001);
-        given(configuration.getValue(DUPLICATE_READ_BEFORE_HASH_BYTES_TO_READ)).willReturn(5);
-        given(configuration.getValue(DUPLICATE_OUTPUT_DIFFERENCE_READ_FILES_VS_HASH)).willReturn(false);
+        given(configuration.getValue(DUPLICATE_PREFILTER_HEAD_BYTES)).willReturn(5);
         given(fileHasher.calculateHash(any(Path.class))).willReturn("s");
 
         // when
@@ -134,14 +161,12 @@ class FileDuplicateFinderTest {
     @Test
     void shouldRespectFilePathMatcher() throws IOException {
         // given
-        given(filePathMatcher.shouldScan(any(Path.class)))
+        given(filePathMatcher.shouldScan(any(Path.class), any(BasicFileAttributes.class)))
             .willAnswer(invocation -> !invocation.getArgument(0).toString().endsWith(".txt"));
         given(filePathMatcher.hasFileFromResultWhitelist(anyCollection())).willReturn(true);
         given(configuration.getValue(DUPLICATE_OUTPUT_PROGRESS_FILES_FOUND_INTERVAL)).willReturn(1023);
         given(configuration.getValue(DUPLICATE_OUTPUT_PROGRESS_FILES_HASHED_INTERVAL)).willReturn(1023);
         given(configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB)).willReturn(0.5);
-        given(configuration.getValue(DUPLICATE_READ_BEFORE_HASH_MIN_SIZE)).willReturn(555.0);
-        given(configuration.getValue(DUPLICATE_OUTPUT_DIFFERENCE_READ_FILES_VS_HASH)).willReturn(false);
         given(fileHasher.calculateHash(any(Path.class)))
             .willAnswer(invocation -> MoreFiles.getFileExtension(invocation.getArgument(0)));
 
@@ -155,4 +180,298 @@ class FileDuplicateFinderTest {
         assertThat(result.get(0).getPaths()).extracting(path -> path.getFileName().toString())
             .containsExactlyInAnyOrder("test_6.csv", "test_4.csv");
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldCompareSmallGroupsInsteadOfHashing() throws IOException {
+        // given
+        given(filePathMatcher.shouldScan(any(Path.class), any(BasicFileAttributes.class))).willReturn(true);
+        given(filePathMatcher.hasFileFromResultWhitelist(anyCollection())).willReturn(true);
+        given(configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB)).willReturn(0.5);
+        given(configuration.getValue(DUPLICATE_COMPARE_MAX_GROUP_SIZE)).willReturn(2);
+        given(configuration.getValue(DUPLICATE_COMPARE_MIN_SIZE_MB)).willReturn(0.00002); // approx 20 bytes
+        given(fileHasher.calculateHash(any(Path.class)))
+            .willAnswer(invocation -> MoreFiles.getFileExtension(invocation.getArgument(0)));
+
+        // when
+        fileDuplicateFinder.processFiles();
+        List<DuplicateEntry> result = fileDuplicateFinder.filterFilesForDuplicates();
+
+        // then
+        verify(fileHasher, times(2)).calculateHash(any(Path.class)); // test_2.txt and test_7.xml are below min size
+        assertThat(result).extracting(DuplicateEntry::getSize).containsExactly(1733L, 46L);
+        assertThat(result.get(0).getPaths()).extracting(path -> path.getFileName().toString())
+            .containsExactly("test_4.csv", "test_6.csv");
+        assertThat(result.get(1).getPaths()).extracting(path -> path.getFileName().toString())
+            .containsExactly("test_1.json", "test_3.txt");
+    }
+
+    @Test
+    void shouldHashSmallGroupsIfHashesAreCached(@TempDir Path tempDir) throws IOException {
+        // given
+        given(filePathMatcher.shouldScan(any(Path.class), any(BasicFileAttributes.class))).willReturn(true);
+        given(filePathMatcher.hasFileFromResultWhitelist(anyCollection())).willReturn(true);
+        given(configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB)).willReturn(0.5);
+        given(configuration.getValue(DUPLICATE_COMPARE_MAX_GROUP_SIZE)).willReturn(2);
+        given(fileHasher.calculateHash(any(Path.class)))
+            .willAnswer(invocation -> MoreFiles.getFileExtension(invocation.getArgument(0)));
+        CachingFileHasher cachingFileHasher =
+            new CachingFileHasher(fileHasher, HashingAlgorithm.SHA1, tempDir.resolve("cache"));
+        FileDuplicateFinder finder = new FileDuplicateFinder(rootFolder, cachingFileHasher, filePathMatcher,
+            configuration, new RunMetrics(), logger);
+
+        // when
+        finder.processFiles();
+        List<DuplicateEntry> result = finder.filterFilesForDuplicates();
+
+        // then
+        verify(fileHasher, times(6)).calculateHash(any(Path.class));
+        assertThat(cachingFileHasher.getMissCount()).isEqualTo(6);
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).getPaths()).extracting(path -> path.getFileName().toString())
+            .containsExactly("test_4.csv", "test_6.csv");
+    }
+
+    @Test
+    void shouldNotReadFilesWithCachedHash(@TempDir Path tempDir) throws IOException {
+        // given
+        given(filePathMatcher.shouldScan(any(Path.class), any(BasicFileAttributes.class))).willReturn(true);
+        given(filePathMatcher.hasFileFromResultWhitelist(anyCollection())).willReturn(true);
+        given(configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB)).willReturn(0.0);
+        given(configuration.getValue(DUPLICATE_PREFILTER_HEAD_BYTES)).willReturn(2);
+        given(fileHasher.calculateHash(any(Path.class)))
+            .willAnswer(invocation -> Files.readString(invocation.getArgument(0)));
+        Path folder = Files.createDirectory(tempDir.resolve("files"));
+        Path file1 = Files.writeString(folder.resolve("a.txt"), "data");
+        Path file2 = Files.writeString(folder.resolve("b.txt"), "data");
+        Files.writeString(folder.resolve("c.txt"), "diff");
+        CachingFileHasher cachingFileHasher =
+            new CachingFileHasher(fileHasher, HashingAlgorithm.SHA1, tempDir.resolve("cache"));
+        FileDuplicateFinder firstRun = new FileDuplicateFinder(folder, cachingFileHasher, filePathMatcher,
+            configuration, new RunMetrics(), logger);
+        firstRun.processFiles();
+        firstRun.filterFilesForDuplicates();
+
+        RunMetrics metrics = new RunMetrics();
+        FileDuplicateFinder secondRun =
+            new FileDuplicateFinder(folder, cachingFileHasher, filePathMatcher, configuration, metrics, logger);
+        Path file3 = Files.writeString(folder.resolve("d.txt"), "data");
+
+        // when
+        secondRun.processFiles();
+        List<DuplicateEntry> result = secondRun.filterFilesForDuplicates();
+
+        // then
+        verify(fileHasher, times(3)).calculateHash(any(Path.class)); // a.txt and b.txt first, only d.txt afterwards
+        assertThat(cachingFileHasher.getHitCount()).isEqualTo(2); // a.txt and b.txt, each counted once
+        // c.txt and d.txt are compared with one file of the cached hash
+        assertThat(metrics.counter("prefilter.files").get()).isEqualTo(3);
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).getHash()).isEqualTo("data");
+        assertThat(result.get(0).getPaths()).containsExactlyInAnyOrder(file1, file2, file3);
+    }
+
+    @Test
+    void shouldNotHashFilesComparedEntirelyByContentFilter(@TempDir Path tempDir) throws IOException {
+        // given
+        given(filePathMatcher.shouldScan(any(Path.class), any(BasicFileAttributes.class))).willReturn(true);
+        given(filePathMatcher.hasFileFromResultWhitelist(anyCollection())).willReturn(true);
+        given(configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB)).willReturn(0.0);
+        given(configuration.getValue(DUPLICATE_PREFILTER_HEAD_BYTES)).willReturn(4096);
+        Path file1 = Files.writeString(tempDir.resolve("a.txt"), "data");
+        Path file2 = Files.writeString(tempDir.resolve("b.txt"), "data");
+        Files.writeString(tempDir.resolve("c.txt"), "diff");
+        FileDuplicateFinder finder =
+            new FileDuplicateFinder(tempDir, fileHasher, filePathMatcher, configuration, new RunMetrics(), logger);
+
+        // when
+        finder.processFiles();
+        List<DuplicateEntry> result = finder.filterFilesForDuplicates();
+
+        // then
+        verifyNoInteractions(fileHasher);
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).getHash()).isEqualTo("Identical bytes");
+        assertThat(result.get(0).getPaths()).containsExactlyInAnyOrder(file1, file2);
+    }
+
+    @Test
+    void shouldStreamDuplicates() throws IOException {
+        // given
+        given(filePathMatcher.shouldScan(any(Path.class), any(BasicFileAttributes.class))).willReturn(true);
+        given(filePathMatcher.hasFileFromResultWhitelist(anyCollection())).willReturn(true);
+        given(configuration.getValue(DUPLICATE_HASH_THREADS)).willReturn(3);
+        given(configuration.getValue(DUPLICATE_HASH_THREADS_PER_SPINNING_DISK)).willReturn(1);
+        given(configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB)).willReturn(0.5);
+        given(fileHasher.calculateHash(any(Path.class)))
+            .willAnswer(invocation -> MoreFiles.getFileExtension(invocation.getArgument(0)));
+        List<DuplicateEntry> streamedEntries = new ArrayList<>();
+
+        // when
+        fileDuplicateFinder.processFiles();
+        fileDuplicateFinder.streamDuplicates(streamedEntries::add);
+
+        // then
+        verify(fileHasher, times(6)).calculateHash(any(Path.class));
+        assertThat(streamedEntries).hasSize(1);
+        assertThat(streamedEntries.get(0).getPaths()).extracting(path -> path.getFileName().toString())
+            .containsExactly("test_4.csv", "test_6.csv");
+    }
+
+    @Test
+    void shouldHashFilesOnMultipleThreads() throws IOException {
+        // given
+        given(filePathMatcher.shouldScan(any(Path.class), any(BasicFileAttributes.class))).willReturn(true);
+        given(filePathMatcher.hasFileFromResultWhitelist(anyCollection())).willReturn(true);
+        given(configuration.getValue(DUPLICATE_HASH_THREADS)).willReturn(4);
+        given(configuration.getValue(DUPLICATE_HASH_THREADS_PER_SPINNING_DISK)).willReturn(1);
+        given(configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB)).willReturn(0.5);
+        given(fileHasher.calculateHash(any(Path.class))).willReturn("s");
+
+        // when
+        fileDuplicateFinder.processFiles();
+        List<DuplicateEntry> result = fileDuplicateFinder.filterFilesForDuplicates();
+
+        // then
+        verify(fileHasher, times(6)).calculateHash(any(Path.class));
+        assertThat(result).extracting(DuplicateEntry::getSize).containsExactly(1733L, 46L, 15L);
+        assertThat(result.get(0).getPaths()).extracting(path -> path.getFileName().toString())
+            .containsExactlyInAnyOrder("test_6.csv", "test_4.csv");
+        assertThat(result.get(1).getPaths()).extracting(path -> path.getFileName().toString())
+            .containsExactlyInAnyOrder("test_3.txt", "test_1.json");
+        assertThat(result.get(2).getPaths()).extracting(path -> path.getFileName().toString())
+            .containsExactlyInAnyOrder("test_2.txt", "test_7.xml");
+    }
+
+    @Test
+    void shouldSkipFilesThatCannotBeRead() throws IOException {
+        // given
+        given(filePathMatcher.shouldScan(any(Path.class), any(BasicFileAttributes.class))).willReturn(true);
+        given(filePathMatcher.hasFileFromResultWhitelist(anyCollection())).willReturn(true);
+        given(configuration.getValue(DUPLICATE_HASH_THREADS)).willReturn(2);
+        given(configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB)).willReturn(9.0);
+        given(fileHasher.calculateHash(any(Path.class))).willAnswer(invocation -> {
+            Path path = invocation.getArgument(0);
+            if (path.getFileName().toString().equals("test_6.csv")) {
+                throw new IOException("Test exception");
+            }
+            return MoreFiles.getFileExtension(path);
+        });
+        fileDuplicateFinder.processFiles();
+
+        // when
+        List<DuplicateEntry> result = fileDuplicateFinder.filterFilesForDuplicates();
+
+        // then
+        verify(fileHasher, times(6)).calculateHash(any(Path.class));
+        assertThat(result).isEmpty();
+        verify(logger).printLn("Skipped 1 files that could not be read:");
+        verify(logger).printLn(argThat(line -> line.endsWith("test_6.csv: Test exception")));
+    }
+
+    @Test
+    void shouldStopHashingAfterMaxRuntime() throws IOException {
+        // given
+        given(filePathMatcher.shouldScan(any(Path.class), any(BasicFileAttributes.class))).willReturn(true);
+        given(filePathMatcher.hasFileFromResultWhitelist(anyCollection())).willReturn(true);
+        given(configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB)).willReturn(0.0);
+        given(configuration.getValue(DUPLICATE_MAX_RUNTIME_SECONDS)).willReturn(1);
+        given(fileHasher.calculateHash(any(Path.class))).willAnswer(invocation -> {
+            Thread.sleep(1100);
+            return "hash";
+        });
+
+        // when
+        fileDuplicateFinder.processFiles();
+        List<DuplicateEntry> result = fileDuplicateFinder.filterFilesForDuplicates();
+
+        // then
+        verify(fileHasher).calculateHash(any(Path.class));
+        assertThat(result).isEmpty();
+        verify(logger).printLn(argThat(line -> line.contains("candidate files") && line.contains("unverified")));
+    }
+
+    @Test
+    void shouldNotCountScanTowardMaxRuntime() throws InterruptedException, IOException {
+        // given
+        given(filePathMatcher.shouldScan(any(Path.class), any(BasicFileAttributes.class))).willReturn(true);
+        given(filePathMatcher.hasFileFromResultWhitelist(anyCollection())).willReturn(true);
+        given(configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB)).willReturn(9.0);
+        given(configuration.getValue(DUPLICATE_MAX_RUNTIME_SECONDS)).willReturn(1);
+        given(fileHasher.calculateHash(any(Path.class)))
+            .willAnswer(invocation -> MoreFiles.getFileExtension(invocation.getArgument(0)));
+        fileDuplicateFinder.processFiles();
+        Thread.sleep(1100);
+
+        // when
+        List<DuplicateEntry> result = fileDuplicateFinder.filterFilesForDuplicates();
+
+        // then
+        verify(fileHasher, times(6)).calculateHash(any(Path.class));
+        assertThat(result).hasSize(1);
+    }
+
+    @Test
+    void shouldHashLinksOnceAndReportThemSeparately(@TempDir Path tempDir) throws IOException {
+        // given
+        given(filePathMatcher.shouldScan(any(Path.class), any(BasicFileAttributes.class))).willReturn(true);
+        given(filePathMatcher.hasFileFromResultWhitelist(anyCollection())).willReturn(true);
+        given(configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB)).willReturn(0.0);
+        given(fileHasher.calculateHash(any(Path.class)))
+            .willAnswer(invocation -> Files.readString(invocation.getArgument(0)));
+        Path original = Files.writeString(tempDir.resolve("a.txt"), "data");
+        Path link1 = Files.createLink(tempDir.resolve("link1.txt"), original);
+        Path link2 = Files.createLink(tempDir.resolve("link2.txt"), original);
+        Path symlink = Files.createSymbolicLink(tempDir.resolve("symlink.txt"), original);
+        Path copy = Files.writeString(tempDir.resolve("copy.txt"), "data");
+        Files.writeString(tempDir.resolve("other.txt"), "diff");
+        FileDuplicateFinder finder =
+            new FileDuplicateFinder(tempDir, fileHasher, filePathMatcher, configuration, new RunMetrics(), logger);
+
+        // when
+        finder.processFiles();
+        List<DuplicateEntry> result = finder.filterFilesForDuplicates();
+
+        // then
+        verify(fileHasher, times(3)).calculateHash(any(Path.class));
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).getPaths()).containsExactly(original, copy);
+        assertThat(finder.getHardLinks()).hasSize(1);
+        assertThat(finder.getHardLinks().get(0).getPaths()).containsExactly(original, link1, link2, symlink);
+    }
+
+    @Test
+    void shouldSkipSizesFinishedInJournalWhenResuming(@TempDir Path tempDir) throws IOException {
+        // given
+        given(filePathMatcher.shouldScan(any(Path.class), any(BasicFileAttributes.class))).willReturn(true);
+        given(filePathMatcher.hasFileFromResultWhitelist(anyCollection())).willReturn(true);
+        given(configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB)).willReturn(0.0);
+        given(configuration.getValue(DUPLICATE_HASH_ALGORITHM)).willReturn(HashingAlgorithm.SHA1);
+        given(configuration.getValue(DUPLICATE_JOURNAL_FILE)).willReturn(Optional.of(tempDir.resolve("journal")));
+        given(configuration.getValue(DUPLICATE_JOURNAL_CHECKPOINT_INTERVAL_SECONDS)).willReturn(30);
+        given(fileHasher.calculateHash(any(Path.class)))
+            .willAnswer(invocation -> Files.readString(invocation.getArgument(0)));
+        Path folder = Files.createDirectory(tempDir.resolve("files"));
+        Path file1 = Files.writeString(folder.resolve("a.txt"), "data");
+        Path file2 = Files.writeString(folder.resolve("b.txt"), "data");
+        Files.writeString(folder.resolve("c.txt"), "diff");
+
+        given(configuration.getValue(DUPLICATE_JOURNAL_RESUME)).willReturn(false);
+        FileDuplicateFinder firstRun =
+            new FileDuplicateFinder(folder, fileHasher, filePathMatcher, configuration, new RunMetrics(), logger);
+        firstRun.processFiles();
+        firstRun.filterFilesForDuplicates();
+        given(configuration.getValue(DUPLICATE_JOURNAL_RESUME)).willReturn(true);
+        FileDuplicateFinder resumedRun =
+            new FileDuplicateFinder(folder, fileHasher, filePathMatcher, configuration, new RunMetrics(), logger);
+
+        // when
+        resumedRun.processFiles();
+        List<DuplicateEntry> result = resumedRun.filterFilesForDuplicates();
+
+        // then
+        verify(fileHasher, times(3)).calculateHash(any(Path.class));
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).getHash()).isEqualTo("data");
+        assertThat(result.get(0).getPaths()).containsExactlyInAnyOrder(file1, file2);
+    }
+}
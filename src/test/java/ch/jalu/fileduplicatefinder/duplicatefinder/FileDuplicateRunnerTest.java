@@ -1,14 +1,21 @@
 package ch.jalu.fileduplicatefinder.duplicatefinder;
 
 import ch.jalu.fileduplicatefinder.config.FileUtilConfiguration;
+import ch.jalu.fileduplicatefinder.hashing.FileHasher;
 import ch.jalu.fileduplicatefinder.hashing.FileHasherFactory;
+import ch.jalu.fileduplicatefinder.hashing.FileReadMode;
 import ch.jalu.fileduplicatefinder.hashing.HashingAlgorithm;
+import ch.jalu.fileduplicatefinder.duplicatefinder.output.CsvResultOutputter;
 import ch.jalu.fileduplicatefinder.duplicatefinder.output.DuplicateEntryOutputter;
 import ch.jalu.fileduplicatefinder.output.TaskWriterReader;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
 
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_FILTER_BLACKLIST;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_FILTER_MAX_SIZE;
@@ -17,15 +24,36 @@ import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_FILT
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_FILTER_WHITELIST;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_FOLDER;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_ALGORITHM;
-import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_OUTPUT_DIFFERENCE_READ_FILES_VS_HASH;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_COMPARE_MAX_GROUP_SIZE;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_COMPARE_MIN_SIZE_MB;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_MAX_SIZE_MB;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_READ_MODE;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_THREADS;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_THREADS_PER_SPINNING_DISK;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_JOURNAL_FILE;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_MAX_RUNTIME_SECONDS;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_USE_CACHE;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_OUTPUT_DISTRIBUTION;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_OUTPUT_FOLDER_PAIR_COUNT;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_OUTPUT_PROGRESS_FILES_FOUND_INTERVAL;
 import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_OUTPUT_PROGRESS_FILES_HASHED_INTERVAL;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_OUTPUT_SORTED_AFTER_STREAMING;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_OUTPUT_STREAMING;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_PREFILTER_HEAD_BYTES;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_PREFILTER_SAMPLE_BLOCKS;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_PREFILTER_SAMPLE_BLOCK_BYTES;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_PREFILTER_TAIL_BYTES;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.METRICS_JSON_FILE;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.METRICS_SHOW_TABLE;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.SCAN_THREADS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 
@@ -53,15 +81,31 @@ class FileDuplicateRunnerTest {
         given(configuration.getValue(DUPLICATE_FILTER_RESULT_WHITELIST)).willReturn("");
         given(configuration.getValue(DUPLICATE_OUTPUT_PROGRESS_FILES_FOUND_INTERVAL)).willReturn(1023);
         given(configuration.getValue(DUPLICATE_OUTPUT_PROGRESS_FILES_HASHED_INTERVAL)).willReturn(1023);
+        given(configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB)).willReturn(300.0);
+        given(configuration.getValue(DUPLICATE_HASH_THREADS)).willReturn(2);
+        given(configuration.getValue(DUPLICATE_HASH_THREADS_PER_SPINNING_DISK)).willReturn(1);
+        given(configuration.getValue(DUPLICATE_MAX_RUNTIME_SECONDS)).willReturn(0);
+        given(configuration.getValue(DUPLICATE_JOURNAL_FILE)).willReturn(Optional.empty());
+        given(configuration.getValue(METRICS_SHOW_TABLE)).willReturn(false);
+        given(configuration.getValue(METRICS_JSON_FILE)).willReturn(Optional.empty());
+        given(configuration.getValue(DUPLICATE_HASH_USE_CACHE)).willReturn(false);
+        given(configuration.getValue(DUPLICATE_HASH_READ_MODE)).willReturn(FileReadMode.STREAM);
+        given(configuration.getValue(SCAN_THREADS)).willReturn(2);
         given(configuration.getValue(DUPLICATE_OUTPUT_DISTRIBUTION)).willReturn(false);
-        given(configuration.getValue(DUPLICATE_OUTPUT_DIFFERENCE_READ_FILES_VS_HASH)).willReturn(false);
+        given(configuration.getValue(DUPLICATE_PREFILTER_HEAD_BYTES)).willReturn(4096);
+        given(configuration.getValue(DUPLICATE_PREFILTER_TAIL_BYTES)).willReturn(4096);
+        given(configuration.getValue(DUPLICATE_PREFILTER_SAMPLE_BLOCKS)).willReturn(4);
+        given(configuration.getValue(DUPLICATE_PREFILTER_SAMPLE_BLOCK_BYTES)).willReturn(4096);
+        given(configuration.getValue(DUPLICATE_COMPARE_MAX_GROUP_SIZE)).willReturn(3);
+        given(configuration.getValue(DUPLICATE_COMPARE_MIN_SIZE_MB)).willReturn(0.0);
+        given(configuration.getValue(DUPLICATE_OUTPUT_STREAMING)).willReturn(false);
         given(configuration.getValue(DUPLICATE_OUTPUT_FOLDER_PAIR_COUNT)).willReturn(false);
 
         // when
         runner.run();
 
         // then
-        verify(fileHasherFactory).createFileHasher(HashingAlgorithm.CRC32);
+        verify(fileHasherFactory).createFileHasher(HashingAlgorithm.CRC32, FileReadMode.STREAM);
         verify(entryOutputter).outputResult(anyList());
         verifyNoInteractions(folderDuplicatesCounter);
     }
@@ -86,15 +130,151 @@ class FileDuplicateRunnerTest {
         given(configuration.getValue(DUPLICATE_FILTER_RESULT_WHITELIST)).willReturn("");
         given(configuration.getValue(DUPLICATE_OUTPUT_PROGRESS_FILES_FOUND_INTERVAL)).willReturn(1023);
         given(configuration.getValue(DUPLICATE_OUTPUT_PROGRESS_FILES_HASHED_INTERVAL)).willReturn(1023);
+        given(configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB)).willReturn(300.0);
+        given(configuration.getValue(DUPLICATE_HASH_THREADS)).willReturn(2);
+        given(configuration.getValue(DUPLICATE_HASH_THREADS_PER_SPINNING_DISK)).willReturn(1);
+        given(configuration.getValue(DUPLICATE_MAX_RUNTIME_SECONDS)).willReturn(0);
+        given(configuration.getValue(DUPLICATE_JOURNAL_FILE)).willReturn(Optional.empty());
+        given(configuration.getValue(METRICS_SHOW_TABLE)).willReturn(false);
+        given(configuration.getValue(METRICS_JSON_FILE)).willReturn(Optional.empty());
+        given(configuration.getValue(DUPLICATE_HASH_USE_CACHE)).willReturn(false);
+        given(configuration.getValue(DUPLICATE_HASH_READ_MODE)).willReturn(FileReadMode.STREAM);
+        given(configuration.getValue(SCAN_THREADS)).willReturn(2);
         given(configuration.getValue(DUPLICATE_OUTPUT_DISTRIBUTION)).willReturn(false);
-        given(configuration.getValue(DUPLICATE_OUTPUT_DIFFERENCE_READ_FILES_VS_HASH)).willReturn(false);
+        given(configuration.getValue(DUPLICATE_PREFILTER_HEAD_BYTES)).willReturn(4096);
+        given(configuration.getValue(DUPLICATE_PREFILTER_TAIL_BYTES)).willReturn(4096);
+        given(configuration.getValue(DUPLICATE_PREFILTER_SAMPLE_BLOCKS)).willReturn(4);
+        given(configuration.getValue(DUPLICATE_PREFILTER_SAMPLE_BLOCK_BYTES)).willReturn(4096);
+        given(configuration.getValue(DUPLICATE_COMPARE_MAX_GROUP_SIZE)).willReturn(3);
+        given(configuration.getValue(DUPLICATE_COMPARE_MIN_SIZE_MB)).willReturn(0.0);
+        given(configuration.getValue(DUPLICATE_OUTPUT_STREAMING)).willReturn(false);
 
         // when
         runner.run();
 
         // then
-        verify(fileHasherFactory).createFileHasher(HashingAlgorithm.GFH);
+        verify(fileHasherFactory).createFileHasher(HashingAlgorithm.GFH, FileReadMode.STREAM);
         verify(entryOutputter).outputResult(anyList());
         verify(folderDuplicatesCounter).getFolderToFolderDuplicateCount(anyCollection());
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldStreamDuplicatesAndOutputSortedReport(@TempDir Path tempFolder) throws IOException {
+        // given
+        FileUtilConfiguration configuration = mock(FileUtilConfiguration.class);
+        FileHasherFactory fileHasherFactory = mock(FileHasherFactory.class);
+        DuplicateEntryOutputter entryOutputter = mock(DuplicateEntryOutputter.class);
+        FolderPairDuplicatesCounter folderDuplicatesCounter = mock(FolderPairDuplicatesCounter.class);
+        TaskWriterReader logger = mock(TaskWriterReader.class);
+        FileDuplicateRunner runner = new FileDuplicateRunner(configuration, fileHasherFactory, folderDuplicatesCounter, entryOutputter, logger);
+
+        Files.write(tempFolder.resolve("a.txt"), "same".getBytes());
+        Files.write(tempFolder.resolve("b.txt"), "same".getBytes());
+        Files.write(tempFolder.resolve("c.txt"), "different".getBytes());
+        FileHasher fileHasher = mock(FileHasher.class);
+        given(fileHasher.calculateHash(any(Path.class))).willReturn("hash");
+        given(fileHasherFactory.createFileHasher(HashingAlgorithm.SHA1, FileReadMode.CHANNEL)).willReturn(fileHasher);
+
+        given(configuration.getValueOrPrompt(DUPLICATE_FOLDER)).willReturn(tempFolder);
+        given(configuration.getValue(DUPLICATE_FILTER_WHITELIST)).willReturn("");
+        given(configuration.getValue(DUPLICATE_FILTER_BLACKLIST)).willReturn("");
+        given(configuration.getValue(DUPLICATE_FILTER_MIN_SIZE)).willReturn(0.0);
+        given(configuration.getValue(DUPLICATE_FILTER_MAX_SIZE)).willReturn(0.0);
+        given(configuration.getValue(DUPLICATE_HASH_ALGORITHM)).willReturn(HashingAlgorithm.SHA1);
+        given(configuration.getValue(DUPLICATE_FILTER_RESULT_WHITELIST)).willReturn("");
+        given(configuration.getValue(DUPLICATE_OUTPUT_PROGRESS_FILES_FOUND_INTERVAL)).willReturn(1023);
+        given(configuration.getValue(DUPLICATE_OUTPUT_PROGRESS_FILES_HASHED_INTERVAL)).willReturn(1023);
+        given(configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB)).willReturn(300.0);
+        given(configuration.getValue(DUPLICATE_HASH_THREADS)).willReturn(2);
+        given(configuration.getValue(DUPLICATE_HASH_THREADS_PER_SPINNING_DISK)).willReturn(1);
+        given(configuration.getValue(DUPLICATE_MAX_RUNTIME_SECONDS)).willReturn(0);
+        given(configuration.getValue(DUPLICATE_JOURNAL_FILE)).willReturn(Optional.empty());
+        given(configuration.getValue(METRICS_SHOW_TABLE)).willReturn(false);
+        given(configuration.getValue(METRICS_JSON_FILE)).willReturn(Optional.empty());
+        given(configuration.getValue(DUPLICATE_HASH_USE_CACHE)).willReturn(false);
+        given(configuration.getValue(DUPLICATE_HASH_READ_MODE)).willReturn(FileReadMode.CHANNEL);
+        given(configuration.getValue(SCAN_THREADS)).willReturn(2);
+        given(configuration.getValue(DUPLICATE_OUTPUT_DISTRIBUTION)).willReturn(false);
+        given(configuration.getValue(DUPLICATE_PREFILTER_HEAD_BYTES)).willReturn(0);
+        given(configuration.getValue(DUPLICATE_PREFILTER_TAIL_BYTES)).willReturn(0);
+        given(configuration.getValue(DUPLICATE_PREFILTER_SAMPLE_BLOCKS)).willReturn(0);
+        given(configuration.getValue(DUPLICATE_PREFILTER_SAMPLE_BLOCK_BYTES)).willReturn(4096);
+        given(configuration.getValue(DUPLICATE_COMPARE_MAX_GROUP_SIZE)).willReturn(0);
+        given(configuration.getValue(DUPLICATE_COMPARE_MIN_SIZE_MB)).willReturn(0.0);
+        given(configuration.getValue(DUPLICATE_OUTPUT_FOLDER_PAIR_COUNT)).willReturn(false);
+        given(configuration.getValue(DUPLICATE_OUTPUT_STREAMING)).willReturn(true);
+        given(configuration.getValue(DUPLICATE_OUTPUT_SORTED_AFTER_STREAMING)).willReturn(true);
+
+        // when
+        runner.run();
+
+        // then
+        verify(entryOutputter, times(2)).outputEntry(any(DuplicateEntry.class)); // once streamed, once sorted
+        verify(entryOutputter).outputSummary(1, 4);
+        verify(entryOutputter, never()).outputResult(anyList());
+        verifyNoInteractions(folderDuplicatesCounter);
+    }
+
+    @Test
+    void shouldWriteEachDuplicateOnceToFileWithSortedReport(@TempDir Path tempFolder) throws IOException {
+        // given
+        FileUtilConfiguration configuration = mock(FileUtilConfiguration.class);
+        FileHasherFactory fileHasherFactory = mock(FileHasherFactory.class);
+        Path folder = Files.createDirectory(tempFolder.resolve("files"));
+        Path csvFile = tempFolder.resolve("duplicates.csv");
+        DuplicateEntryOutputter entryOutputter = new CsvResultOutputter(csvFile);
+        FolderPairDuplicatesCounter folderDuplicatesCounter = mock(FolderPairDuplicatesCounter.class);
+        TaskWriterReader logger = mock(TaskWriterReader.class);
+        FileDuplicateRunner runner = new FileDuplicateRunner(configuration, fileHasherFactory, folderDuplicatesCounter, entryOutputter, logger);
+
+        Files.write(folder.resolve("a.txt"), "same".getBytes());
+        Files.write(folder.resolve("b.txt"), "same".getBytes());
+        Files.write(folder.resolve("c.txt"), "different".getBytes());
+        FileHasher fileHasher = mock(FileHasher.class);
+        given(fileHasher.calculateHash(any(Path.class))).willReturn("hash");
+        given(fileHasherFactory.createFileHasher(HashingAlgorithm.SHA1, FileReadMode.CHANNEL)).willReturn(fileHasher);
+
+        given(configuration.getValueOrPrompt(DUPLICATE_FOLDER)).willReturn(folder);
+        given(configuration.getValue(DUPLICATE_FILTER_WHITELIST)).willReturn("");
+        given(configuration.getValue(DUPLICATE_FILTER_BLACKLIST)).willReturn("");
+        given(configuration.getValue(DUPLICATE_FILTER_MIN_SIZE)).willReturn(0.0);
+        given(configuration.getValue(DUPLICATE_FILTER_MAX_SIZE)).willReturn(0.0);
+        given(configuration.getValue(DUPLICATE_HASH_ALGORITHM)).willReturn(HashingAlgorithm.SHA1);
+        given(configuration.getValue(DUPLICATE_FILTER_RESULT_WHITELIST)).willReturn("");
+        given(configuration.getValue(DUPLICATE_OUTPUT_PROGRESS_FILES_FOUND_INTERVAL)).willReturn(1023);
+        given(configuration.getValue(DUPLICATE_OUTPUT_PROGRESS_FILES_HASHED_INTERVAL)).willReturn(1023);
+        given(configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB)).willReturn(300.0);
+        given(configuration.getValue(DUPLICATE_HASH_THREADS)).willReturn(2);
+        given(configuration.getValue(DUPLICATE_HASH_THREADS_PER_SPINNING_DISK)).willReturn(1);
+        given(configuration.getValue(DUPLICATE_MAX_RUNTIME_SECONDS)).willReturn(0);
+        given(configuration.getValue(DUPLICATE_JOURNAL_FILE)).willReturn(Optional.empty());
+        given(configuration.getValue(METRICS_SHOW_TABLE)).willReturn(false);
+        given(configuration.getValue(METRICS_JSON_FILE)).willReturn(Optional.empty());
+        given(configuration.getValue(DUPLICATE_HASH_USE_CACHE)).willReturn(false);
+        given(configuration.getValue(DUPLICATE_HASH_READ_MODE)).willReturn(FileReadMode.CHANNEL);
+        given(configuration.getValue(SCAN_THREADS)).willReturn(2);
+        given(configuration.getValue(DUPLICATE_OUTPUT_DISTRIBUTION)).willReturn(false);
+        given(configuration.getValue(DUPLICATE_PREFILTER_HEAD_BYTES)).willReturn(0);
+        given(configuration.getValue(DUPLICATE_PREFILTER_TAIL_BYTES)).willReturn(0);
+        given(configuration.getValue(DUPLICATE_PREFILTER_SAMPLE_BLOCKS)).willReturn(0);
+        given(configuration.getValue(DUPLICATE_PREFILTER_SAMPLE_BLOCK_BYTES)).willReturn(4096);
+        given(configuration.getValue(DUPLICATE_COMPARE_MAX_GROUP_SIZE)).willReturn(0);
+        given(configuration.getValue(DUPLICATE_COMPARE_MIN_SIZE_MB)).willReturn(0.0);
+        given(configuration.getValue(DUPLICATE_OUTPUT_FOLDER_PAIR_COUNT)).willReturn(false);
+        given(configuration.getValue(DUPLICATE_OUTPUT_STREAMING)).willReturn(true);
+        given(configuration.getValue(DUPLICATE_OUTPUT_SORTED_AFTER_STREAMING)).willReturn(true);
+
+        // when
+        runner.run();
+        entryOutputter.close();
+
+        // then
+        List<String> lines = Files.readAllLines(csvFile);
+        assertThat(lines).hasSize(3);
+        assertThat(lines.get(0)).isEqualTo("group,size,hash,path");
+        assertThat(lines.subList(1, 3)).allMatch(line -> line.startsWith("1,4,hash,"));
+        assertThat(lines).filteredOn(line -> line.endsWith("a.txt")).hasSize(1);
+        assertThat(lines).filteredOn(line -> line.endsWith("b.txt")).hasSize(1);
+        verify(logger, never()).printLn("All duplicates, sorted by size:");
+    }
+}
@@ -0,0 +1,192 @@
+package ch.jalu.fileduplicatefinder.duplicatefinder;
+
+import ch.jalu.fileduplicatefinder.filefilter.FilePathMatcher;
+import ch.jalu.fileduplicatefinder.hashing.FileHasher;
+import ch.jalu.fileduplicatefinder.output.WriterReader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test for {@link IncrementalDuplicateIndex}.
+ */
+class IncrementalDuplicateIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private FileHasher fileHasher;
+
+    @Mock
+    private FilePathMatcher pathMatcher;
+
+    @Mock
+    private WriterReader logger;
+
+    private IncrementalDuplicateIndex index;
+
+    @BeforeEach
+    void initMocksAndIndex() throws IOException {
+        MockitoAnnotations.initMocks(this);
+        given(fileHasher.calculateHash(any(Path.class)))
+            .willAnswer(invocation -> Files.readString(invocation.getArgument(0)));
+        given(pathMatcher.hasFileFromResultWhitelist(anyCollection())).willReturn(true);
+        index = new IncrementalDuplicateIndex(fileHasher, pathMatcher, 0, logger);
+    }
+
+    @Test
+    void shouldOnlyHashFilesWithSameSizeInInitialScan() throws IOException {
+        // given
+        Path a1 = addFile("a1.txt", "aaaa");
+        Path a2 = addFile("a2.txt", "aaaa");
+        Path b1 = addFile("b1.txt", "bbbb");
+        Path unique = addFile("unique.txt", "unique contents");
+
+        // when
+        List<DuplicateEntry> duplicates = index.hashCandidates(2);
+
+        // then
+        assertThat(duplicates).hasSize(1);
+        assertThat(duplicates.get(0).getHash()).isEqualTo("aaaa");
+        assertThat(duplicates.get(0).getPaths()).containsExactlyInAnyOrder(a1, a2);
+        verify(fileHasher).calculateHash(b1);
+        verify(fileHasher, never()).calculateHash(unique);
+    }
+
+    @Test
+    void shouldReportNewAndGrownDuplicateGroupsOnly() throws IOException {
+        // given
+        Path a1 = addFile("a1.txt", "aaaa");
+        Path b1 = addFile("b1.txt", "bbbb");
+        index.hashCandidates(1);
+
+        // when
+        Path a2 = createFile("a2.txt", "aaaa");
+        List<DuplicateEntry> afterA2 = updateFile(a2);
+        Path c1 = createFile("c1.txt", "cccc");
+        List<DuplicateEntry> afterC1 = updateFile(c1);
+        Path a3 = createFile("a3.txt", "aaaa");
+        List<DuplicateEntry> afterA3 = updateFile(a3);
+        List<DuplicateEntry> afterUnchangedA3 = updateFile(a3);
+
+        // then
+        assertThat(afterA2).hasSize(1);
+        assertThat(afterA2.get(0).getPaths()).containsExactlyInAnyOrder(a1, a2);
+        assertThat(afterC1).isEmpty();
+        assertThat(afterA3).hasSize(1);
+        assertThat(afterA3.get(0).getPaths()).containsExactlyInAnyOrder(a1, a2, a3);
+        assertThat(afterUnchangedA3).isEmpty();
+        verify(fileHasher, times(1)).calculateHash(b1);
+        verify(fileHasher, times(1)).calculateHash(a3);
+    }
+
+    @Test
+    void shouldUpdateGroupsWhenFilesAreModifiedOrRemoved() throws IOException {
+        // given
+        Path a1 = addFile("a1.txt", "aaaa");
+        Path a2 = addFile("a2.txt", "aaaa");
+        Path a3 = addFile("a3.txt", "aaaa");
+        index.hashCandidates(1);
+
+        // when
+        Files.writeString(a2, "bbbb");
+        Files.setLastModifiedTime(a2, FileTime.fromMillis(5000));
+        List<DuplicateEntry> afterModification = updateFile(a2);
+        boolean wasRemoved = index.removeFile(a3);
+
+        // then
+        assertThat(afterModification).isEmpty();
+        assertThat(wasRemoved).isTrue();
+        assertThat(index.getDuplicates()).isEmpty();
+        assertThat(index.getTotalFiles()).isEqualTo(2);
+        verify(fileHasher, times(2)).calculateHash(a2);
+        verify(fileHasher, times(1)).calculateHash(a1);
+    }
+
+    @Test
+    void shouldNotReportFileWhoseModificationDateChangedOnly() throws IOException {
+        // given
+        addFile("a1.txt", "aaaa");
+        Path a2 = addFile("a2.txt", "aaaa");
+        index.hashCandidates(1);
+
+        // when
+        Files.setLastModifiedTime(a2, FileTime.fromMillis(5000));
+        List<DuplicateEntry> result = updateFile(a2);
+
+        // then
+        assertThat(result).isEmpty();
+        assertThat(index.getDuplicates()).hasSize(1);
+    }
+
+    @Test
+    void shouldRemoveFilesInDirectory() throws IOException {
+        // given
+        Files.createDirectory(tempDir.resolve("sub"));
+        addFile("sub/a1.txt", "aaaa");
+        addFile("sub/a2.txt", "aaaa");
+        Path a3 = addFile("a3.txt", "aaaa");
+        index.hashCandidates(1);
+
+        // when
+        int removedFiles = index.removeFilesInDirectory(tempDir.resolve("sub"));
+
+        // then
+        assertThat(removedFiles).isEqualTo(2);
+        assertThat(index.getFilesInDirectory(tempDir)).containsExactly(a3);
+        assertThat(index.getDuplicates()).isEmpty();
+    }
+
+    @Test
+    void shouldDropFileThatCannotBeHashed() throws IOException {
+        // given
+        Path a1 = addFile("a1.txt", "aaaa");
+        Path a2 = addFile("a2.txt", "aaaa");
+        Path deleted = addFile("deleted.txt", "aaaa");
+        given(fileHasher.calculateHash(deleted)).willThrow(new NoSuchFileException(deleted.toString()));
+
+        // when
+        List<DuplicateEntry> duplicates = index.hashCandidates(1);
+
+        // then
+        assertThat(duplicates).hasSize(1);
+        assertThat(duplicates.get(0).getPaths()).containsExactlyInAnyOrder(a1, a2);
+        assertThat(index.getTotalFiles()).isEqualTo(2);
+        verify(logger).printError(anyString());
+    }
+
+    private Path addFile(String name, String contents) throws IOException {
+        Path file = createFile(name, contents);
+        index.addFile(file, Files.size(file), Files.getLastModifiedTime(file));
+        return file;
+    }
+
+    private Path createFile(String name, String contents) throws IOException {
+        Path file = tempDir.resolve(name);
+        Files.writeString(file, contents);
+        return file;
+    }
+
+    private List<DuplicateEntry> updateFile(Path file) throws IOException {
+        return index.updateFile(file, Files.size(file), Files.getLastModifiedTime(file));
+    }
+}
@@ -0,0 +1,85 @@
+package ch.jalu.fileduplicatefinder.duplicatefinder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Test for {@link LockstepFileComparator}.
+ */
+class LockstepFileComparatorTest {
+
+    @TempDir
+    Path tempFolder;
+
+    @Test
+    void shouldSplitFilesIntoIdenticalGroups() throws IOException {
+        // given
+        Path a1 = writeFile("a1", "aaaaaaaaaaaaaaaaaaaa");
+        Path b1 = writeFile("b1", "aaaaaaaaaaaaaaabbbbb");
+        Path a2 = writeFile("a2", "aaaaaaaaaaaaaaaaaaaa");
+        Path c1 = writeFile("c1", "caaaaaaaaaaaaaaaaaaa");
+        Path b2 = writeFile("b2", "aaaaaaaaaaaaaaabbbbb");
+        Path a3 = writeFile("a3", "aaaaaaaaaaaaaaaaaaaa");
+        LockstepFileComparator comparator = new LockstepFileComparator(8);
+
+        // when
+        List<List<Path>> result = comparator.findIdenticalFiles(List.of(a1, b1, a2, c1, b2, a3));
+
+        // then
+        assertThat(result).containsExactlyInAnyOrder(List.of(a1, a2, a3), List.of(b1, b2));
+    }
+
+    @Test
+    void shouldReturnEmptyListIfAllFilesDiffer() throws IOException {
+        // given
+        Path file1 = writeFile("file1", "Lorem ipsum");
+        Path file2 = writeFile("file2", "Lorem ipsun");
+        LockstepFileComparator comparator = new LockstepFileComparator();
+
+        // when
+        List<List<Path>> result = comparator.findIdenticalFiles(List.of(file1, file2));
+
+        // then
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    void shouldHandleEmptyFiles() throws IOException {
+        // given
+        Path file1 = writeFile("file1", "");
+        Path file2 = writeFile("file2", "");
+        LockstepFileComparator comparator = new LockstepFileComparator(4);
+
+        // when
+        List<List<Path>> result = comparator.findIdenticalFiles(List.of(file1, file2));
+
+        // then
+        assertThat(result).containsExactly(List.of(file1, file2));
+    }
+
+    @Test
+    void shouldThrowForMissingFile() throws IOException {
+        // given
+        Path file1 = writeFile("file1", "test");
+        Path file2 = tempFolder.resolve("doesNotExist");
+        LockstepFileComparator comparator = new LockstepFileComparator();
+
+        // when / then
+        assertThatExceptionOfType(UncheckedIOException.class)
+            .isThrownBy(() -> comparator.findIdenticalFiles(List.of(file1, file2)))
+            .withMessageContaining("doesNotExist");
+    }
+
+    private Path writeFile(String name, String contents) throws IOException {
+        return Files.writeString(tempFolder.resolve(name), contents);
+    }
+}
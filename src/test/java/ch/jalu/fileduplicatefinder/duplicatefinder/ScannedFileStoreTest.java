@@ -0,0 +1,118 @@
+package ch.jalu.fileduplicatefinder.duplicatefinder;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * Test for {@link ScannedFileStore}.
+ */
+class ScannedFileStoreTest {
+
+    private final Path root = Paths.get("scan-root");
+
+    @Test
+    void shouldReturnFilesWithSameSize() {
+        // given
+        ScannedFileStore store = new ScannedFileStore(root);
+        int docs = store.addDirectory(ScannedFileStore.ROOT_INDEX, "docs");
+        int archive = store.addDirectory(docs, "archive");
+        store.addFile(ScannedFileStore.ROOT_INDEX, "a.txt", 100, null);
+        store.addFile(docs, "b.txt", 200, null);
+        store.addFile(archive, "c.txt", 100, null);
+        store.addFile(docs, "d.txt", 0, null);
+        store.addFile(archive, "e.txt", 0, null);
+        store.addFile(docs, "f.txt", 100, null);
+
+        // when
+        Map<Long, List<Path>> pathsBySize = new HashMap<>();
+        store.forEachSizeWithMultipleFiles(pathsBySize::put, (size, paths) -> {
+            throw new IllegalStateException("Unexpected hard links");
+        });
+
+        // then
+        assertThat(pathsBySize).containsOnly(
+            entry(100L, List.of(root.resolve("a.txt"), root.resolve("docs/archive/c.txt"), root.resolve("docs/f.txt"))),
+            entry(0L, List.of(root.resolve("docs/archive/e.txt"), root.resolve("docs/d.txt"))));
+        assertThat(store.getTotalFiles()).isEqualTo(6);
+        assertThat(store.getSizeDistribution()).containsOnly(entry(1, 1L), entry(2, 1L), entry(3, 1L));
+    }
+
+    @Test
+    void shouldPassSizesByDescendingPotentialSavings() {
+        // given
+        ScannedFileStore store = new ScannedFileStore(root);
+        store.addFile(ScannedFileStore.ROOT_INDEX, "large1.bin", 1000, null);
+        store.addFile(ScannedFileStore.ROOT_INDEX, "large2.bin", 1000, null);
+        for (int i = 0; i < 6; ++i) {
+            store.addFile(ScannedFileStore.ROOT_INDEX, "medium" + i + ".bin", 300, null);
+        }
+        store.addFile(ScannedFileStore.ROOT_INDEX, "small1.bin", 10, null);
+        store.addFile(ScannedFileStore.ROOT_INDEX, "small2.bin", 10, null);
+        store.addFile(ScannedFileStore.ROOT_INDEX, "single.bin", 5000, null);
+
+        // when
+        List<Long> sizes = new ArrayList<>();
+        store.forEachSizeWithMultipleFiles((size, paths) -> sizes.add(size), (size, paths) -> { });
+
+        // then
+        assertThat(sizes).containsExactly(300L, 1000L, 10L);
+    }
+
+    @Test
+    void shouldHandleManyEntries() {
+        // given
+        ScannedFileStore store = new ScannedFileStore(root);
+        int folder = store.addDirectory(ScannedFileStore.ROOT_INDEX, "folder");
+        for (int i = 0; i < 50_000; ++i) {
+            store.addFile(folder, "file" + i, i / 2 * 1_000_003L, null);
+        }
+
+        // when
+        Map<Long, List<Path>> pathsBySize = new HashMap<>();
+        store.forEachSizeWithMultipleFiles(pathsBySize::put, (size, paths) -> { });
+
+        // then
+        assertThat(pathsBySize).hasSize(25_000);
+        assertThat(pathsBySize.get(12_345 * 1_000_003L))
+            .containsExactly(root.resolve("folder/file24690"), root.resolve("folder/file24691"));
+        assertThat(store.getTotalFiles()).isEqualTo(50_000);
+        assertThat(store.getSizeDistribution()).containsOnly(entry(2, 25_000L));
+        assertThat(store.getPath(folder)).isEqualTo(root.resolve("folder"));
+    }
+
+    @Test
+    void shouldGroupLinksByFileKey() {
+        // given
+        ScannedFileStore store = new ScannedFileStore(root);
+        int backup = store.addDirectory(ScannedFileStore.ROOT_INDEX, "backup");
+        store.addFile(ScannedFileStore.ROOT_INDEX, "a.txt", 100, "(dev=803,ino=12)");
+        store.addFile(backup, "a.txt", 100, "(dev=803,ino=12)");
+        store.addFile(ScannedFileStore.ROOT_INDEX, "b.txt", 100, "(dev=803,ino=13)");
+        store.addFile(backup, "b.txt", 100, "(dev=804,ino=12)");
+        store.addFile(ScannedFileStore.ROOT_INDEX, "c.txt", 300, "otherKey");
+        store.addFile(backup, "c.txt", 300, "otherKey");
+        store.addFile(ScannedFileStore.ROOT_INDEX, "d.txt", 300, null);
+
+        // when
+        Map<Long, List<Path>> pathsBySize = new HashMap<>();
+        Map<Long, List<Path>> linksBySize = new HashMap<>();
+        store.forEachSizeWithMultipleFiles(pathsBySize::put, linksBySize::put);
+
+        // then
+        assertThat(pathsBySize).containsOnly(
+            entry(100L, List.of(root.resolve("a.txt"), root.resolve("b.txt"), root.resolve("backup/b.txt"))),
+            entry(300L, List.of(root.resolve("backup/c.txt"), root.resolve("d.txt"))));
+        assertThat(linksBySize).containsOnly(
+            entry(100L, List.of(root.resolve("a.txt"), root.resolve("backup/a.txt"))),
+            entry(300L, List.of(root.resolve("backup/c.txt"), root.resolve("c.txt"))));
+    }
+}
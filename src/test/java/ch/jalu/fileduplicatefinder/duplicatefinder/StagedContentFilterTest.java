@@ -0,0 +1,131 @@
+package ch.jalu.fileduplicatefinder.duplicatefinder;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * Test for {@link StagedContentFilter}.
+ */
+class StagedContentFilterTest {
+
+    @TempDir
+    Path tempFolder;
+
+    @Test
+    void shouldEliminateFilesInEachStage() throws IOException {
+        // given
+        byte[] original = createContents(1000);
+        Path file1 = writeFile("file1", original);
+        Path file2 = writeFile("file2", original);
+        Path differentHead = writeFile("differentHead", modify(original, 3));
+        Path differentTail = writeFile("differentTail", modify(original, 995));
+        Path differentMiddle = writeFile("differentMiddle", modify(original, 500));
+        Path differentUnsampled = writeFile("differentUnsampled", modify(original, 300));
+        StagedContentFilter filter = new StagedContentFilter(10, 10, 3, 10);
+
+        // when
+        List<List<Path>> result = filter.filter(1000, List.of(
+            file1, differentHead, differentTail, file2, differentMiddle, differentUnsampled));
+
+        // then
+        // Sampled blocks are at 10, 495 and 980, so the change at 300 cannot be detected
+        assertThat(result).containsExactly(List.of(file1, file2, differentUnsampled));
+        assertThat(filter.getEliminatedFilesByStage()).containsExactly(
+            entry("first 10 bytes", 1L), entry("last 10 bytes", 1L), entry("3 sampled blocks", 1L));
+    }
+
+    @Test
+    void shouldKeepMultipleGroups() throws IOException {
+        // given
+        byte[] contents1 = createContents(100);
+        byte[] contents2 = modify(contents1, 0);
+        Path file1a = writeFile("file1a", contents1);
+        Path file2a = writeFile("file2a", contents2);
+        Path file1b = writeFile("file1b", contents1);
+        Path file2b = writeFile("file2b", contents2);
+        StagedContentFilter filter = new StagedContentFilter(4096, 4096, 4, 4096);
+
+        // when
+        List<List<Path>> result = filter.filter(100, List.of(file1a, file2a, file1b, file2b));
+
+        // then
+        assertThat(result).containsExactly(List.of(file1a, file1b), List.of(file2a, file2b));
+        assertThat(filter.getEliminatedFilesByStage().values()).containsOnly(0L);
+    }
+
+    @Test
+    void shouldNotReadAnythingIfAllStagesAreDisabled() {
+        // given
+        Path file1 = tempFolder.resolve("doesNotExist1");
+        Path file2 = tempFolder.resolve("doesNotExist2");
+        StagedContentFilter filter = new StagedContentFilter(0, 0, 0, 4096);
+
+        // when
+        List<List<Path>> result = filter.filter(2000, List.of(file1, file2));
+
+        // then
+        assertThat(result).containsExactly(List.of(file1, file2));
+        assertThat(filter.getEliminatedFilesByStage()).isEmpty();
+        assertThat(filter.getEliminatedFilesSummary()).isEqualTo("No content comparisons configured before hashing");
+    }
+
+    @Test
+    void shouldSkipStagesWithoutNewBytesForSmallFiles() throws IOException {
+        // given
+        byte[] contents = createContents(8);
+        Path file1 = writeFile("file1", contents);
+        Path file2 = writeFile("file2", modify(contents, 7));
+        Path file3 = writeFile("file3", contents);
+        StagedContentFilter filter = new StagedContentFilter(16, 16, 2, 16);
+
+        // when
+        List<List<Path>> result = filter.filter(8, List.of(file1, file2, file3));
+
+        // then
+        assertThat(result).containsExactly(List.of(file1, file3));
+        assertThat(filter.getEliminatedFilesSummary())
+            .isEqualTo("Files eliminated by comparing first 16 bytes: 1, last 16 bytes: 0, 2 sampled blocks: 0");
+    }
+
+    @Test
+    void shouldReturnWhetherFilesAreComparedEntirely() {
+        // given
+        StagedContentFilter filter = new StagedContentFilter(10, 10, 3, 10);
+        StagedContentFilter headOnlyFilter = new StagedContentFilter(10, 0, 0, 4096);
+
+        // when / then
+        assertThat(filter.comparesWholeFile(0)).isTrue();
+        assertThat(filter.comparesWholeFile(15)).isTrue();
+        assertThat(filter.comparesWholeFile(50)).isTrue();
+        assertThat(filter.comparesWholeFile(51)).isFalse();
+        assertThat(headOnlyFilter.comparesWholeFile(10)).isTrue();
+        assertThat(headOnlyFilter.comparesWholeFile(11)).isFalse();
+    }
+
+    private Path writeFile(String name, byte[] contents) throws IOException {
+        return Files.write(tempFolder.resolve(name), contents);
+    }
+
+    private static byte[] createContents(int length) {
+        byte[] contents = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            contents[i] = (byte) (i * 31);
+        }
+        return contents;
+    }
+
+    private static byte[] modify(byte[] contents, int index) {
+        byte[] modified = Arrays.copyOf(contents, contents.length);
+        modified[index] = (byte) (modified[index] + 1);
+        return modified;
+    }
+}
@@ -91,6 +91,41 @@ class ConsoleResultOutputterTest {
         assertThat(resultOutputter.getLines()).isEmpty();
     }
 
+    @Test
+    void shouldOutputStreamedEntriesAndSummary() {
+        // given
+        FileUtilConfiguration configuration = mock(FileUtilConfiguration.class);
+        given(configuration.getValueOrPrompt(DUPLICATE_FOLDER)).willReturn(Paths.get("root"));
+        given(configuration.getValue(DUPLICATE_OUTPUT_DUPLICATES)).willReturn(true);
+        TestConsoleResultOutputter resultOutputter = new TestConsoleResultOutputter(configuration);
+
+        // when
+        resultOutputter.outputEntry(new DuplicateEntry(2048, "h1",
+            asList(Paths.get("root/a.txt"), Paths.get("root/b/a.txt"), Paths.get("root/c.txt"))));
+        resultOutputter.outputEntry(new DuplicateEntry(12, "h2", asList(Paths.get("root/d"), Paths.get("root/e"))));
+        resultOutputter.outputSummary(2, 4108);
+
+        // then
+        assertOutput(resultOutputter.getLines()).containsExactlyWithRightSeparator(
+            "[2.0 KB][3] h1: a.txt, b/a.txt, c.txt",
+            "[12 B][2] h2: d, e",
+            "Total duplicated data: 4.0 KB",
+            "Total: 2 duplicates");
+    }
+
+    @Test
+    void shouldOutputSummaryWithoutStreamedEntries() {
+        // given
+        FileUtilConfiguration configuration = mock(FileUtilConfiguration.class);
+        TestConsoleResultOutputter resultOutputter = new TestConsoleResultOutputter(configuration);
+
+        // when
+        resultOutputter.outputSummary(0, 0);
+
+        // then
+        assertThat(resultOutputter.getLines()).containsExactly("No duplicates found.");
+    }
+
     @Test
     void shouldOutputDuplicatesByFolderPair() {
         // given
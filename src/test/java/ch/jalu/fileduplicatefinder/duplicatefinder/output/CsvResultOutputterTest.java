@@ -0,0 +1,54 @@
+package ch.jalu.fileduplicatefinder.duplicatefinder.output;
+
+import ch.jalu.fileduplicatefinder.duplicatefinder.DuplicateEntry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test for {@link CsvResultOutputter}.
+ */
+class CsvResultOutputterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldWriteOneRowPerDuplicatedFile() throws IOException {
+        // given
+        Path root = tempDir.toAbsolutePath();
+        Path outputFile = tempDir.resolve("result.csv");
+
+        // when
+        try (CsvResultOutputter outputter = new CsvResultOutputter(outputFile)) {
+            outputter.outputEntry(new DuplicateEntry(2048, "ab12",
+                List.of(root.resolve("b.jpg"), root.resolve("a.jpg"))));
+            outputter.outputEntry(new DuplicateEntry(10, "Size 10",
+                List.of(root.resolve("x,y.txt"), root.resolve("z.txt"))));
+            outputter.outputSummary(2, 2058);
+        }
+
+        // then
+        assertThat(Files.readAllLines(outputFile)).containsExactly(
+            "group,size,hash,path",
+            "1,2048,ab12," + root.resolve("a.jpg"),
+            "1,2048,ab12," + root.resolve("b.jpg"),
+            "2,10,Size 10,\"" + root.resolve("x,y.txt") + "\"",
+            "2,10,Size 10," + root.resolve("z.txt"));
+    }
+
+    @Test
+    void shouldEscapeValues() {
+        // given / when / then
+        assertThat(CsvResultOutputter.toCsvValue("plain value")).isEqualTo("plain value");
+        assertThat(CsvResultOutputter.toCsvValue("a,b")).isEqualTo("\"a,b\"");
+        assertThat(CsvResultOutputter.toCsvValue("say \"hi\"")).isEqualTo("\"say \"\"hi\"\"\"");
+        assertThat(CsvResultOutputter.toCsvValue("line\nbreak")).isEqualTo("\"line\nbreak\"");
+    }
+}
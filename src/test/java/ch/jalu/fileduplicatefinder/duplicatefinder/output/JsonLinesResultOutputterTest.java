@@ -0,0 +1,60 @@
+package ch.jalu.fileduplicatefinder.duplicatefinder.output;
+
+import ch.jalu.fileduplicatefinder.duplicatefinder.DuplicateEntry;
+import ch.jalu.fileduplicatefinder.duplicatefinder.FolderPair;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test for {@link JsonLinesResultOutputter}.
+ */
+class JsonLinesResultOutputterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldWriteEntriesSummaryAndFolderPairs() throws IOException {
+        // given
+        Path root = tempDir.toAbsolutePath();
+        Path outputFile = tempDir.resolve("result.jsonl");
+        DuplicateEntry entry1 = new DuplicateEntry(2048, "ab12",
+            List.of(root.resolve("copy/a.jpg"), root.resolve("a.jpg")));
+        DuplicateEntry entry2 = new DuplicateEntry(10, "cd\"34",
+            List.of(root.resolve("b.txt"), root.resolve("c.txt"), root.resolve("d.txt")));
+
+        // when
+        try (JsonLinesResultOutputter outputter = new JsonLinesResultOutputter(outputFile)) {
+            outputter.outputResult(List.of(entry1, entry2));
+            outputter.outputDirectoryPairs(Map.of(new FolderPair(root.resolve("copy"), root), 1L));
+        }
+
+        // then
+        String rootJson = root.toString().replace("\\", "\\\\");
+        String sep = root.getFileSystem().getSeparator().replace("\\", "\\\\");
+        assertThat(Files.readAllLines(outputFile)).containsExactly(
+            "{\"type\":\"duplicate\",\"size\":2048,\"hash\":\"ab12\",\"paths\":[\"" + rootJson + sep + "a.jpg\",\""
+                + rootJson + sep + "copy" + sep + "a.jpg\"]}",
+            "{\"type\":\"duplicate\",\"size\":10,\"hash\":\"cd\\\"34\",\"paths\":[\"" + rootJson + sep + "b.txt\",\""
+                + rootJson + sep + "c.txt\",\"" + rootJson + sep + "d.txt\"]}",
+            "{\"type\":\"summary\",\"entries\":2,\"duplicatedBytes\":2068}",
+            "{\"type\":\"folderPair\",\"folder1\":\"" + rootJson + "\",\"folder2\":\"" + rootJson + sep
+                + "copy\",\"duplicates\":1}");
+    }
+
+    @Test
+    void shouldEscapeSpecialCharacters() {
+        // given / when / then
+        assertThat(JsonLinesResultOutputter.toJsonString("plain")).isEqualTo("\"plain\"");
+        assertThat(JsonLinesResultOutputter.toJsonString("C:\\dir\\\"x\"")).isEqualTo("\"C:\\\\dir\\\\\\\"x\\\"\"");
+        assertThat(JsonLinesResultOutputter.toJsonString("a\nb\tc\u0001")).isEqualTo("\"a\\nb\\tc\\u0001\"");
+    }
+}
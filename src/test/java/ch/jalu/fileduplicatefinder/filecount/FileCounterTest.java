@@ -0,0 +1,48 @@
+package ch.jalu.fileduplicatefinder.filecount;
+
+import ch.jalu.fileduplicatefinder.filewalker.ParallelFileWalker;
+import ch.jalu.fileduplicatefinder.metrics.RunMetrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test for {@link FileCounter}.
+ */
+class FileCounterTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void shouldCountFilesByExtensionOnMultipleThreads() throws IOException {
+        // given
+        for (int i = 0; i < 20; ++i) {
+            Path folder = Files.createDirectories(root.resolve("folder" + i));
+            Files.write(folder.resolve("image.JPG"), new byte[i]);
+            Files.write(folder.resolve("notes.txt"), new byte[3]);
+            Files.write(folder.resolve("README"), new byte[1]);
+        }
+        RunMetrics metrics = new RunMetrics();
+        FileCounter fileCounter = new FileCounter(root, new ParallelFileWalker(4, metrics), metrics);
+
+        // when
+        Map<String, FileCountEntry> countByExtension = fileCounter.gatherExtensionCount();
+
+        // then
+        assertThat(countByExtension).containsOnlyKeys(".jpg", ".txt", FileCounter.NO_EXTENSION_TEXT);
+        assertThat(countByExtension.get(".jpg").getCount()).isEqualTo(20);
+        assertThat(countByExtension.get(".jpg").getTotalSizeInBytes()).isEqualByComparingTo(BigDecimal.valueOf(190));
+        assertThat(countByExtension.get(".txt").getCount()).isEqualTo(20);
+        assertThat(countByExtension.get(".txt").getTotalSizeInBytes()).isEqualByComparingTo(BigDecimal.valueOf(60));
+        assertThat(countByExtension.get(FileCounter.NO_EXTENSION_TEXT).getCount()).isEqualTo(20);
+        assertThat(metrics.counter("scan.files").get()).isEqualTo(60);
+    }
+}
@@ -5,9 +5,11 @@ import ch.jalu.fileduplicatefinder.config.FileUtilConfiguration;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
@@ -96,7 +98,8 @@ class ConfigurableFilePathMatcherTest {
         ConfigurableFilePathMatcher pathMatcher = new ConfigurableFilePathMatcher(configuration);
 
         // when
-        boolean result = pathMatcher.shouldScan(TestUtils.getTestSamplesFolder());
+        Path folder = TestUtils.getTestSamplesFolder();
+        boolean result = pathMatcher.shouldScan(folder, readAttributes(folder));
 
         // then
         assertThat(result).isTrue();
@@ -141,8 +144,16 @@ class ConfigurableFilePathMatcherTest {
 
     private static Set<String> getMatchingFilesFromSampleFolder(FilePathMatcher pathMatcher) throws IOException {
         return Files.list(TestUtils.getTestSamplesFolder())
-            .filter(pathMatcher::shouldScan)
+            .filter(path -> pathMatcher.shouldScan(path, readAttributes(path)))
             .map(path -> path.getFileName().toString())
             .collect(Collectors.toSet());
     }
+
+    private static BasicFileAttributes readAttributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
\ No newline at end of file
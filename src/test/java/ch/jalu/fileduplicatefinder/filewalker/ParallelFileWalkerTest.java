@@ -0,0 +1,122 @@
+package ch.jalu.fileduplicatefinder.filewalker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Test for {@link ParallelFileWalker}.
+ */
+class ParallelFileWalkerTest {
+
+    @Test
+    void shouldVisitAllFilesAndDirectories(@TempDir Path root) throws IOException {
+        // given
+        Files.write(root.resolve("a.txt"), new byte[3]);
+        Path sub1 = Files.createDirectories(root.resolve("sub1/deeper"));
+        Files.write(sub1.resolve("b.txt"), new byte[5]);
+        Files.write(sub1.resolve("c.txt"), new byte[7]);
+        Path sub2 = Files.createDirectory(root.resolve("sub2"));
+        Files.write(sub2.resolve("d.txt"), new byte[11]);
+        ParallelFileWalker fileWalker = new ParallelFileWalker(3);
+
+        // when
+        Long totalSize = fileWalker.walk(root, new SizeSumVisitor());
+
+        // then
+        assertThat(totalSize).isEqualTo(3L + 5 + 7 + 11);
+    }
+
+    @Test
+    void shouldSkipDirectoriesRejectedByVisitor(@TempDir Path root) throws IOException {
+        // given
+        Files.write(root.resolve("a.txt"), new byte[3]);
+        Path skipped = Files.createDirectory(root.resolve("skipped"));
+        Files.write(skipped.resolve("b.txt"), new byte[5]);
+        Path visited = Files.createDirectory(root.resolve("visited"));
+        Files.write(visited.resolve("c.txt"), new byte[7]);
+        ParallelFileWalker fileWalker = new ParallelFileWalker(2);
+
+        // when
+        Long totalSize = fileWalker.walk(root, new SizeSumVisitor() {
+            @Override
+            public boolean shouldEnterDirectory(Path directory, BasicFileAttributes attributes) {
+                return !directory.getFileName().toString().equals("skipped");
+            }
+        });
+
+        // then
+        assertThat(totalSize).isEqualTo(3L + 7);
+    }
+
+    @Test
+    void shouldPassChildResultsInListingOrder(@TempDir Path root) throws IOException {
+        // given
+        for (int i = 0; i < 20; ++i) {
+            if (i % 3 == 0) {
+                Files.createDirectory(root.resolve("entry" + i));
+            } else {
+                Files.createFile(root.resolve("entry" + i));
+            }
+        }
+        List<String> expectedNames;
+        try (var entries = Files.list(root)) {
+            expectedNames = entries.map(path -> path.getFileName().toString()).collect(Collectors.toList());
+        }
+        ParallelFileWalker fileWalker = new ParallelFileWalker(4);
+
+        // when
+        List<String> names = fileWalker.walk(root, new FileWalkVisitor<>() {
+            @Override
+            public List<String> visitFile(Path file, BasicFileAttributes attributes) {
+                return List.of(file.getFileName().toString());
+            }
+
+            @Override
+            public List<String> visitDirectory(Path directory, BasicFileAttributes attributes,
+                                               List<List<String>> childResults) {
+                if (directory.equals(root)) {
+                    return childResults.stream().flatMap(List::stream).collect(Collectors.toList());
+                }
+                return List.of(directory.getFileName().toString());
+            }
+        });
+
+        // then
+        assertThat(names).containsExactlyElementsOf(expectedNames);
+    }
+
+    @Test
+    void shouldThrowForNonDirectory(@TempDir Path root) throws IOException {
+        // given
+        Path file = Files.createFile(root.resolve("file.txt"));
+        ParallelFileWalker fileWalker = new ParallelFileWalker(1);
+
+        // when / then
+        assertThatExceptionOfType(IllegalArgumentException.class)
+            .isThrownBy(() -> fileWalker.walk(file, new SizeSumVisitor()))
+            .withMessageEndingWith("is not a directory");
+    }
+
+    private static class SizeSumVisitor implements FileWalkVisitor<Long> {
+
+        @Override
+        public Long visitFile(Path file, BasicFileAttributes attributes) {
+            return attributes.size();
+        }
+
+        @Override
+        public Long visitDirectory(Path directory, BasicFileAttributes attributes, List<Long> childResults) {
+            return childResults.stream().mapToLong(Long::longValue).sum();
+        }
+    }
+}
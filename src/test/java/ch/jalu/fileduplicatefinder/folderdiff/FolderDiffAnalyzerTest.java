@@ -0,0 +1,308 @@
+package ch.jalu.fileduplicatefinder.folderdiff;
+
+import ch.jalu.fileduplicatefinder.config.FileUtilConfiguration;
+import ch.jalu.fileduplicatefinder.hashing.FileHasher;
+import ch.jalu.fileduplicatefinder.hashing.HashingAlgorithm;
+import ch.jalu.fileduplicatefinder.metrics.RunMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DIFF_CHECK_BY_SIZE_AND_MODIFICATION_DATE;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DIFF_HASH_THREADS_PER_DEVICE;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DIFF_MANIFEST_INCLUDE_HASHES;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DIFF_MANIFEST_OUTPUT;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_ALGORITHM;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.DUPLICATE_HASH_MAX_SIZE_MB;
+import static ch.jalu.fileduplicatefinder.config.FileUtilSettings.SCAN_THREADS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test for {@link FolderDiffAnalyzer}.
+ */
+class FolderDiffAnalyzerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private FileUtilConfiguration configuration;
+
+    @Mock
+    private FileHasher fileHasher;
+
+    private final RunMetrics metrics = new RunMetrics();
+    private Path folder1;
+    private Path folder2;
+
+    @BeforeEach
+    void initMocksAndFolders() throws IOException {
+        MockitoAnnotations.initMocks(this);
+        given(configuration.getValue(SCAN_THREADS)).willReturn(2);
+        given(configuration.getValue(DIFF_HASH_THREADS_PER_DEVICE)).willReturn(2);
+        given(configuration.getValue(DUPLICATE_HASH_MAX_SIZE_MB)).willReturn(0.0);
+        given(configuration.getValue(DUPLICATE_HASH_ALGORITHM)).willReturn(HashingAlgorithm.SHA256);
+        given(configuration.getValue(DIFF_MANIFEST_OUTPUT)).willReturn(Optional.empty());
+        given(configuration.getValue(DIFF_MANIFEST_INCLUDE_HASHES)).willReturn(false);
+        given(fileHasher.calculateHash(any(Path.class)))
+            .willAnswer(invocation -> Files.readString(invocation.getArgument(0)));
+
+        folder1 = Files.createDirectory(tempDir.resolve("folder1"));
+        folder2 = Files.createDirectory(tempDir.resolve("folder2"));
+    }
+
+    @Test
+    void shouldFindDifferencesAndHashEveryFileOnce() throws IOException {
+        // given
+        given(configuration.getValue(DIFF_CHECK_BY_SIZE_AND_MODIFICATION_DATE)).willReturn(false);
+        createFile(folder1, "same.txt", "same");
+        createFile(folder2, "same.txt", "same");
+        createFile(folder1, "modified.txt", "v1");
+        createFile(folder2, "modified.txt", "v2");
+        createFile(folder1, "sub/old-name.txt", "renamed");
+        createFile(folder2, "sub/new-name.txt", "renamed");
+        createFile(folder1, "removed.txt", "gone");
+        createFile(folder2, "added.txt", "added");
+        createFile(folder1, "size-differs.txt", "short");
+        createFile(folder2, "size-differs.txt", "longer text");
+
+        FolderDiffAnalyzer analyzer = new FolderDiffAnalyzer(folder1, folder2, configuration, fileHasher, metrics);
+
+        // when
+        List<FileDifference> differences = analyzer.collectDifferences(mock(FolderDiffProgressCallback.class));
+
+        // then
+        assertThat(differences.stream().map(FolderDiffAnalyzerTest::toText).collect(Collectors.toList()))
+            .containsExactly(
+                "modified.txt -> modified.txt",
+                "size-differs.txt -> size-differs.txt",
+                "removed.txt -> null",
+                toPlatformPath("sub/old-name.txt -> sub/new-name.txt"),
+                "null -> added.txt");
+
+        for (String name : List.of("same.txt", "modified.txt")) {
+            verify(fileHasher, times(1)).calculateHash(folder1.resolve(name));
+            verify(fileHasher, times(1)).calculateHash(folder2.resolve(name));
+        }
+        verify(fileHasher, times(1)).calculateHash(folder1.resolve("sub/old-name.txt"));
+        verify(fileHasher, times(1)).calculateHash(folder2.resolve("sub/new-name.txt"));
+        // Files without any candidate of the same size on the other side are not hashed
+        verify(fileHasher, never()).calculateHash(folder1.resolve("removed.txt"));
+        verify(fileHasher, never()).calculateHash(folder2.resolve("added.txt"));
+        verify(fileHasher, never()).calculateHash(folder1.resolve("size-differs.txt"));
+        verify(fileHasher, never()).calculateHash(folder2.resolve("size-differs.txt"));
+        assertThat(metrics.counter("scan.files").get()).isEqualTo(10);
+        assertThat(metrics.counter("compare.hashedFiles").get()).isEqualTo(6);
+        assertThat(metrics.getStageNanos("scan")).isPositive();
+    }
+
+    @Test
+    void shouldNotHashAnyFilesWhenCheckingByModificationDate() throws IOException {
+        // given
+        given(configuration.getValue(DIFF_CHECK_BY_SIZE_AND_MODIFICATION_DATE)).willReturn(true);
+        createFile(folder1, "a.txt", "same");
+        createFile(folder2, "a.txt", "same");
+        createFile(folder2, "b.txt", "new");
+        Files.setLastModifiedTime(folder2.resolve("a.txt"), Files.getLastModifiedTime(folder1.resolve("a.txt")));
+
+        FolderDiffAnalyzer analyzer = new FolderDiffAnalyzer(folder1, folder2, configuration, fileHasher, metrics);
+
+        // when
+        List<FileDifference> differences = analyzer.collectDifferences(mock(FolderDiffProgressCallback.class));
+
+        // then
+        assertThat(differences.stream().map(FolderDiffAnalyzerTest::toText).collect(Collectors.toList()))
+            .containsExactly("null -> b.txt");
+        verify(fileHasher, never()).calculateHash(any(Path.class));
+    }
+
+    @Test
+    void shouldPropagateHashingError() throws IOException {
+        // given
+        given(configuration.getValue(DIFF_CHECK_BY_SIZE_AND_MODIFICATION_DATE)).willReturn(false);
+        createFile(folder1, "broken.txt", "test");
+        createFile(folder2, "broken.txt", "test");
+        given(fileHasher.calculateHash(folder1.resolve("broken.txt"))).willThrow(new IOException("Read error"));
+
+        FolderDiffAnalyzer analyzer = new FolderDiffAnalyzer(folder1, folder2, configuration, fileHasher, metrics);
+
+        // when / then
+        assertThatExceptionOfType(UncheckedIOException.class)
+            .isThrownBy(() -> analyzer.collectDifferences(mock(FolderDiffProgressCallback.class)))
+            .withMessageContaining("broken.txt");
+    }
+
+    @Test
+    void shouldDiffFolderAgainstManifestWithHashes() throws IOException {
+        // given
+        given(configuration.getValue(DIFF_CHECK_BY_SIZE_AND_MODIFICATION_DATE)).willReturn(false);
+        given(configuration.getValue(DIFF_MANIFEST_INCLUDE_HASHES)).willReturn(true);
+        Path manifestFile = tempDir.resolve("folder2.jfm");
+        given(configuration.getValue(DIFF_MANIFEST_OUTPUT)).willReturn(Optional.of(manifestFile));
+        createFile(folder2, "same.txt", "same");
+        createFile(folder2, "modified.txt", "v1");
+        createFile(folder2, "sub/old-name.txt", "renamed");
+
+        // Save manifest of folder2 (diffed with itself)
+        FolderDiffAnalyzer analyzer = new FolderDiffAnalyzer(folder2, folder2, configuration, fileHasher, metrics);
+        assertThat(analyzer.collectDifferences(mock(FolderDiffProgressCallback.class))).isEmpty();
+        analyzer.getFolder2Manifest().save(manifestFile);
+
+        // Change folder2
+        Files.writeString(folder2.resolve("modified.txt"), "v2");
+        Files.move(folder2.resolve("sub/old-name.txt"), folder2.resolve("sub/new-name.txt"));
+        reset(fileHasher);
+        given(fileHasher.calculateHash(any(Path.class)))
+            .willAnswer(invocation -> Files.readString(invocation.getArgument(0)));
+        given(configuration.getValue(DIFF_MANIFEST_OUTPUT)).willReturn(Optional.empty());
+
+        FolderDiffAnalyzer manifestAnalyzer =
+            new FolderDiffAnalyzer(manifestFile, folder2, configuration, fileHasher, metrics);
+
+        // when
+        List<FileDifference> differences =
+            manifestAnalyzer.collectDifferences(mock(FolderDiffProgressCallback.class));
+
+        // then
+        assertThat(differences.stream().map(FolderDiffAnalyzerTest::toText).collect(Collectors.toList()))
+            .containsExactly(
+                "modified.txt -> modified.txt",
+                toPlatformPath("sub/old-name.txt -> sub/new-name.txt"));
+        assertThat(differences.get(0).getFolder1Element().isFromManifest()).isTrue();
+        assertThat(differences.get(0).getFolder1Element().getFile()).isEqualTo(folder2.resolve("modified.txt"));
+        // Only the files of the live folder were read
+        verify(fileHasher, times(1)).calculateHash(folder2.resolve("same.txt"));
+        verify(fileHasher, times(1)).calculateHash(folder2.resolve("modified.txt"));
+        verify(fileHasher, times(1)).calculateHash(folder2.resolve("sub/new-name.txt"));
+        assertThat(manifestAnalyzer.getFolder2Manifest()).isNull();
+    }
+
+    @Test
+    void shouldSaveManifestWithoutHashesForUnstableAlgorithm() throws IOException {
+        // given
+        given(configuration.getValue(DUPLICATE_HASH_ALGORITHM)).willReturn(HashingAlgorithm.GFH);
+        given(configuration.getValue(DIFF_CHECK_BY_SIZE_AND_MODIFICATION_DATE)).willReturn(false);
+        given(configuration.getValue(DIFF_MANIFEST_INCLUDE_HASHES)).willReturn(true);
+        Path manifestFile = tempDir.resolve("folder2.jfm");
+        given(configuration.getValue(DIFF_MANIFEST_OUTPUT)).willReturn(Optional.of(manifestFile));
+        createFile(folder2, "same.txt", "same");
+        createFile(folder2, "modified.txt", "v1");
+
+        FolderDiffAnalyzer analyzer = new FolderDiffAnalyzer(folder2, folder2, configuration, fileHasher, metrics);
+        analyzer.collectDifferences(mock(FolderDiffProgressCallback.class));
+        FolderManifest manifest = analyzer.getFolder2Manifest();
+        manifest.save(manifestFile);
+
+        Files.writeString(folder2.resolve("modified.txt"), "v2");
+        Files.setLastModifiedTime(folder2.resolve("modified.txt"), FileTime.fromMillis(
+            Files.getLastModifiedTime(folder2.resolve("modified.txt")).toMillis() + 5000));
+        reset(fileHasher);
+        given(configuration.getValue(DIFF_MANIFEST_OUTPUT)).willReturn(Optional.empty());
+        FolderDiffAnalyzer manifestAnalyzer =
+            new FolderDiffAnalyzer(manifestFile, folder2, configuration, fileHasher, metrics);
+
+        // when
+        List<FileDifference> differences =
+            manifestAnalyzer.collectDifferences(mock(FolderDiffProgressCallback.class));
+
+        // then
+        assertThat(manifest.getHashAlgorithm()).isNull();
+        assertThat(manifest.getElementsByName().values()).extracting(FileElement::getHash).containsOnlyNulls();
+        assertThat(differences.stream().map(FolderDiffAnalyzerTest::toText).collect(Collectors.toList()))
+            .containsExactly("modified.txt -> modified.txt");
+        verify(fileHasher, never()).calculateHash(any(Path.class));
+    }
+
+    @Test
+    void shouldNotUseManifestHashesOfUnstableAlgorithm() throws IOException {
+        // given
+        given(configuration.getValue(DUPLICATE_HASH_ALGORITHM)).willReturn(HashingAlgorithm.GFH);
+        given(configuration.getValue(DIFF_CHECK_BY_SIZE_AND_MODIFICATION_DATE)).willReturn(false);
+        Path file = createFile(folder2, "same.txt", "same");
+        // Manifest with a hash of another run, as saved by earlier versions
+        FileElement element = new FileElement(folder2, "same.txt", 4, Files.getLastModifiedTime(file), "otherSeed");
+        Path manifestFile = tempDir.resolve("folder2.jfm");
+        new FolderManifest(folder2, HashingAlgorithm.GFH.name(), Map.of("same.txt", element)).save(manifestFile);
+        FolderDiffAnalyzer analyzer = new FolderDiffAnalyzer(manifestFile, folder2, configuration, fileHasher, metrics);
+
+        // when
+        List<FileDifference> differences = analyzer.collectDifferences(mock(FolderDiffProgressCallback.class));
+
+        // then
+        assertThat(differences).isEmpty();
+        verify(fileHasher, never()).calculateHash(any(Path.class));
+    }
+
+    @Test
+    void shouldCompareManifestsWithoutHashesBySizeAndModificationDate() throws IOException {
+        // given
+        given(configuration.getValue(DIFF_CHECK_BY_SIZE_AND_MODIFICATION_DATE)).willReturn(false);
+        Path manifestFile1 = tempDir.resolve("manifest1.jfm");
+        Path manifestFile2 = tempDir.resolve("manifest2.jfm");
+        createFile(folder1, "same.txt", "same");
+        createFile(folder1, "old-name.txt", "renamed");
+        createFile(folder1, "removed.txt", "gone");
+        given(configuration.getValue(DIFF_MANIFEST_OUTPUT)).willReturn(Optional.of(manifestFile1));
+        FolderDiffAnalyzer analyzer1 = new FolderDiffAnalyzer(folder1, folder1, configuration, fileHasher, metrics);
+        analyzer1.collectDifferences(mock(FolderDiffProgressCallback.class));
+        analyzer1.getFolder2Manifest().save(manifestFile1);
+
+        Files.move(folder1.resolve("old-name.txt"), folder1.resolve("new-name.txt"));
+        Files.delete(folder1.resolve("removed.txt"));
+        FolderDiffAnalyzer analyzer2 = new FolderDiffAnalyzer(folder1, folder1, configuration, fileHasher, metrics);
+        analyzer2.collectDifferences(mock(FolderDiffProgressCallback.class));
+        analyzer2.getFolder2Manifest().save(manifestFile2);
+        reset(fileHasher);
+
+        FolderDiffAnalyzer manifestAnalyzer =
+            new FolderDiffAnalyzer(manifestFile1, manifestFile2, configuration, fileHasher, metrics);
+
+        // when
+        List<FileDifference> differences =
+            manifestAnalyzer.collectDifferences(mock(FolderDiffProgressCallback.class));
+
+        // then
+        assertThat(differences.stream().map(FolderDiffAnalyzerTest::toText).collect(Collectors.toList()))
+            .containsExactly("old-name.txt -> new-name.txt", "removed.txt -> null");
+        verify(fileHasher, never()).calculateHash(any(Path.class));
+    }
+
+    private static Path createFile(Path folder, String name, String content) throws IOException {
+        Path file = folder.resolve(name);
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, content);
+    }
+
+    private static String toText(FileDifference difference) {
+        return toText(difference.getFolder1Element()) + " -> " + toText(difference.getFolder2Element());
+    }
+
+    private static String toText(FileElement element) {
+        return element == null ? "null" : element.getName();
+    }
+
+    private static String toPlatformPath(String path) {
+        return path.replace("/", File.separator);
+    }
+}
@@ -0,0 +1,104 @@
+package ch.jalu.fileduplicatefinder.folderdiff;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Test for {@link FolderManifest}.
+ */
+class FolderManifestTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldSaveAndLoadManifestWithHashes() throws IOException {
+        // given
+        Path root = Paths.get("/backup/data").toAbsolutePath();
+        FileTime time1 = FileTime.from(Instant.ofEpochSecond(1_600_000_000L, 123_456_789));
+        FileTime time2 = FileTime.from(Instant.ofEpochSecond(1_700_000_000L));
+        Map<String, FileElement> elements = new LinkedHashMap<>();
+        for (FileElement element : List.of(
+                new FileElement(root, toPlatformPath("docs/report.pdf"), 2048, time1, "a1b2c3"),
+                new FileElement(root, toPlatformPath("docs/report-draft.pdf"), 1024, time2, null),
+                new FileElement(root, "Zurich.jpg", 0, time2, "ffee"))) {
+            elements.put(element.getName(), element);
+        }
+        FolderManifest manifest = new FolderManifest(root, "SHA256", elements);
+        Path manifestFile = tempDir.resolve("test.jfm");
+
+        // when
+        manifest.save(manifestFile);
+        FolderManifest loadedManifest = FolderManifest.load(manifestFile);
+
+        // then
+        assertThat(Files.exists(tempDir.resolve("test.jfm.tmp"))).isFalse();
+        assertThat(loadedManifest.getRoot()).isEqualTo(root);
+        assertThat(loadedManifest.getHashAlgorithm()).isEqualTo("SHA256");
+        assertThat(loadedManifest.getElementsByName().keySet()).containsExactly(
+            "Zurich.jpg", toPlatformPath("docs/report-draft.pdf"), toPlatformPath("docs/report.pdf"));
+
+        FileElement report = loadedManifest.getElementsByName().get(toPlatformPath("docs/report.pdf"));
+        assertThat(report.getFile()).isEqualTo(root.resolve("docs/report.pdf"));
+        assertThat(report.getSize()).isEqualTo(2048);
+        assertThat(report.getLastModifiedTime()).isEqualTo(time1);
+        assertThat(report.getHash()).isEqualTo("a1b2c3");
+        assertThat(report.isFromManifest()).isTrue();
+
+        FileElement draft = loadedManifest.getElementsByName().get(toPlatformPath("docs/report-draft.pdf"));
+        assertThat(draft.getSize()).isEqualTo(1024);
+        assertThat(draft.getLastModifiedTime()).isEqualTo(time2);
+        assertThat(draft.getHash()).isNull();
+    }
+
+    @Test
+    void shouldSaveAndLoadManifestWithoutHashes() throws IOException {
+        // given
+        Path root = tempDir.toAbsolutePath();
+        FileTime time = FileTime.from(Instant.ofEpochSecond(1_650_000_000L, 500));
+        FileElement element = new FileElement(root, "file.txt", 14, time, "ignored");
+        FolderManifest manifest = new FolderManifest(root, null, Map.of("file.txt", element));
+        Path manifestFile = tempDir.resolve("test.jfm");
+
+        // when
+        manifest.save(manifestFile);
+        FolderManifest loadedManifest = FolderManifest.load(manifestFile);
+
+        // then
+        assertThat(loadedManifest.getHashAlgorithm()).isNull();
+        FileElement loadedElement = loadedManifest.getElementsByName().get("file.txt");
+        assertThat(loadedElement.getSize()).isEqualTo(14);
+        assertThat(loadedElement.getLastModifiedTime()).isEqualTo(time);
+        assertThat(loadedElement.getHash()).isNull();
+    }
+
+    @Test
+    void shouldThrowForFileThatIsNotAManifest() throws IOException {
+        // given
+        Path file = tempDir.resolve("other.txt");
+        Files.writeString(file, "This is not a manifest");
+
+        // when / then
+        assertThatExceptionOfType(IOException.class)
+            .isThrownBy(() -> FolderManifest.load(file))
+            .withMessageContaining("is not a folder manifest");
+    }
+
+    private static String toPlatformPath(String path) {
+        return path.replace("/", File.separator);
+    }
+}
@@ -0,0 +1,117 @@
+package ch.jalu.fileduplicatefinder.folderdiff;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test for {@link RenameDetector}.
+ */
+class RenameDetectorTest {
+
+    private static final Path ROOT1 = Paths.get("folder1");
+    private static final Path ROOT2 = Paths.get("folder2");
+
+    private final List<String> hashedFiles = new ArrayList<>();
+
+    @Test
+    void shouldNotHashFilesWithUniqueSize() {
+        // given
+        FileElement removed = file1("removed.mp4", 1000, 1, "hash1");
+        FileElement added = file2("added.mp4", 2000, 1, "hash2");
+        RenameDetector renameDetector = new RenameDetector(List.of(removed), List.of(added), true, true,
+            hasher(), hasher());
+
+        // when
+        renameDetector.submitFilesToHash();
+        Map<FileElement, FileElement> renamedFiles = renameDetector.findRenamedFiles();
+
+        // then
+        assertThat(renamedFiles).isEmpty();
+        assertThat(hashedFiles).isEmpty();
+    }
+
+    @Test
+    void shouldPairFilesWithSameHashAndPreferSameFileName() {
+        // given
+        FileElement f1a = file1("a.txt", 100, 1, "same");
+        FileElement f1b = file1("b.txt", 100, 2, "same");
+        FileElement f1c = file1("c.txt", 100, 3, "other");
+        FileElement f2b = file2("moved/b.txt", 100, 4, "same");
+        FileElement f2x = file2("x.txt", 100, 5, "same");
+        FileElement f2y = file2("y.txt", 100, 6, "different");
+        FileElement f2z = file2("z.txt", 50, 7, "other");
+        RenameDetector renameDetector = new RenameDetector(List.of(f1a, f1b, f1c), List.of(f2b, f2x, f2y, f2z),
+            true, true, hasher(), hasher());
+
+        // when
+        renameDetector.submitFilesToHash();
+        Map<FileElement, FileElement> renamedFiles = renameDetector.findRenamedFiles();
+
+        // then
+        assertThat(renamedFiles).containsOnly(Map.entry(f1a, f2x), Map.entry(f1b, f2b));
+        assertThat(hashedFiles).doesNotContain("z.txt");
+    }
+
+    @Test
+    void shouldPairBySizeAndModificationDateAndOnlyHashFilesWithSameName() {
+        // given
+        FileElement f1Renamed = file1("old-name.mp4", 5000, 10, "video");
+        FileElement f1Moved = file1("clips/intro.mp4", 3000, 20, "intro");
+        FileElement f1Removed = file1("outro.mp4", 3000, 30, "outro");
+        FileElement f2Renamed = file2("new-name.mp4", 5000, 10, "video");
+        FileElement f2Moved = file2("archive/intro.mp4", 3000, 25, "intro");
+        FileElement f2Added = file2("trailer.mp4", 3000, 40, "trailer");
+        RenameDetector renameDetector = new RenameDetector(List.of(f1Renamed, f1Moved, f1Removed),
+            List.of(f2Renamed, f2Moved, f2Added), false, true, hasher(), hasher());
+
+        // when
+        renameDetector.submitFilesToHash();
+        Map<FileElement, FileElement> renamedFiles = renameDetector.findRenamedFiles();
+
+        // then
+        assertThat(renamedFiles).containsOnly(Map.entry(f1Renamed, f2Renamed), Map.entry(f1Moved, f2Moved));
+        assertThat(hashedFiles).containsOnly("clips/intro.mp4", "archive/intro.mp4");
+    }
+
+    @Test
+    void shouldNotHashWithoutAvailableHashes() {
+        // given
+        FileElement f1Moved = file1("clips/intro.mp4", 3000, 20, "intro");
+        FileElement f2Moved = file2("archive/intro.mp4", 3000, 25, "intro");
+        RenameDetector renameDetector = new RenameDetector(List.of(f1Moved), List.of(f2Moved), true, false,
+            hasher(), hasher());
+
+        // when
+        renameDetector.submitFilesToHash();
+        Map<FileElement, FileElement> renamedFiles = renameDetector.findRenamedFiles();
+
+        // then
+        assertThat(renamedFiles).isEmpty();
+        assertThat(hashedFiles).isEmpty();
+    }
+
+    private Function<FileElement, CompletableFuture<String>> hasher() {
+        return element -> {
+            hashedFiles.add(element.getName());
+            return CompletableFuture.completedFuture(element.getHash());
+        };
+    }
+
+    private static FileElement file1(String name, long size, long modifiedMillis, String hash) {
+        return new FileElement(ROOT1, name, size, FileTime.fromMillis(modifiedMillis), hash);
+    }
+
+    private static FileElement file2(String name, long size, long modifiedMillis, String hash) {
+        return new FileElement(ROOT2, name, size, FileTime.fromMillis(modifiedMillis), hash);
+    }
+}
@@ -0,0 +1,59 @@
+package ch.jalu.fileduplicatefinder.hashing;
+
+import com.google.common.hash.Hasher;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static ch.jalu.fileduplicatefinder.hashing.Xxh3HashFunctionTest.createInput;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test for {@link Blake3HashFunction}.
+ */
+class Blake3HashFunctionTest {
+
+    private final Blake3HashFunction blake3 = Blake3HashFunction.BLAKE3;
+
+    @Test
+    void shouldHashLikeReferenceImplementation() {
+        // given / when / then
+        assertThat(blake3.hashString("abc", StandardCharsets.US_ASCII).toString())
+            .isEqualTo("6437b3ac38465133ffb63b75273a8db548c558465d79db03fd359c6cd5bd9d85");
+
+        // Expected values from the reference implementation (input: i % 251 for each byte index i)
+        assertHash(0, "af1349b9f5f9a1a6a0404dea36dcc9499bcb25c9adc112b7cc9a93cae41f3262");
+        assertHash(1, "2d3adedff11b61f14c886e35afa036736dcd87a74d27b5c1510225d0f592e213");
+        assertHash(100, "8e2eb1bba3040b8f611a1240a0e111c74b45cfc9caed10b95f6372db1c40b8b5");
+        assertHash(1024, "42214739f095a406f3fc83deb889744ac00df831c10daa55189b5d121c855af7");
+        assertHash(1025, "d00278ae47eb27b34faecf67b4fe263f82d5412916c1ffd97c8cb7fb814b8444");
+        assertHash(5000, "ee78d92070de3df1c57c37002abf0a6b1a6589acdeef4d8ffac7cf3d9e8f2836");
+        assertHash(100_000, "d93c23eedaf165a7e0be908ba86f1a7a520d568d2d13cde787c8580c5c72cc54");
+    }
+
+    @Test
+    void shouldProduceSameHashRegardlessOfChunking() {
+        // given
+        byte[] input = createInput(100_000);
+        String expected = blake3.hashBytes(input).toString();
+        int[] chunkSizes = { 1, 63, 64, 65, 1023, 1024, 1025, 8192 };
+
+        for (int chunkSize : chunkSizes) {
+            // when
+            Hasher hasher = blake3.newHasher();
+            for (int offset = 0; offset < input.length; offset += chunkSize) {
+                int length = Math.min(chunkSize, input.length - offset);
+                hasher.putBytes(ByteBuffer.allocateDirect(length).put(input, offset, length).flip());
+            }
+
+            // then
+            assertThat(hasher.hash().toString()).as("chunk size " + chunkSize).isEqualTo(expected);
+        }
+    }
+
+    private void assertHash(int length, String expectedHash) {
+        assertThat(blake3.hashBytes(createInput(length)).toString()).as("length " + length)
+            .isEqualTo(expectedHash);
+    }
+}
@@ -0,0 +1,205 @@
+package ch.jalu.fileduplicatefinder.hashing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * Test for {@link CachingFileHasher}.
+ */
+class CachingFileHasherTest {
+
+    @TempDir
+    Path tempFolder;
+
+    @Test
+    void shouldReturnCachedHashForUnchangedFile() throws IOException {
+        // given
+        Path file = Files.writeString(tempFolder.resolve("a.txt"), "Test");
+        FileHasher delegate = mock(FileHasher.class);
+        given(delegate.calculateHash(file)).willReturn("abc1");
+        CachingFileHasher hasher = new CachingFileHasher(delegate, HashingAlgorithm.SHA256, cacheFile());
+
+        // when
+        String hash1 = hasher.calculateHash(file);
+        String hash2 = hasher.calculateHash(file);
+
+        // then
+        assertThat(hash1).isEqualTo("abc1");
+        assertThat(hash2).isEqualTo("abc1");
+        verify(delegate).calculateHash(file);
+        assertThat(hasher.getHitCount()).isEqualTo(1);
+        assertThat(hasher.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRehashModifiedFile() throws IOException {
+        // given
+        Path file = Files.writeString(tempFolder.resolve("a.txt"), "Test");
+        FileHasher delegate = mock(FileHasher.class);
+        given(delegate.calculateHash(file)).willReturn("abc1", "def2");
+        CachingFileHasher hasher = new CachingFileHasher(delegate, HashingAlgorithm.SHA256, cacheFile());
+        hasher.calculateHash(file);
+
+        Files.writeString(file, "Tset");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 5000));
+
+        // when
+        String hash = hasher.calculateHash(file);
+
+        // then
+        assertThat(hash).isEqualTo("def2");
+        verify(delegate, times(2)).calculateHash(file);
+        assertThat(hasher.getHitCount()).isZero();
+        assertThat(hasher.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldLookUpCachedHashWithoutHashing() throws IOException {
+        // given
+        Path file = Files.writeString(tempFolder.resolve("a.txt"), "Test");
+        Path otherFile = Files.writeString(tempFolder.resolve("b.txt"), "Test");
+        FileHasher delegate = mock(FileHasher.class);
+        given(delegate.calculateHash(file)).willReturn("abc1");
+        CachingFileHasher hasher = new CachingFileHasher(delegate, HashingAlgorithm.SHA256, cacheFile());
+        hasher.calculateHash(file);
+
+        // when
+        String hash = hasher.getCachedHash(file);
+        String otherHash = hasher.getCachedHash(otherFile);
+
+        // then
+        assertThat(hash).isEqualTo("abc1");
+        assertThat(otherHash).isNull();
+        verify(delegate).calculateHash(file);
+        assertThat(hasher.getHitCount()).isEqualTo(1);
+        assertThat(hasher.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldSaveAndLoadCache() throws IOException {
+        // given
+        Path file1 = Files.writeString(tempFolder.resolve("a.txt"), "Test");
+        Path file2 = Files.writeString(tempFolder.resolve("b.txt"), "Other");
+        FileHasher delegate = mock(FileHasher.class);
+        given(delegate.calculateHash(file1)).willReturn("abc1");
+        given(delegate.calculateHash(file2)).willReturn("def2");
+        CachingFileHasher hasher = new CachingFileHasher(delegate, HashingAlgorithm.CRC32, cacheFile());
+        hasher.calculateHash(file1);
+        hasher.calculateHash(file2);
+
+        FileHasher newDelegate = mock(FileHasher.class);
+        CachingFileHasher newHasher = new CachingFileHasher(newDelegate, HashingAlgorithm.CRC32, cacheFile());
+
+        // when
+        hasher.saveCache();
+        newHasher.loadCache();
+
+        // then
+        assertThat(newHasher.calculateHash(file1)).isEqualTo("abc1");
+        assertThat(newHasher.calculateHash(file2)).isEqualTo("def2");
+        verifyNoInteractions(newDelegate);
+        assertThat(newHasher.getHitCount()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldRemoveEntriesOfDeletedFilesOnSave() throws IOException {
+        // given
+        Path keptFile = Files.writeString(tempFolder.resolve("a.txt"), "Test");
+        Path deletedFile = Files.writeString(tempFolder.resolve("b.txt"), "Other");
+        FileTime deletedFileLastModified = Files.getLastModifiedTime(deletedFile);
+        FileHasher delegate = mock(FileHasher.class);
+        given(delegate.calculateHash(keptFile)).willReturn("abc1");
+        given(delegate.calculateHash(deletedFile)).willReturn("def2");
+        CachingFileHasher firstRun = new CachingFileHasher(delegate, HashingAlgorithm.SHA256, cacheFile());
+        firstRun.calculateHash(keptFile);
+        firstRun.calculateHash(deletedFile);
+        firstRun.saveCache();
+
+        Files.delete(deletedFile);
+        CachingFileHasher secondRun = new CachingFileHasher(delegate, HashingAlgorithm.SHA256, cacheFile());
+        secondRun.loadCache();
+
+        // when
+        secondRun.saveCache();
+
+        // then
+        // Restore the deleted file with the same size and modification date that were cached
+        Files.writeString(deletedFile, "Other");
+        Files.setLastModifiedTime(deletedFile, deletedFileLastModified);
+        CachingFileHasher thirdRun = new CachingFileHasher(delegate, HashingAlgorithm.SHA256, cacheFile());
+        thirdRun.loadCache();
+        assertThat(thirdRun.getCachedHash(keptFile)).isEqualTo("abc1");
+        assertThat(thirdRun.getCachedHash(deletedFile)).isNull();
+    }
+
+    @Test
+    void shouldNotUseEntriesOfOtherAlgorithm() throws IOException {
+        // given
+        Path file = Files.writeString(tempFolder.resolve("a.txt"), "Test");
+        FileHasher crcHasher = mock(FileHasher.class);
+        given(crcHasher.calculateHash(file)).willReturn("abc1");
+        CachingFileHasher crcCache = new CachingFileHasher(crcHasher, HashingAlgorithm.CRC32, cacheFile());
+        crcCache.calculateHash(file);
+        crcCache.saveCache();
+
+        FileHasher shaHasher = mock(FileHasher.class);
+        given(shaHasher.calculateHash(file)).willReturn("0123456789");
+        CachingFileHasher shaCache = new CachingFileHasher(shaHasher, HashingAlgorithm.SHA256, cacheFile());
+        shaCache.loadCache();
+
+        // when
+        String hash = shaCache.calculateHash(file);
+
+        // then
+        assertThat(hash).isEqualTo("0123456789");
+        assertThat(shaCache.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldIgnoreMissingCacheFile() throws IOException {
+        // given
+        CachingFileHasher hasher = new CachingFileHasher(mock(FileHasher.class), HashingAlgorithm.SHA1, cacheFile());
+
+        // when
+        hasher.loadCache();
+
+        // then
+        assertThat(cacheFile()).doesNotExist();
+    }
+
+    @Test
+    void shouldThrowForInvalidCacheFile() throws IOException {
+        // given
+        Files.writeString(cacheFile(), "invalid");
+        CachingFileHasher hasher = new CachingFileHasher(mock(FileHasher.class), HashingAlgorithm.SHA1, cacheFile());
+
+        // when / then
+        assertThatExceptionOfType(IOException.class)
+            .isThrownBy(hasher::loadCache);
+    }
+
+    @Test
+    void shouldRejectUnstableAlgorithm() {
+        // given / when / then
+        assertThatExceptionOfType(IllegalArgumentException.class)
+            .isThrownBy(() -> new CachingFileHasher(mock(FileHasher.class), HashingAlgorithm.GFH, cacheFile()))
+            .withMessageContaining("GFH");
+    }
+
+    private Path cacheFile() {
+        return tempFolder.resolve(CachingFileHasher.CACHE_FILE_NAME);
+    }
+}
@@ -0,0 +1,68 @@
+package ch.jalu.fileduplicatefinder.hashing;
+
+import ch.jalu.fileduplicatefinder.TestUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+/**
+ * Test for {@link ChannelFileHasher}.
+ */
+class ChannelFileHasherTest {
+
+    @Test
+    void shouldHashFile() throws IOException {
+        // given
+        Path file = TestUtils.getTestSamplesFolder().resolve("test_3.txt");
+        FileHasher fileHasher = new ChannelFileHasher(HashingAlgorithm.SHA256.getHashFunction());
+
+        // when / then
+        assertThat(fileHasher.calculateHash(file))
+            .isEqualTo("bc5b37c5c197287669e35ea60a7819d09cd7b0ef26194485d926d526af1d70e0");
+    }
+
+    @Test
+    void shouldProduceSameHashesAsDefaultFileHasher(@TempDir Path tempFolder) throws IOException {
+        // given
+        byte[] contents = new byte[300_000];
+        new Random(42).nextBytes(contents);
+        Path largeFile = Files.write(tempFolder.resolve("large.bin"), contents);
+        Path emptyFile = Files.createFile(tempFolder.resolve("empty.bin"));
+
+        for (HashingAlgorithm algorithm : new HashingAlgorithm[]{ HashingAlgorithm.CRC32, HashingAlgorithm.SHA256 }) {
+            FileHasher defaultHasher = new DefaultFileHasher(algorithm.getHashFunction());
+            FileHasher bufferingHasher = new ChannelFileHasher(algorithm.getHashFunction(), Long.MAX_VALUE);
+            FileHasher mappingHasher = new ChannelFileHasher(algorithm.getHashFunction(), 0);
+
+            for (Path file : new Path[]{ largeFile, emptyFile }) {
+                // when
+                String expectedHash = defaultHasher.calculateHash(file);
+                String bufferedHash = bufferingHasher.calculateHash(file);
+                String mappedHash = mappingHasher.calculateHash(file);
+
+                // then
+                assertThat(bufferedHash).as(algorithm + " for " + file.getFileName()).isEqualTo(expectedHash);
+                assertThat(mappedHash).as(algorithm + " for " + file.getFileName()).isEqualTo(expectedHash);
+            }
+        }
+    }
+
+    @Test
+    void shouldThrowIfPathIsNotAFile() {
+        // given
+        Path folder = TestUtils.getTestSamplesFolder();
+        FileHasher fileHasher = new ChannelFileHasher(HashingAlgorithm.SHA256.getHashFunction());
+
+        // when / then
+        assertThatExceptionOfType(IllegalArgumentException.class)
+            .isThrownBy(() -> fileHasher.calculateHash(folder))
+            .withMessageEndingWith("must be a file");
+    }
+}
@@ -20,9 +20,12 @@ class FileHasherFactoryTest {
 
         // when / then
         algorithms.forEach(algorithm -> {
-            assertThat(fileHasherFactory.createFileHasher(algorithm))
+            assertThat(fileHasherFactory.createFileHasher(algorithm, FileReadMode.STREAM))
                 .as("File hasher '" + algorithm + "'")
-                .isNotNull();
+                .isInstanceOf(DefaultFileHasher.class);
+            assertThat(fileHasherFactory.createFileHasher(algorithm, FileReadMode.CHANNEL))
+                .as("File hasher '" + algorithm + "'")
+                .isInstanceOf(ChannelFileHasher.class);
         });
     }
-}
\ No newline at end of file
+}
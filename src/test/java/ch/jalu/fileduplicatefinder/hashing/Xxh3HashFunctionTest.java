@@ -0,0 +1,71 @@
+package ch.jalu.fileduplicatefinder.hashing;
+
+import com.google.common.hash.Hasher;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test for {@link Xxh3HashFunction}.
+ */
+class Xxh3HashFunctionTest {
+
+    @Test
+    void shouldHashLikeReferenceImplementation() {
+        // given / when / then
+        // Expected values from the reference implementation (input: i % 251 for each byte index i)
+        assertHashes(0, "2d06800538d394c2", "99aa06d3014798d86001c324468d497f");
+        assertHashes(1, "c44bdff4074eecdb", "a6cd5e9392000f6ac44bdff4074eecdb");
+        assertHashes(3, "5f4299fc161c9cbb", "e3b55f57945a17cf5f4299fc161c9cbb");
+        assertHashes(6, "a6584d1d9a6ae704", "545f093d32b168fea6b52f4dea3896a3");
+        assertHashes(12, "5ace6a511c10894b", "38f92247a7f73cc57780eb31198f13ca");
+        assertHashes(100, "004e4f921a64bd1c", "da95ef16fd9566f329b20ba5f03ec01e");
+        assertHashes(200, "f42a8864feaf0703", "cb0395310643ba0edd97e9af3609d9f5");
+        assertHashes(241, "02e8cd95421c6d02", "1da1cb61bcb8a2a102e8cd95421c6d02");
+        assertHashes(1024, "e5d78bafa45b2aa5", "d0ac1f7b93bf57b9e5d78bafa45b2aa5");
+        assertHashes(1025, "e95c42288f28186e", "2882ebca04ec915ce95c42288f28186e");
+        assertHashes(5000, "b418500fc42320ee", "b92ec02c39d33ce7b418500fc42320ee");
+        assertHashes(100_000, "42c23aeead96750d", "54182c58bbb1337c42c23aeead96750d");
+    }
+
+    @Test
+    void shouldProduceSameHashRegardlessOfChunking() {
+        // given
+        byte[] input = createInput(100_000);
+        int[] chunkSizes = { 1, 63, 64, 65, 255, 256, 257, 4096 };
+
+        for (Xxh3HashFunction hashFunction : List.of(Xxh3HashFunction.XXH3_64, Xxh3HashFunction.XXH3_128)) {
+            String expected = hashFunction.hashBytes(input).toString();
+            for (int chunkSize : chunkSizes) {
+                // when
+                Hasher hasher = hashFunction.newHasher();
+                for (int offset = 0; offset < input.length; offset += chunkSize) {
+                    int length = Math.min(chunkSize, input.length - offset);
+                    hasher.putBytes(ByteBuffer.allocateDirect(length).put(input, offset, length).flip());
+                }
+
+                // then
+                assertThat(hasher.hash().toString()).as("chunk size " + chunkSize).isEqualTo(expected);
+            }
+        }
+    }
+
+    private static void assertHashes(int length, String expectedXxh3, String expectedXxh128) {
+        byte[] input = createInput(length);
+        assertThat(Xxh3HashFunction.XXH3_64.hashBytes(input).toString()).as("XXH3, length " + length)
+            .isEqualTo(expectedXxh3);
+        assertThat(Xxh3HashFunction.XXH3_128.hashBytes(input).toString()).as("XXH128, length " + length)
+            .isEqualTo(expectedXxh128);
+    }
+
+    static byte[] createInput(int length) {
+        byte[] input = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            input[i] = (byte) (i % 251);
+        }
+        return input;
+    }
+}
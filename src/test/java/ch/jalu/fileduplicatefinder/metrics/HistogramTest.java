@@ -0,0 +1,45 @@
+package ch.jalu.fileduplicatefinder.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test for {@link Histogram}.
+ */
+class HistogramTest {
+
+    @Test
+    void shouldRecordValues() {
+        // given
+        Histogram histogram = new Histogram();
+
+        // when
+        for (int i = 1; i <= 100; ++i) {
+            histogram.record(i);
+        }
+        histogram.record(-5);
+
+        // then
+        assertThat(histogram.getCount()).isEqualTo(101);
+        assertThat(histogram.getSum()).isEqualTo(5050);
+        assertThat(histogram.getMin()).isZero();
+        assertThat(histogram.getMax()).isEqualTo(100);
+        assertThat(histogram.getMean()).isEqualTo(50.0);
+        assertThat(histogram.getPercentile(50)).isEqualTo(63); // 51 is in the bucket [32, 63]
+        assertThat(histogram.getPercentile(99)).isEqualTo(100); // Bucket [64, 127] is capped by the max value
+    }
+
+    @Test
+    void shouldReturnZeroForEmptyHistogram() {
+        // given
+        Histogram histogram = new Histogram();
+
+        // when / then
+        assertThat(histogram.getCount()).isZero();
+        assertThat(histogram.getMin()).isZero();
+        assertThat(histogram.getMax()).isZero();
+        assertThat(histogram.getMean()).isZero();
+        assertThat(histogram.getPercentile(99)).isZero();
+    }
+}
@@ -0,0 +1,89 @@
+package ch.jalu.fileduplicatefinder.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test for {@link RunMetrics}.
+ */
+class RunMetricsTest {
+
+    @Test
+    void shouldReturnSameMetricForSameName() {
+        // given
+        RunMetrics metrics = new RunMetrics();
+
+        // when
+        metrics.counter("scan.files").increment();
+        metrics.counter("scan.files").add(4);
+        metrics.histogram("hash.latencyMicros").record(20);
+        metrics.histogram("hash.latencyMicros").record(40);
+
+        // then
+        assertThat(metrics.counter("scan.files").get()).isEqualTo(5);
+        assertThat(metrics.histogram("hash.latencyMicros").getCount()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldAddUpTimesOfStage() throws InterruptedException {
+        // given
+        RunMetrics metrics = new RunMetrics();
+
+        // when
+        try (RunMetrics.Stage ignored = metrics.startStage("scan")) {
+            Thread.sleep(5);
+        }
+        long firstTime = metrics.getStageNanos("scan");
+        try (RunMetrics.Stage ignored = metrics.startStage("scan")) {
+            Thread.sleep(5);
+        }
+
+        // then
+        assertThat(firstTime).isGreaterThanOrEqualTo(5_000_000L);
+        assertThat(metrics.getStageNanos("scan")).isGreaterThanOrEqualTo(firstTime + 5_000_000L);
+        assertThat(metrics.getStageNanos("hash")).isZero();
+    }
+
+    @Test
+    void shouldOutputTableAndJson() {
+        // given
+        RunMetrics metrics = new RunMetrics();
+        metrics.counter("scan.files").add(12);
+        metrics.counter("other").add(3);
+        metrics.histogram("hash.queueDepth").record(2);
+
+        // when
+        List<String> table = metrics.toTableLines();
+        String json = metrics.toJson();
+
+        // then
+        assertThat(table).hasSize(5);
+        assertThat(table.get(0)).startsWith("Counter");
+        assertThat(table.get(1)).startsWith("other").contains(" 3");
+        assertThat(table.get(2)).startsWith("scan.files").contains(" 12");
+        assertThat(table.get(3)).startsWith("Histogram");
+        assertThat(json).isEqualTo("{\"stages\":{},"
+            + "\"counters\":{\"other\":{\"value\":3},\"scan.files\":{\"value\":12}},"
+            + "\"histograms\":{\"hash.queueDepth\":{\"count\":1,\"sum\":2,\"min\":2,\"max\":2,\"mean\":2.0,"
+            + "\"p50\":2,\"p99\":2}}}");
+    }
+
+    @Test
+    void shouldIncludeRateOfCountersWithTimedStage() {
+        // given
+        RunMetrics metrics = new RunMetrics();
+        try (RunMetrics.Stage ignored = metrics.startStage("scan")) {
+            metrics.counter("scan.files").add(1000);
+        }
+
+        // when
+        String json = metrics.toJson();
+
+        // then
+        assertThat(json).contains("\"scan\":{\"wallTimeMillis\":")
+            .contains("\"scan.files\":{\"value\":1000,\"perSecond\":");
+    }
+}
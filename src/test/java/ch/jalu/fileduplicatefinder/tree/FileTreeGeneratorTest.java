@@ -0,0 +1,155 @@
+package ch.jalu.fileduplicatefinder.tree;
+
+import ch.jalu.fileduplicatefinder.filewalker.ParallelFileWalker;
+import ch.jalu.fileduplicatefinder.metrics.RunMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Test for {@link FileTreeGenerator}.
+ */
+class FileTreeGeneratorTest {
+
+    @TempDir
+    Path root;
+
+    private Path smallFiles;
+    private Path largeFiles;
+
+    @BeforeEach
+    void createFiles() throws IOException {
+        Files.write(root.resolve("a.txt"), new byte[3]);
+        smallFiles = Files.createDirectories(root.resolve("small"));
+        Files.write(smallFiles.resolve("b.txt"), new byte[5]);
+        Files.write(smallFiles.resolve("c.txt"), new byte[7]);
+        largeFiles = Files.createDirectories(root.resolve("small/large"));
+        Files.write(largeFiles.resolve("d.txt"), new byte[200]);
+    }
+
+    @Test
+    void shouldGenerateTreeWithAllEntries() {
+        // given
+        FileTreeGenerator generator = new FileTreeGenerator(root, new ParallelFileWalker(2), new RunMetrics());
+        AtomicInteger totalItems = new AtomicInteger();
+
+        // when
+        FileTree tree = generator.generateTree(totalItems::incrementAndGet);
+
+        // then
+        assertThat(totalItems.get()).isEqualTo(7);
+        assertThat(tree.getEntryCount()).isEqualTo(7);
+        assertThat(tree.isDirectory(FileTree.ROOT_INDEX)).isTrue();
+        assertThat(tree.getPath(FileTree.ROOT_INDEX)).isEqualTo(root);
+        assertThat(tree.getSize(FileTree.ROOT_INDEX)).isEqualTo(215L);
+        assertThat(tree.getItemCount(FileTree.ROOT_INDEX)).isEqualTo(2);
+        assertThat(getChildPaths(tree, FileTree.ROOT_INDEX))
+            .containsExactlyInAnyOrder(root.resolve("a.txt"), smallFiles);
+
+        int small = getChild(tree, FileTree.ROOT_INDEX, smallFiles);
+        assertThat(tree.getSize(small)).isEqualTo(212L);
+        assertThat(tree.getItemCount(small)).isEqualTo(3);
+        assertThat(tree.getFileCount(small)).isEqualTo(2);
+        assertThat(tree.getLargestFileSize(small)).isEqualTo(7L);
+        assertThat(tree.areFilesLoaded(small)).isTrue();
+        assertThat(tree.streamChildren(small).count()).isEqualTo(3);
+        assertThat(tree.getSubtreeEnd(small) - small).isEqualTo(5);
+    }
+
+    @Test
+    void shouldGenerateLazyTreeAndLoadFilesOfMatchingDirectories() {
+        // given
+        FileTreeGenerator generator = new FileTreeGenerator(root, new ParallelFileWalker(2), new RunMetrics());
+        FileTree lazyTree = generator.generateLazyTree(() -> { });
+
+        // when
+        FileTree tree = generator.loadFiles(lazyTree,
+            directory -> lazyTree.getLargestFileSize(directory) >= 100, message -> { });
+
+        // then
+        assertThat(lazyTree.getEntryCount()).isEqualTo(3);
+        assertThat(tree.getEntryCount()).isEqualTo(4);
+        assertThat(tree.getSize(FileTree.ROOT_INDEX)).isEqualTo(215L);
+        assertThat(tree.areFilesLoaded(FileTree.ROOT_INDEX)).isFalse();
+        assertThat(getChildPaths(tree, FileTree.ROOT_INDEX)).containsExactly(smallFiles);
+
+        int small = getChild(tree, FileTree.ROOT_INDEX, smallFiles);
+        assertThat(tree.getSize(small)).isEqualTo(212L);
+        assertThat(tree.getItemCount(small)).isEqualTo(3);
+        assertThat(tree.areFilesLoaded(small)).isFalse();
+        assertThat(getChildPaths(tree, small)).containsExactly(largeFiles);
+
+        int large = getChild(tree, small, largeFiles);
+        assertThat(tree.areFilesLoaded(large)).isTrue();
+        assertThat(tree.streamChildren(large).boxed())
+            .extracting(tree::getPath, tree::getSize)
+            .containsExactly(tuple(largeFiles.resolve("d.txt"), 200L));
+    }
+
+    @Test
+    void shouldKeepSubdirectoryEntriesWhenLoadingFiles() {
+        // given
+        FileTreeGenerator generator = new FileTreeGenerator(root, new ParallelFileWalker(1), new RunMetrics());
+        FileTree lazyTree = generator.generateLazyTree(() -> { });
+
+        // when
+        FileTree tree = generator.loadFiles(lazyTree, directory -> true, message -> { });
+
+        // then
+        assertThat(tree.getEntryCount()).isEqualTo(7);
+        assertThat(getChildPaths(tree, FileTree.ROOT_INDEX)).hasSize(2).contains(smallFiles);
+        int small = getChild(tree, FileTree.ROOT_INDEX, smallFiles);
+        assertThat(tree.areFilesLoaded(small)).isTrue();
+        assertThat(getChildPaths(tree, small))
+            .containsExactlyInAnyOrder(smallFiles.resolve("b.txt"), smallFiles.resolve("c.txt"), largeFiles);
+        int large = getChild(tree, small, largeFiles);
+        assertThat(tree.getSize(large)).isEqualTo(200L);
+        assertThat(tree.getParentIndex(large)).isEqualTo(small);
+        assertThat(generator.loadFiles(tree, directory -> true, message -> { })).isSameAs(tree);
+    }
+
+    @Test
+    void shouldMarkDirectoryThatCannotBeListedAsLoaded() throws IOException {
+        // given
+        RunMetrics metrics = new RunMetrics();
+        FileTreeGenerator generator = new FileTreeGenerator(root, new ParallelFileWalker(2), metrics);
+        FileTree lazyTree = generator.generateLazyTree(() -> { });
+        Files.delete(largeFiles.resolve("d.txt"));
+        Files.delete(largeFiles);
+        List<String> errors = new ArrayList<>();
+
+        // when
+        FileTree tree = generator.loadFiles(lazyTree, directory -> lazyTree.getPath(directory).equals(largeFiles),
+            errors::add);
+
+        // then
+        int large = getChild(tree, getChild(tree, FileTree.ROOT_INDEX, smallFiles), largeFiles);
+        assertThat(tree.areFilesLoaded(large)).isTrue();
+        assertThat(getChildPaths(tree, large)).isEmpty();
+        assertThat(tree.getSize(large)).isEqualTo(200L);
+        assertThat(errors).singleElement().asString().contains(largeFiles.toAbsolutePath().toString());
+        assertThat(metrics.counter("scan.listingErrors").get()).isEqualTo(1);
+    }
+
+    private static List<Path> getChildPaths(FileTree tree, int parent) {
+        return tree.streamChildren(parent).mapToObj(tree::getPath).collect(Collectors.toList());
+    }
+
+    private static int getChild(FileTree tree, int parent, Path path) {
+        return tree.streamChildren(parent)
+            .filter(child -> tree.getPath(child).equals(path))
+            .findFirst()
+            .orElseThrow(() -> new IllegalStateException("No child " + path));
+    }
+}
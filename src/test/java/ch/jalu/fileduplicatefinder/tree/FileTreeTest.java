@@ -0,0 +1,84 @@
+package ch.jalu.fileduplicatefinder.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test for {@link FileTree}.
+ */
+class FileTreeTest {
+
+    private final Path root = Paths.get("root");
+
+    @Test
+    void shouldStoreEntriesInPreOrder() {
+        // given
+        FileTreeBuilder builder = new FileTreeBuilder();
+        int rootIndex = builder.addDirectory(FileTree.NO_PARENT, "root", 60, 3, 2, 30, true);
+        int file1 = builder.addFile(rootIndex, "a.txt", 20);
+        int dir = builder.addDirectory(rootIndex, "sub", 10, 1, 0, 0, false);
+        int dirInDir = builder.addDirectory(dir, "sub2", 10, 1, 1, 10, true);
+        int fileInDir = builder.addFile(dirInDir, "b.txt", 10);
+        builder.finishDirectory(dirInDir);
+        builder.finishDirectory(dir);
+        int file2 = builder.addFile(rootIndex, "c.txt", 30);
+        builder.finishDirectory(rootIndex);
+
+        // when
+        FileTree tree = builder.build(root);
+
+        // then
+        assertThat(tree.getEntryCount()).isEqualTo(6);
+        assertThat(rootIndex).isEqualTo(FileTree.ROOT_INDEX);
+        assertThat(tree.streamChildren(rootIndex)).containsExactly(file1, dir, file2);
+        assertThat(tree.streamChildren(dir)).containsExactly(dirInDir);
+        assertThat(tree.streamChildren(file1)).isEmpty();
+        assertThat(tree.getSubtreeEnd(dir)).isEqualTo(file2);
+        assertThat(tree.getParentIndex(fileInDir)).isEqualTo(dirInDir);
+        assertThat(tree.getParentIndex(rootIndex)).isEqualTo(FileTree.NO_PARENT);
+
+        assertThat(tree.getName(rootIndex)).isEqualTo("root");
+        assertThat(tree.getName(fileInDir)).isEqualTo("b.txt");
+        assertThat(tree.getRelativeName(rootIndex)).isEmpty();
+        assertThat(tree.getRelativeName(fileInDir))
+            .isEqualTo("sub" + File.separator + "sub2" + File.separator + "b.txt");
+        assertThat(tree.getPath(rootIndex)).isEqualTo(root);
+        assertThat(tree.getPath(fileInDir)).isEqualTo(root.resolve("sub/sub2/b.txt"));
+    }
+
+    @Test
+    void shouldReturnDirectoryProperties() {
+        // given
+        FileTreeBuilder builder = new FileTreeBuilder();
+        int rootIndex = builder.addDirectory(FileTree.NO_PARENT, "root", 60, 3, 2, 30, true);
+        int file = builder.addFile(rootIndex, "a.txt", 20);
+        int dir = builder.addDirectory(rootIndex, "sub", 10, 4, 4, 8, false);
+        builder.finishDirectory(dir);
+        builder.finishDirectory(rootIndex);
+
+        // when
+        FileTree tree = builder.build(root);
+
+        // then
+        assertThat(tree.isDirectory(rootIndex)).isTrue();
+        assertThat(tree.getItemCount(rootIndex)).isEqualTo(3);
+        assertThat(tree.areFilesLoaded(rootIndex)).isTrue();
+
+        assertThat(tree.isDirectory(file)).isFalse();
+        assertThat(tree.getSize(file)).isEqualTo(20L);
+        assertThat(tree.getItemCount(file)).isZero();
+        assertThat(tree.areFilesLoaded(file)).isTrue();
+
+        assertThat(tree.isDirectory(dir)).isTrue();
+        assertThat(tree.getSize(dir)).isEqualTo(10L);
+        assertThat(tree.getItemCount(dir)).isEqualTo(4);
+        assertThat(tree.getFileCount(dir)).isEqualTo(4);
+        assertThat(tree.getLargestFileSize(dir)).isEqualTo(8L);
+        assertThat(tree.areFilesLoaded(dir)).isFalse();
+    }
+}
@@ -0,0 +1,89 @@
+package ch.jalu.fileduplicatefinder.tree;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Paths;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test for {@link TreeEntryWriter}.
+ */
+class TreeEntryWriterTest {
+
+    private FileTree tree;
+    private TreeParameters params;
+
+    @BeforeEach
+    void createTree() {
+        FileTreeBuilder builder = new FileTreeBuilder();
+        int root = builder.addDirectory(FileTree.NO_PARENT, "root", 2058, 2, 1, 10, true);
+        builder.addFile(root, "a,b.txt", 10);
+        int dir = builder.addDirectory(root, "sub", 2048, 1, 1, 2048, true);
+        builder.addFile(dir, "c\".jpg", 2048);
+        builder.finishDirectory(dir);
+        builder.finishDirectory(root);
+        tree = builder.build(Paths.get("root"));
+
+        params = new TreeParameters();
+        params.setDisplayMode(TreeDisplayMode.ALL);
+    }
+
+    @Test
+    void shouldWriteCsv() throws IOException {
+        // given
+        StringWriter writer = new StringWriter();
+
+        // when
+        long totalWritten = new TreeEntryWriter(writer, TreeDumpFormat.CSV, tree, tree::getRelativeName, params)
+            .writeAll(IntStream.of(0, 2, 3, 1));
+
+        // then
+        assertThat(totalWritten).isEqualTo(4);
+        assertThat(writer.toString()).isEqualTo("type,size,items,path\n"
+            + "directory,2058,2,\n"
+            + "directory,2048,1,sub\n"
+            + "file,2048,,\"sub" + File.separator + "c\"\".jpg\"\n"
+            + "file,10,,\"a,b.txt\"\n");
+    }
+
+    @Test
+    void shouldWriteJsonLinesForEntriesMatchingTypeFilter() throws IOException {
+        // given
+        StringWriter writer = new StringWriter();
+        params.setDisplayMode(TreeDisplayMode.DIRECTORIES);
+
+        // when
+        long totalWritten = new TreeEntryWriter(writer, TreeDumpFormat.JSON_LINES, tree, tree::getRelativeName,
+            params).writeAll(IntStream.range(0, tree.getEntryCount()));
+
+        // then
+        assertThat(totalWritten).isEqualTo(2);
+        assertThat(writer.toString()).isEqualTo(
+            "{\"type\":\"directory\",\"size\":2058,\"items\":2,\"path\":\"\"}\n"
+            + "{\"type\":\"directory\",\"size\":2048,\"items\":1,\"path\":\"sub\"}\n");
+    }
+
+    @Test
+    void shouldWriteIndentedText() throws IOException {
+        // given
+        StringWriter writer = new StringWriter();
+        params.setIndentElements(true);
+        params.setFormatFileSize(true);
+
+        // when
+        new TreeEntryWriter(writer, TreeDumpFormat.TEXT, tree, tree::getRelativeName, params)
+            .writeAll(IntStream.range(0, tree.getEntryCount()));
+
+        // then
+        assertThat(writer.toString()).isEqualTo("Folder: root (2.0 KB)\n"
+            + "- a,b.txt (10 B)\n"
+            + "- sub (2.0 KB)\n"
+            + "  - c\".jpg (2.0 KB)\n");
+    }
+}
@@ -0,0 +1,90 @@
+package ch.jalu.fileduplicatefinder.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.BitSet;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test for {@link TreeFilterEvaluator}.
+ */
+class TreeFilterEvaluatorTest {
+
+    @Test
+    void shouldFindMatchingEntriesAndTheirParents() {
+        // given
+        FileTreeBuilder builder = new FileTreeBuilder();
+        int root = builder.addDirectory(FileTree.NO_PARENT, "root", 0, 2, 1, 0, true);
+        int file1 = builder.addFile(root, "a.txt", 0);
+        int dir = builder.addDirectory(root, "sub", 0, 2, 2, 0, true);
+        int file2 = builder.addFile(dir, "b.txt", 0);
+        int file3 = builder.addFile(dir, "c.log", 0);
+        builder.finishDirectory(dir);
+        builder.finishDirectory(root);
+        TreeFilterEvaluator evaluator = new TreeFilterEvaluator(builder.build(Paths.get("root")), 2);
+
+        TreeParameters params = new TreeParameters();
+        params.setFilePattern(Pattern.compile("sub.*\\.txt"));
+
+        // when
+        BitSet relevantEntries = evaluator.findRelevantEntries(params);
+
+        // then
+        assertThat(relevantEntries.stream()).containsExactly(root, dir, file2);
+        assertThat(evaluator.getRelativeName(file2)).isEqualTo("sub" + File.separator + "b.txt");
+        assertThat(evaluator.getRelativeName(file1)).isEqualTo("a.txt");
+
+        // given
+        params.setShowAbsolutePath(true);
+        params.setFilePattern(Pattern.compile(".*\\.(txt|log)"));
+
+        // when
+        BitSet relevantEntries2 = evaluator.findRelevantEntries(params);
+
+        // then
+        assertThat(relevantEntries2.stream()).containsExactly(root, file1, file2, file3);
+    }
+
+    @Test
+    void shouldEvaluateLargeTreeInParallel() {
+        // given
+        FileTreeBuilder builder = new FileTreeBuilder();
+        int root = builder.addDirectory(FileTree.NO_PARENT, "root", 0, 3, 0, 0, true);
+        for (int d = 0; d < 3; ++d) {
+            int dir = builder.addDirectory(root, "dir" + d, 0, 2, 0, 0, true);
+            for (int s = 0; s < 2; ++s) {
+                int subdirectory = builder.addDirectory(dir, "sub" + s, 0, 5000, 5000, 0, true);
+                for (int f = 0; f < 5000; ++f) {
+                    builder.addFile(subdirectory, "f" + f, f);
+                }
+                builder.finishDirectory(subdirectory);
+            }
+            builder.finishDirectory(dir);
+        }
+        builder.finishDirectory(root);
+        FileTree tree = builder.build(Paths.get("root"));
+        TreeFilterEvaluator evaluator = new TreeFilterEvaluator(tree, 4);
+
+        TreeParameters params = new TreeParameters();
+        params.setFilePattern(Pattern.compile("dir1.sub0.f\\d"));
+        params.setMinSizeBytes(3L);
+
+        // when
+        BitSet relevantEntries = evaluator.findRelevantEntries(params);
+
+        // then
+        assertThat(relevantEntries.stream().mapToObj(evaluator::getRelativeName)).containsExactly(
+            "", "dir1", "dir1" + File.separator + "sub0",
+            "dir1" + File.separator + "sub0" + File.separator + "f3",
+            "dir1" + File.separator + "sub0" + File.separator + "f4",
+            "dir1" + File.separator + "sub0" + File.separator + "f5",
+            "dir1" + File.separator + "sub0" + File.separator + "f6",
+            "dir1" + File.separator + "sub0" + File.separator + "f7",
+            "dir1" + File.separator + "sub0" + File.separator + "f8",
+            "dir1" + File.separator + "sub0" + File.separator + "f9");
+    }
+}
@@ -0,0 +1,91 @@
+package ch.jalu.fileduplicatefinder.utils;
+
+import ch.jalu.fileduplicatefinder.metrics.Histogram;
+import ch.jalu.fileduplicatefinder.metrics.RunMetrics;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test for {@link DeviceIoScheduler}.
+ */
+class DeviceIoSchedulerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final Histogram queueDepth = new RunMetrics().histogram("queueDepth");
+
+    @Test
+    void shouldRunWaitingTasksOfDeviceByPriorityAndPath() throws InterruptedException {
+        // given
+        List<String> processedFiles = new CopyOnWriteArrayList<>();
+        CountDownLatch firstTaskStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstTask = new CountDownLatch(1);
+
+        try (DeviceIoScheduler scheduler = new DeviceIoScheduler(1, 1, "test-io", queueDepth)) {
+            CompletableFuture<?> blockingTask = scheduler.supplyAsync(tempDir.resolve("m.txt"), 0, () -> {
+                firstTaskStarted.countDown();
+                awaitUninterruptibly(releaseFirstTask);
+                return null;
+            });
+            firstTaskStarted.await();
+
+            // when
+            List<CompletableFuture<Boolean>> tasks = List.of(
+                scheduler.supplyAsync(tempDir.resolve("c.txt"), 1, () -> processedFiles.add("c.txt")),
+                scheduler.supplyAsync(tempDir.resolve("a.txt"), 1, () -> processedFiles.add("a.txt")),
+                scheduler.supplyAsync(tempDir.resolve("z.txt"), 0, () -> processedFiles.add("z.txt")),
+                scheduler.supplyAsync(tempDir.resolve("b.txt"), 1, () -> processedFiles.add("b.txt")));
+            releaseFirstTask.countDown();
+            tasks.forEach(CompletableFuture::join);
+            blockingTask.join();
+
+            // then
+            assertThat(processedFiles).containsExactly("z.txt", "a.txt", "b.txt", "c.txt");
+            assertThat(scheduler.getDeviceDescriptions()).hasSize(1);
+            assertThat(queueDepth.getCount()).isEqualTo(5);
+            assertThat(queueDepth.getMax()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void shouldPropagateExceptionOfTask() {
+        // given
+        try (DeviceIoScheduler scheduler = new DeviceIoScheduler(2, 1, "test-io", queueDepth)) {
+            // when
+            CompletableFuture<String> result = scheduler.supplyAsync(tempDir.resolve("file.txt"), 0, () -> {
+                throw new IllegalStateException("Test exception");
+            });
+
+            // then
+            assertThatThrownBy(() -> ConcurrencyUtils.join(result))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Test exception");
+        }
+    }
+
+    @Test
+    void shouldDecodeDeviceIdToSysfsName() {
+        // given / when / then
+        assertThat(DeviceIoScheduler.toSysfsDeviceName(0x801L)).isEqualTo("8:1");
+        assertThat(DeviceIoScheduler.toSysfsDeviceName(0x10300L)).isEqualTo("259:0");
+        assertThat(DeviceIoScheduler.toSysfsDeviceName(0x110301L)).isEqualTo("259:257");
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}